@@ -80,6 +80,27 @@ public class LightConstants {
    */
   public static final int GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS = 50;
 
+  /** Number of Google Doc GDATA requests which are allowed to be in flight at same time. */
+  public static final int GDATA_GDOC_MAX_CONCURRENT_REQUESTS = 5;
+
+  /** Time for which caller will wait for a batch of Google Doc GDATA requests to finish. */
+  public static final long GDATA_GDOC_BATCH_TIMEOUT_IN_MILLIS = 30 * 1000;
+
+  /**
+   * Maximum number of bytes read from a remote Web Page while looking for its title. Title is
+   * expected inside &lt;head&gt;, which for almost all pages ends well before this.
+   */
+  public static final int WEB_PAGE_TITLE_MAX_BYTES = 64 * 1024;
+
+  /** OAuth2 Owner Tokens which expire within this time are refreshed before they are used. */
+  public static final long OAUTH2_TOKEN_REFRESH_WINDOW_IN_MILLIS = 5 * 60 * 1000;
+
+  /**
+   * Time for which browsers and proxies can cache content of a concrete published version without
+   * revalidating it. Published versions never change, so this is a year.
+   */
+  public static final int IMMUTABLE_CONTENT_MAX_AGE_IN_SEC = 365 * 24 * 60 * 60;
+
   
   /**
    * Number of documents that can be requested by client to import in single batch.
@@ -103,6 +124,52 @@ public class LightConstants {
   public static final int TASK_RETRY_LIMIT = 3;
   
   public static final int OBJECTIFY_REPEAT_COUNT = 5;
+
+  /**
+   * Number of entity groups over which completions of child jobs are recorded. Each entity group
+   * can sustain only a few transactional writes per second.
+   */
+  public static final int CHILD_COMPLETION_SHARD_COUNT = 20;
+
+  /**
+   * Delay between polls of a Job waiting for its childs. Childs resume their parent when they
+   * complete, so polling only catches notifications which were lost.
+   */
+  public static final long CHILD_POLLING_DELAY_MILLIS = 5 * 60 * 1000;
+
+  /**
+   * Maximum number of polls for childs of a Job, after which the Job is stopped. With
+   * {@link #CHILD_POLLING_DELAY_MILLIS}, childs get a day to complete.
+   */
+  public static final int CHILD_POLLING_MAX_POLLS = 288;
+
+  /**
+   * JobEntity keeps at most twice these many change log entries. Older entries are archived in
+   * chunks of this size.
+   */
+  public static final int JOB_CHANGE_LOG_CHUNK_SIZE = 25;
+
+  /** Maximum number of tasks which can be added to TaskQueue in one transaction. */
+  public static final int MAX_TRANSACTIONAL_TASKS = 5;
+
+  /**
+   * Maximum number of child jobs added to a parent in one transaction. Childs are enqueued in
+   * same transaction.
+   */
+  public static final int CHILD_JOB_CREATION_BATCH_SIZE = MAX_TRANSACTIONAL_TASKS;
+
+  /**
+   * Number of documents stored in each chunk of the snapshot of a Google Folder which is being
+   * imported. Keeps each chunk well within the size limit of an entity.
+   */
+  public static final int FOLDER_SNAPSHOT_CHUNK_SIZE = 100;
+
+  /** Size of buffers used while streaming files from/to Google Cloud Storage. */
+  public static final int GCS_BUFFER_SIZE_IN_BYTES = 256 * 1024;
+
+  /** Max size of HTML for a Module. It is stored in Datastore, which limits entities to 1MB. */
+  public static final int MAX_MODULE_HTML_SIZE_IN_BYTES = 1024 * 1024;
+
   public static final int MAX_GSS_CSE_INDEX_UPDATE_BULK = 50;
   public static final int GSS_CSE_INDEX_UPDATE_WAIT_INTERVAL_IN_MILLIS = 5000;
 
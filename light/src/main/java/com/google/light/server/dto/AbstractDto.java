@@ -53,6 +53,13 @@ public abstract class AbstractDto<D> extends AbstractPojo<D> implements NeedsDto
     return JsonUtils.toJson(this);
   }
 
+  /**
+   * Convert DTO to compact JSON String. Used for JSON which is persisted or sent over wire.
+   */
+  public String toCompactJson() {
+    return JsonUtils.toCompactJson(this);
+  }
+
   /**
    * Convert DTO to XML String.
    */
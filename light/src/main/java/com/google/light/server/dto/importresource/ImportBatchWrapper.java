@@ -53,7 +53,8 @@ import org.codehaus.jackson.annotate.JsonTypeName;
 @JsonTypeName(value = "importBatch")
 @XmlRootElement(name = "importBatch")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ImportBatchWrapper extends AbstractDto<ImportBatchWrapper> {
+public class ImportBatchWrapper extends AbstractDto<ImportBatchWrapper> implements
+    ImportExternalIdListContext {
   // TODO(arjuns) : See how this looks
   @XmlElementWrapper(name = "list")
   @XmlElement(name = "item")
@@ -228,6 +229,7 @@ public class ImportBatchWrapper extends AbstractDto<ImportBatchWrapper> {
     return false;
   }
 
+  @Override
   public List<ImportExternalIdDto> getList() {
     if (isCollectionEmpty(list)) {
       list = Lists.newArrayList();
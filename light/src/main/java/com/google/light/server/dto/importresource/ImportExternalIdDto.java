@@ -21,8 +21,8 @@ import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
 import static com.google.light.server.utils.LightPreconditions.checkNotEmptyCollection;
 import static com.google.light.server.utils.LightPreconditions.checkNull;
 
+import com.google.common.collect.Maps;
 import com.google.light.server.constants.LightConstants;
-
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.dto.module.ModuleState;
 import com.google.light.server.dto.module.ModuleStateCategory;
@@ -36,6 +36,7 @@ import com.google.light.server.persistence.entity.jobs.JobEntity;
 import com.google.light.server.persistence.entity.jobs.JobState;
 import com.google.light.server.persistence.entity.jobs.JobStateCategory;
 import java.util.List;
+import java.util.Map;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAnyElement;
@@ -226,6 +227,34 @@ public class ImportExternalIdDto extends AbstractDto<ImportExternalIdDto> {
     }
   }
 
+  /**
+   * Merges updates into list in O(size of list + size of updates). An update replaces the entry
+   * for same ExternalId, else it is appended. Updates are applied in order, so later update for
+   * an ExternalId wins.
+   */
+  public static void mergeIntoList(List<ImportExternalIdDto> list,
+      List<ImportExternalIdDto> updates) {
+    checkNotNull(list, "list");
+    checkNotNull(updates, "updates");
+
+    // Keyed by raw value, as ExternalId's hashCode is reflection based.
+    Map<String, Integer> indexByExternalId = Maps.newHashMapWithExpectedSize(list.size());
+    for (int i = 0; i < list.size(); i++) {
+      indexByExternalId.put(list.get(i).getExternalId().getValue(), i);
+    }
+
+    for (ImportExternalIdDto currUpdate : updates) {
+      String key = currUpdate.getExternalId().getValue();
+      Integer index = indexByExternalId.get(key);
+      if (index != null) {
+        list.set(index, currUpdate);
+      } else {
+        indexByExternalId.put(key, list.size());
+        list.add(currUpdate);
+      }
+    }
+  }
+
   /**
    * This method is used to validate the client Request.
    * 
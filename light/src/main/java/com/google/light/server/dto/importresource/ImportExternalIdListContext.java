@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.dto.importresource;
+
+import java.util.List;
+
+/**
+ * Context of a parent Job which keeps an {@link ImportExternalIdDto} for each of its childs.
+ * Childs are appended to the persisted context without parsing it. See
+ * {@link com.google.light.server.persistence.entity.jobs.JobEntity#appendToContext}.
+ *
+ * @author Arjun Satyapal
+ */
+public interface ImportExternalIdListContext {
+  /**
+   * Returns mutable list of {@link ImportExternalIdDto}s, one per ExternalId.
+   */
+  public List<ImportExternalIdDto> getList();
+}
@@ -20,6 +20,7 @@ import static com.google.light.server.utils.GuiceUtils.getInstance;
 import static com.google.light.server.utils.LightPreconditions.checkPositiveLong;
 import static com.google.light.server.utils.LightUtils.getWrapperValue;
 
+import com.google.common.base.Objects;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
 
 import com.google.light.server.dto.AbstractPojo;
@@ -42,7 +43,7 @@ public class RequestScopedValues extends AbstractPojo<RequestScopedValues> {
   /** Id of Person who is performing current action on behalf of Owner. */
   protected Long actorId;
 
-  // These entities are lazily initialized.
+  // These entities are lazily initialized, and are loaded at most once per instance.
   private PersonEntity owner;
   private PersonEntity actor;
 
@@ -57,13 +58,24 @@ public class RequestScopedValues extends AbstractPojo<RequestScopedValues> {
   }
 
   public RequestScopedValues(PersonId ownerId, PersonId actorId) {
-    if (ownerId.isValid()) {
-      this.ownerId = getWrapperValue(ownerId);
-    }
+    this.ownerId = getValidValue(ownerId);
+    this.actorId = getValidValue(actorId);
+  }
 
-    if (actorId.isValid()) {
-      this.actorId = getWrapperValue(actorId);
+  /**
+   * Returns true if this was created for ownerId and actorId, i.e. new RequestScopedValues(ownerId,
+   * actorId) would have the same Ids as this.
+   */
+  public boolean isFor(PersonId ownerId, PersonId actorId) {
+    return Objects.equal(this.ownerId, getValidValue(ownerId))
+        && Objects.equal(this.actorId, getValidValue(actorId));
+  }
+
+  private static Long getValidValue(PersonId personId) {
+    if (personId == null || !personId.isValid()) {
+      return null;
     }
+    return getWrapperValue(personId);
   }
 
   public PersonId getOwnerId() {
@@ -76,6 +88,7 @@ public class RequestScopedValues extends AbstractPojo<RequestScopedValues> {
 
   public void setOwnerId(PersonId ownerId) {
     this.ownerId = getWrapperValue(ownerId);
+    this.owner = null;
   }
 
   public PersonEntity getOwner() {
@@ -101,6 +114,7 @@ public class RequestScopedValues extends AbstractPojo<RequestScopedValues> {
 
   public void setActorId(PersonId actorId) {
     this.actorId = getWrapperValue(actorId);
+    this.actor = null;
   }
 
   public PersonEntity getActor() {
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.dto.pojo.tree.collection;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * Navigation for a Collection Tree, rendered as nested ol, li and a tags.
+ *
+ * HTML is rendered once, and positions of the leaf nodes in it are remembered. So marking the
+ * module being viewed as current only costs a single copy of the rendered HTML.
+ *
+ * @author Arjun Satyapal
+ */
+public class CollectionNavigationHtml {
+  /** CSS class added to li of the module which is being viewed. */
+  public static final String CURRENT_MODULE_CSS_CLASS = "currentModule";
+
+  private static final String CURRENT_MODULE_ATTRIBUTE =
+      " class=\"" + CURRENT_MODULE_CSS_CLASS + "\"";
+  private static final int INITIAL_INDENT = 2;
+  private static final int INDENT_PER_LEVEL = 4;
+
+  private final String html;
+  // Offset in html right after "<li" for each leaf, in pre-order.
+  private final int[] leafOffsets;
+
+  /**
+   * @param treeIndex Tree to be rendered.
+   * @param leafPathPrefix Path for a leaf is leafPathPrefix followed by its ModuleId.
+   */
+  public CollectionNavigationHtml(CollectionTreeIndex treeIndex, String leafPathPrefix) {
+    checkNotBlank(leafPathPrefix, "leafPathPrefix");
+    this.leafOffsets = new int[treeIndex.getNumberOfLeafs()];
+
+    StringBuilder builder = new StringBuilder();
+    builder.append("<ol>\n");
+    int leafCount = appendNode(treeIndex.getRoot(), builder, INITIAL_INDENT, true,
+        StringEscapeUtils.escapeHtml(leafPathPrefix), 0);
+    builder.append("\n</ol>");
+
+    this.html = builder.toString();
+    if (leafCount != leafOffsets.length) {
+      throw new IllegalStateException("Expected " + leafOffsets.length + " leafs, but rendered "
+          + leafCount);
+    }
+  }
+
+  /**
+   * Returns navigation without any module marked as current.
+   */
+  public String getHtml() {
+    return html;
+  }
+
+  /**
+   * Returns navigation with leaf at leafPosition marked with {@link #CURRENT_MODULE_CSS_CLASS}.
+   */
+  public String getHtml(int leafPosition) {
+    checkElementIndex(leafPosition, leafOffsets.length, "leafPosition");
+    int offset = leafOffsets[leafPosition];
+    return new StringBuilder(html.length() + CURRENT_MODULE_ATTRIBUTE.length())
+        .append(html, 0, offset)
+        .append(CURRENT_MODULE_ATTRIBUTE)
+        .append(html, offset, html.length())
+        .toString();
+  }
+
+  /**
+   * Appends node and its children to builder. Returns number of leafs rendered so far.
+   */
+  private int appendNode(CollectionTreeNodeDto node, StringBuilder builder, int indent,
+      boolean isRoot, String escapedLeafPathPrefix, int leafCount) {
+    if (node.isLeafNode()) {
+      appendIndent(builder, indent);
+      builder.append("<li");
+      leafOffsets[leafCount] = builder.length();
+      builder.append("><a href=")
+          .append(escapedLeafPathPrefix)
+          .append(node.getModuleId().getValue())
+          .append(">")
+          .append(StringEscapeUtils.escapeHtml(node.getTitle()))
+          .append("</a></li>\n");
+      return leafCount + 1;
+    }
+
+    if (!isRoot) {
+      appendIndent(builder, indent);
+      builder.append("<li>").append(StringEscapeUtils.escapeHtml(node.getTitle()))
+          .append("<ol>\n");
+    }
+    if (node.hasChildren()) {
+      for (CollectionTreeNodeDto currChild : node.getChildren()) {
+        leafCount = appendNode(currChild, builder, indent + INDENT_PER_LEVEL, false,
+            escapedLeafPathPrefix, leafCount);
+      }
+    }
+    if (!isRoot) {
+      appendIndent(builder, indent);
+      builder.append("</ol></li>\n");
+    }
+    return leafCount;
+  }
+
+  private static void appendIndent(StringBuilder builder, int indent) {
+    for (int i = 0; i < indent; i++) {
+      builder.append(' ');
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.dto.pojo.tree.collection;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsed and pre-indexed form of a Collection Tree. Leaf nodes are stored in pre-order, along
+ * with a map from ModuleId to position of its first occurrence, so that a module and its
+ * neighbours can be found in constant time. Navigation HTML for the tree is rendered lazily and
+ * kept along with the index.
+ *
+ * Instances are shared across requests by {@link CollectionTreeIndexCache}, so callers should
+ * not modify the tree returned by {@link #getRoot()}.
+ *
+ * @author Arjun Satyapal
+ */
+public class CollectionTreeIndex {
+  /** Returned by {@link #getLeafPosition(ModuleId)} when module is not part of the tree. */
+  public static final int NOT_FOUND = -1;
+
+  private final CollectionTreeNodeDto root;
+  private final ImmutableList<CollectionTreeNodeDto> leafNodes;
+  private final ImmutableMap<Long, Integer> leafPositions;
+  // Rendered navigation, keyed by path prefix used for leafs.
+  private final ConcurrentMap<String, CollectionNavigationHtml> navigationHtmls =
+      new MapMaker().makeMap();
+
+  public CollectionTreeIndex(CollectionTreeNodeDto root) {
+    this.root = checkNotNull(root, "root");
+
+    ImmutableList.Builder<CollectionTreeNodeDto> leafBuilder = ImmutableList.builder();
+    addLeafNodesInPreorder(leafBuilder, root);
+    this.leafNodes = leafBuilder.build();
+
+    // Keyed by raw value, as ModuleId's hashCode is reflection based.
+    Map<Long, Integer> positions = Maps.newHashMapWithExpectedSize(leafNodes.size());
+    for (int index = 0; index < leafNodes.size(); index++) {
+      CollectionTreeNodeDto currLeaf = leafNodes.get(index);
+      if (currLeaf.hasModuleId() && !positions.containsKey(currLeaf.getModuleId().getValue())) {
+        positions.put(currLeaf.getModuleId().getValue(), index);
+      }
+    }
+    this.leafPositions = ImmutableMap.copyOf(positions);
+  }
+
+  public CollectionTreeNodeDto getRoot() {
+    return root;
+  }
+
+  /**
+   * Leaf nodes of the tree in pre-order.
+   */
+  public List<CollectionTreeNodeDto> getLeafNodes() {
+    return leafNodes;
+  }
+
+  public int getNumberOfLeafs() {
+    return leafNodes.size();
+  }
+
+  public CollectionTreeNodeDto getLeaf(int position) {
+    return leafNodes.get(position);
+  }
+
+  /**
+   * Returns position of first occurrence of moduleId among leaf nodes, or {@link #NOT_FOUND}.
+   */
+  public int getLeafPosition(ModuleId moduleId) {
+    checkNotNull(moduleId, "moduleId");
+    Integer position = leafPositions.get(moduleId.getValue());
+    return position == null ? NOT_FOUND : position;
+  }
+
+  /**
+   * Returns leaf before position, or null if position is the first leaf.
+   */
+  public CollectionTreeNodeDto getPrevious(int position) {
+    return position > 0 ? leafNodes.get(position - 1) : null;
+  }
+
+  /**
+   * Returns leaf after position, or null if position is the last leaf.
+   */
+  public CollectionTreeNodeDto getNext(int position) {
+    return position + 1 < leafNodes.size() ? leafNodes.get(position + 1) : null;
+  }
+
+  /**
+   * Returns navigation for this tree, rendered on first use for a given leafPathPrefix. Leaf
+   * paths depend on the version requested (e.g. latest or a specific version), so there are at
+   * most a couple of renderings per tree.
+   */
+  public CollectionNavigationHtml getNavigationHtml(String leafPathPrefix) {
+    CollectionNavigationHtml navigationHtml = navigationHtmls.get(leafPathPrefix);
+    if (navigationHtml == null) {
+      // Racing requests may render more than once, but end up sharing the first one.
+      navigationHtml = new CollectionNavigationHtml(this, leafPathPrefix);
+      CollectionNavigationHtml existing = navigationHtmls.putIfAbsent(leafPathPrefix,
+          navigationHtml);
+      if (existing != null) {
+        navigationHtml = existing;
+      }
+    }
+    return navigationHtml;
+  }
+
+  private static void addLeafNodesInPreorder(ImmutableList.Builder<CollectionTreeNodeDto> builder,
+      CollectionTreeNodeDto node) {
+    if (node.isLeafNode()) {
+      builder.add(node);
+    }
+    if (node.hasChildren()) {
+      for (CollectionTreeNodeDto child : node.getChildren()) {
+        addLeafNodesInPreorder(builder, child);
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.dto.pojo.tree.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.CollectionId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+
+/**
+ * Process wide cache of {@link CollectionTreeIndex} for published Collection Versions.
+ *
+ * Published Collection Versions are immutable, so entries are never invalidated. Cache is bounded
+ * by number of entries, and least recently used entries are evicted first. Callers are
+ * responsible for ensuring that only immutable versions are put in the cache.
+ *
+ * @author Arjun Satyapal
+ */
+public class CollectionTreeIndexCache {
+  public static final int MAX_ENTRIES = 500;
+
+  private static final Cache<String, CollectionTreeIndex> CACHE = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENTRIES)
+      .build();
+
+  /**
+   * Returns cached index for collectionId:version, or null if it is not cached.
+   */
+  public static CollectionTreeIndex get(CollectionId collectionId, Version version) {
+    return CACHE.getIfPresent(createKey(collectionId, version));
+  }
+
+  public static void put(CollectionId collectionId, Version version, CollectionTreeIndex index) {
+    checkNotNull(index, "index");
+    CACHE.put(createKey(collectionId, version), index);
+  }
+
+  /**
+   * Removes all the entries. Should be used only by tests.
+   */
+  public static void clear() {
+    CACHE.invalidateAll();
+  }
+
+  private static String createKey(CollectionId collectionId, Version version) {
+    checkNotNull(collectionId, "collectionId");
+    checkNotNull(version, "version");
+    checkArgument(!version.isLatestVersion() && !version.isNoVersion(),
+        "Only concrete versions can be cached : " + version);
+    return collectionId.getValue() + ":" + version.getValue();
+  }
+
+  // Utility class.
+  private CollectionTreeIndexCache() {
+  }
+}
@@ -23,21 +23,17 @@ package com.google.light.server.guice.jersey;
  * @author Arjun Satyapal
  */
 
-import com.google.light.server.constants.LightDtos;
 import com.google.light.server.constants.http.ContentTypeConstants;
-import java.util.Map;
-import java.util.Set;
+import com.google.light.server.utils.XmlUtils;
 import javax.ws.rs.Produces;
 import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Provider;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import javax.xml.bind.PropertyException;
 
 /**
  * JAXB Context for {@link ContentTypeEnum#TEXT_XML} which will provide a Marshaller with
- * PrettyPrinting enabled.
+ * PrettyPrinting enabled. JAXBContext is shared with {@link XmlUtils}, but a new Marshaller is
+ * returned for every call as Jersey sets properties on it, e.g. encoding of the response.
  * 
  * TODO(arjuns): Add test for this.
  *
@@ -46,49 +42,13 @@ import javax.xml.bind.PropertyException;
 @Produces(ContentTypeConstants.APPLICATION_XML)
 @Provider
 public final class JAXBXmlContextResolver implements ContextResolver<Marshaller> {
-  @SuppressWarnings("rawtypes")
-  Map<Class, Marshaller> marshallerMap;
-  Marshaller marshaller;
-  
-  @SuppressWarnings("rawtypes")
-  Set<Class> types;
-
-  @SuppressWarnings("rawtypes")
-  public JAXBXmlContextResolver() throws Exception {
-    Class[] list = LightDtos.getArrayOfDtoClasses();
-//    this.types = Sets.newHashSet(list);
-//    
-//    
-//    marshallerMap = Maps.newHashMap();
-//    for(Class<? extends AbstractDto> currClass : list) {
-//      marshallerMap.put(currClass, generateMarshaller(currClass));
-//    }
-    
-    marshaller = generateMarshaller(list);
+  public JAXBXmlContextResolver() {
+    // Initializing JAXBContext eagerly so that first request does not pay for it.
+    XmlUtils.getDtoJAXBContext();
   }
 
   @Override
   public Marshaller getContext(Class<?> objectType) {
-//    if (types.contains(objectType)) {
-//      return marshallerMap.get(objectType);
-//    }
-
-    return marshaller;
-//    return null;
-  }
-
-  /**
-   * @param objectType
-   * @return
-   * @throws JAXBException
-   * @throws PropertyException
-   */
-  @SuppressWarnings("rawtypes")
-  private Marshaller generateMarshaller(Class[] list) throws JAXBException,
-      PropertyException {
-    JAXBContext context = JAXBContext.newInstance(list);
-    Marshaller marshaller = context.createMarshaller();
-    marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-    return marshaller;
+    return XmlUtils.createDtoMarshaller();
   }
 }
@@ -49,11 +49,13 @@ import com.google.light.server.manager.implementation.GSSClientLoginTokenManager
 import com.google.light.server.manager.implementation.JobManagerImpl;
 import com.google.light.server.manager.implementation.ModuleManagerImpl;
 import com.google.light.server.manager.implementation.NotificationManagerImpl;
+import com.google.light.server.manager.implementation.PersonCache;
 import com.google.light.server.manager.implementation.PersonManagerImpl;
 import com.google.light.server.manager.implementation.QueueManagerImpl;
 import com.google.light.server.manager.implementation.SearchManagerGSSImpl;
 import com.google.light.server.manager.implementation.oauth2.consumer.OAuth2ConsumerCredentialManagerFactory;
 import com.google.light.server.manager.implementation.oauth2.consumer.OAuth2ConsumerCredentialManagerImpl;
+import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenCache;
 import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenManagerFactory;
 import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenManagerImpl;
 import com.google.light.server.manager.interfaces.AdminOperationManager;
@@ -113,6 +115,14 @@ public abstract class BaseGuiceModule extends AbstractModule {
         .implement(OAuth2OwnerTokenManager.class, OAuth2OwnerTokenManagerImpl.class)
         .build(OAuth2OwnerTokenManagerFactory.class));
 
+    // Shared by all PersonManagers, so Persons are cached across requests.
+    bind(PersonCache.class)
+        .in(Singleton.class);
+
+    // Shared by all OAuth2OwnerTokenManagers, so tokens are cached across requests.
+    bind(OAuth2OwnerTokenCache.class)
+        .in(Singleton.class);
+
     install(new FactoryModuleBuilder()
         .implement(OAuth2ConsumerCredentialManager.class, OAuth2ConsumerCredentialManagerImpl.class)
         .build(OAuth2ConsumerCredentialManagerFactory.class));
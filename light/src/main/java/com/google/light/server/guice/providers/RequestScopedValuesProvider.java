@@ -27,15 +27,21 @@ import com.google.light.server.dto.pojo.RequestScopedValues;
 import com.google.inject.Provider;
 import com.google.light.server.annotations.AnotActor;
 import com.google.light.server.annotations.AnotOwner;
+import javax.servlet.http.HttpServletRequest;
 
 /**
- *
+ * Provides {@link RequestScopedValues} for current request. Snapshot created for a request is kept
+ * as a request attribute and returned to all callers within that request, so owner and actor are
+ * loaded at most once per request. A new snapshot is created if Ids seeded in request scope change
+ * after the snapshot was created.
  * 
  * TODO(arjuns): Add test for this class.
  *
  * @author Arjun Satyapal
  */
 public class RequestScopedValuesProvider implements Provider<RequestScopedValues>{
+  private static final String SNAPSHOT_ATTRIBUTE = RequestScopedValues.class.getName();
+
   /** 
    * {@inheritDoc}
    */
@@ -43,7 +49,17 @@ public class RequestScopedValuesProvider implements Provider<RequestScopedValues
   public RequestScopedValues get() {
     PersonId ownerId = getInstance(PersonId.class, AnotOwner.class);
     PersonId actorId = getInstance(PersonId.class, AnotActor.class);
-    return new RequestScopedValues(ownerId, actorId);
+
+    HttpServletRequest request = getInstance(HttpServletRequest.class);
+    Object snapshot = request.getAttribute(SNAPSHOT_ATTRIBUTE);
+    if (snapshot instanceof RequestScopedValues
+        && ((RequestScopedValues) snapshot).isFor(ownerId, actorId)) {
+      return (RequestScopedValues) snapshot;
+    }
+
+    RequestScopedValues requestScopedValues = new RequestScopedValues(ownerId, actorId);
+    request.setAttribute(SNAPSHOT_ATTRIBUTE, requestScopedValues);
+    return requestScopedValues;
   }
 
 }
@@ -16,6 +16,7 @@
 package com.google.light.server.httpclient;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.light.server.constants.LightConstants.WEB_PAGE_TITLE_MAX_BYTES;
 import static com.google.light.server.utils.LightPreconditions.checkNotNull;
 
 import com.google.api.client.http.GenericUrl;
@@ -24,24 +25,31 @@ import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
+import com.google.common.base.Charsets;
 import com.google.inject.Inject;
 import com.google.light.server.constants.HttpHeaderEnum;
 import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
 import com.google.light.server.exception.ExceptionType;
 import com.google.light.server.utils.LightUtils;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * 
- * 
- * TODO(arjuns): Add test for this class.
+ * Wrapper over {@link HttpTransport} for fetching remote pages.
  * 
  * @author Arjun Satyapal
  */
 public class LightHttpClient {
+  private static final Pattern TITLE_PATTERN = Pattern.compile(
+      "<title\\b[^>]*>(.*?)</title>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final byte[] TITLE_END_TAG = "</title>".getBytes(Charsets.US_ASCII);
+  private static final byte[] HEAD_END_TAG = "</head>".getBytes(Charsets.US_ASCII);
+  private static final int READ_CHUNK_SIZE = 4 * 1024;
+
   private HttpTransport httpTransport;
   @SuppressWarnings("unused")
   private JsonFactory jsonFactory;
@@ -97,22 +105,130 @@ public class LightHttpClient {
     return null;
   }
 
+  /**
+   * Fetches uri and returns its status, X-Frame-Options header and title using a single GET.
+   * Title is read only when page is fetched successfully and can be embedded inside an iFrame, and
+   * then at most maxBytes of the page are read. A Range header is also sent, so servers which
+   * support it do not send rest of the page at all.
+   *
+   * Failure status codes are returned in {@link WebPageInfo} instead of being thrown.
+   */
+  public WebPageInfo getWebPageInfo(URI uri, int maxBytes) throws IOException {
+    checkArgument(maxBytes > 0, "maxBytes should be positive.");
+    HttpRequest request = httpTransport.createRequestFactory()
+        .buildGetRequest(new GenericUrl(uri.toString()));
+    request.getHeaders().set(HttpHeaderEnum.RANGE.get(), "bytes=0-" + (maxBytes - 1));
+    request.setThrowExceptionOnExecuteError(false);
+    HttpResponse response = request.execute();
+
+    String xFrameOptions = getHeaderValueFromResponse(response, HttpHeaderEnum.X_FRAME_OPTIONS);
+    String title = null;
+    InputStream content = response.getContent();
+    try {
+      if (content != null && response.isSuccessStatusCode() && xFrameOptions == null) {
+        title = extractTitle(content, maxBytes);
+      }
+    } finally {
+      if (content != null) {
+        // Closing without draining, as rest of the page is not required.
+        content.close();
+      }
+    }
+
+    return new WebPageInfo(response.getStatusCode(), xFrameOptions, title);
+  }
+
   public String getTitle(HttpResponse response, ExternalId externalId) {
     String generatedTitle = LightUtils.generateNameForExternalId(externalId);
     try {
-      String html = LightUtils.getInputStreamAsString(response.getContent());
+      InputStream content = response.getContent();
+      try {
+        String title = extractTitle(content, WEB_PAGE_TITLE_MAX_BYTES);
+        return title != null ? title : generatedTitle;
+      } finally {
+        content.close();
+      }
+    } catch (Exception e) {
+      return generatedTitle;
+    }
+  }
 
-      html = html.replaceAll("\\s+", " ");
-      Pattern pattern = Pattern.compile("<title>(.*?)</title>");
-      Matcher matcher = pattern.matcher(html);
+  /**
+   * Reads html from inputStream till &lt;/title&gt; or &lt;/head&gt; is seen, or maxBytes have
+   * been read, and returns the title with whitespaces collapsed. Returns null if title was not
+   * found in the bytes which were read. inputStream is not closed.
+   */
+  public static String extractTitle(InputStream inputStream, int maxBytes) throws IOException {
+    checkNotNull(inputStream, "inputStream");
+    checkArgument(maxBytes > 0, "maxBytes should be positive.");
 
-      if (matcher.find() == true) {
-        return matcher.group(1);
+    byte[] buffer = new byte[Math.min(maxBytes, READ_CHUNK_SIZE)];
+    int length = 0;
+    int end = -1;
+    while (end == -1 && length < maxBytes) {
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.min(maxBytes, 2 * buffer.length));
       }
 
-      return generatedTitle;
-    } catch (Exception e) {
-      return generatedTitle;
+      int read = inputStream.read(buffer, length, buffer.length - length);
+      if (read == -1) {
+        break;
+      }
+
+      // End tag may have been split across two reads.
+      int scanFrom = Math.max(0, length - TITLE_END_TAG.length + 1);
+      length += read;
+      end = findEndOfTitle(buffer, scanFrom, length);
+    }
+
+    String html = new String(buffer, 0, end == -1 ? length : end, Charsets.UTF_8);
+    Matcher matcher = TITLE_PATTERN.matcher(html);
+    if (!matcher.find()) {
+      return null;
     }
+
+    String title = matcher.group(1).replaceAll("\\s+", " ").trim();
+    return title.isEmpty() ? null : title;
+  }
+
+  /**
+   * Returns index just after first &lt;/title&gt; or &lt;/head&gt; in buffer between from and to,
+   * or -1 if neither of them is present.
+   */
+  private static int findEndOfTitle(byte[] buffer, int from, int to) {
+    for (int index = from; index < to; index++) {
+      if (buffer[index] != '<') {
+        continue;
+      }
+
+      if (matchesIgnoreCase(buffer, index, to, TITLE_END_TAG)) {
+        return index + TITLE_END_TAG.length;
+      }
+
+      if (matchesIgnoreCase(buffer, index, to, HEAD_END_TAG)) {
+        return index + HEAD_END_TAG.length;
+      }
+    }
+
+    return -1;
+  }
+
+  private static boolean matchesIgnoreCase(byte[] buffer, int offset, int to, byte[] tag) {
+    if (offset + tag.length > to) {
+      return false;
+    }
+
+    for (int i = 0; i < tag.length; i++) {
+      int curr = buffer[offset + i];
+      if (curr >= 'A' && curr <= 'Z') {
+        curr += 'a' - 'A';
+      }
+
+      if (curr != tag[i]) {
+        return false;
+      }
+    }
+
+    return true;
   }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.httpclient;
+
+import static com.google.light.server.constants.http.HttpStatusCodesEnum.REQUESTED_RANGE_NOT_SATISFIABLE;
+
+/**
+ * Information about a remote Web Page which is collected by
+ * {@link LightHttpClient#getWebPageInfo(java.net.URI, int)} from a single GET.
+ *
+ * @author Arjun Satyapal
+ */
+public class WebPageInfo {
+  private int statusCode;
+  private String xFrameOptions;
+  private String title;
+
+  public WebPageInfo(int statusCode, String xFrameOptions, String title) {
+    this.statusCode = statusCode;
+    this.xFrameOptions = xFrameOptions;
+    this.title = title;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * Servers which honour the Range header reply with Range Not Satisfiable for an empty page. That
+   * is a successful fetch of a page without title.
+   */
+  public boolean isSuccess() {
+    return (statusCode >= 200 && statusCode < 300)
+        || statusCode == REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode();
+  }
+
+  /**
+   * Value of X-Frame-Options header. Null if remote server did not send it.
+   */
+  public String getXFrameOptions() {
+    return xFrameOptions;
+  }
+
+  /**
+   * Page can be embedded inside an iFrame only when server did not send X-Frame-Options.
+   */
+  public boolean isEmbeddable() {
+    return xFrameOptions == null;
+  }
+
+  /**
+   * Title of the page. Null if no title was found within the bytes that were read.
+   */
+  public String getTitle() {
+    return title;
+  }
+}
@@ -16,12 +16,11 @@
 package com.google.light.server.jersey.resources;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.IMMUTABLE_CONTENT_MAX_AGE_IN_SEC;
 import static com.google.light.server.constants.LightStringConstants.VERSION_LATEST_STR;
 import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,6 +41,9 @@ import org.joda.time.Instant;
 import com.google.appengine.api.blobstore.BlobKey;
 import com.google.appengine.api.blobstore.BlobstoreService;
 import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.light.server.constants.HttpHeaderEnum;
@@ -50,7 +52,11 @@ import com.google.light.server.constants.ResourceTypes;
 import com.google.light.server.constants.SupportedLanguagesEnum;
 import com.google.light.server.constants.http.ContentTypeConstants;
 import com.google.light.server.dto.JSVariablesPreloadDto;
+import com.google.light.server.dto.module.GSBlobInfo;
 import com.google.light.server.dto.module.ModuleState;
+import com.google.light.server.dto.pojo.tree.collection.CollectionNavigationHtml;
+import com.google.light.server.dto.pojo.tree.collection.CollectionTreeIndex;
+import com.google.light.server.dto.pojo.tree.collection.CollectionTreeIndexCache;
 import com.google.light.server.dto.pojo.tree.collection.CollectionTreeNodeDto;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.CollectionId;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
@@ -59,6 +65,7 @@ import com.google.light.server.exception.unchecked.httpexception.InternalServerE
 import com.google.light.server.exception.unchecked.httpexception.NotFoundException;
 import com.google.light.server.manager.interfaces.CollectionManager;
 import com.google.light.server.manager.interfaces.ModuleManager;
+import com.google.light.server.persistence.entity.collection.CollectionEntity;
 import com.google.light.server.persistence.entity.collection.CollectionVersionEntity;
 import com.google.light.server.persistence.entity.module.ModuleEntity;
 import com.google.light.server.persistence.entity.module.ModuleVersionEntity;
@@ -78,7 +85,7 @@ import com.google.light.server.utils.ServletUtils;
 public class ContentResource extends AbstractJerseyResource {
 
   /**
-   * Utility class to contain a CollectionVersionEntity, a
+   * Utility class to contain a CollectionTreeIndex, a
    * ModuleVersionEntity and the data related to them.
    * 
    * While being constructed it will do all necessary validation.
@@ -88,12 +95,13 @@ public class ContentResource extends AbstractJerseyResource {
   private static class ModuleCollectionNodeData {
 
     private ModuleVersionEntity moduleVersionEntity;
-    private CollectionVersionEntity collectionVersionEntity;
+    private CollectionTreeIndex treeIndex;
     private CollectionTreeNodeDto treeNode;
     private CollectionTreeNodeDto treeNodePrevious;
     private CollectionTreeNodeDto treeNodeNext;
     private int navIndex;
     private int numberOfLeafs;
+    private boolean isImmutable;
 
     /**
      * Constructs this class and do all the necessary validation related to the existence
@@ -101,45 +109,36 @@ public class ContentResource extends AbstractJerseyResource {
      * tree.
      * 
      * @param resource
-     * @param collectionIdStr
-     * @param collectionVersionStr
-     * @param moduleIdStr
+     * @param collectionId
+     * @param resolvedCollectionVersion Concrete version of the collection.
+     * @param moduleEntity
+     * @param resolvedModuleVersion Version of the module as returned by
+     *          {@link ContentResource#resolveModuleVersion(ModuleEntity, Version)}.
      */
-    private ModuleCollectionNodeData(ContentResource resource, String collectionIdStr,
-        String collectionVersionStr, String moduleIdStr) {
-      collectionVersionEntity = resource.getCollectionVersionEntity(
-          collectionIdStr, collectionVersionStr);
-
-      checkNotBlank(moduleIdStr, "Invalid ModuleId.");
-      ModuleId moduleId = new ModuleId(moduleIdStr);
-
-      CollectionTreeNodeDto treeRootNode = collectionVersionEntity.getCollectionTree();
-
-      // We ignore the first
-      List<CollectionTreeNodeDto> leafNodesList = getLeafNodeList(treeRootNode);
-      numberOfLeafs = leafNodesList.size();
-      for (navIndex = 0; navIndex < numberOfLeafs; navIndex++) {
-        CollectionTreeNodeDto node = leafNodesList.get(navIndex);
-        if (node.hasModuleId() && node.getModuleId().equals(moduleId)) {
-          break;
-        }
+    private ModuleCollectionNodeData(ContentResource resource, CollectionId collectionId,
+        Version resolvedCollectionVersion, ModuleEntity moduleEntity,
+        Version resolvedModuleVersion) {
+      CollectionVersionEntity cvEntity =
+          resource.getCollectionVersionEntity(collectionId, resolvedCollectionVersion);
+      treeIndex = resource.getCollectionTreeIndex(cvEntity);
+
+      ModuleId moduleId = moduleEntity.getModuleId();
+
+      numberOfLeafs = treeIndex.getNumberOfLeafs();
+      navIndex = treeIndex.getLeafPosition(moduleId);
+      if (navIndex == CollectionTreeIndex.NOT_FOUND) {
+        throw new NotFoundException("Could not find " + moduleId + " in collection "
+            + collectionId + ":" + resolvedCollectionVersion);
       }
 
-      if (navIndex == numberOfLeafs) {
-        throw new NotFoundException("Could not find " + moduleIdStr + " in collection "
-            + collectionIdStr + ":" + collectionVersionStr);
-      }
+      treeNodePrevious = treeIndex.getPrevious(navIndex);
+      treeNodeNext = treeIndex.getNext(navIndex);
+      treeNode = treeIndex.getLeaf(navIndex);
 
-      if (navIndex > 0) {
-        treeNodePrevious = leafNodesList.get(navIndex - 1);
-      }
-      if (navIndex + 1 < numberOfLeafs) {
-        treeNodeNext = leafNodesList.get(navIndex + 1);
-      }
-      treeNode = leafNodesList.get(navIndex);
+      moduleVersionEntity = resource.getModuleVersionEntity(moduleEntity, resolvedModuleVersion);
 
-      // TODO(waltercacau): Use the specified version when available
-      moduleVersionEntity = resource.getModuleVersionEntity(moduleIdStr, VERSION_LATEST_STR);
+      isImmutable = !cvEntity.isMutable()
+          && isImmutable(resolvedModuleVersion, moduleVersionEntity);
     }
 
   }
@@ -182,25 +181,45 @@ public class ContentResource extends AbstractJerseyResource {
   public Response getCollectionVersionContent(
       @PathParam(JerseyConstants.PATH_PARAM_COLLECTION_ID) String collectionIdStr,
       @PathParam(JerseyConstants.PATH_PARAM_VERSION) String versionStr) {
-    CollectionId collectionId = new CollectionId(collectionIdStr);
-    Version collectionVersion = new Version(versionStr);
-
-    CollectionVersionEntity collectionVersionEntity = getCollectionVersionEntity(
-        collectionIdStr, versionStr);
+    checkNotBlank(collectionIdStr, "Invalid CollectionId.");
+    checkNotBlank(versionStr, "Invalid version.");
+    final CollectionId collectionId = new CollectionId(collectionIdStr);
+    final Version collectionVersion = new Version(versionStr);
+    final Version resolvedVersion = resolveCollectionVersion(collectionId, collectionVersion);
+
+    // Links in the page use requested version, so it is part of the key.
+    String pageKey = "collection:" + collectionId.getValue() + ":"
+        + collectionVersion.toURLComponentString() + ":"
+        + resolvedVersion.toURLComponentString() + ":" + getClientLanguageCode();
+
+    return servePage(pageKey, new PageRenderer() {
+      private CollectionTreeIndex treeIndex;
+
+      @Override
+      boolean load() {
+        CollectionVersionEntity cvEntity =
+            getCollectionVersionEntity(collectionId, resolvedVersion);
+        treeIndex = getCollectionTreeIndex(cvEntity);
+        return !cvEntity.isMutable();
+      }
 
-    CollectionTreeNodeDto tree = collectionVersionEntity.getCollectionTree();
-    StringBuilder contentBuilder = new StringBuilder();
+      @Override
+      String render() {
+        return renderCollectionPage(collectionId, collectionVersion, treeIndex);
+      }
+    });
+  }
 
-    contentBuilder.append("<ol>\n");
-    appendCurrNode(tree, contentBuilder, 2, true, collectionId,
-        collectionVersion);
-    contentBuilder.append("\n</ol>");
+  private String renderCollectionPage(CollectionId collectionId, Version collectionVersion,
+      CollectionTreeIndex treeIndex) {
+    CollectionTreeNodeDto tree = treeIndex.getRoot();
+    String navigationHtml = getNavigationHtml(treeIndex, collectionId, collectionVersion)
+        .getHtml();
 
     request.setAttribute("collectionTitle", StringEscapeUtils.escapeHtml(tree.getTitle()));
-    List<CollectionTreeNodeDto> leafNodeList = getLeafNodeList(tree);
     StringBuilder startLinkBuilder = new StringBuilder();
-    if (leafNodeList.size() > 0) {
-      CollectionTreeNodeDto firstLeafNode = leafNodeList.get(0);
+    if (treeIndex.getNumberOfLeafs() > 0) {
+      CollectionTreeNodeDto firstLeafNode = treeIndex.getLeaf(0);
       startLinkBuilder
           .append("<a class=\"collectionStartLink\" href=\"")
           .append(
@@ -212,12 +231,10 @@ public class ContentResource extends AbstractJerseyResource {
 
     }
     request.setAttribute("collectionStartLink", startLinkBuilder.toString());
-    request.setAttribute("collectionContent", contentBuilder.toString());
-    setJSVariablesPreload(request, null);
+    request.setAttribute("collectionContent", navigationHtml);
+    setJSVariablesPreload(request, null, getClientLanguageCode());
 
-    ServletUtils.forward(request, response, "/WEB-INF/pages/collection.jsp");
-
-    return Response.ok().build();
+    return ServletUtils.render(request, response, "/WEB-INF/pages/collection.jsp");
   }
 
   @GET
@@ -230,7 +247,7 @@ public class ContentResource extends AbstractJerseyResource {
       @PathParam(JerseyConstants.PATH_PARAM_RESOURCE) String resourceStr) {
 
     ModuleCollectionNodeData data =
-        new ModuleCollectionNodeData(this, collectionIdStr, versionStr, moduleIdStr);
+        createModuleCollectionNodeData(collectionIdStr, versionStr, moduleIdStr);
 
     checkNotBlank(resourceTypeStr, "resourceType");
     checkNotBlank(resourceStr, "resource");
@@ -240,7 +257,10 @@ public class ContentResource extends AbstractJerseyResource {
 
     Version moduleVersion = data.moduleVersionEntity.getVersion();
     ModuleId moduleId = data.moduleVersionEntity.getModuleId();
-    return buildResponseForAndServeModuleResource(resourceId, moduleVersion, moduleId);
+
+    // Module is looked up at its latest version, so resource under this URL can change.
+    return buildResponseForAndServeModuleResource(resourceId, moduleVersion, moduleId,
+        false /* isImmutable */);
   }
 
   @GET
@@ -259,7 +279,29 @@ public class ContentResource extends AbstractJerseyResource {
     Version moduleVersion = new Version(versionStr);
     String resourceId = resourceType.name() + "/" + resourceStr;
 
-    return buildResponseForAndServeModuleResource(resourceId, moduleVersion, moduleId);
+    return buildResponseForAndServeModuleResource(resourceId, moduleVersion, moduleId,
+        isImmutable(moduleId, moduleVersion));
+  }
+
+  /**
+   * Returns true if resources of moduleVersion cannot change. Versions are published in order, so
+   * a concrete version is immutable once it is not newer than latest published version of the
+   * module. Newer versions are still being imported. This reads only the {@link ModuleEntity},
+   * and not the {@link ModuleVersionEntity} which carries whole content of the module.
+   */
+  private boolean isImmutable(ModuleId moduleId, Version moduleVersion) {
+    if (moduleVersion.isLatestVersion()) {
+      return false;
+    }
+
+    ModuleEntity moduleEntity = moduleManager.get(null /* ofy */, moduleId);
+    if (moduleEntity == null) {
+      return false;
+    }
+
+    Version latestPublishVersion = moduleEntity.getLatestPublishVersion();
+    return !latestPublishVersion.isNoVersion()
+        && moduleVersion.getValue() <= latestPublishVersion.getValue();
   }
 
   @GET
@@ -269,20 +311,51 @@ public class ContentResource extends AbstractJerseyResource {
       @PathParam(JerseyConstants.PATH_PARAM_COLLECTION_ID) String collectionIdStr,
       @PathParam(JerseyConstants.PATH_PARAM_VERSION) String versionStr,
       @PathParam(JerseyConstants.PATH_PARAM_MODULE_ID) String moduleIdStr) {
-    CollectionId collectionId = new CollectionId(collectionIdStr);
-    Version collectionVersion = new Version(versionStr);
-
-    // TODO(waltercacau): Figure out how to deal with duplicate modules
+    checkNotBlank(collectionIdStr, "Invalid CollectionId.");
+    checkNotBlank(versionStr, "Invalid version.");
+    checkNotBlank(moduleIdStr, "Invalid ModuleId.");
+    final CollectionId collectionId = new CollectionId(collectionIdStr);
+    final Version collectionVersion = new Version(versionStr);
+    final Version resolvedCollectionVersion =
+        resolveCollectionVersion(collectionId, collectionVersion);
+    final ModuleEntity moduleEntity = getModuleEntity(new ModuleId(moduleIdStr));
+    // TODO(waltercacau): Use the specified version when available
+    final Version resolvedModuleVersion =
+        resolveModuleVersion(moduleEntity, new Version(VERSION_LATEST_STR));
+
+    String pageKey = "moduleInCollection:" + collectionId.getValue() + ":"
+        + collectionVersion.toURLComponentString() + ":"
+        + resolvedCollectionVersion.toURLComponentString() + ":"
+        + moduleEntity.getModuleId().getValue() + ":"
+        + resolvedModuleVersion.toURLComponentString() + ":" + getClientLanguageCode();
+
+    return servePage(pageKey, new PageRenderer() {
+      private ModuleCollectionNodeData data;
+
+      @Override
+      boolean load() {
+        // TODO(waltercacau): Figure out how to deal with duplicate modules
+        data = new ModuleCollectionNodeData(ContentResource.this, collectionId,
+            resolvedCollectionVersion, moduleEntity, resolvedModuleVersion);
+        return data.isImmutable;
+      }
 
-    ModuleCollectionNodeData data =
-        new ModuleCollectionNodeData(this, collectionIdStr, versionStr, moduleIdStr);
+      @Override
+      String render() {
+        return renderModuleInCollectionPage(collectionId, collectionVersion, data);
+      }
+    });
+  }
 
+  private String renderModuleInCollectionPage(CollectionId collectionId,
+      Version collectionVersion, ModuleCollectionNodeData data) {
+    ModuleId moduleId = data.moduleVersionEntity.getModuleId();
     String htmlContent = data.moduleVersionEntity.getContent();
     String bodyContent = extractBodyContent(htmlContent);
     if (bodyContent == null) {
-      throw new InternalServerErrorException("Could not serve module " + moduleIdStr
+      throw new InternalServerErrorException("Could not serve module " + moduleId
           + " in collection "
-          + collectionIdStr + ":" + versionStr);
+          + collectionId + ":" + collectionVersion);
     }
 
     // Here we respect the title the collection author gave to the module.
@@ -291,19 +364,14 @@ public class ContentResource extends AbstractJerseyResource {
 
     request.setAttribute("moduleContent", bodyContent);
 
-    CollectionTreeNodeDto tree = data.collectionVersionEntity.getCollectionTree();
-    StringBuilder contentBuilder = new StringBuilder();
-    contentBuilder.append("<ol>\n");
-    String collectionUri = "/rest/content/general/collection/" + collectionIdStr + "/" + versionStr;
-    appendCurrNode(tree, contentBuilder, 2, true,
-        collectionId,
-        collectionVersion);
-    contentBuilder.append("\n</ol>");
+    CollectionTreeNodeDto tree = data.treeIndex.getRoot();
+    String navigationHtml = getNavigationHtml(data.treeIndex, collectionId, collectionVersion)
+        .getHtml(data.navIndex);
 
     request.setAttribute("collectionTitle", StringEscapeUtils.escapeHtml(tree.getTitle()));
     request.setAttribute("collectionPath",
         StringEscapeUtils.escapeHtml(buildPathForCollection(collectionId, collectionVersion)));
-    request.setAttribute("collectionContent", contentBuilder.toString());
+    request.setAttribute("collectionContent", navigationHtml);
 
     StringBuilder navigationBarBuilder = new StringBuilder();
     if (data.treeNodePrevious != null) {
@@ -327,11 +395,9 @@ public class ContentResource extends AbstractJerseyResource {
 
     request.setAttribute("navigationBar", navigationBarBuilder.toString());
     request.setAttribute("usesIframe", bodyContent.indexOf("<iframe") != -1 ? "true" : "false");
-    setJSVariablesPreload(request, new ModuleId(moduleIdStr));
-
-    ServletUtils.forward(request, response, "/WEB-INF/pages/moduleInCollection.jsp");
+    setJSVariablesPreload(request, moduleId, getClientLanguageCode());
 
-    return Response.ok().build();
+    return ServletUtils.render(request, response, "/WEB-INF/pages/moduleInCollection.jsp");
   }
 
   @GET
@@ -340,24 +406,116 @@ public class ContentResource extends AbstractJerseyResource {
   public Response getModuleVersionContent(
       @PathParam(JerseyConstants.PATH_PARAM_MODULE_ID) String moduleIdStr,
       @PathParam(JerseyConstants.PATH_PARAM_VERSION) String versionStr) {
-    ModuleVersionEntity moduleEntity = getModuleVersionEntity(moduleIdStr, versionStr);
+    checkNotBlank(moduleIdStr, "Invalid ModuleId.");
+    checkNotBlank(versionStr, "Invalid version.");
+    final ModuleEntity moduleEntity = getModuleEntity(new ModuleId(moduleIdStr));
+    final Version resolvedVersion = resolveModuleVersion(moduleEntity, new Version(versionStr));
 
-    String bodyContent = extractBodyContent(moduleEntity.getContent());
+    String pageKey = "module:" + moduleEntity.getModuleId().getValue() + ":"
+        + resolvedVersion.toURLComponentString() + ":" + getClientLanguageCode();
+
+    return servePage(pageKey, new PageRenderer() {
+      private ModuleVersionEntity moduleVersionEntity;
+
+      @Override
+      boolean load() {
+        moduleVersionEntity = getModuleVersionEntity(moduleEntity, resolvedVersion);
+        return isImmutable(resolvedVersion, moduleVersionEntity);
+      }
+
+      @Override
+      String render() {
+        return renderModulePage(moduleEntity.getModuleId(), moduleVersionEntity);
+      }
+    });
+  }
+
+  private String renderModulePage(ModuleId moduleId, ModuleVersionEntity moduleVersionEntity) {
+    String bodyContent = extractBodyContent(moduleVersionEntity.getContent());
     if (bodyContent == null) {
-      throw new InternalServerErrorException("Could not serve module " + moduleIdStr + ":"
-          + versionStr);
+      throw new InternalServerErrorException("Could not serve module " + moduleId + ":"
+          + moduleVersionEntity.getVersion());
     }
 
     request.setAttribute("moduleTitle",
-        StringEscapeUtils.escapeHtml(moduleEntity.getTitle()));
+        StringEscapeUtils.escapeHtml(moduleVersionEntity.getTitle()));
 
     request.setAttribute("moduleContent", bodyContent);
     request.setAttribute("usesIframe", bodyContent.indexOf("<iframe") != -1 ? "true" : "false");
-    setJSVariablesPreload(request, new ModuleId(moduleIdStr));
+    setJSVariablesPreload(request, moduleId, getClientLanguageCode());
+
+    return ServletUtils.render(request, response, "/WEB-INF/pages/module.jsp");
+  }
+
+  /**
+   * Loads what is needed for rendering a page, and renders it. See
+   * {@link ContentResource#servePage(String, PageRenderer)}.
+   */
+  private abstract class PageRenderer {
+    /**
+     * Loads the entities which are needed for rendering the page. Returns true if none of them
+     * can change, so the rendered page can be cached.
+     */
+    abstract boolean load();
+
+    /**
+     * Renders the page from entities loaded by {@link #load()}.
+     */
+    abstract String render();
+  }
 
-    ServletUtils.forward(request, response, "/WEB-INF/pages/module.jsp");
+  /**
+   * Serves page identified by pageKey. pageKey should contain everything that the page is rendered
+   * from, so pages with same key are identical.
+   * 
+   * ETag is derived from pageKey. When the page is in {@link RenderedPageCache}, it is known to be
+   * immutable, so a 304 or the cached page is returned without loading any entity. Otherwise
+   * entities are loaded and, if they are immutable, a 304 is returned without rendering, or the
+   * page is rendered and cached. Pages of mutable entities are rendered for every request and are
+   * returned without an ETag.
+   */
+  private Response servePage(String pageKey, PageRenderer renderer) {
+    String eTag = getEntityTag(pageKey);
+    String html = RenderedPageCache.get(pageKey);
+    if (html == null) {
+      if (!renderer.load()) {
+        return addPageCachingHeaders(Response.ok(renderer.render()), null).build();
+      }
 
-    return Response.ok().build();
+      if (!ServletUtils.isNotModified(request, eTag, null /* lastModified */)) {
+        html = renderer.render();
+        RenderedPageCache.put(pageKey, html);
+      }
+    }
+
+    if (html == null || ServletUtils.isNotModified(request, eTag, null /* lastModified */)) {
+      return addPageCachingHeaders(Response.notModified(), eTag).build();
+    }
+    return addPageCachingHeaders(Response.ok(html), eTag).build();
+  }
+
+  /**
+   * Returns strong ETag for the page identified by pageKey. Version of the application is part of
+   * ETag, so pages rendered by an older deployment are not reused.
+   */
+  static String getEntityTag(String pageKey) {
+    String identity = SystemProperty.applicationVersion.get() + ":" + pageKey;
+    return "\"" + Hashing.md5().hashString(identity, Charsets.UTF_8).toString() + "\"";
+  }
+
+  /**
+   * Adds headers for a page. Pages have to be revalidated by client on every use, as their links and
+   * templates can change. Pages depend on preferred language of client, so caches should not share
+   * them across languages.
+   */
+  private static ResponseBuilder addPageCachingHeaders(ResponseBuilder responseBuilder,
+      String eTag) {
+    if (eTag != null) {
+      responseBuilder.header(HttpHeaderEnum.ETAG.get(), eTag);
+    }
+    responseBuilder.header(HttpHeaderEnum.CACHE_CONTROL.get(), "no-cache");
+    responseBuilder.header(HttpHeaderEnum.VARY.get(), HttpHeaderEnum.ACCEPT_LANGUAGE.get());
+    return responseBuilder;
   }
 
   /**
@@ -422,44 +580,17 @@ public class ContentResource extends AbstractJerseyResource {
   }
 
   /**
-   * Constructs a HTML representation of a tree using li, ol and a tags.
+   * Returns navigation for the tree, rendered once per tree and requested version. Links in
+   * the navigation use collectionVersion as requested, so "latest" pages keep linking to latest.
    */
-  private void appendCurrNode(CollectionTreeNodeDto node, StringBuilder builder, int space,
-      boolean isRoot, CollectionId collectionId, Version collectionVersion) {
-    String sp = "";
-    for (int i = 0; i < space; i++) {
-      sp += " ";
-    }
-    if (node.isLeafNode()) {
-      String uri =
-          buildPathForModuleInCollection(collectionId, collectionVersion, node.getModuleId());
-      builder.append(sp).append("<li><a href=").append(StringEscapeUtils.escapeHtml(uri))
-          .append(">")
-          .append(StringEscapeUtils.escapeHtml(node.getTitle())).append("</a></li>\n");
-    } else {
-      if (!isRoot) {
-        builder.append(sp).append("<li>").append(StringEscapeUtils.escapeHtml(node.getTitle()))
-            .append("<ol>\n");
-      }
-      if (node.hasChildren()) {
-        for (CollectionTreeNodeDto currChild : node.getChildren()) {
-          appendCurrNode(currChild, builder, space + 4, false, collectionId, collectionVersion);
-        }
-      }
-      if (!isRoot) {
-        builder.append(sp).append("</ol></li>\n");
-      }
-    }
+  private static CollectionNavigationHtml getNavigationHtml(CollectionTreeIndex treeIndex,
+      CollectionId collectionId, Version collectionVersion) {
+    return treeIndex.getNavigationHtml(buildPathForCollection(collectionId, collectionVersion)
+        + "/");
   }
 
-  protected CollectionVersionEntity getCollectionVersionEntity(String collectionIdStr,
-      String versionStr) {
-
-    checkNotBlank(collectionIdStr, "Invalid CollectionId.");
-    checkNotBlank(versionStr, "Invalid version.");
-    CollectionId collectionId = new CollectionId(collectionIdStr);
-    Version collectionVersion = new Version(versionStr);
-
+  protected CollectionVersionEntity getCollectionVersionEntity(CollectionId collectionId,
+      Version collectionVersion) {
     CollectionVersionEntity cvEntity = collectionManager.getCollectionVersion(
         null, collectionId, collectionVersion);
 
@@ -470,14 +601,97 @@ public class ContentResource extends AbstractJerseyResource {
     return cvEntity;
   }
 
-  protected ModuleVersionEntity getModuleVersionEntity(String moduleIdStr, String versionStr) {
-    checkNotBlank(moduleIdStr, "Invalid ModuleId.");
+  /**
+   * Resolves collectionVersion to a concrete version. For {@link Version#isLatestVersion()}, this
+   * requires fetching the {@link CollectionEntity}; other versions are returned as they are.
+   */
+  protected Version resolveCollectionVersion(CollectionId collectionId,
+      Version collectionVersion) {
+    if (!collectionVersion.isLatestVersion()) {
+      return collectionVersion;
+    }
+
+    CollectionEntity collectionEntity = collectionManager.get(null /* ofy */, collectionId);
+    if (collectionEntity == null) {
+      throw new NotFoundException("Collection [" + collectionId + "] was not found.");
+    }
+
+    Version latestVersion = collectionEntity.getLatestPublishVersion();
+    if (latestVersion.isNoVersion()) {
+      throw new NotFoundException("Could not find " + collectionId + ":" + collectionVersion);
+    }
+    return latestVersion;
+  }
+
+  /**
+   * Returns the parsed and indexed Collection Tree for cvEntity. Published versions are
+   * immutable, so their index is served from {@link CollectionTreeIndexCache} when possible.
+   */
+  protected CollectionTreeIndex getCollectionTreeIndex(CollectionVersionEntity cvEntity) {
+    if (cvEntity.isMutable()) {
+      return new CollectionTreeIndex(cvEntity.getCollectionTree());
+    }
+
+    CollectionId collectionId = cvEntity.getCollectionId();
+    Version version = cvEntity.getVersion();
+    CollectionTreeIndex treeIndex = CollectionTreeIndexCache.get(collectionId, version);
+    if (treeIndex == null) {
+      treeIndex = new CollectionTreeIndex(cvEntity.getCollectionTree());
+      CollectionTreeIndexCache.put(collectionId, version, treeIndex);
+    }
+
+    return treeIndex;
+  }
+
+  private ModuleCollectionNodeData createModuleCollectionNodeData(String collectionIdStr,
+      String versionStr, String moduleIdStr) {
+    checkNotBlank(collectionIdStr, "Invalid CollectionId.");
     checkNotBlank(versionStr, "Invalid version.");
-    ModuleId moduleId = new ModuleId(moduleIdStr);
-    Version version = new Version(versionStr);
+    checkNotBlank(moduleIdStr, "Invalid ModuleId.");
+    CollectionId collectionId = new CollectionId(collectionIdStr);
+    Version resolvedCollectionVersion =
+        resolveCollectionVersion(collectionId, new Version(versionStr));
+
+    ModuleEntity moduleEntity = getModuleEntity(new ModuleId(moduleIdStr));
+    // TODO(waltercacau): Use the specified version when available
+    Version resolvedModuleVersion =
+        resolveModuleVersion(moduleEntity, new Version(VERSION_LATEST_STR));
+    return new ModuleCollectionNodeData(this, collectionId, resolvedCollectionVersion,
+        moduleEntity, resolvedModuleVersion);
+  }
+
+  protected ModuleEntity getModuleEntity(ModuleId moduleId) {
+    ModuleEntity moduleEntity = moduleManager.get(null /* ofy */, moduleId);
+    if (moduleEntity == null) {
+      throw new NotFoundException("Module [" + moduleId + "] was not found.");
+    }
+    return moduleEntity;
+  }
+
+  /**
+   * Resolves version of a module to the version whose content will be served. Returns
+   * {@link Version#isNoVersion()} when module has not been published yet, in which case a
+   * placeholder is served.
+   */
+  static Version resolveModuleVersion(ModuleEntity moduleEntity, Version version) {
+    Version latestPublishVersion = moduleEntity.getLatestPublishVersion();
+    if (latestPublishVersion.isNoVersion()) {
+      return latestPublishVersion;
+    }
+    return version.isLatestVersion() ? latestPublishVersion : version;
+  }
+
+  /**
+   * Returns true if a page rendered from moduleVersionEntity can be cached.
+   */
+  private static boolean isImmutable(Version resolvedVersion,
+      ModuleVersionEntity moduleVersionEntity) {
+    return !resolvedVersion.isNoVersion() && !moduleVersionEntity.isMutable();
+  }
 
-    ModuleEntity moduleEntity = moduleManager.get(null, moduleId);
-    if(moduleEntity.getLatestPublishVersion().isNoVersion()) {
+  protected ModuleVersionEntity getModuleVersionEntity(ModuleEntity moduleEntity,
+      Version resolvedVersion) {
+    if (resolvedVersion.isNoVersion()) {
       // TODO(waltercacau): Remove this hack
       return new ModuleVersionEntity.Builder()
           .version(new Version(Version.DEFAULT_FIRST_VERSION))
@@ -490,11 +704,12 @@ public class ContentResource extends AbstractJerseyResource {
           .build();
     }
     
+    ModuleId moduleId = moduleEntity.getModuleId();
     ModuleVersionEntity moduleVersionEntity = moduleManager.getModuleVersion(
-        null /* ofy */, moduleId, version);
+        null /* ofy */, moduleId, resolvedVersion);
 
     if (moduleVersionEntity == null) {
-      throw new NotFoundException("Could not find " + moduleId + ":" + version);
+      throw new NotFoundException("Could not find " + moduleId + ":" + resolvedVersion);
     }
 
     return moduleVersionEntity;
@@ -502,17 +717,20 @@ public class ContentResource extends AbstractJerseyResource {
 
   /**
    * Builds a response with the appropriate content type for a module content and makes the
-   * blobService serve its content.
+   * blobService serve its content. Response carries validators for the resource, so if client
+   * already has it then a 304 is returned without asking blobService to serve it.
    * 
    * @param resourceId
    * @param moduleVersion
    * @param moduleId
+   * @param isImmutable true if URL refers to a concrete version, so its content never changes and
+   *          can be cached by clients without revalidation.
    * @throws NotFoundException if the resource for the module cannot be found.
    * @return
    */
   protected Response buildResponseForAndServeModuleResource(String resourceId,
       Version moduleVersion,
-      ModuleId moduleId) {
+      ModuleId moduleId, boolean isImmutable) {
     ModuleVersionResourceEntity resourceEntity = moduleManager.getModuleResource(null /* ofy */,
         moduleId, moduleVersion, resourceId);
 
@@ -521,7 +739,13 @@ public class ContentResource extends AbstractJerseyResource {
           + moduleId + ":" + moduleVersion);
     }
 
-    BlobstoreService blobService = checkNotNull(BlobstoreServiceFactory.getBlobstoreService());
+    String eTag = getEntityTag(resourceEntity);
+    Instant lastModified = resourceEntity.getLastUpdateTime();
+    if (ServletUtils.isNotModified(request, eTag, lastModified)) {
+      return addCachingHeaders(Response.notModified(), eTag, lastModified, isImmutable).build();
+    }
+
+    BlobstoreService blobService = checkNotNull(getBlobstoreService());
     BlobKey blobKey = blobService.createGsBlobKey(resourceEntity.getGSBlobInfo().getGsKey());
     try {
       checkNotNull(response, "response");
@@ -533,42 +757,73 @@ public class ContentResource extends AbstractJerseyResource {
     ResponseBuilder responseBuilder = Response.ok();
     responseBuilder.header(HttpHeaderEnum.CONTENT_TYPE.get(),
         resourceEntity.getGSBlobInfo().getContentType().get());
-    return responseBuilder.build();
+    return addCachingHeaders(responseBuilder, eTag, lastModified, isImmutable).build();
+  }
+
+  protected BlobstoreService getBlobstoreService() {
+    return BlobstoreServiceFactory.getBlobstoreService();
   }
 
-  private static List<CollectionTreeNodeDto> getLeafNodeList(CollectionTreeNodeDto root) {
-    List<CollectionTreeNodeDto> list = new ArrayList<CollectionTreeNodeDto>();
-    addLeafNodesToListInPreorder(list, root);
-    return list;
+  /**
+   * Returns strong ETag for a module resource. Resources of a version cannot be modified, and
+   * bytes of a resource are identified by its Google Storage object, so ETag is derived from key
+   * of the resource and its {@link GSBlobInfo}.
+   */
+  static String getEntityTag(ModuleVersionResourceEntity resourceEntity) {
+    GSBlobInfo blobInfo = resourceEntity.getGSBlobInfo();
+    String identity = resourceEntity.getModuleId().getValue()
+        + ":" + resourceEntity.getModuleVersion().getValue()
+        + ":" + resourceEntity.getResourceId()
+        + ":" + blobInfo.getGsKey()
+        + ":" + blobInfo.getSizeInBytes()
+        + ":" + blobInfo.getContentType().get();
+    return "\"" + Hashing.md5().hashString(identity, Charsets.UTF_8).toString() + "\"";
   }
 
-  private static void addLeafNodesToListInPreorder(List<CollectionTreeNodeDto> list,
-      CollectionTreeNodeDto node) {
-    if (node.isLeafNode()) {
-      list.add(node);
+  /**
+   * Adds validators and Cache-Control to responseBuilder. Content of a concrete version is cached
+   * for a year. Everything else has to be revalidated by client on every use, which is cheap as it
+   * usually results in a 304.
+   */
+  private static ResponseBuilder addCachingHeaders(ResponseBuilder responseBuilder, String eTag,
+      Instant lastModified, boolean isImmutable) {
+    responseBuilder.header(HttpHeaderEnum.ETAG.get(), eTag);
+    if (lastModified != null) {
+      responseBuilder.lastModified(lastModified.toDate());
     }
-    if (node.hasChildren()) {
-      for (CollectionTreeNodeDto child : node.getChildren()) {
-        addLeafNodesToListInPreorder(list, child);
-      }
+
+    if (isImmutable) {
+      responseBuilder.header(HttpHeaderEnum.CACHE_CONTROL.get(),
+          "public, max-age=" + IMMUTABLE_CONTENT_MAX_AGE_IN_SEC + ", immutable");
+    } else {
+      responseBuilder.header(HttpHeaderEnum.CACHE_CONTROL.get(), "no-cache");
     }
+    return responseBuilder;
   }
 
   /**
    * Sets the JSVariablesPreload in the request with information
    * about the user/browser locale, but without any other user data.
    */
-  private static void setJSVariablesPreload(HttpServletRequest request, ModuleId moduleId) {
+  private static void setJSVariablesPreload(HttpServletRequest request, ModuleId moduleId,
+      String clientLanguageCode) {
     // TODO(waltercacau): Move this to a utility class.
-    @SuppressWarnings("unchecked")
     JSVariablesPreloadDto.Builder dtoBuilder = new JSVariablesPreloadDto.Builder()
         .moduleId(moduleId)
-        .locale(SupportedLanguagesEnum.getClosestPrefferedLanguage(
-            Collections.list(request.getLocales())).getClientLanguageCode());
+        .locale(clientLanguageCode);
 
     request.setAttribute("preload", dtoBuilder.build().toHtml());
   }
 
+  /**
+   * Returns language in which pages are rendered for this request.
+   */
+  @SuppressWarnings("unchecked")
+  private String getClientLanguageCode() {
+    return SupportedLanguagesEnum.getClosestPrefferedLanguage(
+        Collections.list(request.getLocales())).getClientLanguageCode();
+  }
+
   public static String buildAbsoluteLinkForModule(ModuleId moduleId) {
     return GaeUtils.getBaseUrlForDefaultVersion()
         + buildPathForModule(moduleId, new Version(VERSION_LATEST_STR));
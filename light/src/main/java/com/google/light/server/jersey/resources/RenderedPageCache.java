@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jersey.resources;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide cache of HTML pages rendered by {@link ContentResource} for immutable Module and
+ * Collection Versions. Pages are keyed by everything they are rendered from, i.e. Ids, resolved
+ * Versions and locale of the client.
+ *
+ * Module pages can be as large as a Module, so cache is bounded by total number of characters
+ * instead of number of entries. Entries expire {@link #TTL_IN_MINUTES} after they are rendered,
+ * so changes to templates and other parts of a page which are not part of its key are picked up
+ * soon. Callers are responsible for ensuring that only pages of immutable versions are put in the
+ * cache.
+ *
+ * @author Arjun Satyapal
+ */
+public class RenderedPageCache {
+  public static final int MAX_SIZE_IN_CHARS = 4 * 1024 * 1024;
+  public static final int TTL_IN_MINUTES = 10;
+
+  private static final Cache<String, String> CACHE = CacheBuilder.newBuilder()
+      .maximumWeight(MAX_SIZE_IN_CHARS)
+      .weigher(new Weigher<String, String>() {
+        @Override
+        public int weigh(String pageKey, String html) {
+          return pageKey.length() + html.length();
+        }
+      })
+      .expireAfterWrite(TTL_IN_MINUTES, TimeUnit.MINUTES)
+      .build();
+
+  /**
+   * Returns cached page for pageKey, or null if it is not cached.
+   */
+  public static String get(String pageKey) {
+    checkNotBlank(pageKey, "pageKey");
+    return CACHE.getIfPresent(pageKey);
+  }
+
+  public static void put(String pageKey, String html) {
+    checkNotBlank(pageKey, "pageKey");
+    checkNotNull(html, "html");
+    CACHE.put(pageKey, html);
+  }
+
+  /**
+   * Removes all the entries. Should be used only by tests.
+   */
+  public static void clear() {
+    CACHE.invalidateAll();
+  }
+
+  // Utility class.
+  private RenderedPageCache() {
+  }
+}
@@ -23,14 +23,18 @@ import static com.google.light.server.utils.LightPreconditions.checkPersonLogged
 import static com.google.light.server.utils.LightUtils.getNow;
 import static com.google.light.server.utils.LightUtils.getURI;
 import static com.google.light.server.utils.LightUtils.getWrapperValue;
+import static com.google.light.server.utils.ServletUtils.getRequestHeaderValue;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.light.server.constants.HttpHeaderEnum;
 import com.google.light.server.constants.JerseyConstants;
+import com.google.light.server.constants.QueueEnum;
 import com.google.light.server.constants.http.ContentTypeConstants;
 import com.google.light.server.constants.http.HttpStatusCodesEnum;
+import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
 import com.google.light.server.exception.ExceptionType;
 import com.google.light.server.exception.unchecked.taskqueue.TaskQueueRetriableException;
@@ -55,6 +59,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
+import org.apache.commons.lang.StringEscapeUtils;
 
 /**
  * 
@@ -95,7 +100,13 @@ public class JobResource extends AbstractJerseyResource {
 
     JobId jobId = new JobId(jobIdStr);
     try {
-      jobHandler.handleJob(jobId);
+      String queueName = getRequestHeaderValue(request, HttpHeaderEnum.GAE_QUEUE_NAME);
+      if (QueueEnum.LIGHT_POLLING.getName().equals(queueName)) {
+        // Polls can arrive after the job was resumed by its childs, so they are handled separately.
+        jobHandler.pollForChilds(jobId);
+      } else {
+        jobHandler.handleJob(jobId);
+      }
       return Response.ok().build();
     } catch (TaskQueueRetriableException e) {
       logger.warning(e.getClass().getSimpleName() + " : Retry after some time for " + jobId);
@@ -134,6 +145,14 @@ public class JobResource extends AbstractJerseyResource {
     htmlBuilder.appendSectionHeader("Childs");
     appendChilds(jobId, htmlBuilder);
 
+    // Appending change log, including entries which were archived.
+    htmlBuilder.appendSectionHeader("Change Log");
+    StringBuilder changeLogBuilder = new StringBuilder();
+    for (ChangeLogEntryPojo currChangeLog : jobManager.getFullChangeLog(jobId)) {
+      changeLogBuilder.append(currChangeLog.toLineItem()).append("\n");
+    }
+    htmlBuilder.appendPre(StringEscapeUtils.escapeHtml(changeLogBuilder.toString()));
+
     htmlBuilder.appendString(jobEntity.getContext().getValue());
     
     htmlBuilder.appendBodyEnd();
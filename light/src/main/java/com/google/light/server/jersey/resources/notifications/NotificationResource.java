@@ -18,7 +18,6 @@ package com.google.light.server.jersey.resources.notifications;
 import static com.google.light.server.utils.LightPreconditions.checkIsUnderTaskQueue;
 import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
 import static com.google.light.server.utils.LightPreconditions.checkNotNull;
-import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
 import static com.google.light.server.utils.ServletUtils.getRequestHeaderValue;
 
 import com.google.common.base.Throwables;
@@ -27,21 +26,14 @@ import com.google.inject.Injector;
 import com.google.light.server.constants.HttpHeaderEnum;
 import com.google.light.server.constants.JerseyConstants;
 import com.google.light.server.constants.NotificationType;
-import com.google.light.server.constants.PlacementOrder;
 import com.google.light.server.constants.http.ContentTypeConstants;
 import com.google.light.server.constants.http.HttpStatusCodesEnum;
 import com.google.light.server.dto.notifications.ChildJobCompletionNotification;
-import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
 import com.google.light.server.exception.ExceptionType;
-import com.google.light.server.exception.unchecked.taskqueue.ParentNotReadyForChildCompleteNotification;
 import com.google.light.server.exception.unchecked.taskqueue.TaskQueueRetriableException;
 import com.google.light.server.jersey.resources.AbstractJerseyResource;
 import com.google.light.server.manager.interfaces.JobManager;
-import com.google.light.server.persistence.entity.jobs.JobEntity;
-import com.google.light.server.persistence.entity.jobs.JobState;
 import com.google.light.server.utils.JsonUtils;
-import com.google.light.server.utils.Transactable;
-import com.googlecode.objectify.Objectify;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -100,47 +92,15 @@ public class NotificationResource extends AbstractJerseyResource {
   }
 
   /**
-   * 
+   * Records completion of child. Parent resumes once all of its childs have completed, so for
+   * most of the childs, parent JobEntity is only read and never written.
    */
   private void handlChildJobCompletion(String body) {
-    final ChildJobCompletionNotification jobNotification =
+    ChildJobCompletionNotification jobNotification =
         JsonUtils.getDto(body, ChildJobCompletionNotification.class);
     logger.info("Notification : " + jobNotification.toJson());
 
-    repeatInTransaction("Handling childJobNotification completion : " + body,
-        new Transactable<Void>() {
-
-      @SuppressWarnings("synthetic-access")
-      @Override
-      public Void run(Objectify ofy) {
-        JobEntity parentJobEntity = jobManager.get(ofy, jobNotification.getParentJobId());
-        checkNotNull(parentJobEntity, ExceptionType.SERVER,
-            "parentJob :" + jobNotification.getParentJobId() + " was not found");
-
-        PlacementOrder placement = parentJobEntity.getJobState().getPlacement(
-            JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION);
-
-        switch (placement) {
-          case BEFORE:
-            throw new ParentNotReadyForChildCompleteNotification(" ParentJob.JobState is "
-                + parentJobEntity.getJobState());
-
-          case EQUAL:
-            parentJobEntity.setJobState(JobState.POLLING_FOR_CHILDS);
-            jobManager.put(ofy, parentJobEntity,
-                new ChangeLogEntryPojo("Starting polling for childs"));
-            jobManager.enqueueJobForPolling(ofy, parentJobEntity.getJobId());
-            break;
-
-          case AFTER:
-            return null;
-
-          default:
-            throw new IllegalArgumentException("Unsupported placement : " + placement);
-        }
-        return null;
-      }
-    });
-
+    jobManager.handleChildJobCompletion(jobNotification.getParentJobId(),
+        jobNotification.getChildJobId());
   }
 }
@@ -34,6 +34,8 @@ import com.google.light.server.constants.http.ContentTypeConstants;
 import com.google.light.server.jersey.resources.AbstractJerseyResource;
 import com.google.light.server.persistence.entity.collection.CollectionEntity;
 import com.google.light.server.persistence.entity.collection.CollectionVersionEntity;
+import com.google.light.server.persistence.entity.jobs.ChildJobCompletionShardEntity;
+import com.google.light.server.persistence.entity.jobs.JobChangeLogArchiveEntity;
 import com.google.light.server.persistence.entity.jobs.JobEntity;
 import com.google.light.server.persistence.entity.module.ExternalIdMappingEntity;
 import com.google.light.server.persistence.entity.module.ModuleEntity;
@@ -90,7 +92,9 @@ public class TestAdminResources extends AbstractJerseyResource {
         CollectionVersionEntity.class.getName(),
 
         ExternalIdMappingEntity.class.getName(),
-        JobEntity.class.getName());
+        JobEntity.class.getName(),
+        JobChangeLogArchiveEntity.class.getName(),
+        ChildJobCompletionShardEntity.class.getName());
 
     
     builder.append("\nDeleting tables");
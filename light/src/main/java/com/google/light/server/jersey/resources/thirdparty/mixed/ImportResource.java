@@ -23,14 +23,9 @@ import static com.google.light.server.utils.LightPreconditions.checkNotNull;
 import static com.google.light.server.utils.LightPreconditions.checkPersonLoggedIn;
 import static com.google.light.server.utils.LightUtils.createCollectionNode;
 import static com.google.light.server.utils.LightUtils.createExternalIdTreeNode;
-import static com.google.light.server.utils.LightUtils.wrapIntoRuntimeExceptionAndThrow;
-import static com.google.light.server.utils.ModuleUtils.createExternalIdTree;
 import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
 
-import java.util.concurrent.Future;
-
 import com.google.appengine.api.ThreadManager;
-import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -57,7 +52,8 @@ import com.google.light.server.exception.ExceptionType;
 import com.google.light.server.exception.unchecked.InvalidExternalIdException;
 import com.google.light.server.exception.unchecked.httpexception.NotFoundException;
 import com.google.light.server.jersey.resources.AbstractJerseyResource;
-import com.google.light.server.jobs.runnables.ReserveModuleIdRunnable;
+import com.google.light.server.jobs.runnables.ExternalIdTreeExecutor;
+import com.google.light.server.jobs.runnables.ReserveModuleIdExecutor;
 import com.google.light.server.manager.interfaces.CollectionManager;
 import com.google.light.server.manager.interfaces.JobManager;
 import com.google.light.server.manager.interfaces.ModuleManager;
@@ -67,6 +63,8 @@ import com.google.light.server.persistence.entity.jobs.JobEntity;
 import com.google.light.server.persistence.entity.jobs.JobState;
 import com.google.light.server.persistence.entity.module.ModuleEntity;
 import com.google.light.server.servlets.SessionManager;
+import com.google.light.server.servlets.thirdparty.google.gdoc.DocsServiceWrapper;
+import com.google.light.server.servlets.thirdparty.google.youtube.YouTubeServiceWrapper;
 import com.google.light.server.urls.LightUrl;
 import com.google.light.server.utils.GuiceUtils;
 import com.google.light.server.utils.JsonUtils;
@@ -75,10 +73,6 @@ import com.google.light.server.utils.Transactable;
 import com.google.light.server.utils.XmlUtils;
 import com.googlecode.objectify.Objectify;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -194,14 +188,25 @@ public class ImportResource extends AbstractJerseyResource {
     ExternalIdTreeNodeDto rootNode = createExternalIdTreeNode(null, null, TreeNodeType.ROOT_NODE,
         null /* license */);
 
+    List<ExternalId> externalIds = Lists.newArrayList();
     for (ImportExternalIdDto currExternalIdDto : importBatchWrapper.getList()) {
-      try {
-        ExternalIdTreeNodeDto node = createExternalIdTree(currExternalIdDto.getExternalId());
+      externalIds.add(currExternalIdDto.getExternalId());
+    }
+
+    ExternalIdTreeExecutor externalIdTreeExecutor = new ExternalIdTreeExecutor(
+        GuiceUtils.getProvider(DocsServiceWrapper.class),
+        GuiceUtils.getProvider(YouTubeServiceWrapper.class),
+        ThreadManager.currentRequestThreadFactory(), ExternalIdTreeExecutor.DEFAULT_MAX_CONCURRENT,
+        ExternalIdTreeExecutor.DEFAULT_TIMEOUT_IN_MILLIS);
+    List<ExternalIdTreeNodeDto> trees = externalIdTreeExecutor.createExternalIdTrees(externalIds);
+
+    for (int index = 0; index < trees.size(); index++) {
+      ExternalIdTreeNodeDto node = trees.get(index);
+      if (node == null) {
+        // ExternalId was invalid, and has already been logged.
+        importBatchWrapper.getList().get(index).setModuleState(ModuleState.FAILED);
+      } else {
         rootNode.addChildren(node);
-      } catch (InvalidExternalIdException e) {
-        logger.info("Ignoring externalId : " + currExternalIdDto.getExternalId() + " due to : "
-            + Throwables.getStackTraceAsString(e));
-        currExternalIdDto.setModuleState(ModuleState.FAILED);
       }
     }
 
@@ -356,29 +361,10 @@ public class ImportResource extends AbstractJerseyResource {
   private void reserveWholeTreeAndUpdateWrapper(ExternalIdTreeNodeDto externalIdTree,
       ImportBatchWrapper importBatchWrapper, final List<PersonId> owners) {
 
-    ThreadFactory factory = ThreadManager.currentRequestThreadFactory();
-    ExecutorService threadExecutor = Executors.newFixedThreadPool(9, factory);
-
-    List<ReserveModuleIdRunnable> listOfRunnables = Lists.newArrayList();
-    for (ExternalIdTreeNodeDto currExternalIdNode : externalIdTree.getLeafNodes()) {
-      ReserveModuleIdRunnable runnable = new ReserveModuleIdRunnable(currExternalIdNode, owners);
-      Future<?> future = threadExecutor.submit(runnable);
-      try {
-        future.get();
-      } catch (Exception e) {
-        logger.severe("Failed for " + currExternalIdNode.getExternalId() + " due to : "
-            + Throwables.getStackTraceAsString(e));
-        wrapIntoRuntimeExceptionAndThrow(e);
-      }
-      listOfRunnables.add(runnable);
-    }
-
-    threadExecutor.shutdown();
-    try {
-      threadExecutor.awaitTermination(25, TimeUnit.SECONDS);
-    } catch (Exception e) {
-      LightUtils.wrapIntoRuntimeExceptionAndThrow(e);
-    }
+    ReserveModuleIdExecutor reserveModuleIdExecutor = new ReserveModuleIdExecutor(
+        ThreadManager.currentRequestThreadFactory(), ReserveModuleIdExecutor.DEFAULT_MAX_CONCURRENT,
+        ReserveModuleIdExecutor.DEFAULT_TIMEOUT_IN_MILLIS);
+    reserveModuleIdExecutor.reserveLeafNodes(externalIdTree, owners);
 
     // All ExternalIds are now reserved. So updating the moduleIds.
 
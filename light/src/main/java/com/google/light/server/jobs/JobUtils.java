@@ -46,7 +46,7 @@ public class JobUtils {
   public static <D extends AbstractDto<D>>void updateJobContext(Objectify ofy, JobManager jobManager,
       JobState jobState, D contextDto, JobEntity jobEntity, String changeLogMsg) {
     jobEntity.setJobState(jobState);
-    jobEntity.setContext(new Text(contextDto.toJson()));
+    jobEntity.setContext(new Text(contextDto.toCompactJson()));
     jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo(changeLogMsg));
   }
 }
@@ -16,15 +16,16 @@
 package com.google.light.server.jobs.handlers;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.CHILD_POLLING_MAX_POLLS;
 import static com.google.light.server.utils.LightPreconditions.checkNotNull;
 import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
 import com.google.light.server.exception.ExceptionType;
-import com.google.light.server.exception.unchecked.taskqueue.WaitForChildsToComplete;
 import com.google.light.server.jobs.handlers.batchjobs.ImportBatchJobHandler;
 import com.google.light.server.jobs.handlers.collectionjobs.gdoccollection.ImportCollectionGoogleDocJobHandler;
 import com.google.light.server.jobs.handlers.collectionjobs.youtubeplaylist.ImportCollectionYouTubePlaylistHandler;
@@ -35,6 +36,7 @@ import com.google.light.server.manager.interfaces.JobManager;
 import com.google.light.server.persistence.entity.jobs.JobEntity;
 import com.google.light.server.persistence.entity.jobs.JobEntity.TaskType;
 import com.google.light.server.persistence.entity.jobs.JobState;
+import com.google.light.server.persistence.entity.jobs.JobStateCategory;
 import com.google.light.server.utils.Transactable;
 import com.googlecode.objectify.Objectify;
 import java.util.List;
@@ -98,7 +100,7 @@ public class JobHandler {
     JobState jobState = jobEntity.getJobState();
     switch (jobState) {
       case POLLING_FOR_CHILDS:
-        pollForChilds(jobEntity);
+        pollForChilds(jobId);
         return;
 
       case WAITING_FOR_CHILD_COMPLETE_NOTIFICATION:
@@ -150,41 +152,98 @@ public class JobHandler {
     }
   }
 
-  private void pollForChilds(final JobEntity jobEntity) {
-    List<JobId> listOfChildJobIds = jobEntity.getPendingChildJobs();
-    Map<JobId, JobEntity> map = jobManager.findListOfJobs(listOfChildJobIds);
+  /**
+   * Safety net for Jobs which are waiting for their childs. Normally the last child to complete
+   * resumes its parent (see {@link JobManager#handleChildJobCompletion(JobId, JobId)}), so this
+   * only does some work when a child completion notification was lost. If childs are still
+   * running, another poll is enqueued after
+   * {@link com.google.light.server.constants.LightConstants#CHILD_POLLING_DELAY_MILLIS}.
+   * 
+   * Job is moved to {@link JobState#STOPPED_BY_ERROR} if any of its childs has stopped or is
+   * missing, or if childs are still running after
+   * {@link com.google.light.server.constants.LightConstants#CHILD_POLLING_MAX_POLLS} polls, as
+   * then it can never complete.
+   */
+  public void pollForChilds(final JobId jobId) {
+    checkNotNull(jobId, ExceptionType.CLIENT_PARAMETER, "jobId cannot be null");
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    checkNotNull(jobEntity, ExceptionType.CLIENT_PARAMETER, "No job found for : " + jobId);
+    if (!isWaitingForChilds(jobEntity)) {
+      logger.info("Ignoring poll for " + jobId + " as it is in state " + jobEntity.getJobState());
+      return;
+    }
 
-    boolean allChildsComplete = true;
-    for (JobEntity currChildJob : map.values()) {
-      if (currChildJob.getJobState() == JobState.COMPLETE) {
-        jobEntity.addFinishedChildJob(currChildJob.getJobId());
-      } else {
-        allChildsComplete = false;
+    final List<JobId> finishedChildJobIds = Lists.newArrayList();
+    final List<JobId> failedChildJobIds = Lists.newArrayList();
+    boolean allChildsComplete = jobManager.countCompletedChildJobs(jobId)
+        >= jobEntity.getChildJobCount();
+    if (!allChildsComplete) {
+      // Some completions were not recorded, so falling back to reading pending childs.
+      List<JobId> pendingChildJobIds = jobEntity.getPendingChildJobs();
+      Map<JobId, JobEntity> map = jobManager.findListOfJobs(pendingChildJobIds);
+      allChildsComplete = true;
+      for (JobId currChildJobId : pendingChildJobIds) {
+        JobEntity currChildJob = map.get(currChildJobId);
+        if (currChildJob == null) {
+          allChildsComplete = false;
+          failedChildJobIds.add(currChildJobId);
+        } else if (currChildJob.getJobState() == JobState.COMPLETE) {
+          finishedChildJobIds.add(currChildJobId);
+        } else {
+          allChildsComplete = false;
+          if (currChildJob.getJobState().getCategory() == JobStateCategory.STOPPED) {
+            failedChildJobIds.add(currChildJobId);
+          }
+        }
       }
     }
 
     final boolean markAllChildsComplete = allChildsComplete;
-    repeatInTransaction("Polling for childs for " + jobEntity.getJobId(),
-        new Transactable<Void>() {
+    repeatInTransaction("Polling for childs for " + jobId, new Transactable<Void>() {
       @SuppressWarnings("synthetic-access")
       @Override
       public Void run(Objectify ofy) {
-        String changeLog = null;
+        JobEntity parentJob = jobManager.get(ofy, jobId);
+        if (!isWaitingForChilds(parentJob)) {
+          // Resumed by a child while this poll was running.
+          return null;
+        }
+
         if (markAllChildsComplete) {
-          jobEntity.setJobState(JobState.ALL_CHILDS_COMPLETED);
-          jobManager.enqueueLightJob(ofy, jobEntity.getJobId());
-          changeLog = "All Childs complete";
-        } else {
-          changeLog = "Waiting for childs : " + Iterables.toString(jobEntity.getPendingChildJobs());
+          jobManager.markAllChildsComplete(ofy, parentJob);
+          return null;
         }
 
-        jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo(changeLog));
+        for (JobId currChildJobId : finishedChildJobIds) {
+          parentJob.addFinishedChildJob(currChildJobId);
+        }
+
+        String stopReason = null;
+        if (!failedChildJobIds.isEmpty()) {
+          stopReason = "Childs have stopped or are missing : "
+              + Iterables.toString(failedChildJobIds);
+        } else if (parentJob.incrementChildPollCount() >= CHILD_POLLING_MAX_POLLS) {
+          stopReason = "Childs did not complete after " + parentJob.getChildPollCount()
+              + " polls : " + Iterables.toString(parentJob.getPendingChildJobs());
+        }
+
+        if (stopReason != null) {
+          parentJob.setJobState(JobState.STOPPED_BY_ERROR);
+          parentJob.setStopReason(stopReason);
+          jobManager.put(ofy, parentJob, new ChangeLogEntryPojo(stopReason));
+          return null;
+        }
+
+        jobManager.put(ofy, parentJob, new ChangeLogEntryPojo(
+            "Waiting for childs : " + Iterables.toString(parentJob.getPendingChildJobs())));
+        jobManager.enqueueJobForPolling(ofy, jobId);
         return null;
       }
     });
+  }
 
-    if (!allChildsComplete) {
-      throw new WaitForChildsToComplete(jobEntity.getPendingChildJobs());
-    }
+  private static boolean isWaitingForChilds(JobEntity jobEntity) {
+    return jobEntity.getJobState() == JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION
+        || jobEntity.getJobState() == JobState.POLLING_FOR_CHILDS;
   }
 }
@@ -23,19 +23,28 @@ import static com.google.light.server.utils.LightUtils.LATEST_VERSION;
 import static com.google.light.server.utils.LightUtils.createCollectionNode;
 import static com.google.light.server.utils.LightUtils.createCollectionRootDummy;
 import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.runInTransaction;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import com.google.light.server.constants.LightConstants;
+import com.google.light.server.constants.QueueEnum;
 import com.google.light.server.dto.collection.CollectionState;
 import com.google.light.server.dto.importresource.ImportBatchType;
 import com.google.light.server.dto.importresource.ImportBatchWrapper;
 import com.google.light.server.dto.importresource.ImportExternalIdDto;
 import com.google.light.server.dto.module.ModuleStateCategory;
+import com.google.light.server.dto.module.ModuleType;
 import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
 import com.google.light.server.dto.pojo.tree.AbstractTreeNode.TreeNodeType;
 import com.google.light.server.dto.pojo.tree.collection.CollectionTreeNodeDto;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.CollectionId;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
 import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
 import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocResourceId;
 import com.google.light.server.dto.thirdparty.google.youtube.YouTubePlaylistInfo;
@@ -54,9 +63,10 @@ import com.google.light.server.servlets.thirdparty.google.gdoc.DocsServiceWrappe
 import com.google.light.server.servlets.thirdparty.google.youtube.YouTubeServiceWrapper;
 import com.google.light.server.urls.YouTubeUrl;
 import com.google.light.server.utils.GuiceUtils;
-import com.google.light.server.utils.LightUtils;
 import com.google.light.server.utils.Transactable;
 import com.googlecode.objectify.Objectify;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -132,42 +142,14 @@ public class ImportBatchJobHandler implements JobHandlerInterface {
   }
 
   /**
-   * @param jobId
+   * Creates childs in batches of {@link LightConstants#CHILD_JOB_CREATION_BATCH_SIZE}. Each batch
+   * is committed along with its tasks, so a retry resumes from first child which still needs a
+   * Job.
    */
   private void createChilds(final JobId jobId) {
-    boolean hasChildsNeedingJob = false;
-
-    do {
-      hasChildsNeedingJob = repeatInTransaction("creating child jobs for " + jobId,
-          new Transactable<Boolean>() {
-        @SuppressWarnings("synthetic-access")
-        @Override
-        public Boolean run(Objectify ofy) {
-          boolean foundChildNeedingJob = false;
-          JobEntity jobEntity = jobManager.get(ofy, jobId);
-          ImportBatchWrapper importBatchJobContext = jobEntity.getContext(ImportBatchWrapper.class);
-
-          JobId enqueuedJobId = null;
-          for (ImportExternalIdDto curr : importBatchJobContext.getList()) {
-            if (!curr.needsNewJobId()) {
-              continue;
-            }
-
-            foundChildNeedingJob = true;
-
-            enqueuedJobId = createAndEnqueueChildJob(
-                ofy, jobEntity, importBatchJobContext, enqueuedJobId, curr);
-            /*
-             * Break from for loop so that other child can be created in next iteration else
-             * datastore will complain about operating on too many entities.
-             */
-            break;
-          }
-          return foundChildNeedingJob;
-        }
-
-      });
-    } while (hasChildsNeedingJob);
+    while (createNextBatchOfChilds(jobId)) {
+      // Continue till all the childs have a Job.
+    }
 
     /*
      * All possible childs are created. So this job is now ready for getting child notifications.
@@ -177,17 +159,16 @@ public class ImportBatchJobHandler implements JobHandlerInterface {
       @Override
       public Void run(Objectify ofy) {
         JobEntity jobEntity = jobManager.get(ofy, jobId);
-        ImportBatchWrapper importBatchJobContext = jobEntity.getContext(ImportBatchWrapper.class);
-
-        System.out.println(importBatchJobContext.toJson());
         JobState jobState = null;
-        if (LightUtils.isCollectionEmpty(jobEntity.getChildJobs())) {
+        if (!jobEntity.hasChildJobs()) {
           // This means all the childs were ignored.
           jobState = JobState.ALL_CHILDS_COMPLETED;
           // So re-enqueue this job.
           jobManager.enqueueLightJob(ofy, jobEntity.getJobId());
         } else {
           jobState = JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION;
+          // Childs resume this job when they complete. Polling is only a safety net.
+          jobManager.enqueueJobForPolling(ofy, jobEntity.getJobId());
         }
 
         jobEntity.setJobState(jobState);
@@ -199,93 +180,211 @@ public class ImportBatchJobHandler implements JobHandlerInterface {
     });
   }
 
-  private JobId createAndEnqueueChildJob(Objectify ofy, JobEntity jobEntity,
-      ImportBatchWrapper importBatchJobContext, JobId enqueuedJobId,
-      ImportExternalIdDto importExternalIdDto) {
-    switch (importExternalIdDto.getModuleType()) {
-      case LIGHT_SYNTHETIC_MODULE:
-        enqueuedJobId = importSyntheticModuleJobHandler.enqueueImportChildSyntheticModule(
-            ofy, importExternalIdDto,
-            TaskType.IMPORT_SYNTHETIC_MODULE, jobEntity.getJobId(), jobEntity.getRootJobId());
-        break;
+  /**
+   * Creates Jobs for next batch of childs which need a Job. Each child Job is created in its own
+   * transaction, as its Module and Job are in different entity groups. Then all of them are added
+   * to parent and enqueued in a single transaction, so parent is read, parsed and written, and
+   * TaskQueue is called, once per batch. Information about childs is fetched from remote services
+   * before starting any transaction.
+   *
+   * Child at index i is always created with JobId reserved for index i. So if this fails before
+   * parent is updated, a retry finds the childs created by this attempt and adds them to parent,
+   * instead of reserving module versions and creating Jobs for them again.
+   *
+   * @return false if there were no childs which needed a Job.
+   */
+  private boolean createNextBatchOfChilds(final JobId jobId) {
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    final List<ImportExternalIdDto> childs = jobEntity.getContext(ImportBatchWrapper.class)
+        .getList();
+    final List<Integer> batch = getNextBatchOfChilds(childs);
+    if (batch.isEmpty()) {
+      return false;
+    }
 
-      case YOU_TUBE_VIDEO:
-        enqueuedJobId = importSyntheticModuleJobHandler.enqueueImportChildSyntheticModule(
-            ofy, importExternalIdDto,
-            TaskType.IMPORT_YOUTUBE_VIDEO, jobEntity.getJobId(), jobEntity.getRootJobId());
-        break;
+    if (!jobEntity.hasReservedChildJobIds()) {
+      jobEntity = jobManager.reserveChildJobIds(jobId, childs.size());
+    }
+    final JobEntity reservedParentJob = jobEntity;
+
+    final Map<String, GoogleDocInfoDto> gdocInfos = Maps.newHashMap();
+    final Map<String, YouTubePlaylistInfo> ytPlaylistInfos = Maps.newHashMap();
+    fetchRemoteInfo(childs, batch, gdocInfos, ytPlaylistInfos);
+
+    final Map<Integer, JobEntity> childJobs = Maps.newHashMap();
+    for (final Integer index : batch) {
+      final ImportExternalIdDto curr = childs.get(index);
+      JobEntity childJob = runInTransaction("creating child job for " + curr.getExternalId(),
+          new Transactable<JobEntity>() {
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public JobEntity run(Objectify ofy) {
+              return createChildJob(ofy, reservedParentJob,
+                  reservedParentJob.getReservedChildJobId(index), curr, gdocInfos,
+                  ytPlaylistInfos);
+            }
+          });
+      childJobs.put(index, childJob);
+    }
 
-      case YOU_TUBE_PLAYLIST:
-        enqueuedJobId = enqueueImportCollectionYouTubePlaylist(ofy, importExternalIdDto,
-            jobEntity.getJobId(), jobEntity.getRootJobId());
-        break;
+    repeatInTransaction("adding child jobs to " + jobId, new Transactable<Void>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Void run(Objectify ofy) {
+        JobEntity parentJob = jobManager.get(ofy, jobId);
+        ImportBatchWrapper context = parentJob.getContext(ImportBatchWrapper.class);
+
+        ListMultimap<QueueEnum, JobId> childJobsByQueue = ArrayListMultimap.create();
+        for (Integer index : batch) {
+          if (!context.getList().get(index).needsNewJobId()) {
+            // A concurrent attempt has already added a child for this ExternalId.
+            continue;
+          }
 
-      case GOOGLE_DOCUMENT:
-        enqueuedJobId =
-            enqueueImportModuleGoogleDocument(ofy, importExternalIdDto, jobEntity.getJobId(),
-                jobEntity.getRootJobId(), GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING);
+          ImportExternalIdDto curr = childs.get(index);
+          context.getList().set(index, curr);
+          JobEntity childJob = childJobs.get(index);
+          if (childJob == null) {
+            // Module is already up to date, and curr has been updated to say so.
+            continue;
+          }
+
+          parentJob.addChildJob(childJob.getJobId());
+          childJobsByQueue.put(getQueue(curr), childJob.getJobId());
+        }
+
+        parentJob.setContext(context);
+        jobManager.put(ofy, parentJob, new ChangeLogEntryPojo("Created childs : "
+            + childJobsByQueue.values() + " for " + batch.size() + " externalIds."));
+        jobManager.enqueueJobs(ofy, childJobsByQueue);
+        return null;
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Returns indexes of next batch of childs which need a Job.
+   */
+  private static List<Integer> getNextBatchOfChilds(List<ImportExternalIdDto> childs) {
+    List<Integer> batch = Lists.newArrayList();
+    for (int i = 0; i < childs.size(); i++) {
+      if (batch.size() == LightConstants.CHILD_JOB_CREATION_BATCH_SIZE) {
         break;
+      }
+
+      if (needsChildJob(childs.get(i))) {
+        batch.add(i);
+      }
+    }
+    return batch;
+  }
+
+  private static boolean needsChildJob(ImportExternalIdDto importExternalIdDto) {
+    if (!importExternalIdDto.needsNewJobId()) {
+      return false;
+    }
 
+    switch (importExternalIdDto.getModuleType()) {
+      case LIGHT_SYNTHETIC_MODULE:
+      case YOU_TUBE_VIDEO:
+      case YOU_TUBE_PLAYLIST:
+      case GOOGLE_DOCUMENT:
       case GOOGLE_COLLECTION:
-        enqueuedJobId = enqueueImportCollectionGDoc(ofy, importExternalIdDto, jobEntity.getJobId(),
-            jobEntity.getRootJobId(), GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING);
-        break;
+        return true;
+
       default:
-        return enqueuedJobId;
+        return false;
     }
+  }
 
-    // Update ParentJob Context and then exit for loop and retry this function for other
-    // pending childs.
-    System.out.println(importBatchJobContext.toJson());
-    jobEntity.setContext(importBatchJobContext);
-
-    if (enqueuedJobId != null) {
-      jobEntity.addChildJob(checkNotNull(importExternalIdDto.getJobId(), "jobId cannot be null."));
+  /**
+   * Fetches information required for creating child jobs of batch from remote services. Google
+   * Doc information for whole batch is fetched with a single pipelined call.
+   */
+  private void fetchRemoteInfo(List<ImportExternalIdDto> childs, List<Integer> batch,
+      Map<String, GoogleDocInfoDto> gdocInfos, Map<String, YouTubePlaylistInfo> ytPlaylistInfos) {
+    List<GoogleDocResourceId> gdocResourceIds = Lists.newArrayList();
+    for (Integer index : batch) {
+      ImportExternalIdDto curr = childs.get(index);
+      String key = curr.getExternalId().getValue();
+      switch (curr.getModuleType()) {
+        case GOOGLE_DOCUMENT:
+        case GOOGLE_COLLECTION:
+          gdocResourceIds.add(new GoogleDocResourceId(curr.getExternalId()));
+          break;
+
+        case YOU_TUBE_PLAYLIST:
+          YouTubeServiceWrapper ytService = GuiceUtils.getInstance(YouTubeServiceWrapper.class);
+          YouTubeUrl ytUrl = new YouTubeUrl(curr.getExternalId());
+          ytPlaylistInfos.put(key, ytService.getYouTubePlayListDetailedInfo(ytUrl));
+          break;
+
+        default:
+          // Nothing to fetch.
+          break;
+      }
     }
 
-    jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo(
-        "Created child : " + importExternalIdDto.getJobId() + " for "
-            + importExternalIdDto.getExternalId()));
+    if (gdocResourceIds.isEmpty()) {
+      return;
+    }
 
-    return enqueuedJobId;
+    DocsServiceWrapper docsService = GuiceUtils.getInstance(DocsServiceWrapper.class);
+    Map<ExternalId, GoogleDocInfoDto> fetchedInfos = docsService.getGoogleDocInfoInBatch(
+        gdocResourceIds, GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING);
+    for (Map.Entry<ExternalId, GoogleDocInfoDto> currEntry : fetchedInfos.entrySet()) {
+      gdocInfos.put(currEntry.getKey().getValue(), currEntry.getValue());
+    }
   }
 
-  private JobId enqueueImportCollectionYouTubePlaylist(
-      Objectify ofy, ImportExternalIdDto importExternalIdDto,
-      JobId parentJobId, JobId rootJobId) {
-    YouTubeServiceWrapper ytService = GuiceUtils.getInstance(YouTubeServiceWrapper.class);
-    YouTubeUrl ytUrl = new YouTubeUrl(importExternalIdDto.getExternalId());
-    YouTubePlaylistInfo ytPlaylistInfo = ytService.getYouTubePlayListDetailedInfo(ytUrl);
+  /**
+   * Creates child job with childJobId for importExternalIdDto, unless an earlier attempt has
+   * already created it, and updates importExternalIdDto with its details. Returns null if there
+   * is nothing to import.
+   */
+  private JobEntity createChildJob(Objectify ofy, JobEntity parentJob, JobId childJobId,
+      ImportExternalIdDto importExternalIdDto, Map<String, GoogleDocInfoDto> gdocInfos,
+      Map<String, YouTubePlaylistInfo> ytPlaylistInfos) {
+    String key = importExternalIdDto.getExternalId().getValue();
+    JobId parentJobId = parentJob.getJobId();
+    JobId rootJobId = parentJob.getRootJobId();
 
-    return importYouTubePlaylistHandler.enqueueCollectionYouTubePlaylistJob(
-        ofy, importExternalIdDto, ytPlaylistInfo, parentJobId, rootJobId);
-  }
+    switch (importExternalIdDto.getModuleType()) {
+      case LIGHT_SYNTHETIC_MODULE:
+        return importSyntheticModuleJobHandler.createImportChildSyntheticModuleJob(ofy,
+            childJobId, importExternalIdDto, TaskType.IMPORT_SYNTHETIC_MODULE, parentJobId,
+            rootJobId);
 
-  private JobId enqueueImportCollectionGDoc(Objectify ofy, ImportExternalIdDto importExternalIdDto,
-      JobId parentJobId, JobId rootJobId, GoogleDocInfoDto.Configuration config) {
-    GoogleDocInfoDto gdocInfo = getGDocInfo(importExternalIdDto, config);
-    return importCollectionGDocJobHandler.enqueueCollectionGoogleDocJob(ofy,
-        importExternalIdDto, gdocInfo, parentJobId, rootJobId);
-  }
+      case YOU_TUBE_VIDEO:
+        return importSyntheticModuleJobHandler.createImportChildSyntheticModuleJob(ofy,
+            childJobId, importExternalIdDto, TaskType.IMPORT_YOUTUBE_VIDEO, parentJobId,
+            rootJobId);
+
+      case YOU_TUBE_PLAYLIST:
+        return importYouTubePlaylistHandler.createCollectionYouTubePlaylistJob(ofy, childJobId,
+            importExternalIdDto, ytPlaylistInfos.get(key), parentJobId, rootJobId);
+
+      case GOOGLE_DOCUMENT:
+        return importModuleGDocJobHandler.createModuleGoogleDocJob(ofy, childJobId,
+            importExternalIdDto, gdocInfos.get(key), parentJobId, rootJobId);
 
-  private JobId enqueueImportModuleGoogleDocument(Objectify ofy,
-      ImportExternalIdDto importExternalIdDto, JobId parentJobId, JobId rootJobId,
-      GoogleDocInfoDto.Configuration config) {
-    GoogleDocInfoDto gdocInfo = getGDocInfo(importExternalIdDto, config);
-    return importModuleGDocJobHandler.enqueueModuleGoogleDocJob(ofy,
-        importExternalIdDto, gdocInfo, parentJobId, rootJobId);
+      case GOOGLE_COLLECTION:
+        return importCollectionGDocJobHandler.createCollectionGoogleDocJob(ofy, childJobId,
+            importExternalIdDto, gdocInfos.get(key), parentJobId, rootJobId);
+
+      default:
+        throw new IllegalStateException("Unsupported ModuleType : "
+            + importExternalIdDto.getModuleType());
+    }
   }
 
-  /**
-   * @param importModuleDto
-   * @return
-   */
-  private GoogleDocInfoDto getGDocInfo(ImportExternalIdDto importModuleDto,
-      GoogleDocInfoDto.Configuration config) {
-    DocsServiceWrapper docsService = GuiceUtils.getInstance(DocsServiceWrapper.class);
-    GoogleDocResourceId resourceId = new GoogleDocResourceId(importModuleDto.getExternalId());
-    GoogleDocInfoDto gdocInfo = docsService.getGoogleDocInfo(resourceId, config);
-    return gdocInfo;
+  private static QueueEnum getQueue(ImportExternalIdDto importExternalIdDto) {
+    if (importExternalIdDto.getModuleType() == ModuleType.GOOGLE_DOCUMENT) {
+      return QueueEnum.GDOC_INTERACTION;
+    }
+
+    return QueueEnum.LIGHT;
   }
 
   /**
@@ -15,6 +15,7 @@
  */
 package com.google.light.server.jobs.handlers.collectionjobs.gdoccollection;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
 import static com.google.light.server.utils.LightPreconditions.checkNotEmptyCollection;
@@ -24,6 +25,7 @@ import static com.google.light.server.utils.LightUtils.replaceInstanceInList;
 import com.google.common.collect.Lists;
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.dto.importresource.ImportExternalIdDto;
+import com.google.light.server.dto.importresource.ImportExternalIdListContext;
 import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
 import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
 import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
@@ -48,7 +50,8 @@ import org.codehaus.jackson.annotate.JsonTypeName;
 @JsonTypeName(value = "importCollectionGoogleDocContext")
 @XmlRootElement(name = "importCollectionGoogleDocContext")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ImportCollectionGoogleDocContext extends AbstractDto<ImportCollectionGoogleDocContext> {
+public class ImportCollectionGoogleDocContext extends
+    AbstractDto<ImportCollectionGoogleDocContext> implements ImportExternalIdListContext {
   @XmlElement(name = "title")
   @JsonProperty(value = "title")
   private String title;
@@ -79,6 +82,16 @@ public class ImportCollectionGoogleDocContext extends AbstractDto<ImportCollecti
   @JsonProperty(value = "contentLicenses")
   private List<ContentLicense> contentLicenses;
 
+  // Number of documents in the folder snapshot. Null till folder is listed.
+  @XmlElement(name = "folderSnapshotSize")
+  @JsonProperty(value = "folderSnapshotSize")
+  private Integer folderSnapshotSize;
+
+  // Index of next document in the folder snapshot for which child is to be created.
+  @XmlElement(name = "folderSnapshotCursor")
+  @JsonProperty(value = "folderSnapshotCursor")
+  private Integer folderSnapshotCursor;
+
   /**
    * {@inheritDoc}
    */
@@ -91,6 +104,12 @@ public class ImportCollectionGoogleDocContext extends AbstractDto<ImportCollecti
     checkNotBlank(title, "title");
     checkNotEmptyCollection(contentLicenses, "contentLicenses");
     checkNotNull(gdocInfo, "gdocInfo");
+    if (hasFolderSnapshot()) {
+      checkNotNull(folderSnapshotCursor, "folderSnapshotCursor");
+      checkArgument(folderSnapshotCursor >= 0 && folderSnapshotCursor <= folderSnapshotSize,
+          "folderSnapshotCursor " + folderSnapshotCursor + " is outside snapshot of size "
+              + folderSnapshotSize);
+    }
     return this;
   }
 
@@ -106,6 +125,34 @@ public class ImportCollectionGoogleDocContext extends AbstractDto<ImportCollecti
     return gdocInfo;
   }
 
+  public boolean hasFolderSnapshot() {
+    return folderSnapshotSize != null;
+  }
+
+  public int getFolderSnapshotSize() {
+    return checkNotNull(folderSnapshotSize, "folderSnapshotSize");
+  }
+
+  /**
+   * Records that folder snapshot has size documents, and moves cursor to its first document.
+   */
+  public void setFolderSnapshotSize(int size) {
+    checkArgument(size >= 0, "size cannot be negative.");
+    this.folderSnapshotSize = size;
+    this.folderSnapshotCursor = 0;
+  }
+
+  public int getFolderSnapshotCursor() {
+    return checkNotNull(folderSnapshotCursor, "folderSnapshotCursor");
+  }
+
+  public void setFolderSnapshotCursor(int folderSnapshotCursor) {
+    checkArgument(folderSnapshotCursor >= 0 && folderSnapshotCursor <= getFolderSnapshotSize(),
+        "Invalid folderSnapshotCursor : " + folderSnapshotCursor);
+    this.folderSnapshotCursor = folderSnapshotCursor;
+  }
+
+  @Override
   public List<ImportExternalIdDto> getList() {
     if (isCollectionEmpty(list)) {
       list = Lists.newArrayList();
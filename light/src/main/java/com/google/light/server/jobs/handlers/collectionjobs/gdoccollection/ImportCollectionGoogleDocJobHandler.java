@@ -22,9 +22,16 @@ import static com.google.light.server.dto.pojo.tree.collection.CollectionTreeUti
 import static com.google.light.server.jersey.resources.thirdparty.mixed.ImportResource.updateImportExternalIdDtoForCollections;
 import static com.google.light.server.utils.LightUtils.LATEST_VERSION;
 import static com.google.light.server.utils.LightUtils.createCollectionNode;
-import static com.google.light.server.utils.LightUtils.isCollectionEmpty;
+import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.runInTransaction;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.light.server.constants.LightConstants;
 import com.google.light.server.constants.QueueEnum;
 import com.google.light.server.dto.importresource.ImportExternalIdDto;
 import com.google.light.server.dto.module.ModuleState;
@@ -41,13 +48,12 @@ import com.google.light.server.manager.interfaces.JobManager;
 import com.google.light.server.persistence.entity.jobs.JobEntity;
 import com.google.light.server.persistence.entity.jobs.JobState;
 import com.google.light.server.servlets.thirdparty.google.gdoc.DocsServiceWrapper;
-import com.google.light.server.utils.GuiceUtils;
 import com.google.light.server.utils.JsonUtils;
 import com.google.light.server.utils.LightUtils;
-import com.google.light.server.utils.ObjectifyUtils;
 import com.google.light.server.utils.Transactable;
 import com.googlecode.objectify.Objectify;
 import java.util.List;
+import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -60,13 +66,17 @@ import org.apache.commons.lang.StringUtils;
 public class ImportCollectionGoogleDocJobHandler implements JobHandlerInterface {
   private JobManager jobManager;
   private ImportModuleGoogleDocJobHandler importGDocModuleJobHandler;
+  // DocsServiceWrapper depends on request scoped values, so it is fetched only when required.
+  private Provider<DocsServiceWrapper> docsServiceProvider;
 
   @Inject
   public ImportCollectionGoogleDocJobHandler(JobManager jobManager,
-      ImportModuleGoogleDocJobHandler importGoogleDocModuleJobHandler) {
+      ImportModuleGoogleDocJobHandler importGoogleDocModuleJobHandler,
+      Provider<DocsServiceWrapper> docsServiceProvider) {
     this.jobManager = checkNotNull(jobManager, "jobManager");
     this.importGDocModuleJobHandler = checkNotNull(importGoogleDocModuleJobHandler,
         "importGoogleDocModuleJobHandler");
+    this.docsServiceProvider = checkNotNull(docsServiceProvider, "docsServiceProvider");
   }
 
   @Override
@@ -93,102 +103,201 @@ public class ImportCollectionGoogleDocJobHandler implements JobHandlerInterface
   }
 
   /**
-   * @param jobId
+   * Lists the folder once, and then creates childs for its documents in batches of
+   * {@link LightConstants#CHILD_JOB_CREATION_BATCH_SIZE}, walking the snapshot by cursor.
    */
   private void createChilds(final JobId jobId) {
-    boolean retryThisMethod = ObjectifyUtils.repeatInTransaction(new Transactable<Boolean>() {
+    takeFolderSnapshot(jobId);
+    while (createNextBatchOfChilds(jobId)) {
+      // Continue till cursor reaches end of the snapshot.
+    }
 
+    repeatInTransaction("Updating state for Job[" + jobId + "]", new Transactable<Void>() {
       @SuppressWarnings("synthetic-access")
       @Override
-      public Boolean run(Objectify ofy) {
+      public Void run(Objectify ofy) {
         JobEntity jobEntity = jobManager.get(ofy, jobId);
         ImportCollectionGoogleDocContext context = jobEntity.getContext(
             ImportCollectionGoogleDocContext.class);
 
-        GoogleDocResourceId gdocResourceId = new GoogleDocResourceId(context.getExternalId());
-        DocsServiceWrapper docsService = GuiceUtils.getInstance(DocsServiceWrapper.class);
-        List<GoogleDocInfoDto> listOfChilds =
-            docsService.getFolderContentWhichAreSupportedInAlphabeticalOrder(
-                gdocResourceId, GDATA_GDOC_MAX_RESULTS,
-                GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING);
-
-        JobId enqueuedJobId = null;
-        for (GoogleDocInfoDto currChild : listOfChilds) {
-          ImportExternalIdDto existing = context.findImportExternalIdDtoByExternalId(
-              currChild.getExternalId());
-          if (existing != null && !existing.needsNewJobId()) {
-            // For current child, job is already created or not required.
-            continue;
-          }
+        // All possible childs are created. So this job is now ready for getting child
+        // notifications.
+        context.validate();
+        JobState jobState = null;
+        if (!jobEntity.hasChildJobs()) {
+          // This means all the childs were ignored.
+          jobState = JobState.ALL_CHILDS_COMPLETED;
+          // So re-enqueue this job.
+          jobManager.enqueueLightJob(ofy, jobEntity.getJobId());
+        } else {
+          jobState = JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION;
+          // Childs resume this job when they complete. Polling is only a safety net.
+          jobManager.enqueueJobForPolling(ofy, jobEntity.getJobId());
+        }
 
-          ModuleType moduleType = currChild.getModuleType();
-          ImportExternalIdDto importExternalIdDto =
-              LightUtils.createImportExternalIdDto(
-                  context.getContentLicenses(), currChild.getExternalId(), null /* jobId */,
-                  null /* jobState */,
-                  null /* moduleId */, moduleType, ModuleState.IMPORTING, currChild.getTitle(),
-                  LightUtils.LATEST_VERSION);
-
-          switch (moduleType) {
-            case GOOGLE_COLLECTION:
-              enqueuedJobId = enqueueCollectionGoogleDocJob(ofy, importExternalIdDto,
-                  currChild, jobEntity.getJobId(), jobEntity.getRootJobId());
-              break;
-
-            case GOOGLE_DOCUMENT:
-              enqueuedJobId = importGDocModuleJobHandler.enqueueModuleGoogleDocJob(ofy,
-                  importExternalIdDto, currChild, jobEntity.getJobId(), jobEntity.getRootJobId());
-              break;
-
-            default:
-              throw new IllegalStateException("We should not get this type : " + moduleType);
-          }
+        jobEntity.setJobState(jobState);
+        jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo(
+            "getting ready for " + jobState));
+        return null;
+      }
+    });
+  }
 
-          context.addImportModuleDto(importExternalIdDto);
-          jobEntity.setContext(context);
+  /**
+   * Lists contents of the folder and stores them along with the Job, unless an earlier attempt
+   * has already done so. Folder is listed before starting the transaction.
+   */
+  private void takeFolderSnapshot(final JobId jobId) {
+    ImportCollectionGoogleDocContext context =
+        jobManager.get(null, jobId).getContext(ImportCollectionGoogleDocContext.class);
+    if (context.hasFolderSnapshot()) {
+      return;
+    }
 
-          if (enqueuedJobId != null) {
-            // Update ParentJob Context and then exit for loop and retry this function for other
-            // pending childs.
-            context.validate();
-            jobEntity.addChildJob(checkNotNull(importExternalIdDto.getJobId(),
-                "jobId cannot be null."));
-            jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo(
-                "enqueued child : " + importExternalIdDto.getJobId()));
-          } else {
+    GoogleDocResourceId gdocResourceId = new GoogleDocResourceId(context.getExternalId());
+    final List<GoogleDocInfoDto> folderContents = docsServiceProvider.get()
+        .getFolderContentWhichAreSupportedInAlphabeticalOrder(gdocResourceId,
+            GDATA_GDOC_MAX_RESULTS, GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING);
+
+    repeatInTransaction("Taking folder snapshot for Job[" + jobId + "]",
+        new Transactable<Void>() {
+          @SuppressWarnings("synthetic-access")
+          @Override
+          public Void run(Objectify ofy) {
+            JobEntity jobEntity = jobManager.get(ofy, jobId);
+            ImportCollectionGoogleDocContext context = jobEntity.getContext(
+                ImportCollectionGoogleDocContext.class);
+            if (context.hasFolderSnapshot()) {
+              // A concurrent attempt has already taken the snapshot.
+              return null;
+            }
+
+            jobManager.putFolderSnapshot(ofy, jobId, folderContents);
+            context.setFolderSnapshotSize(folderContents.size());
+            jobEntity.setContext(context);
             jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo(
-                "child upto date : " + importExternalIdDto.getExternalId()));
+                "Took snapshot of " + folderContents.size() + " folder contents."));
+            return null;
           }
-          return true;
+        });
+  }
+
+  /**
+   * Creates childs for next batch of documents from the folder snapshot. Each child Job is
+   * created in its own transaction. Then all of them are added to parent, enqueued, and cursor
+   * is moved past them, in a single transaction. So a retry resumes from the first document
+   * whose child was not added to parent.
+   *
+   * Child for document at index i of the snapshot is always created with JobId reserved for index
+   * i. So a retry finds the childs created by a failed attempt, instead of reserving module
+   * versions and creating Jobs for them again.
+   *
+   * @return false if cursor has reached end of the snapshot.
+   */
+  private boolean createNextBatchOfChilds(final JobId jobId) {
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    ImportCollectionGoogleDocContext context =
+        jobEntity.getContext(ImportCollectionGoogleDocContext.class);
+    final int cursor = context.getFolderSnapshotCursor();
+    final int nextCursor = Math.min(cursor + LightConstants.CHILD_JOB_CREATION_BATCH_SIZE,
+        context.getFolderSnapshotSize());
+    if (cursor == nextCursor) {
+      return false;
+    }
+
+    if (!jobEntity.hasReservedChildJobIds()) {
+      jobEntity = jobManager.reserveChildJobIds(jobId, context.getFolderSnapshotSize());
+    }
+    final JobEntity reservedParentJob = jobEntity;
+
+    final List<ImportExternalIdDto> batch = Lists.newArrayList();
+    final Map<String, JobEntity> childJobs = Maps.newHashMap();
+    List<GoogleDocInfoDto> snapshot = jobManager.getFolderSnapshot(jobId, cursor, nextCursor);
+    for (int i = 0; i < snapshot.size(); i++) {
+      final GoogleDocInfoDto currChild = snapshot.get(i);
+      final JobId childJobId = reservedParentJob.getReservedChildJobId(cursor + i);
+      ImportExternalIdDto existing = context.findImportExternalIdDtoByExternalId(
+          currChild.getExternalId());
+      if (existing != null && !existing.needsNewJobId()) {
+        // For current child, job is already created or not required.
+        continue;
+      }
+
+      final ImportExternalIdDto importExternalIdDto = LightUtils.createImportExternalIdDto(
+          context.getContentLicenses(), currChild.getExternalId(), null /* jobId */,
+          null /* jobState */, null /* moduleId */, currChild.getModuleType(),
+          ModuleState.IMPORTING, currChild.getTitle(), LightUtils.LATEST_VERSION);
+      JobEntity childJob = runInTransaction("creating child job for "
+          + currChild.getExternalId(), new Transactable<JobEntity>() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public JobEntity run(Objectify ofy) {
+          return createChildJob(ofy, reservedParentJob, childJobId, importExternalIdDto,
+              currChild);
         }
+      });
+      batch.add(importExternalIdDto);
+      childJobs.put(currChild.getExternalId().getValue(), childJob);
+    }
 
-        if (enqueuedJobId == null) {
-
-          // All possible childs are created. So this job is now ready for getting child
-          // notifications.
-          context.validate();
-          JobState jobState = null;
-          if (isCollectionEmpty(jobEntity.getChildJobs())) {
-            // This means all the childs were ignored.
-            jobState = JobState.ALL_CHILDS_COMPLETED;
-            // So re-enqueue this job.
-            jobManager.enqueueLightJob(ofy, jobEntity.getJobId());
-          } else {
-            jobState = JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION;
-          }
+    repeatInTransaction("adding child jobs to " + jobId, new Transactable<Void>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Void run(Objectify ofy) {
+        JobEntity parentJob = jobManager.get(ofy, jobId);
+        ImportCollectionGoogleDocContext context =
+            parentJob.getContext(ImportCollectionGoogleDocContext.class);
+        if (context.getFolderSnapshotCursor() != cursor) {
+          // A concurrent attempt has already added childs for this batch.
+          return null;
+        }
 
-          System.out.println(jobEntity.getContext().getValue());
-          jobEntity.setJobState(jobState);
-          jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo(
-              "getting ready for " + jobState));
+        ListMultimap<QueueEnum, JobId> childJobsByQueue = ArrayListMultimap.create();
+        for (ImportExternalIdDto curr : batch) {
+          context.addImportModuleDto(curr);
+          JobEntity childJob = childJobs.get(curr.getExternalId().getValue());
+          if (childJob == null) {
+            // Google Doc is already up to date, and curr has been updated to say so.
+            continue;
+          }
 
+          parentJob.addChildJob(childJob.getJobId());
+          QueueEnum queue = curr.getModuleType() == ModuleType.GOOGLE_DOCUMENT
+              ? QueueEnum.GDOC_INTERACTION : QueueEnum.LIGHT;
+          childJobsByQueue.put(queue, childJob.getJobId());
         }
-        return false;
+
+        context.setFolderSnapshotCursor(nextCursor);
+        parentJob.setContext(context);
+        jobManager.put(ofy, parentJob, new ChangeLogEntryPojo("Created childs : "
+            + childJobsByQueue.values() + " for folder contents [" + cursor + ", " + nextCursor
+            + ")."));
+        jobManager.enqueueJobs(ofy, childJobsByQueue);
+        return null;
       }
     });
+    return true;
+  }
 
-    if (retryThisMethod) {
-      createChilds(jobId);
+  /**
+   * Creates child job with childJobId for a document in the folder, unless an earlier attempt has
+   * already created it, and updates importExternalIdDto with its details. Returns null if
+   * document is already up to date.
+   */
+  private JobEntity createChildJob(Objectify ofy, JobEntity parentJob, JobId childJobId,
+      ImportExternalIdDto importExternalIdDto, GoogleDocInfoDto gdocInfo) {
+    ModuleType moduleType = importExternalIdDto.getModuleType();
+    switch (moduleType) {
+      case GOOGLE_COLLECTION:
+        return createCollectionGoogleDocJob(ofy, childJobId, importExternalIdDto, gdocInfo,
+            parentJob.getJobId(), parentJob.getRootJobId());
+
+      case GOOGLE_DOCUMENT:
+        return importGDocModuleJobHandler.createModuleGoogleDocJob(ofy, childJobId,
+            importExternalIdDto, gdocInfo, parentJob.getJobId(), parentJob.getRootJobId());
+
+      default:
+        throw new IllegalStateException("We should not get this type : " + moduleType);
     }
   }
 
@@ -228,6 +337,31 @@ public class ImportCollectionGoogleDocJobHandler implements JobHandlerInterface
   public JobId enqueueCollectionGoogleDocJob(Objectify ofy,
       final ImportExternalIdDto importExternalIdDto,
       GoogleDocInfoDto gdocInfo, final JobId parentJobId, final JobId rootJobId) {
+    JobEntity childJob = createCollectionGoogleDocJob(ofy, null /* childJobId */,
+        importExternalIdDto, gdocInfo, parentJobId, rootJobId);
+    jobManager.enqueueImportChildJob(ofy, parentJobId, childJob.getJobId(),
+        importExternalIdDto,
+        QueueEnum.LIGHT);
+    return childJob.getJobId();
+  }
+
+  /**
+   * Creates child job for importExternalIdDto and updates importExternalIdDto with its details.
+   * Caller should add child to parent and enqueue it on {@link QueueEnum#LIGHT}. If a Job with
+   * childJobId already exists, then an earlier attempt has created it, so it is returned as it is.
+   */
+  public JobEntity createCollectionGoogleDocJob(Objectify ofy, JobId childJobId,
+      ImportExternalIdDto importExternalIdDto, GoogleDocInfoDto gdocInfo, JobId parentJobId,
+      JobId rootJobId) {
+    JobEntity existingJob = childJobId == null ? null : jobManager.get(ofy, childJobId);
+    if (existingJob != null) {
+      String existingTitle =
+          existingJob.getContext(ImportCollectionGoogleDocContext.class).getTitle();
+      updateImportExternalIdDtoForCollections(importExternalIdDto,
+          ModuleType.GOOGLE_COLLECTION, ModuleState.IMPORTING, existingTitle, existingJob);
+      return existingJob;
+    }
+
     final String title = calculateTitle(importExternalIdDto, gdocInfo);
 
     final ImportCollectionGoogleDocContext jobRequest =
@@ -239,14 +373,10 @@ public class ImportCollectionGoogleDocJobHandler implements JobHandlerInterface
             .build();
 
     JobEntity childJob = jobManager.createImportCollectionGoogleCollectionJob(
-        ofy, jobRequest, parentJobId, rootJobId);
+        ofy, childJobId, jobRequest, parentJobId, rootJobId);
     updateImportExternalIdDtoForCollections(importExternalIdDto,
         ModuleType.GOOGLE_COLLECTION, ModuleState.IMPORTING, title, childJob);
-
-    jobManager.enqueueImportChildJob(ofy, parentJobId, childJob.getJobId(),
-        importExternalIdDto,
-        QueueEnum.LIGHT);
-    return childJob.getJobId();
+    return childJob;
   }
 
   /**
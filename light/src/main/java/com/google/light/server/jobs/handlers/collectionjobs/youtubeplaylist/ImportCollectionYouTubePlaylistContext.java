@@ -21,6 +21,7 @@ import static com.google.light.server.utils.LightUtils.replaceInstanceInList;
 import com.google.common.collect.Lists;
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.dto.importresource.ImportExternalIdDto;
+import com.google.light.server.dto.importresource.ImportExternalIdListContext;
 import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
 import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
 import com.google.light.server.dto.thirdparty.google.youtube.YouTubePlaylistInfo;
@@ -45,7 +46,8 @@ import org.codehaus.jackson.annotate.JsonTypeName;
 @JsonTypeName(value = "importCollectionYouTubePlaylistContext")
 @XmlRootElement(name = "importCollectionYouTubePlaylistContext")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ImportCollectionYouTubePlaylistContext extends AbstractDto<ImportCollectionYouTubePlaylistContext> {
+public class ImportCollectionYouTubePlaylistContext extends
+    AbstractDto<ImportCollectionYouTubePlaylistContext> implements ImportExternalIdListContext {
   @XmlElement(name = "youTubePlaylistInfo")
   @JsonProperty(value = "youTubePlaylistInfo")
   private YouTubePlaylistInfo youTubePlaylistInfo;
@@ -80,6 +82,7 @@ public class ImportCollectionYouTubePlaylistContext extends AbstractDto<ImportCo
     return youTubePlaylistInfo.getExternalId();
   }
   
+  @Override
   public List<ImportExternalIdDto> getList() {
     if (isCollectionEmpty(list)) {
       list = Lists.newArrayList();
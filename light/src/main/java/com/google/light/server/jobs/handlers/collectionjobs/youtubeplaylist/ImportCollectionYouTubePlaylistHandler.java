@@ -20,7 +20,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.light.server.dto.pojo.tree.collection.CollectionTreeUtils.generateCollectionNodeFromChildJob;
 import static com.google.light.server.jersey.resources.thirdparty.mixed.ImportResource.updateImportExternalIdDtoForCollections;
 import static com.google.light.server.utils.LightUtils.createCollectionNode;
-import static com.google.light.server.utils.LightUtils.isCollectionEmpty;
 import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
 
 import com.google.inject.Inject;
@@ -156,13 +155,15 @@ public class ImportCollectionYouTubePlaylistHandler implements JobHandlerInterfa
           // notifications.
           context.validate();
           JobState jobState = null;
-          if (isCollectionEmpty(jobEntity.getChildJobs())) {
+          if (!jobEntity.hasChildJobs()) {
             // This means all the childs were ignored.
             jobState = JobState.ALL_CHILDS_COMPLETED;
             // So re-enqueue this job.
             jobManager.enqueueLightJob(ofy, jobEntity.getJobId());
           } else {
             jobState = JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION;
+            // Childs resume this job when they complete. Polling is only a safety net.
+            jobManager.enqueueJobForPolling(ofy, jobEntity.getJobId());
           }
 
           jobEntity.setJobState(jobState);
@@ -209,10 +210,24 @@ public class ImportCollectionYouTubePlaylistHandler implements JobHandlerInterfa
     jobManager.enqueueCompleteJob(jobEntity.getJobId(), subCollection, "Marking job as complete");
   }
   
+  /**
+   * Creates child job for importExternalIdDto and updates importExternalIdDto with its details.
+   * Caller should add child to parent and enqueue it on {@link QueueEnum#LIGHT}. If a Job with
+   * childJobId already exists, then an earlier attempt has created it, so it is returned as it is.
+   */
   // TODO(arjuns) : Move this to JobManager.
-  public JobId enqueueCollectionYouTubePlaylistJob(Objectify ofy,
+  public JobEntity createCollectionYouTubePlaylistJob(Objectify ofy, JobId childJobId,
       final ImportExternalIdDto importExternalIdDto,
       YouTubePlaylistInfo youTubePlaylistInfo, final JobId parentJobId, final JobId rootJobId) {
+    JobEntity existingJob = childJobId == null ? null : jobManager.get(ofy, childJobId);
+    if (existingJob != null) {
+      String existingTitle = existingJob.getContext(ImportCollectionYouTubePlaylistContext.class)
+          .getYouTubePlaylistInfo().getTitle();
+      updateImportExternalIdDtoForCollections(importExternalIdDto,
+          ModuleType.YOU_TUBE_PLAYLIST, ModuleState.IMPORTING, existingTitle, existingJob);
+      return existingJob;
+    }
+
     final String title = youTubePlaylistInfo.getTitle();
 
     final ImportCollectionYouTubePlaylistContext jobRequest =
@@ -222,13 +237,9 @@ public class ImportCollectionYouTubePlaylistHandler implements JobHandlerInterfa
             .build();
 
     JobEntity childJob = jobManager.createImportCollectionYouTubePlaylistJob(
-        ofy, jobRequest, parentJobId, rootJobId);
+        ofy, childJobId, jobRequest, parentJobId, rootJobId);
     updateImportExternalIdDtoForCollections(importExternalIdDto,
         ModuleType.YOU_TUBE_PLAYLIST, ModuleState.IMPORTING, title, childJob);
-
-    jobManager.enqueueImportChildJob(ofy, parentJobId, childJob.getJobId(),
-        importExternalIdDto,
-        QueueEnum.LIGHT);
-    return childJob.getJobId();
+    return childJob;
   }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.handlers.modulejobs.gdocument;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.MAX_MODULE_HTML_SIZE_IN_BYTES;
+import static com.google.light.server.utils.GoogleCloudStorageUtils.getGCSFileOptionsForCreate;
+import static com.google.light.server.utils.GoogleCloudStorageUtils.writeFileOnGCS;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.LimitInputStream;
+import com.google.light.server.constants.FileExtensions;
+import com.google.light.server.constants.google.cloudstorage.GoogleCloudStorageBuckets;
+import com.google.light.server.constants.http.ContentTypeEnum;
+import com.google.light.server.dto.module.GSBlobInfo;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+/**
+ * Streams a Google Doc archive (zip) entry by entry into
+ * {@link GoogleCloudStorageBuckets#CONTENT}. Only one entry is open at a time, and images are
+ * copied straight from the archive stream to GCS, so memory used does not grow with size of
+ * the archive. HTML is the only entry which is kept in memory, as it is stored in Datastore
+ * when module is published.
+ *
+ * @author Arjun Satyapal
+ */
+public class GoogleDocArchiveExtractor {
+  private static final Logger logger = Logger.getLogger(GoogleDocArchiveExtractor.class
+      .getName());
+
+  /**
+   * Writes a single archive entry to its destination.
+   */
+  public static interface EntryWriter {
+    /**
+     * Copy inputStream to relativeFilePath under bucket. Implementations should not close
+     * inputStream.
+     */
+    public void write(InputStream inputStream, GoogleCloudStorageBuckets bucket,
+        ContentTypeEnum contentType, String relativeFilePath) throws IOException;
+  }
+
+  /** {@link EntryWriter} which writes entries to Google Cloud Storage. */
+  public static final EntryWriter GCS_ENTRY_WRITER = new EntryWriter() {
+    @Override
+    public void write(InputStream inputStream, GoogleCloudStorageBuckets bucket,
+        ContentTypeEnum contentType, String relativeFilePath) throws IOException {
+      writeFileOnGCS(inputStream, getGCSFileOptionsForCreate(bucket, contentType,
+          relativeFilePath));
+    }
+  };
+
+  private final EntryWriter entryWriter;
+  private final ModuleId moduleId;
+  private final Map<String, GSBlobInfo> resourceMap = Maps.newHashMap();
+  private String htmlContent;
+
+  public GoogleDocArchiveExtractor(ModuleId moduleId, EntryWriter entryWriter) {
+    this.moduleId = checkNotNull(moduleId, "moduleId");
+    this.entryWriter = checkNotNull(entryWriter, "entryWriter");
+  }
+
+  /**
+   * Map from file name relative to module, to its location on GCS. Includes HTML file.
+   */
+  public Map<String, GSBlobInfo> getResourceMap() {
+    return resourceMap;
+  }
+
+  public String getHtmlContent() {
+    return htmlContent;
+  }
+
+  /**
+   * Extracts all the entries from archiveStream. Caller owns archiveStream, and is responsible
+   * for closing it.
+   */
+  public void extract(InputStream archiveStream) throws IOException {
+    ZipInputStream zipIn = new ZipInputStream(new CloseShieldInputStream(archiveStream));
+    try {
+      ZipEntry zipEntry = null;
+      while ((zipEntry = zipIn.getNextEntry()) != null) {
+        extractEntry(zipIn, zipEntry.getName());
+      }
+    } finally {
+      zipIn.close();
+    }
+  }
+
+  private void extractEntry(ZipInputStream zipIn, String nameFromGoogleDoc) throws IOException {
+    // TODO(arjuns): Get contentType from File extension.
+    logger.info(nameFromGoogleDoc);
+
+    checkArgument(nameFromGoogleDoc.contains("/"), "Unexpected name from GoogleDoc : "
+        + nameFromGoogleDoc);
+
+    /*
+     * Structure of zip entry name is as follows :
+     * <document title>/<50 char long title for html file.>
+     * In case title is too big, html file may not even contain .html extension.
+     * <document title/images/images<0-n>.jpg
+     * In case documentTitle has '/', then it gets converted to '-'
+     */
+    String parts[] = nameFromGoogleDoc.split("/");
+
+    String newFileName = "";
+    // Parts[0] is always the folder whose name is same as prettified title for a GoogleDoc.
+    if (parts.length == 2) {
+      // This will be true for HTML file.
+      newFileName = parts[1];
+
+      newFileName = FileExtensions.appendExtensionToFileName(newFileName, FileExtensions.HTML);
+    } else {
+      checkArgument(parts.length == 3, "Google Docs will return files " +
+          "name of format <pretty title/images/image names>");
+      // This will be true for images/resources.
+      newFileName = parts[1] + "/" + parts[2];
+    }
+
+    InputStream entryStream = zipIn;
+    if (newFileName.endsWith(FileExtensions.HTML.get())) {
+      newFileName = moduleId.getValue() + "." + FileExtensions.HTML.get();
+      byte[] htmlBytes = readHtml(zipIn, nameFromGoogleDoc);
+      htmlContent = new String(htmlBytes, Charsets.UTF_8);
+      entryStream = new ByteArrayInputStream(htmlBytes);
+    }
+
+    ContentTypeEnum contentType = FileExtensions.getFileExtension(newFileName).getContentType();
+    String storeFileName = moduleId.getValue() + "/" + newFileName;
+    String storeAbsFilePath =
+        GoogleCloudStorageBuckets.CONTENT.getAbsoluteFilePath(storeFileName);
+
+    // ZipEntry#getSize is not known upfront for streamed entries. So counting bytes instead.
+    CountingInputStream countingStream = new CountingInputStream(entryStream);
+    entryWriter.write(countingStream, GoogleCloudStorageBuckets.CONTENT, contentType,
+        storeFileName);
+
+    GSBlobInfo gsBlobInfo = new GSBlobInfo.Builder()
+        .contentType(contentType)
+        .fileName(parts[parts.length - 1])
+        .gsKey(storeAbsFilePath)
+        .sizeInBytes(countingStream.getCount())
+        .build();
+    resourceMap.put(newFileName, gsBlobInfo);
+  }
+
+  private byte[] readHtml(InputStream zipIn, String nameFromGoogleDoc) throws IOException {
+    byte[] htmlBytes = ByteStreams.toByteArray(
+        new LimitInputStream(zipIn, MAX_MODULE_HTML_SIZE_IN_BYTES + 1));
+    checkArgument(htmlBytes.length <= MAX_MODULE_HTML_SIZE_IN_BYTES, "HTML " + nameFromGoogleDoc
+        + " is bigger than " + MAX_MODULE_HTML_SIZE_IN_BYTES + " bytes.");
+    return htmlBytes;
+  }
+}
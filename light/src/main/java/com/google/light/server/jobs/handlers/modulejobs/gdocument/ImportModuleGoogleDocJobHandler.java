@@ -15,29 +15,18 @@
  */
 package com.google.light.server.jobs.handlers.modulejobs.gdocument;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.light.server.constants.google.cloudstorage.GoogleCloudStorageBuckets.CONTENT;
 import static com.google.light.server.jersey.resources.thirdparty.mixed.ImportResource.updateImportExternalIdDtoForModules;
 import static com.google.light.server.jobs.JobUtils.updateJobContext;
-import static com.google.light.server.utils.GoogleCloudStorageUtils.writeFileOnGCS;
 import static com.google.light.server.utils.GuiceUtils.getInstance;
 import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
 import static com.google.light.server.utils.LightUtils.createCollectionNode;
 import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
 
-import com.google.appengine.api.files.AppEngineFile;
-import com.google.appengine.api.files.FileReadChannel;
-import com.google.appengine.api.files.FileService;
-import com.google.appengine.api.files.FileServiceFactory;
-import com.google.appengine.api.files.GSFileOptions;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.light.server.constants.FileExtensions;
 import com.google.light.server.constants.QueueEnum;
-import com.google.light.server.constants.google.cloudstorage.GoogleCloudStorageBuckets;
-import com.google.light.server.constants.http.ContentTypeEnum;
 import com.google.light.server.dto.importresource.ImportExternalIdDto;
 import com.google.light.server.dto.module.GSBlobInfo;
 import com.google.light.server.dto.module.ModuleState;
@@ -66,15 +55,10 @@ import com.google.light.server.utils.LightUtils;
 import com.google.light.server.utils.ObjectifyUtils;
 import com.google.light.server.utils.Transactable;
 import com.googlecode.objectify.Objectify;
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.nio.channels.Channels;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -146,6 +130,41 @@ public class ImportModuleGoogleDocJobHandler implements JobHandlerInterface {
   // TODO(arjuns): This creates a duplicate job even when not required.
   public JobId enqueueModuleGoogleDocJob(Objectify ofy, ImportExternalIdDto importModuleDto,
       GoogleDocInfoDto gdocInfo, JobId parentJobId, JobId rootJobId) {
+    JobEntity childJob = createModuleGoogleDocJob(ofy, null /* childJobId */, importModuleDto,
+        gdocInfo, parentJobId, rootJobId);
+    if (childJob == null) {
+      return null;
+    }
+
+    jobManager.enqueueImportChildJob(ofy, parentJobId, childJob.getJobId(), importModuleDto,
+        QueueEnum.GDOC_INTERACTION);
+    return childJob.getJobId();
+  }
+
+  /**
+   * Creates child job for importModuleDto and updates importModuleDto with its details. Caller
+   * should add child to parent and enqueue it on {@link QueueEnum#GDOC_INTERACTION}. Returns null
+   * if Google Doc is already up to date.
+   * 
+   * If a Job with childJobId already exists, then an earlier attempt has created it and reserved
+   * its module version. So it is returned as it is, instead of reserving another version.
+   */
+  public JobEntity createModuleGoogleDocJob(Objectify ofy, JobId childJobId,
+      ImportExternalIdDto importModuleDto, GoogleDocInfoDto gdocInfo, JobId parentJobId,
+      JobId rootJobId) {
+    JobEntity existingJob = childJobId == null ? null : jobManager.get(ofy, childJobId);
+    if (existingJob != null) {
+      ImportModuleGoogleDocJobContext existingContext =
+          existingJob.getContext(ImportModuleGoogleDocJobContext.class);
+      Version existingVersion = existingContext.getVersion();
+      ModuleState existingModuleState = existingVersion.isFirstVersion()
+          ? ModuleState.IMPORTING : ModuleState.REFRESHING;
+      updateImportExternalIdDtoForModules(importModuleDto, existingContext.getModuleId(),
+          existingVersion, existingModuleState, existingContext.getResourceInfo().getModuleType(),
+          existingContext.getTitle(), existingJob);
+      return existingJob;
+    }
+
     ModuleId moduleId = importModuleDto.getModuleId();
 
     List<PersonId> owners = Lists.newArrayList(GuiceUtils.getOwnerId());
@@ -195,7 +214,7 @@ public class ImportModuleGoogleDocJobHandler implements JobHandlerInterface {
               .version(reservedVersion)
               .state(ImportModuleGoogleDocJobContext.GoogleDocImportJobState.ENQUEUED)
               .build();
-      childJob = jobManager.createGoogleDocImportChildJob(ofy,
+      childJob = jobManager.createGoogleDocImportChildJob(ofy, childJobId,
           childJobContext, parentJobId, rootJobId);
       if (reservedVersion.isFirstVersion()) {
         moduleState = ModuleState.IMPORTING;
@@ -228,14 +247,7 @@ public class ImportModuleGoogleDocJobHandler implements JobHandlerInterface {
      */
     updateImportExternalIdDtoForModules(importModuleDto, moduleId, reservedVersion, moduleState,
         moduleType, title, childJob);
-
-    if (childJob != null) {
-      jobManager.enqueueImportChildJob(ofy, parentJobId, childJob.getJobId(), importModuleDto,
-          QueueEnum.GDOC_INTERACTION);
-      return childJob.getJobId();
-    } else {
-      return null;
-    }
+    return childJob;
   }
 
   private String calculateTitleFromContext(ImportExternalIdDto importModuleDto,
@@ -338,101 +350,26 @@ public class ImportModuleGoogleDocJobHandler implements JobHandlerInterface {
     final ModuleId moduleId = gdocImportContext.getModuleId();
     final Version version = gdocImportContext.getVersion();
 
-    FileService fileService = FileServiceFactory.getFileService();
-    final Map<String, GSBlobInfo> resourceMap = Maps.newConcurrentMap();
-    String htmlContent = null;
+    GoogleDocArchiveExtractor extractor = new GoogleDocArchiveExtractor(moduleId,
+        GoogleDocArchiveExtractor.GCS_ENTRY_WRITER);
     try {
-
-      AppEngineFile file = new AppEngineFile(gdocImportContext.getGCSArchiveLocation());
-      FileReadChannel readChannel = fileService.openReadChannel(file, false /* lock */);
-
-      InputStream inputStream = Channels.newInputStream(readChannel);
-      ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(
-          IOUtils.toByteArray(inputStream)));
-
-      ZipEntry zipEntry = null;
-      do {
-        zipEntry = zipIn.getNextEntry();
-        if (zipEntry == null) {
-          continue;
-        }
-        // TODO(arjuns): Get contentType from File extension.
-        // Storing file on Cloud Storage.
-        String nameFromGoogleDoc = zipEntry.getName();
-        logger.info(nameFromGoogleDoc);
-
-        checkArgument(nameFromGoogleDoc.contains("/"), "Unexpected name from GoogleDoc : "
-            + nameFromGoogleDoc);
-
-        /*
-         * Structure of zip entry name is as follows :
-         * <document title>/<50 char long title for html file.>
-         * In case title is too big, html file may not even contain .html extension.
-         * <document title/images/images<0-n>.jpg
-         * In case documentTitle has '/', then it gets converted to '-'
-         */
-        String parts[] = nameFromGoogleDoc.split("/");
-
-        String newFileName = "";
-        // Parts[0] is always the folder whose name is same as prettified title for a GoogleDoc.
-        if (parts.length == 2) {
-          // This will be true for HTML file.
-          newFileName = parts[1];
-
-          newFileName = FileExtensions.appendExtensionToFileName(newFileName, FileExtensions.HTML);
-        } else {
-          checkArgument(parts.length == 3, "Google Docs will return files " +
-              "name of format <pretty title/images/image names>");
-          // This will be true for images/resources.
-          newFileName = parts[1] + "/" + parts[2];
-        }
-
-        if (newFileName.endsWith(FileExtensions.HTML.get())) {
-          newFileName = moduleId.getValue() + "." + FileExtensions.HTML.get();
-        }
-
-        ContentTypeEnum contentType = FileExtensions.getFileExtension(newFileName).getContentType();
-        String storeFileName = moduleId.getValue() + "/" + newFileName;
-        String storeAbsFilePath =
-            GoogleCloudStorageBuckets.CONTENT.getAbsoluteFilePath(storeFileName);
-
-        GSBlobInfo gsBlobInfo = new GSBlobInfo.Builder()
-            .contentType(contentType)
-            .fileName(parts[parts.length - 1])
-            .gsKey(storeAbsFilePath)
-            .sizeInBytes(zipEntry.getSize())
-            .build();
-        resourceMap.put(newFileName, gsBlobInfo);
-
-        GSFileOptions gsFileOptions = GoogleCloudStorageUtils.getGCSFileOptionsForCreate(
-            GoogleCloudStorageBuckets.CONTENT, contentType, storeFileName);
-        writeFileOnGCS(zipIn, gsFileOptions);
-      } while (zipEntry != null);
-
-      zipIn.close();
-      inputStream.close();
-      readChannel.close();
+      InputStream archiveStream =
+          GoogleCloudStorageUtils.openFileOnGCS(gdocImportContext.getGCSArchiveLocation());
+      try {
+        extractor.extract(archiveStream);
+      } finally {
+        archiveStream.close();
+      }
 
       logger.info("Finished unarchiving files");
-
-      // Now lets add the moduleVersion. This will require adding html and resources.
-      // First adding Html.
-
-      logger.info("Adding html for moduleId[" + moduleId + "].");
-
-      String filePath = GoogleCloudStorageUtils.getAbsoluteModuleHtmlPath(CONTENT, moduleId);
-
-      fileService = FileServiceFactory.getFileService();
-      file = new AppEngineFile(filePath);
-      readChannel = fileService.openReadChannel(file, true /* lock */);
-      inputStream = Channels.newInputStream(readChannel);
-      htmlContent = LightUtils.getInputStreamAsString(inputStream);
-
     } catch (Exception e) {
       LightUtils.wrapIntoRuntimeExceptionAndThrow(e);
     }
-    
-    final String requiredContent = checkNotBlank(htmlContent, "htmlcontent cannot be blank here.");
+
+    // Now lets add the moduleVersion. This will require adding html and resources.
+    final Map<String, GSBlobInfo> resourceMap = extractor.getResourceMap();
+    final String requiredContent = checkNotBlank(extractor.getHtmlContent(),
+        "htmlcontent cannot be blank here.");
     ObjectifyUtils.repeatInTransaction("publishing module " + moduleId,
         new Transactable<Void>() {
           @SuppressWarnings("synthetic-access")
@@ -141,6 +141,38 @@ public class ImportModuleSyntheticModuleJobHandler implements JobHandlerInterfac
   public JobId enqueueImportChildSyntheticModule(Objectify ofy,
       ImportExternalIdDto importExternalIdDto, TaskType taskType,
       JobId parentJobId, JobId rootJobId) {
+    JobEntity childJob = createImportChildSyntheticModuleJob(ofy, null /* childJobId */,
+        importExternalIdDto, taskType, parentJobId, rootJobId);
+    if (childJob == null) {
+      return null;
+    }
+
+    jobManager.enqueueImportChildJob(ofy, parentJobId, childJob.getJobId(), importExternalIdDto,
+        QueueEnum.LIGHT);
+    return childJob.getJobId();
+  }
+
+  /**
+   * Creates child job for importExternalIdDto and updates importExternalIdDto with its details.
+   * Neither the parent nor the TaskQueue is touched, so caller should add child to parent and
+   * enqueue it on {@link QueueEnum#LIGHT}. Returns null if module is already published.
+   * 
+   * If a Job with childJobId already exists, then an earlier attempt has created it and reserved
+   * its module version. So it is returned as it is, instead of reserving another version.
+   */
+  public JobEntity createImportChildSyntheticModuleJob(Objectify ofy, JobId childJobId,
+      ImportExternalIdDto importExternalIdDto, TaskType taskType,
+      JobId parentJobId, JobId rootJobId) {
+    JobEntity existingJob = childJobId == null ? null : jobManager.get(ofy, childJobId);
+    if (existingJob != null) {
+      ImportModuleSyntheticModuleJobContext existingContext =
+          existingJob.getContext(ImportModuleSyntheticModuleJobContext.class);
+      updateImportExternalIdDtoForModules(importExternalIdDto, existingContext.getModuleId(),
+          existingContext.getVersion(), ModuleState.IMPORTING, ModuleType.LIGHT_SYNTHETIC_MODULE,
+          existingContext.getTitle(), existingJob);
+      return existingJob;
+    }
+
     ModuleId moduleId = importExternalIdDto.getModuleId();
     
     ModuleEntity moduleEntity = null;
@@ -182,7 +214,7 @@ public class ImportModuleSyntheticModuleJobHandler implements JobHandlerInterfac
             .build();
 
     JobEntity childJob = jobManager.createSyntheticModuleJob(
-        ofy, jobContext, taskType, parentJobId, rootJobId);
+        ofy, childJobId, jobContext, taskType, parentJobId, rootJobId);
 
     /*
      * Now saving details about ModuleId and version as part of ExternalIdDto that will be
@@ -191,8 +223,6 @@ public class ImportModuleSyntheticModuleJobHandler implements JobHandlerInterfac
      */
     updateImportExternalIdDtoForModules(importExternalIdDto, moduleId, reservedVersion,
         ModuleState.IMPORTING, ModuleType.LIGHT_SYNTHETIC_MODULE, title, childJob);
-    jobManager.enqueueImportChildJob(ofy, parentJobId, childJob.getJobId(), importExternalIdDto,
-        QueueEnum.LIGHT);
-    return childJob.getJobId();
+    return childJob;
   }
 }
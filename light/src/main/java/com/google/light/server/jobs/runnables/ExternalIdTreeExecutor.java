@@ -0,0 +1,467 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.runnables;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.GDATA_GDOC_MAX_RESULTS;
+import static com.google.light.server.constants.LightConstants.GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS;
+import static com.google.light.server.utils.LightUtils.createExternalIdTreeNode;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.inject.Provider;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.tree.AbstractTreeNode.TreeNodeType;
+import com.google.light.server.dto.pojo.tree.externaltree.ExternalIdTreeNodeDto;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocResourceId;
+import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
+import com.google.light.server.dto.thirdparty.google.youtube.YouTubePlaylistInfo;
+import com.google.light.server.dto.thirdparty.google.youtube.YouTubeVideoInfo;
+import com.google.light.server.exception.unchecked.InvalidExternalIdException;
+import com.google.light.server.servlets.thirdparty.google.gdoc.DocsServiceWrapper;
+import com.google.light.server.servlets.thirdparty.google.youtube.YouTubeServiceWrapper;
+import com.google.light.server.servlets.thirdparty.google.youtube.YouTubeServiceWrapper.PlaylistPage;
+import com.google.light.server.urls.YouTubeUrl;
+import com.google.light.server.utils.ModuleUtils;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * Creates {@link ExternalIdTreeNodeDto}s for a list of {@link ExternalId}s, like
+ * {@link ModuleUtils#createExternalIdTree(ExternalId)}, but fetches from Google Docs and YouTube
+ * in parallel.
+ *
+ * Each remote fetch is a separate task on a pool of size {@link #maxConcurrent}. A task which
+ * lists a Google Collection submits a task for each of its sub collections, and a task which
+ * fetches a YouTube Playlist submits a task for each of its remaining pages. So siblings are
+ * resolved in parallel, and wall clock time grows with depth of the tree rather than with number
+ * of collections and pages. Tasks never wait for each other, so a small pool cannot deadlock.
+ * Whole tree has to be ready within {@link #timeoutInMillis}, which callers should choose so
+ * that the request deadline is met.
+ *
+ * Synthetic Modules fetch their page over HTTP to find the title, so they are fetched on the pool
+ * too, and are bound by the same deadline. Only Light Modules, which are looked up from the
+ * datastore, are resolved on the calling thread while the pool is busy with the rest.
+ *
+ * An ExternalId is invalid if it, or any of its sub collections or playlist pages, throws
+ * {@link InvalidExternalIdException}. That only discards the tree for that ExternalId; its
+ * remaining tasks are skipped, and other ExternalIds are not affected.
+ *
+ * @author Arjun Satyapal
+ */
+public class ExternalIdTreeExecutor {
+  private static final Logger logger = Logger.getLogger(ExternalIdTreeExecutor.class.getName());
+
+  /** Default number of GData requests which are in flight at the same time. */
+  public static final int DEFAULT_MAX_CONCURRENT = 9;
+
+  /**
+   * Default time for which caller will wait for all the trees. Along with
+   * {@link ReserveModuleIdExecutor#DEFAULT_TIMEOUT_IN_MILLIS} this leaves enough time for
+   * completing the import request before its deadline.
+   */
+  public static final long DEFAULT_TIMEOUT_IN_MILLIS = 20 * 1000;
+
+  private final Provider<DocsServiceWrapper> docsServiceProvider;
+  private final Provider<YouTubeServiceWrapper> ytServiceProvider;
+  private final ThreadFactory threadFactory;
+  private final int maxConcurrent;
+  private final long timeoutInMillis;
+
+  public ExternalIdTreeExecutor(Provider<DocsServiceWrapper> docsServiceProvider,
+      Provider<YouTubeServiceWrapper> ytServiceProvider, ThreadFactory threadFactory,
+      int maxConcurrent, long timeoutInMillis) {
+    this.docsServiceProvider = checkNotNull(docsServiceProvider, "docsServiceProvider");
+    this.ytServiceProvider = checkNotNull(ytServiceProvider, "ytServiceProvider");
+    this.threadFactory = checkNotNull(threadFactory, "threadFactory");
+    checkArgument(maxConcurrent > 0, "maxConcurrent should be positive.");
+    this.maxConcurrent = maxConcurrent;
+    checkArgument(timeoutInMillis > 0, "timeoutInMillis should be positive.");
+    this.timeoutInMillis = timeoutInMillis;
+  }
+
+  /**
+   * Returns trees for externalIds, in same order. Tree for an ExternalId which is found to be
+   * invalid is null. Any other failure, or not finishing within {@link #timeoutInMillis}, cancels
+   * the pending fetches and throws a RuntimeException.
+   */
+  public List<ExternalIdTreeNodeDto> createExternalIdTrees(List<ExternalId> externalIds) {
+    checkNotNull(externalIds, "externalIds");
+    return new TreeBuilder(externalIds).build();
+  }
+
+  /**
+   * State for a single call to {@link ExternalIdTreeExecutor#createExternalIdTrees(List)}.
+   */
+  private class TreeBuilder {
+    private final List<ExternalId> externalIds;
+    private final AtomicReferenceArray<ExternalIdTreeNodeDto> trees;
+    // Futures which are yet to be waited for. Tasks add futures for the tasks they submit
+    // before finishing, so once this is drained, there is nothing left to run.
+    private final Queue<Future<?>> pendingFutures = new ConcurrentLinkedQueue<Future<?>>();
+    // Run on the calling thread once all the tasks have finished.
+    private final Queue<Runnable> finishers = new ConcurrentLinkedQueue<Runnable>();
+    // Indexes of ExternalIds which were found to be invalid by any of their tasks.
+    private final Set<Integer> invalidIndexes =
+        Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private ExecutorService threadExecutor;
+
+    // Services are created on the calling thread, as they depend on request scoped values.
+    private DocsServiceWrapper docsService;
+    private YouTubeServiceWrapper ytService;
+
+    private TreeBuilder(List<ExternalId> externalIds) {
+      this.externalIds = externalIds;
+      this.trees = new AtomicReferenceArray<ExternalIdTreeNodeDto>(externalIds.size());
+    }
+
+    @SuppressWarnings("synthetic-access")
+    private List<ExternalIdTreeNodeDto> build() {
+      long deadlineInMillis = System.currentTimeMillis() + timeoutInMillis;
+      threadExecutor = Executors.newFixedThreadPool(maxConcurrent, threadFactory);
+      try {
+        List<Integer> localIndexes = Lists.newArrayList();
+        for (int index = 0; index < externalIds.size(); index++) {
+          if (!submitRemote(index)) {
+            localIndexes.add(index);
+          }
+        }
+
+        for (int index : localIndexes) {
+          trees.set(index, createLocalTree(externalIds.get(index)));
+        }
+
+        waitForPendingFutures(deadlineInMillis);
+        for (Runnable currFinisher : finishers) {
+          currFinisher.run();
+        }
+
+        // Tasks for an invalid ExternalId may have already set a partial tree.
+        for (int index : invalidIndexes) {
+          trees.set(index, null);
+        }
+      } finally {
+        // No-op if everything finished. Otherwise stops the ones which are still pending.
+        threadExecutor.shutdownNow();
+      }
+
+      ExternalIdTreeNodeDto[] result = new ExternalIdTreeNodeDto[trees.length()];
+      for (int index = 0; index < result.length; index++) {
+        result[index] = trees.get(index);
+      }
+      return Arrays.asList(result);
+    }
+
+    /**
+     * Submits a task for ExternalId at index if it has to be fetched from a remote service.
+     *
+     * @return false if it has to be resolved locally instead.
+     */
+    @SuppressWarnings("synthetic-access")
+    private boolean submitRemote(final int index) {
+      final ExternalId externalId = externalIds.get(index);
+      ModuleType moduleType = null;
+      try {
+        moduleType = externalId.getModuleType();
+      } catch (InvalidExternalIdException e) {
+        // Will fail again while resolving locally, and will be ignored there.
+        return false;
+      }
+
+      switch (moduleType) {
+        case GOOGLE_COLLECTION:
+        case GOOGLE_DOCUMENT:
+          if (docsService == null) {
+            docsService = docsServiceProvider.get();
+          }
+          submit(index, new Runnable() {
+            @Override
+            public void run() {
+              trees.set(index, new GDocResolver(index, externalId).resolve());
+            }
+          });
+          return true;
+
+        case YOU_TUBE_VIDEO:
+        case YOU_TUBE_PLAYLIST:
+          if (ytService == null) {
+            ytService = ytServiceProvider.get();
+          }
+          submit(index, new Runnable() {
+            @Override
+            public void run() {
+              trees.set(index, new YouTubeResolver(index, externalId).resolve());
+            }
+          });
+          return true;
+
+        case LIGHT_SYNTHETIC_MODULE:
+          submit(index, new Runnable() {
+            @Override
+            public void run() {
+              trees.set(index, ModuleUtils.createExternalIdTree(externalId));
+            }
+          });
+          return true;
+
+        default:
+          return false;
+      }
+    }
+
+    /**
+     * Submits a task which is part of resolving ExternalId at index.
+     */
+    private void submit(int index, Runnable runnable) {
+      pendingFutures.add(threadExecutor.submit(skipIfInvalid(index, runnable)));
+    }
+
+    /**
+     * Adds a finisher which is part of resolving ExternalId at index.
+     */
+    private void addFinisher(int index, Runnable runnable) {
+      finishers.add(skipIfInvalid(index, runnable));
+    }
+
+    /**
+     * Wraps runnable so that it is not run once ExternalId at index is known to be invalid, and
+     * so that an {@link InvalidExternalIdException} thrown by it marks only that ExternalId as
+     * invalid, instead of failing all the trees.
+     */
+    private Runnable skipIfInvalid(final int index, final Runnable runnable) {
+      return new Runnable() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public void run() {
+          if (invalidIndexes.contains(index)) {
+            return;
+          }
+
+          try {
+            runnable.run();
+          } catch (InvalidExternalIdException e) {
+            if (invalidIndexes.add(index)) {
+              logInvalid(externalIds.get(index), e);
+            }
+          }
+        }
+      };
+    }
+
+    @SuppressWarnings("synthetic-access")
+    private void waitForPendingFutures(long deadlineInMillis) {
+      Future<?> future = null;
+      while ((future = pendingFutures.poll()) != null) {
+        long remainingInMillis = Math.max(0, deadlineInMillis - System.currentTimeMillis());
+        try {
+          future.get(remainingInMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          logger.severe("Failed to create ExternalId tree due to : "
+              + Throwables.getStackTraceAsString(cause));
+          Throwables.propagateIfPossible(cause);
+          throw new RuntimeException(cause);
+        } catch (TimeoutException e) {
+          throw new RuntimeException("Timed out after " + timeoutInMillis
+              + "ms while creating ExternalId trees for " + externalIds, e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+      }
+    }
+
+    private ExternalIdTreeNodeDto createLocalTree(ExternalId externalId) {
+      try {
+        return ModuleUtils.createExternalIdTree(externalId);
+      } catch (InvalidExternalIdException e) {
+        logInvalid(externalId, e);
+        return null;
+      }
+    }
+
+    @SuppressWarnings("synthetic-access")
+    private void logInvalid(ExternalId externalId, InvalidExternalIdException e) {
+      logger.info("Ignoring externalId : " + externalId + " due to : "
+          + Throwables.getStackTraceAsString(e));
+    }
+
+    /**
+     * Fetches the top level node for an ExternalId.
+     */
+    private abstract class Resolver {
+      // Index of the top level ExternalId, which is shared by all the tasks resolving it.
+      protected final int index;
+      protected final ExternalId externalId;
+
+      protected Resolver(int index, ExternalId externalId) {
+        this.index = index;
+        this.externalId = externalId;
+      }
+
+      protected abstract ExternalIdTreeNodeDto resolve();
+    }
+
+    private class GDocResolver extends Resolver {
+      private GDocResolver(int index, ExternalId externalId) {
+        super(index, externalId);
+      }
+
+      @SuppressWarnings("synthetic-access")
+      @Override
+      protected ExternalIdTreeNodeDto resolve() {
+        GoogleDocResourceId gdocResourceId = new GoogleDocResourceId(externalId);
+        GoogleDocInfoDto gdocInfo = docsService.getGoogleDocInfo(gdocResourceId,
+            GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING);
+
+        ModuleType moduleType = externalId.getModuleType();
+        if (moduleType == ModuleType.GOOGLE_DOCUMENT) {
+          return createExternalIdTreeNode(externalId, gdocInfo.getTitle(),
+              TreeNodeType.LEAF_NODE, ContentLicense.DEFAULT_LIGHT_CONTENT_LICENSES);
+        }
+
+        checkArgument(moduleType == ModuleType.GOOGLE_COLLECTION,
+            "Should not be called for : " + moduleType + " but was called for " + externalId);
+        ExternalIdTreeNodeDto collectionNode = createExternalIdTreeNode(externalId,
+            gdocInfo.getTitle(), moduleType.getNodeType(), null /* license */);
+        addChildsOfGoogleCollection(index, collectionNode, gdocResourceId);
+        return collectionNode;
+      }
+    }
+
+    /**
+     * Lists the Google Collection and adds its contents to collectionNode. Sub collections are
+     * expanded by separate tasks.
+     */
+    @SuppressWarnings("synthetic-access")
+    private void addChildsOfGoogleCollection(final int index,
+        ExternalIdTreeNodeDto collectionNode, GoogleDocResourceId gdocResourceId) {
+      List<GoogleDocInfoDto> listOfChilds =
+          docsService.getFolderContentWhichAreSupportedInAlphabeticalOrder(gdocResourceId,
+              GDATA_GDOC_MAX_RESULTS, GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING);
+
+      for (GoogleDocInfoDto currChild : listOfChilds) {
+        final ExternalId childExternalId = currChild.getExternalId();
+        if (currChild.getModuleType() == ModuleType.GOOGLE_COLLECTION) {
+          final ExternalIdTreeNodeDto childNode = createExternalIdTreeNode(childExternalId,
+              currChild.getTitle(), ModuleType.GOOGLE_COLLECTION.getNodeType(),
+              null /* license */);
+          // Child is added before it is expanded, so siblings remain in the listed order.
+          collectionNode.addChildren(childNode);
+          submit(index, new Runnable() {
+            @Override
+            public void run() {
+              addChildsOfGoogleCollection(index, childNode,
+                  new GoogleDocResourceId(childExternalId));
+            }
+          });
+        } else if (currChild.getModuleType() == ModuleType.GOOGLE_DOCUMENT) {
+          collectionNode.addChildren(createExternalIdTreeNode(childExternalId,
+              currChild.getTitle(), TreeNodeType.LEAF_NODE,
+              ContentLicense.DEFAULT_LIGHT_CONTENT_LICENSES));
+        } else {
+          throw new IllegalStateException("Code should not reach here but reached for : "
+              + childExternalId + " and for parent : " + collectionNode.getExternalId());
+        }
+      }
+    }
+
+    private class YouTubeResolver extends Resolver {
+      private YouTubeResolver(int index, ExternalId externalId) {
+        super(index, externalId);
+      }
+
+      @SuppressWarnings("synthetic-access")
+      @Override
+      protected ExternalIdTreeNodeDto resolve() {
+        YouTubeUrl ytUrl = new YouTubeUrl(externalId);
+        ModuleType moduleType = externalId.getModuleType();
+        if (moduleType == ModuleType.YOU_TUBE_VIDEO) {
+          YouTubeVideoInfo videoInfo = ytService.getYouTubeVideoInfo(ytUrl);
+          return createExternalIdTreeNode(externalId, videoInfo.getTitle(),
+              TreeNodeType.LEAF_NODE, videoInfo.getContentLicenses());
+        }
+
+        checkArgument(moduleType == ModuleType.YOU_TUBE_PLAYLIST,
+            "Should not be called for : " + moduleType + " but was called for " + externalId);
+        YouTubePlaylistInfo ytPlInfo = ytService.getYouTubePlayListInfo(ytUrl);
+        ExternalIdTreeNodeDto playlistNode = createExternalIdTreeNode(externalId,
+            ytPlInfo.getTitle(), TreeNodeType.INTERMEDIATE_NODE, ytPlInfo.getContentLicenses());
+        addVideosOfYouTubePlaylist(index, playlistNode, ytUrl);
+        return playlistNode;
+      }
+    }
+
+    /**
+     * Fetches first page of the playlist, and submits a task for each of the remaining pages.
+     * Videos are added to playlistNode, in order, once all the pages are fetched.
+     */
+    @SuppressWarnings("synthetic-access")
+    private void addVideosOfYouTubePlaylist(int index, final ExternalIdTreeNodeDto playlistNode,
+        final YouTubeUrl ytUrl) {
+      PlaylistPage firstPage = ytService.getYouTubePlaylistPage(ytUrl, 1 /* startIndex */,
+          GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS);
+      int pageCount = Math.max(1, (firstPage.getTotalResults()
+          + GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS - 1) / GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS);
+
+      final AtomicReferenceArray<List<YouTubeVideoInfo>> pages =
+          new AtomicReferenceArray<List<YouTubeVideoInfo>>(pageCount);
+      pages.set(0, firstPage.getListOfVideos());
+      for (int pageIndex = 1; pageIndex < pageCount; pageIndex++) {
+        final int currPageIndex = pageIndex;
+        submit(index, new Runnable() {
+          @Override
+          public void run() {
+            int startIndex = currPageIndex * GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS + 1;
+            pages.set(currPageIndex, ytService.getYouTubePlaylistPage(ytUrl, startIndex,
+                GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS).getListOfVideos());
+          }
+        });
+      }
+
+      // Skipped if any of the pages failed, so all the pages are present when this runs.
+      addFinisher(index, new Runnable() {
+        @Override
+        public void run() {
+          for (int pageIndex = 0; pageIndex < pages.length(); pageIndex++) {
+            for (YouTubeVideoInfo currVideo : pages.get(pageIndex)) {
+              playlistNode.addChildren(createExternalIdTreeNode(currVideo.getExternalId(),
+                  currVideo.getTitle(), TreeNodeType.LEAF_NODE,
+                  currVideo.getContentLicenses()));
+            }
+          }
+        }
+      });
+    }
+  }
+}
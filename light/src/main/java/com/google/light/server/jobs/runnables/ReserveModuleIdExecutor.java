@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.runnables;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.utils.LightPreconditions.checkNotEmptyCollection;
+import static com.google.light.server.utils.LightUtils.wrapIntoRuntimeExceptionAndThrow;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.light.server.dto.pojo.tree.externaltree.ExternalIdTreeNodeDto;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Reserves ModuleIds for all the leaf nodes of an {@link ExternalIdTreeNodeDto} in parallel.
+ *
+ * All the {@link ReserveModuleIdRunnable}s are submitted upfront to a pool of size
+ * {@link #maxConcurrent}, and results are collected once all of them are submitted. So wall
+ * clock time grows with ceil(leafNodes / maxConcurrent) instead of number of leaf nodes.
+ *
+ * @author Arjun Satyapal
+ */
+public class ReserveModuleIdExecutor {
+  private static final Logger logger = Logger.getLogger(ReserveModuleIdExecutor.class.getName());
+
+  /** Default number of ModuleIds that are reserved at the same time. */
+  public static final int DEFAULT_MAX_CONCURRENT = 9;
+
+  /** Default time for which caller will wait for all the reservations to finish. */
+  public static final long DEFAULT_TIMEOUT_IN_MILLIS = 25 * 1000;
+
+  private final ThreadFactory threadFactory;
+  private final int maxConcurrent;
+  private final long timeoutInMillis;
+
+  public ReserveModuleIdExecutor(ThreadFactory threadFactory, int maxConcurrent,
+      long timeoutInMillis) {
+    this.threadFactory = checkNotNull(threadFactory, "threadFactory");
+    checkArgument(maxConcurrent > 0, "maxConcurrent should be positive.");
+    this.maxConcurrent = maxConcurrent;
+    checkArgument(timeoutInMillis > 0, "timeoutInMillis should be positive.");
+    this.timeoutInMillis = timeoutInMillis;
+  }
+
+  public int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  /**
+   * Reserves ModuleIds for all the leaf nodes under externalIdTree. On return, each leaf node
+   * will have its ModuleId set.
+   */
+  public List<ReserveModuleIdRunnable> reserveLeafNodes(ExternalIdTreeNodeDto externalIdTree,
+      List<PersonId> owners) {
+    checkNotNull(externalIdTree, "externalIdTree");
+    checkNotEmptyCollection(owners, "owners");
+
+    List<ReserveModuleIdRunnable> listOfRunnables = Lists.newArrayList();
+    for (ExternalIdTreeNodeDto currExternalIdNode : externalIdTree.getLeafNodes()) {
+      listOfRunnables.add(createRunnable(currExternalIdNode, owners));
+    }
+
+    return runAll(listOfRunnables);
+  }
+
+  /**
+   * Hook for creating a {@link ReserveModuleIdRunnable} for a leaf node. Tests override this in
+   * order to avoid talking to Datastore.
+   */
+  protected ReserveModuleIdRunnable createRunnable(ExternalIdTreeNodeDto externalIdNode,
+      List<PersonId> owners) {
+    return new ReserveModuleIdRunnable(externalIdNode, owners);
+  }
+
+  /**
+   * Runs all the runnables with at most {@link #maxConcurrent} running at same time. If any of
+   * the runnables fails, or all of them do not finish within {@link #timeoutInMillis}, then the
+   * remaining ones are cancelled and a RuntimeException is thrown.
+   */
+  public List<ReserveModuleIdRunnable> runAll(List<ReserveModuleIdRunnable> listOfRunnables) {
+    checkNotNull(listOfRunnables, "listOfRunnables");
+    if (listOfRunnables.isEmpty()) {
+      return listOfRunnables;
+    }
+
+    int poolSize = Math.min(maxConcurrent, listOfRunnables.size());
+    ExecutorService threadExecutor = Executors.newFixedThreadPool(poolSize, threadFactory);
+
+    try {
+      List<Future<?>> listOfFutures = Lists.newArrayListWithCapacity(listOfRunnables.size());
+      for (ReserveModuleIdRunnable currRunnable : listOfRunnables) {
+        listOfFutures.add(threadExecutor.submit(currRunnable));
+      }
+      threadExecutor.shutdown();
+
+      long deadlineInMillis = System.currentTimeMillis() + timeoutInMillis;
+      for (int index = 0; index < listOfFutures.size(); index++) {
+        long remainingInMillis = Math.max(0, deadlineInMillis - System.currentTimeMillis());
+        try {
+          listOfFutures.get(index).get(remainingInMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+          logger.severe("Failed for " + listOfRunnables.get(index).getExternalId()
+              + " due to : " + Throwables.getStackTraceAsString(e.getCause()));
+          wrapIntoRuntimeExceptionAndThrow(e);
+        } catch (TimeoutException e) {
+          logger.severe("Timed out after " + timeoutInMillis + "ms while reserving "
+              + listOfRunnables.get(index).getExternalId());
+          wrapIntoRuntimeExceptionAndThrow(e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          wrapIntoRuntimeExceptionAndThrow(e);
+        }
+      }
+    } finally {
+      // No-op if everything finished. Otherwise stops the ones which are still pending.
+      threadExecutor.shutdownNow();
+    }
+
+    return listOfRunnables;
+  }
+}
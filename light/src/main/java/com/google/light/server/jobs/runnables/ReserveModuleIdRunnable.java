@@ -55,6 +55,14 @@ public class ReserveModuleIdRunnable implements Runnable {
   public ImportExternalIdDto getImportExternalIdDto() {
     return importExternalIdDto;
   }
+
+  public ExternalIdTreeNodeDto getExternalIdTreeNode() {
+    return externalIdTreeNode;
+  }
+
+  public ExternalId getExternalId() {
+    return externalIdTreeNode.getExternalId();
+  }
   
   @Override
   public void run() {
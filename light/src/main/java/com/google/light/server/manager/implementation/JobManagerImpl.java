@@ -26,7 +26,11 @@ import static com.google.light.server.utils.LightUtils.getNow;
 import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
 
 import com.google.appengine.api.datastore.Text;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import com.google.light.server.constants.LightConstants;
+import com.google.light.server.constants.PlacementOrder;
 import com.google.light.server.constants.QueueEnum;
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.dto.importresource.ImportBatchWrapper;
@@ -34,6 +38,9 @@ import com.google.light.server.dto.importresource.ImportExternalIdDto;
 import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
+import com.google.light.server.exception.ExceptionType;
+import com.google.light.server.exception.unchecked.taskqueue.ParentNotReadyForChildCompleteNotification;
 import com.google.light.server.jobs.handlers.collectionjobs.gdoccollection.ImportCollectionGoogleDocContext;
 import com.google.light.server.jobs.handlers.collectionjobs.youtubeplaylist.ImportCollectionYouTubePlaylistContext;
 import com.google.light.server.jobs.handlers.modulejobs.gdocument.ImportModuleGoogleDocJobContext;
@@ -41,17 +48,23 @@ import com.google.light.server.jobs.handlers.modulejobs.synthetic.ImportModuleSy
 import com.google.light.server.manager.interfaces.JobManager;
 import com.google.light.server.manager.interfaces.NotificationManager;
 import com.google.light.server.manager.interfaces.QueueManager;
+import com.google.light.server.persistence.dao.ChildJobCompletionShardDao;
+import com.google.light.server.persistence.dao.GoogleDocFolderSnapshotDao;
+import com.google.light.server.persistence.dao.JobChangeLogArchiveDao;
 import com.google.light.server.persistence.dao.JobDao;
+import com.google.light.server.persistence.entity.jobs.JobChangeLogArchiveEntity;
 import com.google.light.server.persistence.entity.jobs.JobEntity;
 import com.google.light.server.persistence.entity.jobs.JobEntity.JobHandlerType;
 import com.google.light.server.persistence.entity.jobs.JobEntity.JobType;
 import com.google.light.server.persistence.entity.jobs.JobEntity.TaskType;
 import com.google.light.server.persistence.entity.jobs.JobState;
+import com.google.light.server.persistence.entity.jobs.JobStateCategory;
 import com.google.light.server.serveronlypojos.GAEQueryWrapper;
 import com.google.light.server.utils.GuiceUtils;
 import com.google.light.server.utils.Transactable;
 import com.googlecode.objectify.Objectify;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -66,13 +79,23 @@ public class JobManagerImpl implements JobManager {
   private static final Logger logger = Logger.getLogger(JobManagerImpl.class.getName());
 
   private JobDao jobDao;
+  private JobChangeLogArchiveDao changeLogArchiveDao;
+  private ChildJobCompletionShardDao completionShardDao;
+  private GoogleDocFolderSnapshotDao folderSnapshotDao;
   private NotificationManager notificationManager;
   private QueueManager queueManager;
 
   @Inject
-  public JobManagerImpl(JobDao jobDao, NotificationManager notificationManager,
-      QueueManager queueManager) {
+  public JobManagerImpl(JobDao jobDao, JobChangeLogArchiveDao changeLogArchiveDao,
+      ChildJobCompletionShardDao completionShardDao, GoogleDocFolderSnapshotDao folderSnapshotDao,
+      NotificationManager notificationManager, QueueManager queueManager) {
     this.jobDao = checkNotNull(jobDao, "jobDao");
+    this.changeLogArchiveDao = checkNotNull(changeLogArchiveDao, SERVER_GUICE_INJECTION,
+        "changeLogArchiveDao");
+    this.completionShardDao = checkNotNull(completionShardDao, SERVER_GUICE_INJECTION,
+        "completionShardDao");
+    this.folderSnapshotDao = checkNotNull(folderSnapshotDao, SERVER_GUICE_INJECTION,
+        "folderSnapshotDao");
     this.notificationManager = checkNotNull(notificationManager, SERVER_GUICE_INJECTION,
         "notificationManager");
     this.queueManager = checkNotNull(queueManager, SERVER_GUICE_INJECTION, "queueManager");
@@ -84,7 +107,63 @@ public class JobManagerImpl implements JobManager {
   @Override
   public JobEntity put(Objectify ofy, JobEntity jobEntity, ChangeLogEntryPojo changeLog) {
     jobEntity.addToChangeLog(changeLog);
-    return jobDao.put(ofy, jobEntity);
+
+    // Archive is in same entity group as the Job, so it is written in the same transaction.
+    for (JobChangeLogArchiveEntity currArchiveEntity : jobEntity.compactChangeLog()) {
+      changeLogArchiveDao.put(ofy, currArchiveEntity);
+    }
+    jobDao.put(ofy, jobEntity);
+
+    if (jobEntity.getTaskType() == TaskType.IMPORT_COLLECTION_GOOGLE_COLLECTION
+        && isFinished(jobEntity.getJobState())) {
+      // Folder snapshot is needed only while creating childs. It is in same entity group as the
+      // Job, so it is deleted in the same transaction.
+      folderSnapshotDao.deleteSnapshot(ofy, jobEntity.getJobId());
+    }
+
+    if (ofy == null) {
+      // Without a transaction, puts are durable once they return. Inside a transaction, archives
+      // are kept till this instance is persisted again, as transaction may still fail.
+      jobEntity.markChangeLogArchivesPersisted();
+    }
+    return jobEntity;
+  }
+
+  private static boolean isFinished(JobState jobState) {
+    return jobState == JobState.COMPLETE
+        || jobState.getCategory() == JobStateCategory.STOPPED;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ChangeLogEntryPojo> getFullChangeLog(JobId jobId) {
+    JobEntity jobEntity = get(null, jobId);
+    checkNotNull(jobEntity, ExceptionType.CLIENT_PARAMETER, "No job found for : " + jobId);
+
+    List<ChangeLogEntryPojo> changeLogs = Lists.newArrayList();
+    if (jobEntity.getArchivedChangeLogChunks() > 0) {
+      changeLogs.addAll(changeLogArchiveDao.getArchivedChangeLogs(jobId));
+    }
+    changeLogs.addAll(jobEntity.getChangeLogs());
+    return changeLogs;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void putFolderSnapshot(Objectify ofy, JobId jobId, List<GoogleDocInfoDto> gdocInfos) {
+    folderSnapshotDao.putSnapshot(ofy, jobId, gdocInfos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<GoogleDocInfoDto> getFolderSnapshot(JobId jobId, int fromIndex, int toIndex) {
+    return folderSnapshotDao.getSnapshot(jobId, fromIndex, toIndex);
   }
 
   /**
@@ -99,16 +178,17 @@ public class JobManagerImpl implements JobManager {
    * {@inheritDoc}
    */
   @Override
-  public JobEntity createGoogleDocImportChildJob(Objectify ofy,
+  public JobEntity createGoogleDocImportChildJob(Objectify ofy, JobId jobId,
       ImportModuleGoogleDocJobContext context,
       JobId parentJobId, JobId rootJobId) {
     checkTxnIsRunning(ofy);
     checkJobId(parentJobId);
     checkJobId(rootJobId);
 
-    Text text = new Text(context.toJson());
+    Text text = new Text(context.toCompactJson());
 
     JobEntity jobEntity = new JobEntity.Builder()
+        .jobId(jobId)
         .jobType(JobType.CHILD_JOB)
         .parentJobId(parentJobId)
         .rootJobId(rootJobId)
@@ -171,13 +251,101 @@ public class JobManagerImpl implements JobManager {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean recordChildJobCompletion(JobId parentJobId, JobId childJobId) {
+    return completionShardDao.recordCompletion(parentJobId, childJobId);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int countCompletedChildJobs(JobId parentJobId) {
+    return completionShardDao.countCompletions(parentJobId);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void handleChildJobCompletion(final JobId parentJobId, JobId childJobId) {
+    // Recording is idempotent, so it is safe to record before checking parent's state.
+    recordChildJobCompletion(parentJobId, childJobId);
+
+    JobEntity parentJob = get(null, parentJobId);
+    checkNotNull(parentJob, ExceptionType.SERVER, "parentJob :" + parentJobId + " was not found");
+    if (getPlacementForNotification(parentJob) == PlacementOrder.AFTER) {
+      return;
+    }
+
+    // Parent creates all its childs before waiting for notifications.
+    int completedCount = countCompletedChildJobs(parentJobId);
+    int childCount = parentJob.getChildJobCount();
+    if (getPlacementForNotification(parentJob) == PlacementOrder.EQUAL
+        && completedCount < childCount) {
+      logger.info("For " + parentJobId + ", " + completedCount + " of " + childCount
+          + " childs have completed.");
+      return;
+    }
+
+    repeatInTransaction("Handling completion of childs for " + parentJobId,
+        new Transactable<Void>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Void run(Objectify ofy) {
+        JobEntity parentJobEntity = get(ofy, parentJobId);
+        checkNotNull(parentJobEntity, ExceptionType.SERVER,
+            "parentJob :" + parentJobId + " was not found");
+
+        PlacementOrder placement = getPlacementForNotification(parentJobEntity);
+        switch (placement) {
+          case BEFORE:
+            throw new ParentNotReadyForChildCompleteNotification(" ParentJob.JobState is "
+                + parentJobEntity.getJobState());
+
+          case EQUAL:
+            markAllChildsComplete(ofy, parentJobEntity);
+            return null;
+
+          case AFTER:
+            return null;
+
+          default:
+            throw new IllegalArgumentException("Unsupported placement : " + placement);
+        }
+      }
+    });
+  }
+
+  private static PlacementOrder getPlacementForNotification(JobEntity parentJob) {
+    return parentJob.getJobState().getPlacement(JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void markAllChildsComplete(Objectify ofy, JobEntity parentJob) {
+    checkTxnIsRunning(ofy);
+    for (JobId currChildJobId : parentJob.getPendingChildJobs()) {
+      parentJob.addFinishedChildJob(currChildJobId);
+    }
+
+    parentJob.setJobState(JobState.ALL_CHILDS_COMPLETED);
+    put(ofy, parentJob, new ChangeLogEntryPojo("All Childs complete"));
+    enqueueLightJob(ofy, parentJob.getJobId());
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void enqueueJobForPolling(Objectify ofy, JobId jobId) {
     checkTxnIsRunning(ofy);
-    queueManager.enqueuePollingJob(ofy, jobId);
+    queueManager.enqueuePollingJob(ofy, jobId, LightConstants.CHILD_POLLING_DELAY_MILLIS);
   }
 
   /**
@@ -188,6 +356,34 @@ public class JobManagerImpl implements JobManager {
     return jobDao.findListOfJobs(listOfJobIds);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public JobEntity reserveChildJobIds(final JobId parentJobId, final int count) {
+    checkJobId(parentJobId);
+    checkArgument(count > 0, "count should be positive.");
+
+    // Ids are allocated outside the transaction, as allocation is not transactional.
+    final JobId firstJobId = jobDao.allocateJobIds(count);
+    return repeatInTransaction("Reserving " + count + " child JobIds for " + parentJobId,
+        new Transactable<JobEntity>() {
+          @SuppressWarnings("synthetic-access")
+          @Override
+          public JobEntity run(Objectify ofy) {
+            JobEntity parentJob = get(ofy, parentJobId);
+            if (parentJob.hasReservedChildJobIds()) {
+              // A concurrent attempt has already reserved them. Ids allocated here are never used.
+              return parentJob;
+            }
+
+            parentJob.setReservedChildJobIds(firstJobId, count);
+            return put(ofy, parentJob, new ChangeLogEntryPojo("Reserved " + count
+                + " child JobIds starting from " + firstJobId));
+          }
+        });
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -207,6 +403,15 @@ public class JobManagerImpl implements JobManager {
     logger.info("Enqueued LightJob[" + jobId + "].");
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void enqueueJobs(Objectify ofy, ListMultimap<QueueEnum, JobId> jobIdsByQueue) {
+    checkTxnIsRunning(ofy);
+    queueManager.enqueueJobs(ofy, jobIdsByQueue);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -214,7 +419,7 @@ public class JobManagerImpl implements JobManager {
   public JobId createImportBatchJob(Objectify ofy, final ImportBatchWrapper jobRequest,
       JobState jobState) {
     checkTxnIsRunning(ofy);
-    Text jobRequestText = new Text(jobRequest.toJson());
+    Text jobRequestText = new Text(jobRequest.toCompactJson());
     JobEntity jobEntity = new JobEntity.Builder()
         .jobType(JobType.ROOT_JOB)
         .jobHandlerType(JobHandlerType.TASK_QUEUE)
@@ -254,8 +459,8 @@ public class JobManagerImpl implements JobManager {
             + TaskType.IMPORT_YOUTUBE_PLAYLIST);
 
     parentJob.addChildJob(childJobId);
-
-    updateParentJobContext(externalIdDto, parentJob);
+    // Parent context is not parsed here, so adding N childs costs O(N) instead of O(N^2).
+    parentJob.appendToContext(externalIdDto);
 
     this.put(ofy, parentJob, new ChangeLogEntryPojo("Adding child " + childJobId));
 
@@ -274,72 +479,21 @@ public class JobManagerImpl implements JobManager {
     }
   }
 
-  /**
-   * @param externalIdDto
-   * @param parentJob
-   */
-  @SuppressWarnings("deprecation")
-  private void updateParentJobContext(ImportExternalIdDto externalIdDto, JobEntity parentJob) {
-    TaskType taskType = parentJob.getTaskType();
-
-    switch (taskType) {
-      case IMPORT_BATCH:
-        ImportBatchWrapper importBatchContext = null;
-
-        // Get existing context from Parent Job Entity.
-        if (parentJob.getContext() == null) {
-          importBatchContext = new ImportBatchWrapper();
-        } else {
-          importBatchContext = parentJob.getContext(ImportBatchWrapper.class);
-        }
-
-        checkNotNull(importBatchContext, "externalIdListWrapper should not be null.");
-        // Now update context with new information and then persist it back.
-        importBatchContext.addImportModuleDto(externalIdDto);
-        parentJob.setContext(importBatchContext);
-        break;
-
-      case IMPORT_COLLECTION_GOOGLE_COLLECTION:
-
-        // Get existing context from Parent Job Entity.
-        ImportCollectionGoogleDocContext importCollectionGDocContext = parentJob.getContext(
-            ImportCollectionGoogleDocContext.class);
-
-        checkNotNull(importCollectionGDocContext, "importCollectionGDocContext should not be null.");
-        // Now update context with new information and then persist it back.
-        importCollectionGDocContext.addImportModuleDto(externalIdDto);
-        parentJob.setContext(importCollectionGDocContext);
-        break;
-
-      case IMPORT_YOUTUBE_PLAYLIST:
-        // Get existing context from Parent Job Entity.
-        ImportCollectionYouTubePlaylistContext ytPlaylistJobContext = parentJob.getContext(
-            ImportCollectionYouTubePlaylistContext.class);
-
-        checkNotNull(ytPlaylistJobContext, "ytPlaylistJobContext should not be null.");
-        // Now update context with new information and then persist it back.
-        ytPlaylistJobContext.addImportModuleDto(externalIdDto);
-        parentJob.setContext(ytPlaylistJobContext);
-        break;
-      default:
-        throw new IllegalStateException("Unsupported parentJob for : " + taskType);
-    }
-  }
-
   /**
    * {@inheritDoc}
    */
   @Override
-  public JobEntity createSyntheticModuleJob(Objectify ofy,
+  public JobEntity createSyntheticModuleJob(Objectify ofy, JobId jobId,
       ImportModuleSyntheticModuleJobContext context, TaskType taskType,
       JobId parentJobId, JobId rootJobId) {
     checkTxnIsRunning(ofy);
     checkJobId(parentJobId);
     checkJobId(rootJobId);
 
-    Text text = new Text(context.toJson());
+    Text text = new Text(context.toCompactJson());
 
     JobEntity jobEntity = new JobEntity.Builder()
+        .jobId(jobId)
         .jobType(JobType.CHILD_JOB)
         .parentJobId(parentJobId)
         .rootJobId(rootJobId)
@@ -364,15 +518,16 @@ public class JobManagerImpl implements JobManager {
    * {@inheritDoc}
    */
   @Override
-  public JobEntity createImportCollectionGoogleCollectionJob(Objectify ofy,
+  public JobEntity createImportCollectionGoogleCollectionJob(Objectify ofy, JobId jobId,
       ImportCollectionGoogleDocContext jobRequest, JobId parentJobId, JobId rootJobId) {
     checkTxnIsRunning(ofy);
     checkJobId(parentJobId);
     checkJobId(rootJobId);
 
-    Text text = new Text(jobRequest.toJson());
+    Text text = new Text(jobRequest.toCompactJson());
 
     JobEntity jobEntity = new JobEntity.Builder()
+        .jobId(jobId)
         .jobType(JobType.CHILD_JOB)
         .parentJobId(parentJobId)
         .rootJobId(rootJobId)
@@ -398,15 +553,16 @@ public class JobManagerImpl implements JobManager {
    * {@inheritDoc}
    */
   @Override
-  public JobEntity createImportCollectionYouTubePlaylistJob(Objectify ofy,
+  public JobEntity createImportCollectionYouTubePlaylistJob(Objectify ofy, JobId jobId,
       ImportCollectionYouTubePlaylistContext jobRequest, JobId parentJobId, JobId rootJobId) {
     checkTxnIsRunning(ofy);
     checkJobId(parentJobId);
     checkJobId(rootJobId);
 
-    Text text = new Text(jobRequest.toJson());
+    Text text = new Text(jobRequest.toCompactJson());
 
     JobEntity jobEntity = new JobEntity.Builder()
+        .jobId(jobId)
         .jobType(JobType.CHILD_JOB)
         .parentJobId(parentJobId)
         .rootJobId(rootJobId)
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.manager.implementation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.LIGHT_BOT_EMAIL;
+import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
+import static com.google.light.server.utils.LightPreconditions.checkPersonId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.persistence.entity.person.PersonEntity;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide cache of {@link PersonEntity} by email and by {@link PersonId}, used by
+ * {@link PersonManagerImpl}. It is bound as a Singleton.
+ *
+ * Well known system identities, like Light Bot, are resolved once and held till
+ * {@link #clear()} is called or they are updated. Other Persons are held for
+ * {@link #TTL_IN_MINUTES} in a cache bounded by number of entries, so updates made by other
+ * processes are seen soon. Missing Persons are not cached, so a new Person is found as soon as it
+ * is created.
+ *
+ * Lookups by {@link PersonId} are made for owner of almost every request, so they are held for
+ * only {@link #ID_TTL_IN_SECONDS}. This avoids reading the owner again for each request in a burst,
+ * while keeping the window in which a stale Person can be seen short.
+ *
+ * Cached entities are shared between requests, so callers should not modify them.
+ *
+ * @author Arjun Satyapal
+ */
+public class PersonCache {
+  public static final int MAX_ENTRIES = 1000;
+  public static final int TTL_IN_MINUTES = 10;
+  public static final int ID_TTL_IN_SECONDS = 60;
+  private static final Set<String> SYSTEM_EMAILS = ImmutableSet.of(LIGHT_BOT_EMAIL);
+
+  private final ConcurrentMap<String, PersonEntity> systemPersons = new MapMaker().makeMap();
+  private final Cache<String, PersonEntity> personsByEmail = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENTRIES)
+      .expireAfterWrite(TTL_IN_MINUTES, TimeUnit.MINUTES)
+      .build();
+  private final Cache<Long, PersonEntity> personsById = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENTRIES)
+      .expireAfterWrite(ID_TTL_IN_SECONDS, TimeUnit.SECONDS)
+      .build();
+
+  /**
+   * Returns cached Person for email, or null if it is not cached.
+   */
+  public PersonEntity getByEmail(String email) {
+    checkNotBlank(email, "email");
+    if (SYSTEM_EMAILS.contains(email)) {
+      return systemPersons.get(email);
+    }
+    return personsByEmail.getIfPresent(email);
+  }
+
+  /**
+   * Returns cached Person for personId, or null if it is not cached.
+   */
+  public PersonEntity getById(PersonId personId) {
+    checkPersonId(personId);
+    return personsById.getIfPresent(personId.getValue());
+  }
+
+  /**
+   * Caches person, which has just been fetched or persisted, against its email and its PersonId.
+   */
+  public void put(PersonEntity person) {
+    checkNotNull(person, "person");
+    PersonId personId = checkPersonId(person.getPersonId());
+    String email = checkNotBlank(person.getEmail(), "email");
+
+    personsById.put(personId.getValue(), person);
+    if (SYSTEM_EMAILS.contains(email)) {
+      systemPersons.put(email, person);
+    } else {
+      personsByEmail.put(email, person);
+    }
+  }
+
+  /**
+   * Removes all the entries, including system identities. Should be called when Persons are
+   * deleted.
+   */
+  public void clear() {
+    systemPersons.clear();
+    personsByEmail.invalidateAll();
+    personsById.invalidateAll();
+  }
+}
@@ -16,6 +16,7 @@
 package com.google.light.server.manager.implementation;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.LIGHT_BOT_EMAIL;
 import static com.google.light.server.utils.LightPreconditions.checkPersonId;
 import static com.google.light.server.utils.LightPreconditions.checkPersonLoggedIn;
 import static com.google.light.server.utils.LightPreconditions.checkValidSession;
@@ -43,13 +44,15 @@ public class PersonManagerImpl implements PersonManager {
   private PersonDao personDao;
   private SessionManager sessionManager;
   private RequestScopedValues requestScopedValues;
+  private PersonCache personCache;
 
   @Inject
   public PersonManagerImpl(PersonDao personDao, SessionManager sessionManager,
-      RequestScopedValues requestScopedValues) {
+      RequestScopedValues requestScopedValues, PersonCache personCache) {
     this.personDao = checkNotNull(personDao, "personDao");
     this.sessionManager = checkNotNull(sessionManager, "sessionManager");
     this.requestScopedValues = checkNotNull(requestScopedValues, "requestScopedValues");
+    this.personCache = checkNotNull(personCache, "personCache");
   }
 
   /**
@@ -73,7 +76,9 @@ public class PersonManagerImpl implements PersonManager {
       return personByEmail;
     }
 
-    return personDao.put(null, entity);
+    PersonEntity createdPerson = personDao.put(null, entity);
+    personCache.put(createdPerson);
+    return createdPerson;
   }
 
   /**
@@ -97,7 +102,9 @@ public class PersonManagerImpl implements PersonManager {
     // Overriding client side provided email
     updatedEntity.setEmail(sessionManager.getEmail());
     
-    return personDao.put(null, updatedEntity);
+    PersonEntity persistedPerson = personDao.put(null, updatedEntity);
+    personCache.put(persistedPerson);
+    return persistedPerson;
   }
 
   /**
@@ -109,7 +116,16 @@ public class PersonManagerImpl implements PersonManager {
      * We dont check for session validity as this is used for finding person at the time of creating
      * a person.
      */
-    return personDao.get(checkPersonId(personId));
+    PersonEntity person = personCache.getById(checkPersonId(personId));
+    if (person != null) {
+      return person;
+    }
+
+    person = personDao.get(personId);
+    if (person != null) {
+      personCache.put(person);
+    }
+    return person;
   }
 
   /**
@@ -121,7 +137,26 @@ public class PersonManagerImpl implements PersonManager {
      * We dont check for session validity as this is used for finding person at the time of creating
      * a person.
      */
-    return personDao.findByEmail(email);
+    PersonEntity person = personCache.getByEmail(email);
+    if (person != null) {
+      return person;
+    }
+
+    person = personDao.findByEmail(email);
+    if (person != null) {
+      personCache.put(person);
+    }
+    return person;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PersonEntity getLightBot() {
+    PersonEntity lightBot = findByEmail(LIGHT_BOT_EMAIL);
+    checkNotNull(lightBot, "lightBot is missing");
+    return lightBot;
   }
 
   /**
@@ -143,6 +178,6 @@ public class PersonManagerImpl implements PersonManager {
     if (personId == null) {
       return null;
     }
-    return personDao.get(personId);
+    return get(personId);
   }
 }
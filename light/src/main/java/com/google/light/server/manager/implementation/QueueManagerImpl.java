@@ -16,6 +16,7 @@
 package com.google.light.server.manager.implementation;
 
 import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.light.server.utils.LightPreconditions.checkTxnIsRunning;
 import static com.google.light.server.utils.LightUtils.getURI;
@@ -26,6 +27,8 @@ import com.google.appengine.api.taskqueue.QueueFactory;
 import com.google.appengine.api.taskqueue.RetryOptions;
 import com.google.appengine.api.taskqueue.TaskHandle;
 import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.light.server.constants.HttpHeaderEnum;
 import com.google.light.server.constants.JerseyConstants;
 import com.google.light.server.constants.LightConstants;
@@ -41,6 +44,7 @@ import com.google.light.server.utils.GuiceUtils;
 import com.google.light.server.utils.JsonUtils;
 import com.googlecode.objectify.Objectify;
 import java.net.URI;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -60,10 +64,8 @@ public class QueueManagerImpl implements QueueManager {
   public void enqueueGoogleDocInteractionJob(Objectify ofy, JobId jobId) {
     checkTxnIsRunning(ofy);
 
-    TaskOptions taskOptions = getTaskOptions(GuiceUtils.getOwnerId(),
-        QueueEnum.GDOC_INTERACTION.getRetryOptions(),
-        TaskOptions.Method.PUT, ContentTypeConstants.TEXT_PLAIN,
-        Long.toString(jobId.getValue()), getJobLocation(jobId));
+    TaskOptions taskOptions = getJobTaskOptions(GuiceUtils.getOwnerId(),
+        QueueEnum.GDOC_INTERACTION, jobId);
 
     Queue queue = QueueFactory.getQueue(QueueEnum.GDOC_INTERACTION.getName());
     TaskHandle taskHandle = queue.add(taskOptions);
@@ -72,6 +74,39 @@ public class QueueManagerImpl implements QueueManager {
         + taskHandle);
   }
 
+  /**
+   * Returns TaskOptions for a task which will execute the Job with jobId.
+   */
+  private TaskOptions getJobTaskOptions(PersonId ownerId, QueueEnum queue, JobId jobId) {
+    return getTaskOptions(ownerId, queue.getRetryOptions(),
+        TaskOptions.Method.PUT, ContentTypeConstants.TEXT_PLAIN,
+        Long.toString(jobId.getValue()), getJobLocation(jobId));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void enqueueJobs(Objectify ofy, ListMultimap<QueueEnum, JobId> jobIdsByQueue) {
+    checkTxnIsRunning(ofy);
+    checkNotNull(jobIdsByQueue, "jobIdsByQueue");
+    checkArgument(jobIdsByQueue.size() <= LightConstants.MAX_TRANSACTIONAL_TASKS,
+        "Only " + LightConstants.MAX_TRANSACTIONAL_TASKS + " tasks can be added in a transaction, "
+            + "but found " + jobIdsByQueue.size());
+    PersonId ownerId = GuiceUtils.getOwnerId();
+    for (QueueEnum currQueue : jobIdsByQueue.keySet()) {
+      List<JobId> jobIds = jobIdsByQueue.get(currQueue);
+      List<TaskOptions> tasks = Lists.newArrayListWithCapacity(jobIds.size());
+      for (JobId currJobId : jobIds) {
+        tasks.add(getJobTaskOptions(ownerId, currQueue, currJobId));
+      }
+
+      Queue queue = QueueFactory.getQueue(currQueue.getName());
+      queue.add(ofy.getTxn(), tasks);
+      logger.info("Enqueued " + jobIds.size() + " jobs in " + currQueue + " : " + jobIds);
+    }
+  }
+
   /**
    * @param jobId
    * @param retryOptions
@@ -101,13 +136,12 @@ public class QueueManagerImpl implements QueueManager {
    * {@inheritDoc}
    */
   @Override
-  public void enqueuePollingJob(Objectify ofy, JobId jobId) {
+  public void enqueuePollingJob(Objectify ofy, JobId jobId, long countdownMillis) {
     checkTxnIsRunning(ofy);
 
-    TaskOptions taskOptions = getTaskOptions(GuiceUtils.getOwnerId(),
-        QueueEnum.LIGHT_POLLING.getRetryOptions(),
-        TaskOptions.Method.PUT, ContentTypeConstants.TEXT_PLAIN,
-        Long.toString(jobId.getValue()), getJobLocation(jobId));
+    TaskOptions taskOptions = getJobTaskOptions(GuiceUtils.getOwnerId(),
+        QueueEnum.LIGHT_POLLING, jobId)
+        .countdownMillis(countdownMillis);
 
     Queue queue = QueueFactory.getQueue(QueueEnum.LIGHT_POLLING.getName());
     TaskHandle taskHandle = queue.add(taskOptions);
@@ -120,10 +154,7 @@ public class QueueManagerImpl implements QueueManager {
   @Override
   public void enqueueLightJob(Objectify ofy, JobId jobId) {
     checkTxnIsRunning(ofy);
-    TaskOptions taskOptions = getTaskOptions(GuiceUtils.getOwnerId(),
-        QueueEnum.LIGHT.getRetryOptions(),
-        TaskOptions.Method.PUT, ContentTypeConstants.TEXT_PLAIN,
-        Long.toString(jobId.getValue()), getJobLocation(jobId));
+    TaskOptions taskOptions = getJobTaskOptions(GuiceUtils.getOwnerId(), QueueEnum.LIGHT, jobId);
 
     Queue queue = QueueFactory.getQueue(QueueEnum.LIGHT.getName());
     TaskHandle taskHandle = queue.add(taskOptions);
@@ -135,10 +166,7 @@ public class QueueManagerImpl implements QueueManager {
    */
   @Override
   public void enqueueLightJobWithoutTxn(JobId jobId) {
-    TaskOptions taskOptions = getTaskOptions(GuiceUtils.getOwnerId(),
-        QueueEnum.LIGHT.getRetryOptions(),
-        TaskOptions.Method.PUT, ContentTypeConstants.TEXT_PLAIN,
-        Long.toString(jobId.getValue()), getJobLocation(jobId));
+    TaskOptions taskOptions = getJobTaskOptions(GuiceUtils.getOwnerId(), QueueEnum.LIGHT, jobId);
 
     Queue queue = QueueFactory.getQueue(QueueEnum.LIGHT.getName());
     TaskHandle taskHandle = queue.add(taskOptions);
@@ -155,7 +183,7 @@ public class QueueManagerImpl implements QueueManager {
     TaskOptions taskOptions = getTaskOptions(GuiceUtils.getOwnerId(),
         QueueEnum.LIGHT_NOTIFICATIONS.getRetryOptions(),
         TaskOptions.Method.POST, ContentTypeConstants.TEXT_PLAIN,
-        notification.toJson(),
+        notification.toCompactJson(),
         getURI(JerseyConstants.URI_RESOURCE_PATH_NOTIFICATION_JOB));
 
     taskOptions.header(HttpHeaderEnum.LIGHT_NOTIIFCATION_TYPE.get(), notification.getType().name());
@@ -174,8 +202,7 @@ public class QueueManagerImpl implements QueueManager {
     checkTxnIsRunning(ofy);
 
     PersonManager personManager = GuiceUtils.getInstance(PersonManager.class);
-    PersonEntity lightBot = personManager.findByEmail(LightConstants.LIGHT_BOT_EMAIL);
-    checkNotNull(lightBot, "lightBot is missing");
+    PersonEntity lightBot = personManager.getLightBot();
     
     RetryOptions retryOptions = QueueEnum.SEARCH_INDEX.getRetryOptions();
     TaskOptions taskOptions = getTaskOptions(lightBot.getPersonId(),
@@ -193,8 +220,7 @@ public class QueueManagerImpl implements QueueManager {
     checkTxnIsRunning(ofy);
 
     PersonManager personManager = GuiceUtils.getInstance(PersonManager.class);
-    PersonEntity lightBot = personManager.findByEmail(LightConstants.LIGHT_BOT_EMAIL);
-    checkNotNull(lightBot, "lightBot is missing");
+    PersonEntity lightBot = personManager.getLightBot();
     
     RetryOptions retryOptions = QueueEnum.SEARCH_INDEX_GSS.getRetryOptions();
     TaskOptions taskOptions = getTaskOptions(lightBot.getPersonId(),
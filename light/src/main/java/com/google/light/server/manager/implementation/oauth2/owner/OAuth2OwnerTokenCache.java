@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.manager.implementation.oauth2.owner;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.OAUTH2_TOKEN_REFRESH_WINDOW_IN_MILLIS;
+import static com.google.light.server.utils.LightPreconditions.checkPersonId;
+import static com.google.light.server.utils.LightUtils.getCurrentTimeInMillis;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.light.server.constants.OAuth2ProviderService;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.persistence.entity.oauth2.owner.OAuth2OwnerTokenEntity;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide cache of {@link OAuth2OwnerTokenEntity}, keyed by {@link PersonId} and
+ * {@link OAuth2ProviderService}. It is bound as a Singleton.
+ *
+ * A token is refreshed when it is going to expire within refreshWindowInMillis, so callers always
+ * get a token which can be used for a while. When many threads ask for same token, only one of
+ * them loads or refreshes it and others wait for it. Cache is bounded by number of entries, and
+ * entries which have not been used for an hour are evicted.
+ *
+ * Tokens are not shared across processes, so a process can keep using a token for some time after
+ * another process has refreshed or deleted it. Both of them remain valid till they expire.
+ *
+ * @author Arjun Satyapal
+ */
+public class OAuth2OwnerTokenCache {
+  public static final int MAX_ENTRIES = 1000;
+
+  private final Cache<String, TokenHolder> cache;
+  private final long refreshWindowInMillis;
+
+  @Inject
+  public OAuth2OwnerTokenCache() {
+    this(MAX_ENTRIES, OAUTH2_TOKEN_REFRESH_WINDOW_IN_MILLIS);
+  }
+
+  public OAuth2OwnerTokenCache(int maxEntries, long refreshWindowInMillis) {
+    checkArgument(maxEntries > 0, "maxEntries should be positive.");
+    checkArgument(refreshWindowInMillis >= 0, "refreshWindowInMillis should not be negative.");
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterAccess(1, TimeUnit.HOURS)
+        .build();
+    this.refreshWindowInMillis = refreshWindowInMillis;
+  }
+
+  /**
+   * Source of tokens for {@link OAuth2OwnerTokenCache}. Methods are called while other callers for
+   * the same key are waiting.
+   */
+  public static interface TokenSource {
+    /**
+     * Loads token from Datastore. Returns null if Person does not have a token.
+     */
+    public OAuth2OwnerTokenEntity load();
+
+    /**
+     * Returns token which should be used in place of token which is going to expire.
+     */
+    public OAuth2OwnerTokenEntity refresh(OAuth2OwnerTokenEntity expiringToken);
+  }
+
+  /**
+   * Returns token for personId and providerService. Token is loaded from tokenSource if it is not
+   * cached, and is refreshed using tokenSource if it is going to expire. Returns null if
+   * tokenSource does not have a token.
+   */
+  public OAuth2OwnerTokenEntity get(PersonId personId, OAuth2ProviderService providerService,
+      TokenSource tokenSource) {
+    checkNotNull(tokenSource, "tokenSource");
+    return getHolder(createKey(personId, providerService)).get(tokenSource);
+  }
+
+  /**
+   * Replaces cached token with token, which has just been persisted.
+   */
+  public void put(OAuth2OwnerTokenEntity token) {
+    checkNotNull(token, "token");
+    getHolder(createKey(token.getPersonId(), token.getProviderService())).set(token);
+  }
+
+  /**
+   * Removes token for personId and providerService, so that next call loads it again.
+   */
+  public void invalidate(PersonId personId, OAuth2ProviderService providerService) {
+    cache.invalidate(createKey(personId, providerService));
+  }
+
+  /**
+   * Removes all the entries.
+   */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  private TokenHolder getHolder(String key) {
+    TokenHolder holder = cache.getIfPresent(key);
+    if (holder != null) {
+      return holder;
+    }
+
+    TokenHolder newHolder = new TokenHolder();
+    holder = cache.asMap().putIfAbsent(key, newHolder);
+    return holder != null ? holder : newHolder;
+  }
+
+  private boolean isExpiring(OAuth2OwnerTokenEntity token) {
+    return token.getExpiresInMillis() - refreshWindowInMillis <= getCurrentTimeInMillis();
+  }
+
+  private static String createKey(PersonId personId, OAuth2ProviderService providerService) {
+    checkPersonId(personId);
+    checkNotNull(providerService, "providerService");
+    return personId.getValue() + ":" + providerService.name();
+  }
+
+  /**
+   * Holds the token for a key. Loads and refreshes are done while holding its lock, so concurrent
+   * callers for same key wait for the first one instead of repeating it.
+   */
+  private class TokenHolder {
+    private volatile OAuth2OwnerTokenEntity token;
+
+    @SuppressWarnings("synthetic-access")
+    public OAuth2OwnerTokenEntity get(TokenSource tokenSource) {
+      OAuth2OwnerTokenEntity current = token;
+      if (current != null && !isExpiring(current)) {
+        return current;
+      }
+
+      synchronized (this) {
+        if (token == null) {
+          token = tokenSource.load();
+          if (token == null) {
+            return null;
+          }
+        }
+
+        if (isExpiring(token)) {
+          token = checkNotNull(tokenSource.refresh(token), "refreshed token");
+        }
+        return token;
+      }
+    }
+
+    public synchronized void set(OAuth2OwnerTokenEntity token) {
+      this.token = token;
+    }
+  }
+}
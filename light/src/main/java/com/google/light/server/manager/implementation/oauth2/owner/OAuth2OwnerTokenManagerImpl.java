@@ -25,6 +25,7 @@ import com.google.light.server.utils.GuiceUtils;
 
 import com.google.light.server.exception.unchecked.MissingOwnerCredentialException;
 
+import com.google.api.client.auth.oauth2.ClientParametersAuthentication;
 import com.google.api.client.auth.oauth2.RefreshTokenRequest;
 import com.google.api.client.auth.oauth2.TokenResponse;
 import com.google.api.client.auth.oauth2.TokenResponseException;
@@ -41,8 +42,11 @@ import com.google.inject.assistedinject.Assisted;
 import com.google.light.server.constants.LightEnvEnum;
 import com.google.light.server.constants.OAuth2ProviderService;
 import com.google.light.server.dto.oauth2.owner.OAuth2OwnerTokenDto;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.exception.unchecked.httpexception.PersonLoginRequiredException;
 import com.google.light.server.exception.unchecked.httpexception.UnauthorizedException;
 import com.google.light.server.manager.implementation.oauth2.consumer.OAuth2ConsumerCredentialManagerFactory;
+import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenCache.TokenSource;
 import com.google.light.server.manager.interfaces.OAuth2ConsumerCredentialManager;
 import com.google.light.server.manager.interfaces.OAuth2OwnerTokenManager;
 import com.google.light.server.persistence.dao.OAuth2OwnerTokenDao;
@@ -67,12 +71,13 @@ public class OAuth2OwnerTokenManagerImpl implements OAuth2OwnerTokenManager {
   private OAuth2OwnerTokenDao dao;
   private HttpTransport httpTransport;
   private JsonFactory jsonFactory;
+  private OAuth2OwnerTokenCache tokenCache;
   private OAuth2OwnerTokenEntity entity;
 
   @Inject
   public <D extends AbstractOAuth2TokenInfo<D>> OAuth2OwnerTokenManagerImpl(
       OAuth2OwnerTokenDao ownerTokenDao, HttpTransport httpTransport, JsonFactory jsonFactory,
-      @Assisted OAuth2ProviderService providerService) {
+      OAuth2OwnerTokenCache tokenCache, @Assisted OAuth2ProviderService providerService) {
     this.providerService = checkNotNull(providerService, "providerService");
 
     // // TODO(arjuns): Add test for this.
@@ -86,6 +91,7 @@ public class OAuth2OwnerTokenManagerImpl implements OAuth2OwnerTokenManager {
     this.dao = checkNotNull(ownerTokenDao, "ownerTokenDao");
     this.httpTransport = checkNotNull(httpTransport, "httpTransport");
     this.jsonFactory = checkNotNull(jsonFactory, "jsonFactory");
+    this.tokenCache = checkNotNull(tokenCache, "tokenCache");
   }
 
   /**
@@ -93,40 +99,63 @@ public class OAuth2OwnerTokenManagerImpl implements OAuth2OwnerTokenManager {
    */
   @Override
   public OAuth2OwnerTokenEntity get() {
-    if (entity == null) {
-      // Try to fetch.
-      this.entity = dao.getByProviderService(providerService);
+    if (entity != null && !entity.hasExpired()) {
+      return entity;
+    }
 
-      // If it is still null, then return.
-      if (this.entity == null) {
-        throw new MissingOwnerCredentialException(GuiceUtils.getOwnerId(), providerService);
-      }
+    final PersonId ownerId = GuiceUtils.getOwnerId();
+    if (ownerId == null) {
+      throw new PersonLoginRequiredException("Owner is not logged in.");
     }
 
-    /*
-     * Unfortunately without doing lot of duplication of code, we cannot avoid testing this.
-     * For unit-test values are fetched from a file. So they will eventually expire. And we dont
-     * want to talk to Google in UNIT_TEST environment. So for UNIT_TEST environemtn, we will
-     * skip the refresh procedure.
-     */
-    if (LightEnvEnum.getLightEnv() != LightEnvEnum.UNIT_TEST) {
-      // TODO(arjuns): Add test for this to ensure this is called.
-      // If entity hasExpired, then refresh it.
-
-      if (entity.hasExpired()) {
-        entity = refresh();
-        checkNotNull(entity, "After refresh, entity should not be null.");
+    // Token is fetched from Datastore or refreshed only if process wide cache cannot serve it.
+    OAuth2OwnerTokenEntity token = tokenCache.get(ownerId, providerService, new TokenSource() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public OAuth2OwnerTokenEntity load() {
+        return dao.getByProviderService(providerService);
+      }
+
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public OAuth2OwnerTokenEntity refresh(OAuth2OwnerTokenEntity expiringToken) {
+        if (!isRefreshEnabled()) {
+          return expiringToken;
+        }
+
+        entity = expiringToken;
+        OAuth2OwnerTokenEntity refreshedToken = OAuth2OwnerTokenManagerImpl.this.refresh();
+        checkNotNull(refreshedToken, "After refresh, entity should not be null.");
         Preconditions.checkArgument(
-            !entity.hasExpired(),
+            !refreshedToken.hasExpired(),
             "After refresh, entity should not be in expired state. This happened for PersonId : "
-                + entity.getPersonId() + " and ProviderService = "
-                + entity.getProviderService());
+                + refreshedToken.getPersonId() + " and ProviderService = "
+                + refreshedToken.getProviderService());
+        return refreshedToken;
       }
+    });
+
+    // Person has not authorized Light for this providerService.
+    if (token == null) {
+      throw new MissingOwnerCredentialException(ownerId, providerService);
     }
 
+    this.entity = token;
     return this.entity;
   }
 
+  /**
+   * Returns true if tokens which are about to expire should be refreshed.
+   * 
+   * Unfortunately without doing lot of duplication of code, we cannot avoid testing this.
+   * For unit-test values are fetched from a file. So they will eventually expire. And we dont
+   * want to talk to Google in UNIT_TEST environment. So for UNIT_TEST environemtn, we will
+   * skip the refresh procedure.
+   */
+  protected boolean isRefreshEnabled() {
+    return LightEnvEnum.getLightEnv() != LightEnvEnum.UNIT_TEST;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -135,6 +164,7 @@ public class OAuth2OwnerTokenManagerImpl implements OAuth2OwnerTokenManager {
     checkArgument(providerService == entity.getProviderService(), "TokenManager for "
         + providerService + " was used to persist Token of type " + entity.getProviderService());
     this.entity = dao.put(null, entity);
+    tokenCache.put(this.entity);
     return this.entity;
   }
 
@@ -164,17 +194,12 @@ public class OAuth2OwnerTokenManagerImpl implements OAuth2OwnerTokenManager {
           + entity.getPersonId() + "].");
       checkNotNull(entity, "entity should not be null.");
 
-      OAuth2ConsumerCredentialManagerFactory consumerCredFactory = getInstance(
-          OAuth2ConsumerCredentialManagerFactory.class);
-      OAuth2ConsumerCredentialManager cosumerCredManager =
-          consumerCredFactory.create(providerService.getProvider());
-
       RefreshTokenRequest refreshRequest = new RefreshTokenRequest(
           httpTransport,
           jsonFactory,
           new GenericUrl(providerService.getTokenServerUrl()),
           entity.getRefreshToken())
-          .setClientAuthentication(cosumerCredManager.getClientAuthentication());
+          .setClientAuthentication(getClientAuthentication());
 
       TokenResponse tokenResponse = null;
 
@@ -204,6 +229,17 @@ public class OAuth2OwnerTokenManagerImpl implements OAuth2OwnerTokenManager {
     }
   }
 
+  /**
+   * Returns credentials with which Light authenticates itself to the token server.
+   */
+  protected ClientParametersAuthentication getClientAuthentication() {
+    OAuth2ConsumerCredentialManagerFactory consumerCredFactory = getInstance(
+        OAuth2ConsumerCredentialManagerFactory.class);
+    OAuth2ConsumerCredentialManager cosumerCredManager =
+        consumerCredFactory.create(providerService.getProvider());
+    return cosumerCredManager.getClientAuthentication();
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -246,5 +282,6 @@ public class OAuth2OwnerTokenManagerImpl implements OAuth2OwnerTokenManager {
   @Override
   public void delete() {
     dao.deleteByProviderService(providerService);
+    tokenCache.invalidate(GuiceUtils.getOwnerId(), providerService);
   }
 }
@@ -33,14 +33,17 @@ import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
 
 import java.util.Collection;
 
+import com.google.common.collect.ListMultimap;
 import com.google.light.server.constants.QueueEnum;
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.dto.importresource.ImportBatchWrapper;
 import com.google.light.server.dto.importresource.ImportExternalIdDto;
 import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
 import com.google.light.server.persistence.entity.jobs.JobEntity;
 import com.googlecode.objectify.Objectify;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -54,8 +57,10 @@ import javax.annotation.Nullable;
 public interface JobManager {
   /**
    * This is enqueued by a Batch Job for each google doc that needs to be downloaded and published.
+   * Child Job is created with jobId, which should be reserved by
+   * {@link #reserveChildJobIds(JobId, int)}. If jobId is null, Datastore assigns one.
    */
-  public JobEntity createGoogleDocImportChildJob(Objectify ofy, 
+  public JobEntity createGoogleDocImportChildJob(Objectify ofy, @Nullable JobId jobId,
       ImportModuleGoogleDocJobContext docImportJobRequest, JobId parentJobId, JobId rootJobId);
   
   /**
@@ -68,9 +73,41 @@ public interface JobManager {
    */
   public <D extends AbstractDto<D>> JobEntity enqueueCompleteJob(JobId jobId, D responseDto, String message);
   
+  /**
+   * Records that childJobId of parentJobId has completed. Completions are spread over
+   * shards instead of being written to the parent JobEntity, so children finishing together do
+   * not contend on the parent. Recording same child again is a no-op.
+   * 
+   * @return true if this call recorded the completion.
+   */
+  public boolean recordChildJobCompletion(JobId parentJobId, JobId childJobId);
+
+  /**
+   * Returns number of children of parentJobId for which
+   * {@link #recordChildJobCompletion(JobId, JobId)} was called.
+   */
+  public int countCompletedChildJobs(JobId parentJobId);
+
+  /**
+   * Records completion of childJobId, and if it was the last child to complete, moves parent to
+   * {@link JobState#ALL_CHILDS_COMPLETED} and enqueues it. Parent JobEntity is written only when
+   * all its childs have completed.
+   * 
+   * @throws com.google.light.server.exception.unchecked.taskqueue.ParentNotReadyForChildCompleteNotification
+   *     if parent is still creating its childs.
+   */
+  public void handleChildJobCompletion(JobId parentJobId, JobId childJobId);
+
+  /**
+   * Marks all the childs of parentJob as finished, moves it to
+   * {@link JobState#ALL_CHILDS_COMPLETED}, and enqueues it so that it can resume.
+   */
+  public void markAllChildsComplete(Objectify ofy, JobEntity parentJob);
+
   /**
    * This will enqueue a Job in {@link com.google.light.server.constants.QueueEnum#LIGHT_POLLING}
-   * queue for polling for different resources.
+   * queue which will poll for its childs after
+   * {@link com.google.light.server.constants.LightConstants#CHILD_POLLING_DELAY_MILLIS}.
    * 
    * @param jobId
    * @return
@@ -81,10 +118,35 @@ public interface JobManager {
   
   public void enqueueLightJobWithoutTxn(JobId jobId);
 
+  /**
+   * Enqueues all the jobs in jobIdsByQueue as part of transaction, with as few calls to TaskQueue
+   * as possible. See {@link QueueManager#enqueueJobs(Objectify, ListMultimap)}.
+   */
+  public void enqueueJobs(Objectify ofy, ListMultimap<QueueEnum, JobId> jobIdsByQueue);
+
   
   public void enqueueGoogleDocInteractionJob(Objectify ofy, JobId jobId);
   
   public JobEntity put(@Nullable Objectify ofy, JobEntity jobEntity, ChangeLogEntryPojo changeLog);
+
+  /**
+   * Returns complete change log of a Job, oldest first. JobEntity only keeps recent entries, so
+   * this also reads the archived ones.
+   */
+  public List<ChangeLogEntryPojo> getFullChangeLog(JobId jobId);
+
+  /**
+   * Stores contents of Google Folder being imported by jobId, so that folder is listed only once.
+   * Snapshot is in same entity group as the Job, so it can be stored in the transaction which
+   * updates the Job. It is deleted by {@link #put} once the Job completes or is stopped.
+   */
+  public void putFolderSnapshot(Objectify ofy, JobId jobId, List<GoogleDocInfoDto> gdocInfos);
+
+  /**
+   * Returns documents from fromIndex (inclusive) to toIndex (exclusive) of the snapshot stored by
+   * {@link #putFolderSnapshot}.
+   */
+  public List<GoogleDocInfoDto> getFolderSnapshot(JobId jobId, int fromIndex, int toIndex);
   
   public JobEntity get(Objectify ofy, JobId jobId);
   
@@ -93,16 +155,26 @@ public interface JobManager {
   // For using externalIds.
   public JobId createImportBatchJob(Objectify ofy, ImportBatchWrapper jobRequest, JobState jobState);
   
-  public JobEntity createImportCollectionGoogleCollectionJob(Objectify ofy, ImportCollectionGoogleDocContext jobRequest,
-      JobId parentJobId, JobId rootJobId);
+  /**
+   * Reserves count consecutive JobIds for childs of parentJobId, unless they are already
+   * reserved. Child at index i of parent is then always created with
+   * {@link JobEntity#getReservedChildJobId(int)}, so a retry finds the child created by an earlier
+   * attempt instead of creating another one.
+   * 
+   * @return parent Job with reserved JobIds.
+   */
+  public JobEntity reserveChildJobIds(JobId parentJobId, int count);
+  
+  public JobEntity createImportCollectionGoogleCollectionJob(Objectify ofy, @Nullable JobId jobId,
+      ImportCollectionGoogleDocContext jobRequest, JobId parentJobId, JobId rootJobId);
   
-  public JobEntity createImportCollectionYouTubePlaylistJob(Objectify ofy, 
+  public JobEntity createImportCollectionYouTubePlaylistJob(Objectify ofy, @Nullable JobId jobId,
       ImportCollectionYouTubePlaylistContext jobRequest, JobId parentJobId, JobId rootJobId);
   
   public void enqueueImportChildJob(Objectify ofy, JobId parentJobId, JobId childJobId,
       ImportExternalIdDto childJob, QueueEnum queue);
   
-  public JobEntity createSyntheticModuleJob(Objectify ofy, 
+  public JobEntity createSyntheticModuleJob(Objectify ofy, @Nullable JobId jobId,
       ImportModuleSyntheticModuleJobContext context, TaskType taskType, 
       JobId parentJobId, JobId rootJobId);
   
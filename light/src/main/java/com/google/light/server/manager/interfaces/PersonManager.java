@@ -54,6 +54,14 @@ public interface PersonManager {
    */
   public PersonEntity findByEmail(String email);
 
+  /**
+   * Get PersonEntity for Light Bot, which performs background tasks on behalf of Light. It is
+   * looked up only once per process.
+   * 
+   * @return
+   */
+  public PersonEntity getLightBot();
+
   /**
    * Delete an existing Person.
    * 
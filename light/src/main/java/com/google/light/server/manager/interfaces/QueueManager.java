@@ -15,6 +15,8 @@
  */
 package com.google.light.server.manager.interfaces;
 
+import com.google.common.collect.ListMultimap;
+import com.google.light.server.constants.QueueEnum;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
 
 import com.google.light.server.dto.notifications.AbstractNotification;
@@ -40,11 +42,29 @@ public interface QueueManager {
    */
   public void enqueueGoogleDocInteractionJob(Objectify ofy, JobId jobId);
   
-  public void enqueuePollingJob(Objectify ofy, JobId jobId);
+  /**
+   * Method to enqueue a Job in {@link QueueEnum#LIGHT_POLLING}, which will run after
+   * countdownMillis.
+   */
+  public void enqueuePollingJob(Objectify ofy, JobId jobId, long countdownMillis);
   
   public void enqueueLightJob(Objectify ofy, JobId jobId);
   
   public void enqueueLightJobWithoutTxn(JobId jobId);
+
+  /**
+   * Method to enqueue many Jobs as part of a transaction. Tasks are grouped per queue, and each
+   * queue is added with a single RPC. Tasks are added only if the transaction commits. The limit
+   * is {@link com.google.light.server.constants.LightConstants#MAX_TRANSACTIONAL_TASKS} (5) jobs
+   * per call, so callers fanning out to more childs have to do it in batches of that size, each
+   * in its own transaction.
+   * Like other enqueue methods, this ensures that it was called inside a transaction.
+   * 
+   * @param ofy
+   * @param jobIdsByQueue Jobs to be enqueued, grouped by the queue they should run on.
+   */
+  public void enqueueJobs(Objectify ofy, ListMultimap<QueueEnum, JobId> jobIdsByQueue);
+
   
   public void enqueueSearchIndexTask(Objectify ofy);
   
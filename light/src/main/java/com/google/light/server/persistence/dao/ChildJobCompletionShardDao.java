@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.dao;
+
+import static com.google.light.server.utils.LightPreconditions.checkJobId;
+import static com.google.light.server.utils.ObjectifyUtils.repeatInTransaction;
+
+import com.google.inject.Inject;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.persistence.entity.jobs.ChildJobCompletionShardEntity;
+import com.google.light.server.utils.ObjectifyUtils;
+import com.google.light.server.utils.Transactable;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Objectify;
+import com.googlecode.objectify.ObjectifyService;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * DAO for {@link ChildJobCompletionShardEntity}.
+ *
+ * @author Arjun Satyapal
+ */
+public class ChildJobCompletionShardDao extends
+    AbstractBasicDao<Object, ChildJobCompletionShardEntity> {
+  private static final Logger logger =
+      Logger.getLogger(ChildJobCompletionShardDao.class.getName());
+
+  static {
+    ObjectifyService.register(ChildJobCompletionShardEntity.class);
+  }
+
+  @Inject
+  public ChildJobCompletionShardDao() {
+    super(ChildJobCompletionShardEntity.class);
+  }
+
+  /**
+   * Records completion of childJobId in its shard. Only the shard is touched, so this does not
+   * contend with completions of children on other shards, or with updates to the parent Job.
+   * Recording same child more than once is a no-op.
+   *
+   * @return true if this call recorded the completion.
+   */
+  public boolean recordCompletion(final JobId parentJobId, final JobId childJobId) {
+    checkJobId(parentJobId);
+    checkJobId(childJobId);
+
+    return repeatInTransaction("Recording completion of " + childJobId + " for " + parentJobId,
+        new Transactable<Boolean>() {
+          @SuppressWarnings("synthetic-access")
+          @Override
+          public Boolean run(Objectify ofy) {
+            ChildJobCompletionShardEntity shard =
+                get(ofy, ChildJobCompletionShardEntity.generateKey(parentJobId, childJobId));
+            if (shard == null) {
+              shard = new ChildJobCompletionShardEntity.Builder()
+                  .parentJobId(parentJobId)
+                  .childJobId(childJobId)
+                  .build();
+            }
+
+            if (!shard.addCompletedChildJob(childJobId)) {
+              logger.info("Completion of " + childJobId + " was already recorded.");
+              return false;
+            }
+
+            put(ofy, shard);
+            return true;
+          }
+        });
+  }
+
+  /**
+   * Returns number of children of parentJobId whose completion has been recorded. Shards are
+   * fetched by key, so completions committed before this call are always counted.
+   */
+  public int countCompletions(JobId parentJobId) {
+    Objectify ofy = ObjectifyUtils.nonTransaction();
+    Map<Key<ChildJobCompletionShardEntity>, ChildJobCompletionShardEntity> shards =
+        ofy.get(ChildJobCompletionShardEntity.generateAllKeys(parentJobId));
+
+    int count = 0;
+    for (ChildJobCompletionShardEntity currShard : shards.values()) {
+      count += currShard.getCompletedCount();
+    }
+    return count;
+  }
+}
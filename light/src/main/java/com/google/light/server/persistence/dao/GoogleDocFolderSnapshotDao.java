@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.dao;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.constants.LightConstants.FOLDER_SNAPSHOT_CHUNK_SIZE;
+import static com.google.light.server.utils.LightPreconditions.checkJobId;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
+import com.google.light.server.persistence.entity.jobs.GoogleDocFolderSnapshotEntity;
+import com.google.light.server.persistence.entity.jobs.JobEntity;
+import com.google.light.server.utils.ObjectifyUtils;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Objectify;
+import com.googlecode.objectify.ObjectifyService;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DAO for {@link GoogleDocFolderSnapshotEntity}.
+ *
+ * @author Arjun Satyapal
+ */
+public class GoogleDocFolderSnapshotDao extends
+    AbstractBasicDao<Object, GoogleDocFolderSnapshotEntity> {
+  static {
+    ObjectifyService.register(GoogleDocFolderSnapshotEntity.class);
+  }
+
+  @Inject
+  public GoogleDocFolderSnapshotDao() {
+    super(GoogleDocFolderSnapshotEntity.class);
+  }
+
+  /**
+   * Stores gdocInfos as snapshot of folder being imported by jobId, with a single batched put.
+   * Chunks are in same entity group as the Job.
+   */
+  public void putSnapshot(Objectify ofy, JobId jobId, List<GoogleDocInfoDto> gdocInfos) {
+    checkJobId(jobId);
+    checkNotNull(gdocInfos, "gdocInfos");
+    if (ofy == null) {
+      ofy = ObjectifyUtils.nonTransaction();
+    } else {
+      checkArgument(ofy.getTxn().isActive());
+    }
+
+    Key<JobEntity> jobKey = JobEntity.generateKey(jobId);
+    List<GoogleDocFolderSnapshotEntity> chunks = Lists.newArrayList();
+    List<List<GoogleDocInfoDto>> partitions =
+        Lists.partition(gdocInfos, FOLDER_SNAPSHOT_CHUNK_SIZE);
+    for (int i = 0; i < partitions.size(); i++) {
+      chunks.add(new GoogleDocFolderSnapshotEntity.Builder()
+          .jobKey(jobKey)
+          .chunkNumber(i + 1)
+          .gdocInfos(partitions.get(i))
+          .build());
+    }
+    ofy.put(chunks);
+  }
+
+  /**
+   * Deletes snapshot of jobId, if any, with a keys only query and a single batched delete.
+   */
+  public void deleteSnapshot(Objectify ofy, JobId jobId) {
+    checkJobId(jobId);
+    if (ofy == null) {
+      ofy = ObjectifyUtils.nonTransaction();
+    } else {
+      checkArgument(ofy.getTxn().isActive());
+    }
+
+    List<Key<GoogleDocFolderSnapshotEntity>> keys = ofy.query(GoogleDocFolderSnapshotEntity.class)
+        .ancestor(JobEntity.generateKey(jobId)).listKeys();
+    if (!keys.isEmpty()) {
+      ofy.delete(keys);
+    }
+  }
+
+  /**
+   * Returns documents from fromIndex (inclusive) to toIndex (exclusive) of snapshot of jobId.
+   * Only the chunks which hold them are fetched, with a single batched get.
+   */
+  public List<GoogleDocInfoDto> getSnapshot(JobId jobId, int fromIndex, int toIndex) {
+    checkJobId(jobId);
+    checkArgument(0 <= fromIndex && fromIndex <= toIndex,
+        "Invalid range : [" + fromIndex + ", " + toIndex + ").");
+    if (fromIndex == toIndex) {
+      return Lists.newArrayList();
+    }
+
+    Key<JobEntity> jobKey = JobEntity.generateKey(jobId);
+    long firstChunk = fromIndex / FOLDER_SNAPSHOT_CHUNK_SIZE + 1;
+    long lastChunk = (toIndex - 1) / FOLDER_SNAPSHOT_CHUNK_SIZE + 1;
+    List<Key<GoogleDocFolderSnapshotEntity>> keys = Lists.newArrayList();
+    for (long chunkNumber = firstChunk; chunkNumber <= lastChunk; chunkNumber++) {
+      keys.add(GoogleDocFolderSnapshotEntity.generateKey(jobKey, chunkNumber));
+    }
+
+    Map<Key<GoogleDocFolderSnapshotEntity>, GoogleDocFolderSnapshotEntity> chunks =
+        ObjectifyUtils.nonTransaction().get(keys);
+    List<GoogleDocInfoDto> gdocInfos = Lists.newArrayList();
+    for (Key<GoogleDocFolderSnapshotEntity> currKey : keys) {
+      GoogleDocFolderSnapshotEntity currChunk = chunks.get(currKey);
+      checkNotNull(currChunk, "Missing snapshot chunk : " + currKey);
+      gdocInfos.addAll(currChunk.getGDocInfos());
+    }
+
+    int offset = (int) (firstChunk - 1) * FOLDER_SNAPSHOT_CHUNK_SIZE;
+    return gdocInfos.subList(fromIndex - offset, toIndex - offset);
+  }
+}
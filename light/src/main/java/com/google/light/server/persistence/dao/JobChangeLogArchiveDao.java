@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.dao;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.persistence.entity.jobs.JobChangeLogArchiveEntity;
+import com.google.light.server.persistence.entity.jobs.JobEntity;
+import com.google.light.server.utils.ObjectifyUtils;
+import com.googlecode.objectify.ObjectifyService;
+import java.util.List;
+
+/**
+ * DAO for {@link JobChangeLogArchiveEntity}.
+ *
+ * @author Arjun Satyapal
+ */
+public class JobChangeLogArchiveDao extends AbstractBasicDao<Object, JobChangeLogArchiveEntity> {
+  static {
+    ObjectifyService.register(JobChangeLogArchiveEntity.class);
+  }
+
+  @Inject
+  public JobChangeLogArchiveDao() {
+    super(JobChangeLogArchiveEntity.class);
+  }
+
+  /**
+   * Returns archived change log entries for jobId, oldest first.
+   */
+  public List<ChangeLogEntryPojo> getArchivedChangeLogs(JobId jobId) {
+    // Ancestor queries are ordered by key, and chunks are numbered in the order they were archived.
+    Iterable<JobChangeLogArchiveEntity> chunks = ObjectifyUtils.getAllChildren(
+        ObjectifyUtils.nonTransaction(), JobEntity.generateKey(jobId),
+        JobChangeLogArchiveEntity.class);
+
+    List<ChangeLogEntryPojo> changeLogs = Lists.newArrayList();
+    for (JobChangeLogArchiveEntity currChunk : chunks) {
+      changeLogs.addAll(currChunk.getChangeLogs());
+    }
+    return changeLogs;
+  }
+}
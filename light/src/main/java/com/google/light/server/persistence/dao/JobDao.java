@@ -32,6 +32,7 @@ import com.google.light.server.persistence.entity.jobs.JobEntity.JobType;
 import com.google.light.server.serveronlypojos.GAEQueryWrapper;
 import com.google.light.server.utils.ObjectifyUtils;
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.KeyRange;
 import com.googlecode.objectify.Objectify;
 import com.googlecode.objectify.ObjectifyService;
 import java.util.Collection;
@@ -66,6 +67,16 @@ public class JobDao extends AbstractBasicDao<Object, JobEntity> {
     return super.get(ofy, key);
   }
 
+  /**
+   * Allocates count consecutive JobIds. Datastore never assigns allocated Ids to other Jobs.
+   * 
+   * @return first of the allocated JobIds.
+   */
+  public JobId allocateJobIds(int count) {
+    KeyRange<JobEntity> keyRange = ObjectifyService.factory().allocateIds(JobEntity.class, count);
+    return new JobId(keyRange.getStart().getId());
+  }
+
   public Map<JobId, JobEntity> findListOfJobs(Collection<JobId> listOfJobIds) {
     List<Key<JobEntity>> listOfKeys = Lists.newArrayListWithCapacity(listOfJobIds.size());
     
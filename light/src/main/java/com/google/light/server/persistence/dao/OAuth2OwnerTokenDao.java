@@ -165,15 +165,16 @@ public class OAuth2OwnerTokenDao extends AbstractBasicDao<OAuth2OwnerTokenDto, O
     requestScopedValuesProvider = getProvider(RequestScopedValues.class);
     RequestScopedValues requestScopedValues = requestScopedValuesProvider.get();
 
-    PersonEntity owner = requestScopedValues.getOwner();
+    // Only key of the owner is needed, so owner is not loaded from datastore.
+    PersonId ownerId = requestScopedValues.getOwnerId();
     
-    if (owner == null) {
+    if (ownerId == null) {
       throw new PersonLoginRequiredException("Owner is not logged in.");
     }
     
     
     Key<OAuth2OwnerTokenEntity> fetchKey = OAuth2OwnerTokenEntity.generateKey(
-        owner.getKey(), providerService.name());
+        PersonEntity.generateKey(ownerId), providerService.name());
 
     return super.get(fetchKey);
   }
@@ -186,7 +187,7 @@ public class OAuth2OwnerTokenDao extends AbstractBasicDao<OAuth2OwnerTokenDto, O
     RequestScopedValues participants = getProvider(RequestScopedValues.class).get();
     
     Key<OAuth2OwnerTokenEntity> fetchKey = OAuth2OwnerTokenEntity.generateKey(
-        participants.getOwner().getKey(), providerService.name());
+        PersonEntity.generateKey(participants.getOwnerId()), providerService.name());
     
     super.delete(fetchKey);
   }
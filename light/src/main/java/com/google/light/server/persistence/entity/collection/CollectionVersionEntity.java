@@ -39,6 +39,10 @@ import javax.persistence.Id;
  * Persistence entity for {@link CollectionDto}.
  * Additional details like Title, Description etc are fetched from the root node.
  * 
+ * Not kept in Objectify global cache, as versions which are still being published can change.
+ * Trees of published versions are cached by
+ * {@link com.google.light.server.dto.pojo.tree.collection.CollectionTreeIndexCache}.
+ * 
  * @author Arjun Satyapal
  */
 @SuppressWarnings("serial")
@@ -181,7 +185,7 @@ public class CollectionVersionEntity extends
     this.version = LightUtils.getWrapperValue(builder.version);
 
     checkNotNull(builder.collectionTree, "collectionTree");
-    this.collectionTreeJson = new Text(builder.collectionTree.toJson());
+    this.collectionTreeJson = new Text(builder.collectionTree.toCompactJson());
     this.collectionKey = builder.collectionKey;
     this.collectionState = builder.collectionState;
     this.contentLicenses = builder.contentLicenses;
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.entity.jobs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.light.server.utils.LightPreconditions.checkJobId;
+import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
+import static com.google.light.server.utils.LightUtils.getWrapper;
+import static com.google.light.server.utils.LightUtils.getWrapperValue;
+
+import com.google.common.collect.Lists;
+import com.google.light.server.constants.LightConstants;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.persistence.entity.AbstractPersistenceEntity;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Unindexed;
+import java.util.List;
+import javax.persistence.Id;
+
+/**
+ * One shard of the completion markers for children of a parent Job. Children are spread over
+ * {@link LightConstants#CHILD_COMPLETION_SHARD_COUNT} shards, each of which is a root entity, so
+ * that concurrent child completions do not contend on a single entity group. A child always
+ * maps to the same shard, so recording its completion again is a no-op.
+ *
+ * @author Arjun Satyapal
+ */
+@SuppressWarnings("serial")
+public class ChildJobCompletionShardEntity extends
+    AbstractPersistenceEntity<ChildJobCompletionShardEntity, Object> {
+  @Id
+  private String id;
+  private Long parentJobId;
+
+  @Unindexed
+  private List<Long> completedChildJobs;
+
+  /**
+   * Method to generate Objectify key for shard of parentJobId to which childJobId belongs.
+   */
+  public static Key<ChildJobCompletionShardEntity> generateKey(JobId parentJobId,
+      JobId childJobId) {
+    return generateKey(parentJobId, getShardIndex(childJobId));
+  }
+
+  /**
+   * Method to generate Objectify key for shardIndex of parentJobId.
+   */
+  public static Key<ChildJobCompletionShardEntity> generateKey(JobId parentJobId, int shardIndex) {
+    return new Key<ChildJobCompletionShardEntity>(ChildJobCompletionShardEntity.class,
+        getShardId(parentJobId, shardIndex));
+  }
+
+  /**
+   * Returns keys for all the shards of parentJobId.
+   */
+  public static List<Key<ChildJobCompletionShardEntity>> generateAllKeys(JobId parentJobId) {
+    List<Key<ChildJobCompletionShardEntity>> keys =
+        Lists.newArrayListWithCapacity(LightConstants.CHILD_COMPLETION_SHARD_COUNT);
+    for (int shardIndex = 0; shardIndex < LightConstants.CHILD_COMPLETION_SHARD_COUNT;
+        shardIndex++) {
+      keys.add(generateKey(parentJobId, shardIndex));
+    }
+    return keys;
+  }
+
+  private static int getShardIndex(JobId childJobId) {
+    return (int) (checkJobId(childJobId).getValue() % LightConstants.CHILD_COMPLETION_SHARD_COUNT);
+  }
+
+  private static String getShardId(JobId parentJobId, int shardIndex) {
+    checkArgument(shardIndex >= 0 && shardIndex < LightConstants.CHILD_COMPLETION_SHARD_COUNT,
+        "Invalid shardIndex : " + shardIndex);
+    return checkJobId(parentJobId).getValue() + ":" + shardIndex;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Key<ChildJobCompletionShardEntity> getKey() {
+    return new Key<ChildJobCompletionShardEntity>(ChildJobCompletionShardEntity.class, id);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object toDto() {
+    throw new UnsupportedOperationException();
+  }
+
+  public JobId getParentJobId() {
+    return getWrapper(parentJobId, JobId.class);
+  }
+
+  public int getCompletedCount() {
+    return completedChildJobs == null ? 0 : completedChildJobs.size();
+  }
+
+  /**
+   * Marks childJobId as completed. Returns false if it was already marked.
+   */
+  public boolean addCompletedChildJob(JobId childJobId) {
+    Long value = getWrapperValue(checkJobId(childJobId));
+    checkArgument(id.equals(getShardId(getParentJobId(), getShardIndex(childJobId))),
+        childJobId + " does not belong to shard " + id);
+
+    if (completedChildJobs == null) {
+      completedChildJobs = Lists.newArrayList();
+    }
+
+    if (completedChildJobs.contains(value)) {
+      return false;
+    }
+    completedChildJobs.add(value);
+    return true;
+  }
+
+  @Override
+  public ChildJobCompletionShardEntity validate() {
+    super.validate();
+
+    checkNotBlank(id, "id");
+    checkJobId(getParentJobId());
+
+    return this;
+  }
+
+  public static class Builder extends AbstractPersistenceEntity.BaseBuilder<Builder> {
+    private JobId parentJobId;
+    private JobId childJobId;
+
+    public Builder parentJobId(JobId parentJobId) {
+      this.parentJobId = parentJobId;
+      return this;
+    }
+
+    /**
+     * Shard is chosen using any child which belongs to it.
+     */
+    public Builder childJobId(JobId childJobId) {
+      this.childJobId = childJobId;
+      return this;
+    }
+
+    @SuppressWarnings("synthetic-access")
+    public ChildJobCompletionShardEntity build() {
+      return new ChildJobCompletionShardEntity(this).validate();
+    }
+  }
+
+  @SuppressWarnings("synthetic-access")
+  private ChildJobCompletionShardEntity(Builder builder) {
+    super(builder, false);
+    this.id = getShardId(builder.parentJobId, getShardIndex(builder.childJobId));
+    this.parentJobId = getWrapperValue(builder.parentJobId);
+  }
+
+  // For Objectify.
+  private ChildJobCompletionShardEntity() {
+    super(null, false);
+  }
+}
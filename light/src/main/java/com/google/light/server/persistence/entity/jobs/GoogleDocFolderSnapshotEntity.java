@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.entity.jobs;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.utils.LightPreconditions.checkNotEmptyCollection;
+import static com.google.light.server.utils.LightPreconditions.checkPositiveLong;
+
+import com.google.appengine.api.datastore.Text;
+import com.google.common.collect.Lists;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
+import com.google.light.server.persistence.entity.AbstractPersistenceEntity;
+import com.google.light.server.utils.JsonUtils;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Parent;
+import com.googlecode.objectify.annotation.Unindexed;
+import java.util.List;
+import javax.persistence.Id;
+
+/**
+ * Chunk of the snapshot of contents of a Google Folder, taken by the {@link JobEntity} which
+ * imports that folder. Folder is listed only once, and the Job then walks this snapshot instead
+ * of listing the folder again. Chunks are numbered from 1, and each holds
+ * {@link com.google.light.server.constants.LightConstants#FOLDER_SNAPSHOT_CHUNK_SIZE} documents
+ * except the last one.
+ *
+ * @author Arjun Satyapal
+ */
+@SuppressWarnings("serial")
+public class GoogleDocFolderSnapshotEntity extends
+    AbstractPersistenceEntity<GoogleDocFolderSnapshotEntity, Object> {
+  @Id
+  private Long chunkNumber;
+
+  @Parent
+  private Key<JobEntity> jobKey;
+
+  // Each document is stored as JSON of its GoogleDocInfoDto.
+  @Unindexed
+  private List<Text> gdocInfos;
+
+  public static Key<GoogleDocFolderSnapshotEntity> generateKey(Key<JobEntity> jobKey,
+      long chunkNumber) {
+    checkNotNull(jobKey, "jobKey");
+    return new Key<GoogleDocFolderSnapshotEntity>(jobKey, GoogleDocFolderSnapshotEntity.class,
+        chunkNumber);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Key<GoogleDocFolderSnapshotEntity> getKey() {
+    return generateKey(jobKey, chunkNumber);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object toDto() {
+    throw new UnsupportedOperationException();
+  }
+
+  public long getChunkNumber() {
+    return chunkNumber;
+  }
+
+  public List<GoogleDocInfoDto> getGDocInfos() {
+    List<GoogleDocInfoDto> list = Lists.newArrayListWithCapacity(gdocInfos.size());
+    for (Text curr : gdocInfos) {
+      list.add(JsonUtils.getDto(curr.getValue(), GoogleDocInfoDto.class));
+    }
+    return list;
+  }
+
+  @Override
+  public GoogleDocFolderSnapshotEntity validate() {
+    super.validate();
+
+    checkPositiveLong(chunkNumber, "chunkNumber");
+    checkNotNull(jobKey, "jobKey");
+    checkNotEmptyCollection(gdocInfos, "gdocInfos");
+
+    return this;
+  }
+
+  public static class Builder extends AbstractPersistenceEntity.BaseBuilder<Builder> {
+    private Long chunkNumber;
+    private Key<JobEntity> jobKey;
+    private List<GoogleDocInfoDto> gdocInfos;
+
+    public Builder chunkNumber(long chunkNumber) {
+      this.chunkNumber = chunkNumber;
+      return this;
+    }
+
+    public Builder jobKey(Key<JobEntity> jobKey) {
+      this.jobKey = jobKey;
+      return this;
+    }
+
+    public Builder gdocInfos(List<GoogleDocInfoDto> gdocInfos) {
+      this.gdocInfos = gdocInfos;
+      return this;
+    }
+
+    @SuppressWarnings("synthetic-access")
+    public GoogleDocFolderSnapshotEntity build() {
+      return new GoogleDocFolderSnapshotEntity(this).validate();
+    }
+  }
+
+  @SuppressWarnings("synthetic-access")
+  private GoogleDocFolderSnapshotEntity(Builder builder) {
+    super(builder, false);
+    this.chunkNumber = builder.chunkNumber;
+    this.jobKey = builder.jobKey;
+    if (builder.gdocInfos != null) {
+      this.gdocInfos = Lists.newArrayListWithCapacity(builder.gdocInfos.size());
+      for (GoogleDocInfoDto curr : builder.gdocInfos) {
+        this.gdocInfos.add(new Text(curr.toCompactJson()));
+      }
+    }
+  }
+
+  // For Objectify.
+  private GoogleDocFolderSnapshotEntity() {
+    super(null, false);
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.entity.jobs;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.light.server.utils.LightPreconditions.checkNotEmptyCollection;
+import static com.google.light.server.utils.LightPreconditions.checkPositiveLong;
+
+import com.google.common.collect.Lists;
+import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
+import com.google.light.server.persistence.entity.AbstractPersistenceEntity;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Parent;
+import com.googlecode.objectify.annotation.Unindexed;
+import java.util.List;
+import javax.persistence.Embedded;
+import javax.persistence.Id;
+
+/**
+ * Chunk of older change log entries of a {@link JobEntity}. JobEntity keeps only its recent
+ * entries, and moves older ones here a chunk at a time. Chunks are numbered from 1 in the order
+ * they were archived, and are never modified once written.
+ *
+ * @author Arjun Satyapal
+ */
+@SuppressWarnings("serial")
+public class JobChangeLogArchiveEntity extends
+    AbstractPersistenceEntity<JobChangeLogArchiveEntity, Object> {
+  @Id
+  private Long chunkNumber;
+
+  @Parent
+  private Key<JobEntity> jobKey;
+
+  @Unindexed
+  @Embedded
+  private List<ChangeLogEntryPojo> changeLogs;
+
+  public static Key<JobChangeLogArchiveEntity> generateKey(Key<JobEntity> jobKey,
+      long chunkNumber) {
+    checkNotNull(jobKey, "jobKey");
+    return new Key<JobChangeLogArchiveEntity>(jobKey, JobChangeLogArchiveEntity.class,
+        chunkNumber);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Key<JobChangeLogArchiveEntity> getKey() {
+    return generateKey(jobKey, chunkNumber);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object toDto() {
+    throw new UnsupportedOperationException();
+  }
+
+  public long getChunkNumber() {
+    return chunkNumber;
+  }
+
+  public List<ChangeLogEntryPojo> getChangeLogs() {
+    return changeLogs;
+  }
+
+  @Override
+  public JobChangeLogArchiveEntity validate() {
+    super.validate();
+
+    checkPositiveLong(chunkNumber, "chunkNumber");
+    checkNotNull(jobKey, "jobKey");
+    checkNotEmptyCollection(changeLogs, "changeLogs");
+
+    return this;
+  }
+
+  public static class Builder extends AbstractPersistenceEntity.BaseBuilder<Builder> {
+    private Long chunkNumber;
+    private Key<JobEntity> jobKey;
+    private List<ChangeLogEntryPojo> changeLogs;
+
+    public Builder chunkNumber(long chunkNumber) {
+      this.chunkNumber = chunkNumber;
+      return this;
+    }
+
+    public Builder jobKey(Key<JobEntity> jobKey) {
+      this.jobKey = jobKey;
+      return this;
+    }
+
+    public Builder changeLogs(List<ChangeLogEntryPojo> changeLogs) {
+      this.changeLogs = changeLogs;
+      return this;
+    }
+
+    @SuppressWarnings("synthetic-access")
+    public JobChangeLogArchiveEntity build() {
+      return new JobChangeLogArchiveEntity(this).validate();
+    }
+  }
+
+  @SuppressWarnings("synthetic-access")
+  private JobChangeLogArchiveEntity(Builder builder) {
+    super(builder, false);
+    this.chunkNumber = builder.chunkNumber;
+    this.jobKey = builder.jobKey;
+    if (builder.changeLogs != null) {
+      this.changeLogs = Lists.newArrayList(builder.changeLogs);
+    }
+  }
+
+  // For Objectify.
+  private JobChangeLogArchiveEntity() {
+    super(null, false);
+  }
+}
@@ -16,7 +16,9 @@
 package com.google.light.server.persistence.entity.jobs;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
 import static com.google.light.server.utils.LightPreconditions.checkNull;
 import static com.google.light.server.utils.LightUtils.convertListOfValuesToWrapperList;
@@ -27,17 +29,27 @@ import static com.google.light.server.utils.LightUtils.isCollectionEmpty;
 
 import com.google.appengine.api.datastore.Text;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.light.server.annotations.ObjectifyQueryField;
 import com.google.light.server.annotations.ObjectifyQueryFieldName;
+import com.google.light.server.constants.LightConstants;
 import com.google.light.server.dto.AbstractDto;
+import com.google.light.server.dto.importresource.ImportBatchWrapper;
+import com.google.light.server.dto.importresource.ImportExternalIdDto;
+import com.google.light.server.dto.importresource.ImportExternalIdListContext;
 import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.jobs.handlers.collectionjobs.gdoccollection.ImportCollectionGoogleDocContext;
+import com.google.light.server.jobs.handlers.collectionjobs.youtubeplaylist.ImportCollectionYouTubePlaylistContext;
 import com.google.light.server.persistence.entity.AbstractPersistenceEntity;
 import com.google.light.server.utils.JsonUtils;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.Unindexed;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import javax.persistence.Embedded;
 import javax.persistence.Id;
 
@@ -54,9 +66,32 @@ public class JobEntity extends AbstractPersistenceEntity<JobEntity, Object> {
   private Long jobId;
   private Long parentJobId;
   private Long rootJobId;
+  // Child ids are never queried. Indexing them made each put cost one index row per child.
+  @Unindexed
   private List<Long> childJobs;
+  @Unindexed
   private List<Long> finishedChildJobs;
 
+  // Stored, so that a parent can tell whether its childs are complete without going through
+  // child ids. Null for Jobs persisted before this was added.
+  @Unindexed
+  private Integer pendingChildJobCount;
+
+  // Number of times this Job has polled for its childs. Null if it has never polled.
+  @Unindexed
+  private Integer childPollCount;
+
+  // JobIds reserved for childs. Child at index i is created with firstReservedChildJobId + i, so
+  // that a retry finds it. See getReservedChildJobId.
+  @Unindexed
+  private Long firstReservedChildJobId;
+  @Unindexed
+  private Integer reservedChildJobIdCount;
+
+  // Indexes over childJobs and finishedChildJobs for O(1) membership. Built lazily.
+  private transient Set<Long> childJobSet;
+  private transient Set<Long> finishedChildJobSet;
+
   @ObjectifyQueryFieldName("ownerId")
   public static final String OFY_JOB_OWNER_QUERY_STRING = "ownerId = ";
 
@@ -85,10 +120,30 @@ public class JobEntity extends AbstractPersistenceEntity<JobEntity, Object> {
   private Text context;
   private Text response;
 
+  // Childs appended to context since it was last set. See appendToContext.
+  @Unindexed
+  private List<Text> contextAppends;
+
+  // Typed views of request, context and response, parsed at most once per instance. Views which
+  // were set are written back to their Text in prePersist. Transient, so Objectify ignores them.
+  private transient AbstractDto<?> requestView;
+  private transient AbstractDto<?> contextView;
+  private transient boolean contextViewChanged;
+  private transient AbstractDto<?> responseView;
+  private transient boolean responseViewChanged;
+
+  // Only recent entries are kept here. See compactChangeLog.
   @Unindexed
   @Embedded
   private List<ChangeLogEntryPojo> changeLogs;
 
+  @Unindexed
+  private Long archivedChangeLogChunks;
+
+  // Chunks moved out of changeLogs by this instance, which may not be persisted yet. See
+  // compactChangeLog.
+  private transient List<JobChangeLogArchiveEntity> changeLogArchives;
+
   public static Key<JobEntity> generateKey(JobId jobId) {
     return new Key<JobEntity>(JobEntity.class, jobId.getValue());
   }
@@ -167,84 +222,324 @@ public class JobEntity extends AbstractPersistenceEntity<JobEntity, Object> {
     this.stopReason = checkNotBlank(stopReason, "stopReason string is blank");
   }
 
+  /**
+   * Returns recent change log entries. Older entries are in {@link JobChangeLogArchiveEntity}.
+   */
   public List<ChangeLogEntryPojo> getChangeLogs() {
+    if (changeLogs == null) {
+      changeLogs = Lists.newArrayList();
+    }
     return changeLogs;
   }
 
   public void addToChangeLog(ChangeLogEntryPojo changeLog) {
-    changeLogs.add(changeLog);
+    getChangeLogs().add(checkNotNull(changeLog, "changeLog"));
+  }
+
+  /**
+   * Number of chunks of change log which have been moved to {@link JobChangeLogArchiveEntity}.
+   */
+  public long getArchivedChangeLogChunks() {
+    return archivedChangeLogChunks == null ? 0 : archivedChangeLogChunks;
+  }
+
+  /**
+   * Keeps this entity at a bounded size. Once there are twice
+   * {@link LightConstants#JOB_CHANGE_LOG_CHUNK_SIZE} recent entries, oldest chunk is removed and
+   * kept as a {@link JobChangeLogArchiveEntity}.
+   * 
+   * Returns chunks removed by this instance which may not be persisted yet, and which should be
+   * persisted along with this entity. Earlier chunks are returned again till
+   * {@link #markChangeLogArchivesPersisted()} is called, as this instance no longer has their
+   * entries : if a transaction which persisted a chunk fails, and same instance is persisted
+   * again on retry, then the chunk is persisted again instead of being lost. Chunks have fixed
+   * keys, so persisting them again is harmless.
+   */
+  public List<JobChangeLogArchiveEntity> compactChangeLog() {
+    if (changeLogArchives == null) {
+      changeLogArchives = Lists.newArrayList();
+    }
+
+    if (jobId != null && getChangeLogs().size() >= 2 * LightConstants.JOB_CHANGE_LOG_CHUNK_SIZE) {
+      List<ChangeLogEntryPojo> oldestChunk =
+          changeLogs.subList(0, LightConstants.JOB_CHANGE_LOG_CHUNK_SIZE);
+      long chunkNumber = getArchivedChangeLogChunks() + 1;
+      changeLogArchives.add(new JobChangeLogArchiveEntity.Builder()
+          .jobKey(getKey())
+          .chunkNumber(chunkNumber)
+          .changeLogs(oldestChunk)
+          .build());
+
+      oldestChunk.clear();
+      archivedChangeLogChunks = chunkNumber;
+    }
+    return Collections.unmodifiableList(changeLogArchives);
+  }
+
+  /**
+   * Called once chunks returned by {@link #compactChangeLog()} are known to be persisted.
+   */
+  public void markChangeLogArchivesPersisted() {
+    changeLogArchives = null;
   }
 
   public Text getRequest() {
     return request;
   }
 
+  /**
+   * Returns typed view of request. Request is parsed only once for this instance.
+   */
+  public <D extends AbstractDto<D>> D getRequest(Class<D> clazz) {
+    checkNotNull(request, "request cannot be null.");
+
+    if (!clazz.isInstance(requestView)) {
+      requestView = JsonUtils.getDto(request.getValue(), clazz);
+    }
+    return clazz.cast(requestView);
+  }
+
+  /**
+   * Returns serialized context. Childs appended by {@link #appendToContext} are first merged into
+   * it, which parses the context once.
+   */
   @Deprecated
   public Text getContext() {
+    if (!isCollectionEmpty(contextAppends)) {
+      // View has all the appends merged, so writing it back folds them into context.
+      parseAppendableContext();
+      contextViewChanged = true;
+    }
+    writeBackContextView();
     checkNotNull(context, "Context cannot be null.");
     return context;
   }
 
+  /**
+   * Returns context, along with childs appended by {@link #appendToContext}. Context is parsed
+   * only once for this instance, so all callers share the returned instance. Changes to it are
+   * persisted only after calling {@link #setContext(AbstractDto)}.
+   */
   public <D extends AbstractDto<D>> D getContext(Class<D> clazz) {
+    if (clazz.isInstance(contextView)) {
+      return clazz.cast(contextView);
+    }
+
+    writeBackContextView();
     checkNotNull(context, "Context cannot be null.");
+    D dto = JsonUtils.getDto(context.getValue(), clazz);
+    if (!isCollectionEmpty(contextAppends)) {
+      checkArgument(dto instanceof ImportExternalIdListContext,
+          clazz.getSimpleName() + " does not support appends.");
+      List<ImportExternalIdDto> appended = Lists.newArrayListWithCapacity(contextAppends.size());
+      for (Text currAppend : contextAppends) {
+        appended.add(JsonUtils.getDto(currAppend.getValue(), ImportExternalIdDto.class));
+      }
+      ImportExternalIdDto.mergeIntoList(((ImportExternalIdListContext) dto).getList(), appended);
+    }
 
-    return JsonUtils.getDto(context.getValue(), clazz);
+    contextView = dto;
+    contextViewChanged = false;
+    return dto;
   }
 
+  /**
+   * Replaces context, including any appended childs. So new context should be derived from
+   * {@link #getContext(Class)}.
+   */
   public void setContext(Text context) {
     this.context = checkNotNull(context, "context");
+    this.contextAppends = null;
+    this.contextView = null;
+    this.contextViewChanged = false;
+  }
+
+  /**
+   * Adds importExternalIdDto to an {@link ImportExternalIdListContext} without parsing and
+   * re-serializing the whole context. Cost of adding a child is independent of number of
+   * childs added before. Appends are merged lazily by {@link #getContext(Class)}, and are folded
+   * into context next time it is set.
+   */
+  public void appendToContext(ImportExternalIdDto importExternalIdDto) {
+    checkNotNull(importExternalIdDto, "importExternalIdDto");
+    if (context == null && contextView == null) {
+      checkArgument(taskType == TaskType.IMPORT_BATCH, "Context cannot be null for " + taskType);
+      // Import batch starts without a context.
+      setContext(new ImportBatchWrapper());
+    }
+
+    if (contextAppends == null) {
+      contextAppends = Lists.newArrayList();
+    }
+    contextAppends.add(new Text(importExternalIdDto.toCompactJson()));
+
+    // Keep already parsed view in sync. Any view always has all the appends merged.
+    if (contextView != null) {
+      checkArgument(contextView instanceof ImportExternalIdListContext,
+          contextView.getClass().getSimpleName() + " does not support appends.");
+      ImportExternalIdDto.mergeIntoList(((ImportExternalIdListContext) contextView).getList(),
+          Lists.newArrayList(importExternalIdDto));
+    }
+  }
+
+  /**
+   * Parses context of Jobs which support {@link #appendToContext}, along with the appends.
+   */
+  private ImportExternalIdListContext parseAppendableContext() {
+    switch (taskType) {
+      case IMPORT_BATCH:
+        return getContext(ImportBatchWrapper.class);
+
+      case IMPORT_COLLECTION_GOOGLE_COLLECTION:
+        return getContext(ImportCollectionGoogleDocContext.class);
+
+      case IMPORT_YOUTUBE_PLAYLIST:
+        return getContext(ImportCollectionYouTubePlaylistContext.class);
+
+      default:
+        throw new IllegalStateException(taskType + " does not support appends to context.");
+    }
+  }
+
+  public int getContextAppendCount() {
+    return contextAppends == null ? 0 : contextAppends.size();
   }
 
+  /**
+   * Replaces context with dto, including any appended childs. dto is serialized only when this
+   * entity is persisted, or when raw context is requested.
+   */
   public <D extends AbstractDto<D>> void setContext(D dto) {
     checkNotNull(dto, "dto");
-    setContext(new Text(dto.toJson()));
+    this.contextView = dto;
+    this.contextViewChanged = true;
+    this.contextAppends = null;
   }
 
   public Text getResponse() {
+    writeBackResponseView();
     return response;
   }
 
+  /**
+   * Replaces response with responseDto. Like {@link #setContext(AbstractDto)}, it is serialized
+   * lazily.
+   */
   public <D extends AbstractDto<D>> void setResponse(D responseDto) {
-    Text responseText = new Text(checkNotNull(responseDto).toJson());
-    this.response = responseText;
+    this.responseView = checkNotNull(responseDto, "responseDto");
+    this.responseViewChanged = true;
   }
 
+  /**
+   * Returns typed view of response. Response is parsed only once for this instance.
+   */
   public <D extends AbstractDto<D>> D getResponse(Class<D> clazz) {
+    if (clazz.isInstance(responseView)) {
+      return clazz.cast(responseView);
+    }
+
+    writeBackResponseView();
     checkNotNull(response, "response cannot be null.");
+    D dto = JsonUtils.getDto(response.getValue(), clazz);
+    responseView = dto;
+    responseViewChanged = false;
+    return dto;
+  }
+
+  private void writeBackContextView() {
+    if (!contextViewChanged) {
+      return;
+    }
+
+    // View has all the appends merged, so they are no longer needed.
+    context = new Text(contextView.toCompactJson());
+    contextAppends = null;
+    contextViewChanged = false;
+  }
+
+  private void writeBackResponseView() {
+    if (!responseViewChanged) {
+      return;
+    }
 
-    return JsonUtils.getDto(response.getValue(), clazz);
+    response = new Text(responseView.toCompactJson());
+    responseViewChanged = false;
   }
 
+  /**
+   * Serializes typed views which were set since this entity was loaded or last persisted.
+   * Views which were only read are not serialized again.
+   */
+  @Override
+  protected void prePersist() {
+    super.prePersist();
+    writeBackContextView();
+    writeBackResponseView();
+  }
+
+  /**
+   * Returns childs which have not finished, in the order they were added. O(number of childs).
+   */
   public List<JobId> getPendingChildJobs() {
+    List<JobId> pendingChildJobs = Lists.newArrayListWithCapacity(getPendingChildJobCount());
     if (isCollectionEmpty(childJobs)) {
-      return Lists.newArrayList();
+      return pendingChildJobs;
     }
 
-    List<JobId> pendingChildJobs = convertListOfValuesToWrapperList(childJobs, JobId.class);
-    pendingChildJobs.removeAll(getFinishedChildJobs());
+    Set<Long> finishedSet = getFinishedChildJobSet();
+    for (Long currChildJob : childJobs) {
+      if (!finishedSet.contains(currChildJob)) {
+        pendingChildJobs.add(new JobId(currChildJob));
+      }
+    }
     return pendingChildJobs;
   }
 
+  public int getPendingChildJobCount() {
+    if (pendingChildJobCount == null) {
+      int count = 0;
+      Set<Long> finishedSet = getFinishedChildJobSet();
+      for (Long currChildJob : getChildJobSet()) {
+        if (!finishedSet.contains(currChildJob)) {
+          count++;
+        }
+      }
+      pendingChildJobCount = count;
+    }
+    return pendingChildJobCount;
+  }
+
   public boolean hasPendingChildJobs() {
-    return !isCollectionEmpty(getPendingChildJobs());
+    return getPendingChildJobCount() > 0;
   }
 
   public List<JobId> getChildJobs() {
     return convertListOfValuesToWrapperList(childJobs, JobId.class);
   }
 
+  public int getChildJobCount() {
+    return childJobs == null ? 0 : childJobs.size();
+  }
+
   public boolean hasChildJobs() {
-    return !isCollectionEmpty(getChildJobs());
+    return getChildJobCount() > 0;
   }
 
-  @SuppressWarnings("cast")
   public void addChildJob(JobId jobId) {
+    Long value = checkNotNull(jobId, "jobId").getValue();
+    // Count is updated before the set, as it may be initialized from the set.
+    int pendingCount = getPendingChildJobCount();
+    if (!getChildJobSet().add(value)) {
+      return;
+    }
+
     if (childJobs == null) {
       childJobs = Lists.newArrayList();
     }
+    childJobs.add(value);
 
-    if (!childJobs.contains(getWrapperValue(jobId))) {
-      childJobs.add(((Long) getWrapperValue(jobId)));
+    if (!getFinishedChildJobSet().contains(value)) {
+      pendingChildJobCount = pendingCount + 1;
     }
   }
 
@@ -252,15 +547,72 @@ public class JobEntity extends AbstractPersistenceEntity<JobEntity, Object> {
     return convertListOfValuesToWrapperList(finishedChildJobs, JobId.class);
   }
 
-  @SuppressWarnings("cast")
   public void addFinishedChildJob(JobId jobId) {
+    Long value = checkNotNull(jobId, "jobId").getValue();
+    int pendingCount = getPendingChildJobCount();
+    if (!getFinishedChildJobSet().add(value)) {
+      return;
+    }
+
     if (finishedChildJobs == null) {
       finishedChildJobs = Lists.newArrayList();
     }
+    finishedChildJobs.add(value);
+
+    if (getChildJobSet().contains(value)) {
+      pendingChildJobCount = pendingCount - 1;
+    }
+  }
+
+  private Set<Long> getChildJobSet() {
+    if (childJobSet == null) {
+      childJobSet = childJobs == null ? new HashSet<Long>() : new HashSet<Long>(childJobs);
+    }
+    return childJobSet;
+  }
 
-    if (!finishedChildJobs.contains(getWrapperValue(jobId))) {
-      finishedChildJobs.add(((Long) getWrapperValue(jobId)));
+  private Set<Long> getFinishedChildJobSet() {
+    if (finishedChildJobSet == null) {
+      finishedChildJobSet = finishedChildJobs == null
+          ? new HashSet<Long>() : new HashSet<Long>(finishedChildJobs);
     }
+    return finishedChildJobSet;
+  }
+
+  public int getChildPollCount() {
+    return childPollCount == null ? 0 : childPollCount;
+  }
+
+  /**
+   * Records one more poll for childs, and returns number of polls including this one.
+   */
+  public int incrementChildPollCount() {
+    childPollCount = getChildPollCount() + 1;
+    return childPollCount;
+  }
+
+  public boolean hasReservedChildJobIds() {
+    return firstReservedChildJobId != null;
+  }
+
+  /**
+   * Records count consecutive JobIds starting from firstJobId as reserved for childs of this Job.
+   */
+  public void setReservedChildJobIds(JobId firstJobId, int count) {
+    checkNotNull(firstJobId, "firstJobId");
+    checkArgument(count > 0, "count should be positive.");
+    checkState(!hasReservedChildJobIds(), "Child JobIds are already reserved for " + jobId);
+    this.firstReservedChildJobId = firstJobId.getValue();
+    this.reservedChildJobIdCount = count;
+  }
+
+  /**
+   * Returns JobId reserved for child at index. Same index always returns same JobId.
+   */
+  public JobId getReservedChildJobId(int index) {
+    checkState(hasReservedChildJobIds(), "Child JobIds are not reserved for " + jobId);
+    checkElementIndex(index, reservedChildJobIdCount, "index");
+    return new JobId(firstReservedChildJobId + index);
   }
 
   public PersonId getOwnerId() {
@@ -447,8 +799,11 @@ public class JobEntity extends AbstractPersistenceEntity<JobEntity, Object> {
     this.response = builder.response;
 
     this.stopReason = builder.stopReason;
-    this.childJobs = convertWrapperListToListOfValues(builder.childJobs);
-    this.finishedChildJobs = convertWrapperListToListOfValues(builder.finishedChildJobs);
+    // Duplicates are dropped, as childs are tracked as sets.
+    List<Long> childJobValues = convertWrapperListToListOfValues(builder.childJobs);
+    this.childJobs = Lists.newArrayList(Sets.newLinkedHashSet(childJobValues));
+    List<Long> finishedChildJobValues = convertWrapperListToListOfValues(builder.finishedChildJobs);
+    this.finishedChildJobs = Lists.newArrayList(Sets.newLinkedHashSet(finishedChildJobValues));
     this.ownerId = getWrapperValue(builder.ownerId);
   }
 
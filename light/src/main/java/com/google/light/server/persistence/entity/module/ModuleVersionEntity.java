@@ -42,6 +42,10 @@ import org.joda.time.Instant;
  * 
  * TODO(arjuns): Add test for this class.
  * 
+ * Not kept in Objectify global cache : reserved versions are still modified, and content can be
+ * close to 1MB which does not fit in a memcache value. Pages for published versions are cached
+ * after rendering by {@link com.google.light.server.jersey.resources.RenderedPageCache}.
+ * 
  * @author Arjun Satyapal
  */
 @SuppressWarnings("serial")
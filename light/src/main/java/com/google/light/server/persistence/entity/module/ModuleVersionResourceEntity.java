@@ -25,6 +25,7 @@ import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
 import com.google.light.server.persistence.entity.AbstractPersistenceEntity;
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Cached;
 import com.googlecode.objectify.annotation.Parent;
 import javax.persistence.Embedded;
 import javax.persistence.Id;
@@ -34,8 +35,12 @@ import javax.persistence.Id;
  * 
  * TODO(arjuns): Add test for this class.
  * 
+ * Resources belong to a published module version and are never modified, so this entity is kept
+ * in Objectify global cache.
+ * 
  * @author Arjun Satyapal
  */
+@Cached
 @SuppressWarnings("serial")
 public class ModuleVersionResourceEntity extends
     AbstractPersistenceEntity<ModuleVersionResourceEntity, Object> {
@@ -84,6 +84,12 @@ public abstract class AbstractLightFilter implements Filter {
       }
       
       sessionManager.seedPersonIds(request);
+
+      /*
+       * Creating snapshot of owner and actor once for this request. Rest of the request gets the
+       * same snapshot, so owner is read from datastore at most once.
+       */
+      GuiceUtils.getRequestScopedValues();
     
       // TODO(arjuns) : Add changeLog.
       filterChain.doFilter(request, response);
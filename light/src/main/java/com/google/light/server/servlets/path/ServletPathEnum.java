@@ -16,6 +16,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.light.server.utils.LightPreconditions.checkNotBlank;
 import static com.google.light.server.utils.LightPreconditions.checkNotEmptyCollection;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.light.server.constants.LightEnvEnum;
 import com.google.light.server.exception.unchecked.httpexception.NotFoundException;
@@ -40,6 +41,7 @@ import com.google.light.server.servlets.test.TestServlet;
 import com.google.light.server.servlets.test.oauth2.TestCredentialBackupServlet;
 import com.google.light.server.servlets.test.oauth2.login.FakeLoginServlet;
 import java.util.List;
+import java.util.Map;
 import javax.servlet.http.HttpServlet;
 
 /**
@@ -143,6 +145,12 @@ public enum ServletPathEnum {
              true, false, false, true,
              Lists.newArrayList(FilterPathEnum.API, FilterPathEnum.TEST));
 
+  /**
+   * Paths and roots of all the Servlets, mapped to their {@link ServletPathEnum}. It is built once
+   * when this class is loaded, so lookups on every request cost a single hash of the request URI.
+   */
+  private static final Map<String, ServletPathEnum> MAP_OF_PATHS = createMapOfPaths();
+
   private Class<? extends HttpServlet> clazz;
   private String servletPath;
   // Path when this servlet acts as root for others.
@@ -221,20 +229,30 @@ public enum ServletPathEnum {
     return listOfFilters;
   }
 
-  // TODO(arjuns): Add test for this.
+  /**
+   * Returns {@link ServletPathEnum} whose path or root is same as requestUri. So requestUri can
+   * optionally end with one "/".
+   */
   public static ServletPathEnum getServletPathEnum(String requestUri) {
-    String uri =
-        requestUri.endsWith("/") && !"/".equals(requestUri) ? requestUri.substring(0,
-            requestUri.length() - 1)
-            : requestUri;
+    ServletPathEnum servletPath = MAP_OF_PATHS.get(requestUri);
+    if (servletPath == null) {
+      throw new NotFoundException("ServletPath not found for servletPath[" + requestUri
+          + "].");
+    }
+
+    return servletPath;
+  }
 
+  private static Map<String, ServletPathEnum> createMapOfPaths() {
+    // ImmutableMap.Builder fails on duplicate keys, so two Servlets cannot share a path.
+    ImmutableMap.Builder<String, ServletPathEnum> builder = ImmutableMap.builder();
     for (ServletPathEnum currServletPath : ServletPathEnum.values()) {
-      if (currServletPath.get().equals(uri)) {
-        return currServletPath;
+      builder.put(currServletPath.get(), currServletPath);
+      if (!currServletPath.get().equals(currServletPath.getRoot())) {
+        builder.put(currServletPath.getRoot(), currServletPath);
       }
     }
 
-    throw new NotFoundException("ServletPath not found for servletPath[" + requestUri
-        + "].");
+    return builder.build();
   }
 }
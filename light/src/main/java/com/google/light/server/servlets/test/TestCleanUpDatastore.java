@@ -31,7 +31,11 @@ import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.light.server.constants.LightEnvEnum;
+import com.google.light.server.manager.implementation.PersonCache;
+import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenCache;
+import com.google.light.server.utils.GuiceUtils;
 
 @Deprecated
 @SuppressWarnings("serial")
@@ -81,6 +85,13 @@ public class TestCleanUpDatastore extends HttpServlet {
       }
 
     });
+
+    // Deletes above bypass Objectify, so flush entities cached by Objectify as well.
+    MemcacheServiceFactory.getMemcacheService().clearAll();
+
+    // Deleted Persons and their tokens may still be cached by this process.
+    GuiceUtils.getInstance(PersonCache.class).clear();
+    GuiceUtils.getInstance(OAuth2OwnerTokenCache.class).clear();
     resp.getWriter().println("done.");
   }
 }
@@ -35,9 +35,11 @@ import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpTransport;
+import com.google.appengine.api.ThreadManager;
 import com.google.appengine.api.files.GSFileOptions;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.gdata.client.docs.DocsService;
 import com.google.gdata.data.Entry;
 import com.google.gdata.data.Link;
@@ -50,10 +52,12 @@ import com.google.gdata.data.docs.DocumentListFeed;
 import com.google.gdata.util.ResourceNotFoundException;
 import com.google.inject.Inject;
 import com.google.light.server.constants.HttpHeaderEnum;
+import com.google.light.server.constants.LightConstants;
 import com.google.light.server.constants.google.cloudstorage.GoogleCloudStorageBuckets;
 import com.google.light.server.constants.http.ContentTypeEnum;
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.dto.pages.PageDto;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
 import com.google.light.server.dto.pojo.GoogleDocArchivePojo;
 import com.google.light.server.exception.unchecked.GoogleDocException;
 import com.google.light.server.exception.unchecked.httpexception.NotFoundException;
@@ -68,6 +72,15 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Wrapper for {@link DocsService}.
@@ -172,20 +185,80 @@ public class DocsServiceWrapper extends DocsService {
   }
 
   /**
-   * Get Google Document Info for List of Google Doc ResourceIds;
+   * Get Google Document Info for List of Google Doc ResourceIds. GData does not support batching
+   * for Document Entries, so requests are pipelined with at most
+   * {@link LightConstants#GDATA_GDOC_MAX_CONCURRENT_REQUESTS} in flight.
    * 
-   * @param resourceId
-   * @return
+   * @return Map of ExternalId to its Google Document Info, in same order as resourceIdList.
    */
-  public List<GoogleDocInfoDto> getGoogleDocInfoInBatch(List<GoogleDocResourceId> resourceIdList, 
-      GoogleDocInfoDto.Configuration config) {
-    List<GoogleDocInfoDto> listOfInfo = Lists.newArrayList();
-    for (GoogleDocResourceId currResourceId : resourceIdList) {
-      GoogleDocInfoDto docInfo = getGoogleDocInfo(currResourceId, config);
-      listOfInfo.add(docInfo);
+  public Map<ExternalId, GoogleDocInfoDto> getGoogleDocInfoInBatch(
+      List<GoogleDocResourceId> resourceIdList, GoogleDocInfoDto.Configuration config) {
+    return getGoogleDocInfoInBatch(resourceIdList, config,
+        ThreadManager.currentRequestThreadFactory(),
+        LightConstants.GDATA_GDOC_MAX_CONCURRENT_REQUESTS,
+        LightConstants.GDATA_GDOC_BATCH_TIMEOUT_IN_MILLIS);
+  }
+
+  /**
+   * Same as {@link #getGoogleDocInfoInBatch(List, GoogleDocInfoDto.Configuration)}, but with
+   * threads created by threadFactory, and at most maxConcurrent requests in flight. If any
+   * request fails, or all of them do not finish within timeoutInMillis, then the pending ones are
+   * cancelled and the failure is thrown.
+   */
+  public Map<ExternalId, GoogleDocInfoDto> getGoogleDocInfoInBatch(
+      List<GoogleDocResourceId> resourceIdList, final GoogleDocInfoDto.Configuration config,
+      ThreadFactory threadFactory, int maxConcurrent, long timeoutInMillis) {
+    checkNotNull(resourceIdList, "resourceIdList");
+    checkNotNull(threadFactory, "threadFactory");
+    checkArgument(maxConcurrent > 0, "maxConcurrent should be positive.");
+    Map<ExternalId, GoogleDocInfoDto> mapOfInfo = Maps.newLinkedHashMap();
+    if (resourceIdList.isEmpty()) {
+      return mapOfInfo;
+    }
+
+    int poolSize = Math.min(maxConcurrent, resourceIdList.size());
+    ExecutorService threadExecutor = Executors.newFixedThreadPool(poolSize, threadFactory);
+    try {
+      List<Future<GoogleDocInfoDto>> listOfFutures =
+          Lists.newArrayListWithCapacity(resourceIdList.size());
+      for (final GoogleDocResourceId currResourceId : resourceIdList) {
+        listOfFutures.add(threadExecutor.submit(new Callable<GoogleDocInfoDto>() {
+          @Override
+          public GoogleDocInfoDto call() {
+            return getGoogleDocInfo(currResourceId, config);
+          }
+        }));
+      }
+      threadExecutor.shutdown();
+
+      long deadlineInMillis = System.currentTimeMillis() + timeoutInMillis;
+      for (int index = 0; index < listOfFutures.size(); index++) {
+        GoogleDocResourceId currResourceId = resourceIdList.get(index);
+        long remainingInMillis = Math.max(0, deadlineInMillis - System.currentTimeMillis());
+        try {
+          mapOfInfo.put(currResourceId.getExternalId(),
+              listOfFutures.get(index).get(remainingInMillis, TimeUnit.MILLISECONDS));
+        } catch (ExecutionException e) {
+          // Allowing NotFoundException etc. to pass through as they would for a single fetch.
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          throw new GoogleDocException(cause);
+        } catch (TimeoutException e) {
+          throw new GoogleDocException("Timed out after " + timeoutInMillis
+              + "ms while fetching GoogleDoc resource[" + currResourceId + "].", e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new GoogleDocException(e);
+        }
+      }
+    } finally {
+      // No-op if everything finished. Otherwise stops the ones which are still pending.
+      threadExecutor.shutdownNow();
     }
 
-    return listOfInfo;
+    return mapOfInfo;
   }
 
   @SuppressWarnings("rawtypes")
@@ -16,6 +16,7 @@
 package com.google.light.server.servlets.thirdparty.google.youtube;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.light.server.constants.LightConstants.GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS;
 import static com.google.light.server.servlets.thirdparty.google.youtube.YouTubeUtils.getPlaylistFeedUrl;
 import static com.google.light.server.servlets.thirdparty.google.youtube.YouTubeUtils.getPlaylistSnippetUrl;
@@ -26,6 +27,7 @@ import com.google.light.server.dto.thirdparty.google.youtube.YouTubePlaylistInfo
 
 import com.google.gdata.data.youtube.PlaylistFeed;
 
+import com.google.common.collect.Lists;
 import com.google.gdata.client.youtube.YouTubeService;
 import com.google.gdata.data.youtube.PlaylistEntry;
 import com.google.gdata.data.youtube.VideoEntry;
@@ -34,6 +36,7 @@ import com.google.light.server.dto.thirdparty.google.youtube.YouTubeVideoInfo;
 import com.google.light.server.exception.unchecked.YouTubeException;
 import com.google.light.server.urls.YouTubeUrl;
 import java.net.URL;
+import java.util.List;
 
 /**
  * 
@@ -116,4 +119,51 @@ public class YouTubeServiceWrapper extends YouTubeService {
       throw new YouTubeException(e);
     }
   }
+
+  /**
+   * Returns a single page of videos from a playlist, starting at startIndex (GData indexes start
+   * from 1). Unlike {@link #getYouTubePlayListDetailedInfo(YouTubeUrl)}, which has to follow the
+   * next links, pages fetched this way do not depend on each other.
+   */
+  public PlaylistPage getYouTubePlaylistPage(YouTubeUrl ytUrl, int startIndex, int maxResults) {
+    checkArgument(ytUrl.isPlaylist(), "This method should be called only for playlists."
+        + ytUrl.getExternalId());
+    checkArgument(startIndex > 0, "startIndex should be positive.");
+    try {
+      URL playlistFeedUrl = getPlaylistFeedUrl(ytUrl.getPlaylistId(), startIndex, maxResults);
+      PlaylistFeed playlistFeed = this.getFeed(playlistFeedUrl, PlaylistFeed.class);
+
+      List<YouTubeVideoInfo> listOfVideos = Lists.newArrayList();
+      for (PlaylistEntry currEntry : playlistFeed.getEntries()) {
+        listOfVideos.add(new YouTubeVideoInfo.Builder()
+            .withVideoEntry(currEntry)
+            .build());
+      }
+
+      return new PlaylistPage(listOfVideos, playlistFeed.getTotalResults());
+    } catch (Exception e) {
+      throw new YouTubeException(e);
+    }
+  }
+
+  /**
+   * A page of videos from a playlist, along with total number of videos in that playlist.
+   */
+  public static class PlaylistPage {
+    private final List<YouTubeVideoInfo> listOfVideos;
+    private final int totalResults;
+
+    public PlaylistPage(List<YouTubeVideoInfo> listOfVideos, int totalResults) {
+      this.listOfVideos = checkNotNull(listOfVideos, "listOfVideos");
+      this.totalResults = totalResults;
+    }
+
+    public List<YouTubeVideoInfo> getListOfVideos() {
+      return listOfVideos;
+    }
+
+    public int getTotalResults() {
+      return totalResults;
+    }
+  }
 }
@@ -75,6 +75,15 @@ public class YouTubeUtils {
     return LightUtils.getURL(PLAYLIST_FEED_BASE_URL + "/" + playlistId + "?max-results=" + maxResults);
   }
 
+  /**
+   * Same as {@link #getPlaylistFeedUrl(String, int)}, but for the page which starts at
+   * startIndex. GData indexes start from 1.
+   */
+  public static URL getPlaylistFeedUrl(String playlistId, int startIndex, int maxResults) {
+    return LightUtils.getURL(PLAYLIST_FEED_BASE_URL + "/" + playlistId + "?start-index="
+        + startIndex + "&max-results=" + maxResults);
+  }
+
   /**
    * This returns a GDATA URL which can be used to fetch a Playlist Snippet. Playlist Feed does not
    * containt details for Playlist. Not sure why.
@@ -15,6 +15,7 @@
  */
 package com.google.light.server.utils;
 
+import static com.google.light.server.constants.LightConstants.GCS_BUFFER_SIZE_IN_BYTES;
 import static com.google.light.server.utils.LightUtils.getRandomFileName;
 
 import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
@@ -22,6 +23,7 @@ import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
 import com.google.light.server.constants.FileExtensions;
 
 import com.google.appengine.api.files.AppEngineFile;
+import com.google.appengine.api.files.FileReadChannel;
 import com.google.appengine.api.files.FileService;
 import com.google.appengine.api.files.FileServiceFactory;
 import com.google.appengine.api.files.FileWriteChannel;
@@ -30,6 +32,8 @@ import com.google.appengine.api.files.GSFileOptions.GSFileOptionsBuilder;
 import com.google.common.io.ByteStreams;
 import com.google.light.server.constants.google.cloudstorage.GoogleCloudStorageBuckets;
 import com.google.light.server.constants.http.ContentTypeEnum;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -67,13 +71,19 @@ public class GoogleCloudStorageUtils {
         + ".html");
   }
 
+  /**
+   * Copies inputStream to a new file on GCS. Writes to GCS are buffered with a bounded buffer so
+   * that arbitrarily large inputs can be written without holding them in memory. Caller owns
+   * inputStream and is responsible for closing it.
+   */
   public static String writeFileOnGCS(InputStream inputStream, GSFileOptions gsFileOptions)
       throws IllegalStateException, IOException {
     FileService fileService = FileServiceFactory.getFileService();
     AppEngineFile appengineFile = fileService.createNewGSFile(gsFileOptions);
 
     FileWriteChannel writeChannel = fileService.openWriteChannel(appengineFile, true /* lock */);
-    OutputStream outputStream = Channels.newOutputStream(writeChannel);
+    OutputStream outputStream = new BufferedOutputStream(
+        Channels.newOutputStream(writeChannel), GCS_BUFFER_SIZE_IN_BYTES);
     ByteStreams.copy(inputStream, outputStream);
     outputStream.close();
     writeChannel.closeFinally();
@@ -81,6 +91,20 @@ public class GoogleCloudStorageUtils {
     return appengineFile.getFullPath();
   }
 
+  /**
+   * Opens a file on GCS for streaming reads. Reads are buffered with a bounded buffer so that
+   * callers reading small chunks (e.g. {@link java.util.zip.ZipInputStream}) do not make a call
+   * to GCS for each chunk. Closing returned stream closes underlying channel.
+   */
+  public static InputStream openFileOnGCS(String absoluteFilePath) throws IOException {
+    FileService fileService = FileServiceFactory.getFileService();
+    AppEngineFile file = new AppEngineFile(absoluteFilePath);
+    FileReadChannel readChannel = fileService.openReadChannel(file, false /* lock */);
+
+    return new BufferedInputStream(Channels.newInputStream(readChannel),
+        GCS_BUFFER_SIZE_IN_BYTES);
+  }
+
   public static String getFolderForToday() {
     Instant now = LightUtils.getNow();
 
@@ -19,16 +19,16 @@ package com.google.light.server.utils;
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.dto.AbstractPojo;
 import com.google.light.server.exception.unchecked.JsonException;
-import java.io.StringReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
-import org.codehaus.jackson.map.AnnotationIntrospector;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
 import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
-import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 
 /**
  * Utility class for Json.
@@ -43,61 +43,97 @@ import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 public class JsonUtils {
   // TODO(arjuns): Add javadocs in this class.
   // TODO(arjuns): See if this class can return object only after validation. Same for Xml Utils
-  
+
+  /**
+   * ObjectMappers are expensive to create, but are thread-safe once configured. So these are
+   * created once per process, and are never re-configured after that.
+   */
+  private static final ObjectMapper READER_MAPPER = createReaderMapper();
+  private static final ObjectMapper WRITER_MAPPER = getJsonMapper();
+  private static final ObjectMapper COMPACT_WRITER_MAPPER = createWriterMapper(false);
+
+  private static final ObjectWriter WRITER = WRITER_MAPPER.writer();
+  private static final ObjectWriter PRETTY_WRITER = WRITER_MAPPER.writerWithDefaultPrettyPrinter();
+  private static final ObjectWriter COMPACT_WRITER = COMPACT_WRITER_MAPPER.writer();
+
+  /** Preconfigured readers for each DTO class. ObjectReaders are immutable and thread-safe. */
+  private static final ConcurrentMap<Class<?>, ObjectReader> READERS =
+      new ConcurrentHashMap<Class<?>, ObjectReader>();
+
   public static <D extends AbstractDto<D>> D getDto(String jsonString, Class<D> dtoClass) {
     return getPojo(jsonString, dtoClass).validate();
   }
-  
-  public static <D extends AbstractPojo<D>> D getPojo(String jsonString, Class<D> dtoClass) {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
-    // make serializer use JAXB annotations (only)
-    mapper.getSerializationConfig().withAnnotationIntrospector(introspector);
-    mapper.setVisibilityChecker(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-        .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
-        .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-        .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
-        .withIsGetterVisibility(JsonAutoDetect.Visibility.NONE)
-        .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
 
+  public static <D extends AbstractPojo<D>> D getPojo(String jsonString, Class<D> dtoClass) {
     D pojo = null;
     try {
-      pojo = mapper.readValue(new StringReader(jsonString), dtoClass);
+      pojo = getReader(dtoClass).<D> readValue(jsonString);
     } catch (Exception e) {
       throw new JsonException(e);
     }
-    
+
     return pojo.validate();
   }
 
+  private static ObjectReader getReader(Class<?> clazz) {
+    ObjectReader reader = READERS.get(clazz);
+    if (reader == null) {
+      // Racing threads may create duplicate readers, which is harmless as they are identical.
+      reader = READER_MAPPER.reader(clazz);
+      READERS.putIfAbsent(clazz, reader);
+    }
+
+    return reader;
+  }
+
+  /**
+   * Pretty printed Json. Use {@link #toCompactJson(Object)} for Json which is not read by
+   * humans, e.g. Json which is persisted or sent over wire.
+   */
   public static <T> String toJson(T object) {
     return toJson(object, true);
   }
 
+  public static <T> String toCompactJson(T object) {
+    return writeValueAsString(COMPACT_WRITER, object);
+  }
+
   public static <T> String toJson(T object, boolean prettyPrint) {
-    ObjectMapper mapper = getJsonMapper();
-    
-    ObjectWriter writer = null;
-
-    if (prettyPrint) {
-      writer = mapper.writerWithDefaultPrettyPrinter();
-    } else {
-      writer = mapper.writer();
-    }
+    return writeValueAsString(prettyPrint ? PRETTY_WRITER : WRITER, object);
+  }
+
+  private static <T> String writeValueAsString(ObjectWriter writer, T object) {
     try {
       return writer.writeValueAsString(object);
     } catch (Exception e) {
       throw new JsonException(e);
     }
   }
+
+  private static ObjectMapper createReaderMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    mapper.setVisibilityChecker(mapper.getSerializationConfig().getDefaultVisibilityChecker()
+        .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
+        .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+        .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+        .withIsGetterVisibility(JsonAutoDetect.Visibility.NONE)
+        .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+    return mapper;
+  }
+
   /**
-   * Json Mapper used by both {@link JsonUtils} and {@link com.google.light.server.guice.jersey.JAXBJsonContextResolver}
+   * Json Mapper used by both {@link JsonUtils} and
+   * {@link com.google.light.server.guice.jersey.JAXBJsonContextResolver}.
    */
-  public static  ObjectMapper getJsonMapper() {
+  public static ObjectMapper getJsonMapper() {
+    return createWriterMapper(true /* indentOutput */);
+  }
+
+  private static ObjectMapper createWriterMapper(boolean indentOutput) {
     ObjectMapper mapper = new ObjectMapper();
     mapper.configure(JsonGenerator.Feature.WRITE_NUMBERS_AS_STRINGS, true);
-    mapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
+    mapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, indentOutput);
     mapper.configure(SerializationConfig.Feature.SORT_PROPERTIES_ALPHABETICALLY, true);
     mapper.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
 
@@ -109,6 +145,7 @@ public class JsonUtils {
         .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
     return mapper;
   }
+
   // Utility class.
   private JsonUtils() {
   }
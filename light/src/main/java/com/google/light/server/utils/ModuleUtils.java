@@ -17,12 +17,10 @@ package com.google.light.server.utils;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.light.server.constants.LightConstants.GDATA_GDOC_MAX_RESULTS;
-import static com.google.light.server.httpclient.LightHttpClient.getHeaderValueFromResponse;
+import static com.google.light.server.constants.LightConstants.WEB_PAGE_TITLE_MAX_BYTES;
 import static com.google.light.server.utils.LightUtils.createExternalIdTreeNode;
 import static com.google.light.server.utils.LightUtils.getURI;
 
-import com.google.api.client.http.HttpResponse;
-import com.google.light.server.constants.HttpHeaderEnum;
 import com.google.light.server.dto.module.ModuleType;
 import com.google.light.server.dto.pojo.tree.AbstractTreeNode.TreeNodeType;
 import com.google.light.server.dto.pojo.tree.externaltree.ExternalIdTreeNodeDto;
@@ -35,6 +33,7 @@ import com.google.light.server.dto.thirdparty.google.youtube.YouTubePlaylistInfo
 import com.google.light.server.dto.thirdparty.google.youtube.YouTubeVideoInfo;
 import com.google.light.server.exception.unchecked.InvalidExternalIdException;
 import com.google.light.server.httpclient.LightHttpClient;
+import com.google.light.server.httpclient.WebPageInfo;
 import com.google.light.server.manager.interfaces.ModuleManager;
 import com.google.light.server.persistence.entity.module.ModuleEntity;
 import com.google.light.server.servlets.thirdparty.google.gdoc.DocsServiceWrapper;
@@ -65,7 +64,7 @@ public class ModuleUtils {
         return lihtModuleTitle(externalId);
 
       case LIGHT_SYNTHETIC_MODULE:
-        return getTitleForSyntheticModule(externalId);
+        return fetchTitleForSyntheticModule(externalId);
 
       case YOU_TUBE_VIDEO:
       case YOU_TUBE_PLAYLIST:
@@ -118,30 +117,27 @@ public class ModuleUtils {
   }
 
   /**
-   * @param externalId
-   * @return
+   * Fetches the page for externalId once, to see if it is suitable for Synthetic Module and to
+   * find its title.
    */
-  private static String getTitleForSyntheticModule(ExternalId externalId) {
-    // First see if this ExternalId is suitable for Synthetic Module.
+  private static String fetchTitleForSyntheticModule(ExternalId externalId) {
     try {
       LightHttpClient httpClient = GuiceUtils.getInstance(LightHttpClient.class);
       URI uri = getURI(externalId.getValue());
-      HttpResponse response = httpClient.get(uri);
+      WebPageInfo pageInfo = httpClient.getWebPageInfo(uri, WEB_PAGE_TITLE_MAX_BYTES);
 
-      if (!response.isSuccessStatusCode()) {
+      if (!pageInfo.isSuccess()) {
         throw new InvalidExternalIdException(externalId);
       }
 
-      String xFrameHeader = getHeaderValueFromResponse(response, HttpHeaderEnum.X_FRAME_OPTIONS);
-      if (xFrameHeader != null) {
+      if (!pageInfo.isEmbeddable()) {
         // This module cannot be embedded inside iFrame so it is not allowed for synthetic module.
         throw new InvalidExternalIdException(externalId);
       }
 
       // Current ExternalId is suitable for Synthetic Module.
-      String title = null;
-      title = httpClient.getTitle(response, externalId);
-      return title;
+      String title = pageInfo.getTitle();
+      return title != null ? title : LightUtils.generateNameForExternalId(externalId);
     } catch (Exception e) {
       throw new InvalidExternalIdException(externalId);
     }
@@ -191,29 +187,9 @@ public class ModuleUtils {
    */
   private static ExternalIdTreeNodeDto
       createExternalIdTreeForSyntheticModule(ExternalId externalId) {
-    try {
-      LightHttpClient httpClient = GuiceUtils.getInstance(LightHttpClient.class);
-      URI uri = getURI(externalId.getValue());
-      HttpResponse response = httpClient.get(uri);
-
-      if (!response.isSuccessStatusCode()) {
-        throw new InvalidExternalIdException(externalId);
-      }
-
-      String xFrameHeader = getHeaderValueFromResponse(response, HttpHeaderEnum.X_FRAME_OPTIONS);
-      if (xFrameHeader != null) {
-        // This module cannot be embedded inside iFrame so it is not allowed for synthetic module.
-        throw new InvalidExternalIdException(externalId);
-      }
-
-      // Current ExternalId is suitable for Synthetic Module.
-      String title = null;
-      title = httpClient.getTitle(response, externalId);
-      return createExternalIdTreeNode(externalId, title,
-          TreeNodeType.LEAF_NODE, ContentLicense.DEFAULT_UNKNOWN_LICENSES);
-    } catch (Exception e) {
-      throw new InvalidExternalIdException(externalId);
-    }
+    String title = fetchTitleForSyntheticModule(externalId);
+    return createExternalIdTreeNode(externalId, title,
+        TreeNodeType.LEAF_NODE, ContentLicense.DEFAULT_UNKNOWN_LICENSES);
   }
 
   /**
@@ -19,6 +19,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.light.server.utils.LightUtils.getStackAsString;
 import static com.google.light.server.utils.LightUtils.isCollectionEmpty;
 import static com.google.light.server.utils.LightUtils.wrapIntoRuntimeExceptionAndThrow;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 import java.util.logging.Level;
@@ -36,6 +37,7 @@ import com.googlecode.objectify.Objectify;
 import com.googlecode.objectify.ObjectifyOpts;
 import com.googlecode.objectify.ObjectifyService;
 import com.googlecode.objectify.Query;
+import com.googlecode.objectify.annotation.Cached;
 import com.googlecode.objectify.impl.conv.joda.JodaTimeConverters;
 import java.util.ConcurrentModificationException;
 import java.util.List;
@@ -94,6 +96,13 @@ public class ObjectifyUtils {
         Future<Void> future = ofy.getTxn().commitAsync();
         try {
           future.get();
+        } catch (ExecutionException e) {
+          // Unwrapping so that callers like repeatInTransaction can see
+          // ConcurrentModificationException and retry.
+          logger.severe("Exception while committing(" + commitMsg + ") : "
+              + Throwables.getStackTraceAsString(e));
+          Throwables.propagateIfPossible(e.getCause());
+          wrapIntoRuntimeExceptionAndThrow(e);
         } catch (Exception e) {
           logger.severe("Exception while committing(" + commitMsg + ") : "
               + Throwables.getStackTraceAsString(e));
@@ -115,24 +124,35 @@ public class ObjectifyUtils {
   }
 
   /**
-   * Return a Objectify object with transaction enabled, and caches disabled.
+   * Return a Objectify object with transaction enabled, and session-cache disabled.
+   * Global-cache is enabled so that writes to {@link Cached} entities keep memcache in sync. See
+   * {@link #nonTransaction()}.
    * 
    * @return
    */
   public static Objectify initiateTransaction() {
     ObjectifyOpts opts =
-        getObjectifyOptions(false /* global-cache */, false/* session-cache */, true /* transaction */);
+        getObjectifyOptions(true /* global-cache */, false/* session-cache */,
+            true /* transaction */);
     return ObjectifyService.begin(opts);
   }
 
   /**
-   * Return a Objectify object with all global-cache, session-cache and tx disabled.
+   * Return a Objectify object with session-cache and tx disabled.
+   * 
+   * Global-cache is enabled, but Objectify uses memcache only for entity types annotated with
+   * {@link Cached}. So caching is decided per entity type : immutable entities like
+   * {@link com.google.light.server.persistence.entity.module.ModuleVersionResourceEntity} are
+   * cached, whereas mutable entities like
+   * {@link com.google.light.server.persistence.entity.jobs.JobEntity} always go to datastore.
+   * Global-cache should not be disabled for writes, else memcache will serve stale
+   * {@link Cached} entities.
    * 
    * @return
    */
   public static Objectify nonTransaction() {
     ObjectifyOpts opts =
-        getObjectifyOptions(false/* global-cache */, false/* session-cache */,
+        getObjectifyOptions(true/* global-cache */, false/* session-cache */,
             false/* transaction */);
     return ObjectifyService.begin(opts);
   }
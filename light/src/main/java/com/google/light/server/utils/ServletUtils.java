@@ -34,14 +34,20 @@ import com.google.light.server.constants.http.ContentTypeEnum;
 import com.google.light.server.dto.AbstractDto;
 import com.google.light.server.servlets.path.ServletPathEnum;
 import com.google.light.server.servlets.pojo.ServletRequestPojo;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
 import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import javax.servlet.http.HttpSession;
+import org.joda.time.Instant;
 
 /**
  * Utility methods for Servlets and Servlet Environment.
@@ -74,6 +80,73 @@ public class ServletUtils {
       }
   }
   
+  /**
+   * Renders page at given path, e.g. a JSP, and returns what it wrote instead of sending it to
+   * client. This allows callers to cache the rendered page. Page is expected to be encoded in
+   * UTF-8.
+   * 
+   * @param request
+   * @param response
+   * @param path
+   * @return
+   */
+  public static String render(HttpServletRequest request, HttpServletResponse response,
+      String path) {
+    CapturingResponseWrapper capturingResponse = new CapturingResponseWrapper(response);
+    try {
+      request.getRequestDispatcher(path).include(request, capturingResponse);
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to render " + path, e);
+    }
+
+    return capturingResponse.getCapturedContent();
+  }
+
+  /**
+   * Response which keeps whatever is written to it, instead of writing it to wrapped response.
+   */
+  private static class CapturingResponseWrapper extends HttpServletResponseWrapper {
+    private final ByteArrayOutputStream capturedBytes = new ByteArrayOutputStream();
+    private PrintWriter writer;
+    private ServletOutputStream outputStream;
+
+    public CapturingResponseWrapper(HttpServletResponse response) {
+      super(response);
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+      if (writer == null) {
+        writer = new PrintWriter(new OutputStreamWriter(capturedBytes, Charsets.UTF_8));
+      }
+      return writer;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      if (outputStream == null) {
+        outputStream = new ServletOutputStream() {
+          @Override
+          public void write(int b) {
+            capturedBytes.write(b);
+          }
+        };
+      }
+      return outputStream;
+    }
+
+    @Override
+    public void flushBuffer() {
+      if (writer != null) {
+        writer.flush();
+      }
+    }
+
+    public String getCapturedContent() {
+      flushBuffer();
+      return new String(capturedBytes.toByteArray(), Charsets.UTF_8);
+    }
+  }
 
   /**
    * Returns the URL along-with Query Parameters. Default {@link HttpServletRequest#getRequestURL()}
@@ -229,4 +302,49 @@ public class ServletUtils {
     resp.setHeader("Pragma", "no-cache"); // HTTP 1.0
     resp.setDateHeader("Expires", 0); // Proxies
   }
+
+  /**
+   * Returns true if client already has the representation identified by eTag, so a 304 can be
+   * sent instead of the body. If-None-Match is preferred over If-Modified-Since, which is looked
+   * at only when client did not send an ETag and lastModified is known.
+   * 
+   * @param request
+   * @param eTag Quoted ETag of current representation.
+   * @param lastModified Time when current representation was last modified, or null.
+   * @return
+   */
+  public static boolean isNotModified(HttpServletRequest request, String eTag,
+      @Nullable Instant lastModified) {
+    checkNotBlank(eTag, "eTag");
+    String ifNoneMatch = getRequestHeaderValue(request, HttpHeaderEnum.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      for (String currTag : ifNoneMatch.split(",")) {
+        currTag = currTag.trim();
+        // Weak comparison is allowed for GET, and frontends may weaken ETags while compressing.
+        if (currTag.startsWith("W/")) {
+          currTag = currTag.substring(2);
+        }
+
+        if ("*".equals(currTag) || eTag.equals(currTag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    if (lastModified == null) {
+      return false;
+    }
+
+    long ifModifiedSince;
+    try {
+      ifModifiedSince = request.getDateHeader(HttpHeaderEnum.IF_MODIFIED_SINCE.get());
+    } catch (IllegalArgumentException e) {
+      // Invalid dates are ignored.
+      return false;
+    }
+
+    // HTTP dates do not have milliseconds.
+    return ifModifiedSince != -1 && lastModified.getMillis() / 1000 <= ifModifiedSince / 1000;
+  }
 }
@@ -28,6 +28,10 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -54,21 +58,76 @@ import org.xml.sax.SAXException;
  * @author Arjun Satyapal
  */
 public class XmlUtils {
-  public static <D extends AbstractDto<D>> D getDto(String xmlString) {
-    return unmarshal(xmlString, LightDtos.getArrayOfDtoClasses());
+  /**
+   * Creating a JAXBContext is very expensive, but JAXBContexts are thread-safe. So JAXBContext
+   * for all the {@link LightDtos} is created once per process. Other JAXBContexts are cached
+   * by the list of classes they were created for.
+   */
+  private static class DtoJAXBContextHolder {
+    private static final JAXBContext DTO_CONTEXT =
+        createJAXBContext(LightDtos.getArrayOfDtoClasses());
   }
 
-  public static <D extends AbstractPojo<D>> D getPojo(String xmlString, Class<D> clazz) {
-    return unmarshal(xmlString, clazz);
+  @SuppressWarnings("rawtypes")
+  private static final ConcurrentMap<List<Class>, JAXBContext> CONTEXTS =
+      new ConcurrentHashMap<List<Class>, JAXBContext>();
+
+  /**
+   * Marshallers and Unmarshallers are not thread-safe, but can be re-used. So each thread
+   * keeps its own for {@link #getDtoJAXBContext()}. These are never handed out of this class, so
+   * their properties are not changed by callers.
+   */
+  private static final ThreadLocal<Marshaller> DTO_MARSHALLER = new ThreadLocal<Marshaller>() {
+    @Override
+    protected Marshaller initialValue() {
+      return createMarshaller(getDtoJAXBContext());
+    }
+  };
 
+  private static final ThreadLocal<Unmarshaller> DTO_UNMARSHALLER =
+      new ThreadLocal<Unmarshaller>() {
+        @Override
+        protected Unmarshaller initialValue() {
+          try {
+            return getDtoJAXBContext().createUnmarshaller();
+          } catch (JAXBException e) {
+            throw new XmlException(e);
+          }
+        }
+      };
+
+  /**
+   * JAXBContext for all the {@link LightDtos}. Shared with
+   * {@link com.google.light.server.guice.jersey.JAXBXmlContextResolver}.
+   */
+  public static JAXBContext getDtoJAXBContext() {
+    return DtoJAXBContextHolder.DTO_CONTEXT;
   }
 
-  @SuppressWarnings({ "unchecked", "rawtypes" })
-  private static <D> D unmarshal(String xmlString, Class ... classes) {
+  /**
+   * Returns a new pretty printing Marshaller for {@link #getDtoJAXBContext()}. Creating a
+   * Marshaller from an existing JAXBContext is cheap, and callers are free to change its
+   * properties.
+   */
+  public static Marshaller createDtoMarshaller() {
+    return createMarshaller(getDtoJAXBContext());
+  }
+
+  public static <D extends AbstractDto<D>> D getDto(String xmlString) {
+    return unmarshal(xmlString, DTO_UNMARSHALLER.get());
+  }
+
+  public static <D extends AbstractPojo<D>> D getPojo(String xmlString, Class<D> clazz) {
     try {
-      JAXBContext jaxbContext = JAXBContext.newInstance(classes);
-      Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+      return unmarshal(xmlString, getJAXBContext(clazz).createUnmarshaller());
+    } catch (JAXBException e) {
+      throw new XmlException(e);
+    }
+  }
 
+  @SuppressWarnings("unchecked")
+  private static <D> D unmarshal(String xmlString, Unmarshaller unmarshaller) {
+    try {
       D dto = ((D) unmarshaller.unmarshal(new StringReader(xmlString)));
       return dto;
     } catch (Exception e) {
@@ -77,21 +136,17 @@ public class XmlUtils {
   }
 
   public static <T> String toXml(T object) {
-    return marshal(object, LightDtos.getArrayOfDtoClasses());
+    return marshal(object, DTO_MARSHALLER.get());
   }
 
   @SuppressWarnings("rawtypes")
   public static <T> String toXml(T object, Class ... clazz) {
-    return marshal(object, clazz);
+    return marshal(object, createMarshaller(getJAXBContext(clazz)));
   }
-  
-  @SuppressWarnings("rawtypes")
-  private static <T> String marshal(T object, Class ... classes) {
+
+  private static <T> String marshal(T object, Marshaller marshaller) {
     try {
-      JAXBContext jaxbContext = JAXBContext.newInstance(classes);
-      Marshaller marshaller = jaxbContext.createMarshaller();
       StringWriter sw = new StringWriter();
-      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
       marshaller.marshal(object, sw);
       return sw.toString();
     } catch (Exception e) {
@@ -99,6 +154,38 @@ public class XmlUtils {
     }
   }
 
+  @SuppressWarnings("rawtypes")
+  private static JAXBContext getJAXBContext(Class... classes) {
+    List<Class> key = Arrays.asList(classes);
+    JAXBContext jaxbContext = CONTEXTS.get(key);
+    if (jaxbContext == null) {
+      // Racing threads may create duplicate contexts, which is harmless as they are identical.
+      jaxbContext = createJAXBContext(classes);
+      CONTEXTS.putIfAbsent(key, jaxbContext);
+    }
+
+    return jaxbContext;
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static JAXBContext createJAXBContext(Class... classes) {
+    try {
+      return JAXBContext.newInstance(classes);
+    } catch (JAXBException e) {
+      throw new XmlException(e);
+    }
+  }
+
+  private static Marshaller createMarshaller(JAXBContext jaxbContext) {
+    try {
+      Marshaller marshaller = jaxbContext.createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+      return marshaller;
+    } catch (JAXBException e) {
+      throw new XmlException(e);
+    }
+  }
+
   /**
    * Convert Object to XML and then validate it againsted provided XSD.
    * 
@@ -116,7 +203,7 @@ public class XmlUtils {
     SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
     Schema schema = sf.newSchema(xsdUrl);
 
-    JAXBContext jaxbContext = JAXBContext.newInstance(object.getClass());
+    JAXBContext jaxbContext = getJAXBContext(object.getClass());
     JAXBSource jaxbSource = new JAXBSource(jaxbContext, object);
 
     Validator validator = schema.newValidator();
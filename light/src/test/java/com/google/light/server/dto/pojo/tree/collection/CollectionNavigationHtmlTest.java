@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.dto.pojo.tree.collection;
+
+import static com.google.light.server.utils.LightUtils.createCollectionNode;
+import static com.google.light.server.utils.LightUtils.createCollectionRootDummy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.tree.AbstractTreeNode.TreeNodeType;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.junit.Test;
+
+/**
+ * Test for {@link CollectionNavigationHtml}.
+ *
+ * @author Arjun Satyapal
+ */
+public class CollectionNavigationHtmlTest extends AbstractGAETest {
+  private static final String LEAF_PATH_PREFIX = "/rest/content/general/collection/1234/1/";
+
+  private long nextModuleId = 1;
+
+  /**
+   * Rendered navigation should be same as what ContentResource used to render on every request.
+   */
+  @Test
+  public void test_getHtml() {
+    CollectionTreeNodeDto root = createDeepTree(3 /* depth */, 3 /* leafsPerLevel */);
+    CollectionNavigationHtml navigationHtml =
+        new CollectionNavigationHtml(new CollectionTreeIndex(root), LEAF_PATH_PREFIX);
+    assertEquals(legacyRender(root), navigationHtml.getHtml());
+  }
+
+  /**
+   * Test for {@link CollectionNavigationHtml#getHtml(int)}.
+   */
+  @Test
+  public void test_getHtml_currentModule() {
+    CollectionTreeNodeDto root = createDeepTree(3 /* depth */, 3 /* leafsPerLevel */);
+    CollectionTreeIndex index = new CollectionTreeIndex(root);
+    CollectionNavigationHtml navigationHtml = new CollectionNavigationHtml(index, LEAF_PATH_PREFIX);
+
+    for (int position = 0; position < index.getNumberOfLeafs(); position++) {
+      String html = navigationHtml.getHtml(position);
+      String expectedLeaf = "<li class=\"" + CollectionNavigationHtml.CURRENT_MODULE_CSS_CLASS
+          + "\"><a href=" + LEAF_PATH_PREFIX + index.getLeaf(position).getModuleId().getValue()
+          + ">";
+      assertTrue(html, html.contains(expectedLeaf));
+      assertEquals(html.indexOf(CollectionNavigationHtml.CURRENT_MODULE_CSS_CLASS),
+          html.lastIndexOf(CollectionNavigationHtml.CURRENT_MODULE_CSS_CLASS));
+      assertEquals(navigationHtml.getHtml(),
+          html.replace(" class=\"" + CollectionNavigationHtml.CURRENT_MODULE_CSS_CLASS + "\"",
+              ""));
+    }
+
+    try {
+      navigationHtml.getHtml(index.getNumberOfLeafs());
+      fail("should have failed.");
+    } catch (IndexOutOfBoundsException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Test for {@link CollectionTreeIndex#getNavigationHtml(String)}.
+   */
+  @Test
+  public void test_getNavigationHtml_renderedOnce() {
+    CollectionTreeIndex index = new CollectionTreeIndex(createWideTree(10));
+    CollectionNavigationHtml navigationHtml = index.getNavigationHtml(LEAF_PATH_PREFIX);
+    assertSame(navigationHtml, index.getNavigationHtml(LEAF_PATH_PREFIX));
+
+    String latestPrefix = "/rest/content/general/collection/1234/latest/";
+    CollectionNavigationHtml latestNavigationHtml = index.getNavigationHtml(latestPrefix);
+    assertTrue(latestNavigationHtml.getHtml().contains(latestPrefix));
+  }
+
+  /**
+   * Pre-rendered navigation of a tree 10 levels deep should be same as rendering it on every
+   * request, for every leaf.
+   */
+  @Test
+  public void test_getHtml_deepTree() {
+    assertSameAsLegacyRender(createDeepTree(10 /* depth */, 10 /* leafsPerLevel */));
+  }
+
+  /**
+   * Same as {@link #test_getHtml_deepTree()} for a tree with 5,000 leafs.
+   */
+  @Test
+  public void test_getHtml_wideTree() {
+    assertSameAsLegacyRender(createWideTree(5000));
+  }
+
+  private void assertSameAsLegacyRender(CollectionTreeNodeDto root) {
+    CollectionTreeIndex index = new CollectionTreeIndex(root);
+    CollectionNavigationHtml navigationHtml = index.getNavigationHtml(LEAF_PATH_PREFIX);
+    String expected = legacyRender(root);
+    assertEquals(expected, navigationHtml.getHtml());
+
+    String currentModuleAttribute =
+        " class=\"" + CollectionNavigationHtml.CURRENT_MODULE_CSS_CLASS + "\"";
+    for (int position : new int[] {0, index.getNumberOfLeafs() / 2,
+        index.getNumberOfLeafs() - 1}) {
+      assertEquals(expected, navigationHtml.getHtml(position).replace(currentModuleAttribute, ""));
+    }
+  }
+
+  /**
+   * Copy of how ContentResource used to render navigation.
+   */
+  private String legacyRender(CollectionTreeNodeDto root) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("<ol>\n");
+    legacyAppendCurrNode(root, builder, 2, true);
+    builder.append("\n</ol>");
+    return builder.toString();
+  }
+
+  private void legacyAppendCurrNode(CollectionTreeNodeDto node, StringBuilder builder,
+      int space, boolean isRoot) {
+    String sp = "";
+    for (int i = 0; i < space; i++) {
+      sp += " ";
+    }
+    if (node.isLeafNode()) {
+      String uri = LEAF_PATH_PREFIX + node.getModuleId().getValue();
+      builder.append(sp).append("<li><a href=").append(StringEscapeUtils.escapeHtml(uri))
+          .append(">")
+          .append(StringEscapeUtils.escapeHtml(node.getTitle())).append("</a></li>\n");
+    } else {
+      if (!isRoot) {
+        builder.append(sp).append("<li>").append(StringEscapeUtils.escapeHtml(node.getTitle()))
+            .append("<ol>\n");
+      }
+      if (node.hasChildren()) {
+        for (CollectionTreeNodeDto currChild : node.getChildren()) {
+          legacyAppendCurrNode(currChild, builder, space + 4, false);
+        }
+      }
+      if (!isRoot) {
+        builder.append(sp).append("</ol></li>\n");
+      }
+    }
+  }
+
+  private CollectionTreeNodeDto createWideTree(int leafCount) {
+    CollectionTreeNodeDto root = createCollectionRootDummy("root", null /* description */);
+    for (int i = 0; i < leafCount; i++) {
+      root.addChildren(createLeaf());
+    }
+    return root;
+  }
+
+  private CollectionTreeNodeDto createDeepTree(int depth, int leafsPerLevel) {
+    CollectionTreeNodeDto root = createCollectionRootDummy("root", null /* description */);
+    CollectionTreeNodeDto parent = root;
+    for (int level = 0; level < depth; level++) {
+      for (int i = 0; i < leafsPerLevel; i++) {
+        parent.addChildren(createLeaf());
+      }
+
+      CollectionTreeNodeDto intermediate = createCollectionNode(null /* description */,
+          null /* externalId */, null /* moduleId */, ModuleType.LIGHT_SUB_COLLECTION,
+          null /* nodeId */, TreeNodeType.INTERMEDIATE_NODE, "level <" + level + ">",
+          null /* version */);
+      parent.addChildren(intermediate);
+      parent = intermediate;
+    }
+    parent.addChildren(createLeaf());
+    return root;
+  }
+
+  private CollectionTreeNodeDto createLeaf() {
+    long moduleId = nextModuleId++;
+    return createCollectionNode(null /* description */,
+        new ExternalId("http://example.com/page" + moduleId), new ModuleId(moduleId),
+        ModuleType.LIGHT_SYNTHETIC_MODULE, null /* nodeId */, TreeNodeType.LEAF_NODE,
+        "leaf & " + moduleId, new Version(1L));
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.dto.pojo.tree.collection;
+
+import static com.google.light.server.utils.LightUtils.createCollectionNode;
+import static com.google.light.server.utils.LightUtils.createCollectionRootDummy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.tree.AbstractTreeNode.TreeNodeType;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.CollectionId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.utils.JsonUtils;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test for {@link CollectionTreeIndex} and {@link CollectionTreeIndexCache}.
+ *
+ * @author Arjun Satyapal
+ */
+public class CollectionTreeIndexTest extends AbstractGAETest {
+  private static final int LEAF_COUNT = 2000;
+  private static final int LEAFS_PER_INTERMEDIATE_NODE = 50;
+
+  @After
+  public void clearCache() {
+    CollectionTreeIndexCache.clear();
+  }
+
+  /**
+   * Test for {@link CollectionTreeIndex#getLeafPosition(ModuleId)} and neighbours.
+   */
+  @Test
+  public void test_getLeafPosition() {
+    CollectionTreeIndex index = new CollectionTreeIndex(createCollectionTree(100));
+    assertEquals(100, index.getNumberOfLeafs());
+
+    for (int i = 0; i < 100; i++) {
+      ModuleId moduleId = new ModuleId(i + 1L);
+      int position = index.getLeafPosition(moduleId);
+      assertEquals(i, position);
+      assertEquals(moduleId, index.getLeaf(position).getModuleId());
+    }
+
+    assertNull(index.getPrevious(0));
+    assertEquals(new ModuleId(1L), index.getPrevious(1).getModuleId());
+    assertEquals(new ModuleId(3L), index.getNext(1).getModuleId());
+    assertNull(index.getNext(99));
+
+    assertEquals(CollectionTreeIndex.NOT_FOUND, index.getLeafPosition(new ModuleId(1000L)));
+  }
+
+  /**
+   * Modules which occur more than once in a tree should map to their first occurrence.
+   */
+  @Test
+  public void test_getLeafPosition_duplicateModule() {
+    CollectionTreeNodeDto root = createCollectionTree(5);
+    root.addChildren(createLeaf(2));
+    CollectionTreeIndex index = new CollectionTreeIndex(root);
+
+    assertEquals(6, index.getNumberOfLeafs());
+    assertEquals(1, index.getLeafPosition(new ModuleId(2L)));
+  }
+
+  /**
+   * Leafs returned by index should not be modifiable.
+   */
+  @Test
+  public void test_getLeafNodes_immutable() {
+    CollectionTreeIndex index = new CollectionTreeIndex(createCollectionTree(5));
+    try {
+      index.getLeafNodes().add(createLeaf(10));
+      fail("should have failed.");
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Test for {@link CollectionTreeIndexCache}.
+   */
+  @Test
+  public void test_cache() {
+    CollectionId collectionId = new CollectionId(1234L);
+    CollectionTreeIndex index = new CollectionTreeIndex(createCollectionTree(5));
+
+    assertNull(CollectionTreeIndexCache.get(collectionId, new Version(1L)));
+    CollectionTreeIndexCache.put(collectionId, new Version(1L), index);
+    assertSame(index, CollectionTreeIndexCache.get(collectionId, new Version(1L)));
+    assertNull(CollectionTreeIndexCache.get(collectionId, new Version(2L)));
+    assertNull(CollectionTreeIndexCache.get(new CollectionId(1235L), new Version(1L)));
+
+    try {
+      CollectionTreeIndexCache.get(collectionId, new Version(Version.LATEST_VERSION));
+      fail("should have failed.");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Index of a {@value #LEAF_COUNT} leaf collection, which is read back from its stored JSON,
+   * should find same leaf as scanning all the leafs of the tree.
+   */
+  @Test
+  public void test_getLeafPosition_largeTree() {
+    String treeJson = JsonUtils.toCompactJson(createCollectionTree(LEAF_COUNT));
+    CollectionTreeIndex index =
+        new CollectionTreeIndex(JsonUtils.getDto(treeJson, CollectionTreeNodeDto.class));
+    List<CollectionTreeNodeDto> leafs =
+        JsonUtils.getDto(treeJson, CollectionTreeNodeDto.class).getLeafNodes();
+
+    assertEquals(LEAF_COUNT, index.getNumberOfLeafs());
+    for (int i = 0; i < leafs.size(); i++) {
+      ModuleId moduleId = leafs.get(i).getModuleId();
+      assertEquals(i, index.getLeafPosition(moduleId));
+      assertEquals(leafs.get(i), index.getLeaf(i));
+    }
+  }
+
+  private CollectionTreeNodeDto createCollectionTree(int leafCount) {
+    CollectionTreeNodeDto root = createCollectionRootDummy("root", null /* description */);
+    CollectionTreeNodeDto intermediate = null;
+    for (int i = 0; i < leafCount; i++) {
+      if (i % LEAFS_PER_INTERMEDIATE_NODE == 0) {
+        intermediate = createCollectionNode(null /* description */, null /* externalId */,
+            null /* moduleId */, ModuleType.LIGHT_SUB_COLLECTION, null /* nodeId */,
+            TreeNodeType.INTERMEDIATE_NODE, "chapter-" + i, null /* version */);
+        root.addChildren(intermediate);
+      }
+      intermediate.addChildren(createLeaf(i + 1));
+    }
+
+    return root;
+  }
+
+  private CollectionTreeNodeDto createLeaf(long moduleId) {
+    return createCollectionNode(null /* description */,
+        new ExternalId("http://example.com/page" + moduleId), new ModuleId(moduleId),
+        ModuleType.LIGHT_SYNTHETIC_MODULE, null /* nodeId */, TreeNodeType.LEAF_NODE,
+        "leaf-" + moduleId, new Version(1L));
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.httpclient;
+
+import static com.google.light.server.constants.LightConstants.WEB_PAGE_TITLE_MAX_BYTES;
+import static com.google.light.server.constants.http.HttpStatusCodesEnum.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson.JacksonFactory;
+import com.google.common.base.Charsets;
+import com.google.common.io.CountingInputStream;
+import com.google.light.server.constants.HttpHeaderEnum;
+import com.google.light.server.utils.LightUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link LightHttpClient}.
+ *
+ * Large html fixtures are generated in memory, and are served by a local HTTP server when a
+ * connection is required.
+ *
+ * @author Arjun Satyapal
+ */
+public class LightHttpClientTest {
+  private static final int FIXTURE_BODY_BYTES = 8 * 1024 * 1024;
+  private static final String TITLE = "Introduction to Photosynthesis";
+
+  private byte[] largePage;
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private volatile String lastRangeHeader;
+  private LightHttpClient httpClient;
+
+  @Before
+  public void setUp() throws IOException {
+    largePage = createPage("<head><meta charset=\"utf-8\"><TITLE lang=\"en\">\n  " + TITLE
+        + "\n</TITLE></head>", FIXTURE_BODY_BYTES);
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new PageHandler(HttpURLConnection.HTTP_OK, largePage, null));
+    server.createContext("/noframe",
+        new PageHandler(HttpURLConnection.HTTP_OK, largePage, "DENY"));
+    server.createContext("/empty",
+        new PageHandler(REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode(), new byte[0], null));
+    server.createContext("/missing",
+        new PageHandler(HttpURLConnection.HTTP_NOT_FOUND, new byte[0], null));
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.start();
+
+    httpClient = new LightHttpClient(new NetHttpTransport(), new JacksonFactory());
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  /**
+   * Test for {@link LightHttpClient#extractTitle(InputStream, int)}.
+   */
+  @Test
+  public void test_extractTitle() throws IOException {
+    assertEquals("Hello World", extractTitle("<html><head><title>Hello World</title>", 1024));
+    assertEquals("Hello World",
+        extractTitle("<HTML><HEAD><Title id=\"t\">\n\tHello \r\n World </Title></HEAD>", 1024));
+
+    // No title.
+    assertNull(extractTitle("<html><head></head><body>Hello</body></html>", 1024));
+    assertNull(extractTitle("<html><head><title> </title></head>", 1024));
+    assertNull(extractTitle("", 1024));
+
+    // Title after head is ignored, as reading stops at </head>.
+    assertNull(extractTitle("<html><head></head><body><title>Late</title></body>", 1024));
+
+    // Title which ends after the cap.
+    String html = "<html><head><title>Hello World</title></head>";
+    assertNull(extractTitle(html, html.indexOf("</title>") + 3));
+    assertEquals("Hello World", extractTitle(html, html.indexOf("</title>") + 8));
+
+    // Non-ascii title.
+    assertEquals("Fotos\u00edntesis \u5149\u5408\u6210",
+        extractTitle("<head><title>Fotos\u00edntesis \u5149\u5408\u6210</title>", 1024));
+  }
+
+  /**
+   * Test for {@link LightHttpClient#extractTitle(InputStream, int)} when end tag is split across
+   * multiple reads.
+   */
+  @Test
+  public void test_extractTitle_splitReads() throws IOException {
+    byte[] html = createPage("<head><title>" + TITLE + "</title></head>", 64 * 1024);
+    CountingInputStream countingStream =
+        new CountingInputStream(new TrickleInputStream(new ByteArrayInputStream(html), 3));
+    assertEquals(TITLE, LightHttpClient.extractTitle(countingStream, WEB_PAGE_TITLE_MAX_BYTES));
+
+    int expectedBytes = ("<html><head><title>" + TITLE + "</title>").length();
+    assertTrue(countingStream.getCount() < expectedBytes + 3);
+  }
+
+  /**
+   * Test for {@link LightHttpClient#extractTitle(InputStream, int)} for large pages. Reading
+   * should stop at the cap, instead of reading whole page.
+   */
+  @Test
+  public void test_extractTitle_largePages() throws IOException {
+    // Title is near the start of the page.
+    assertTitleWithinCap(largePage, TITLE);
+    assertEquals(TITLE, readWholePageTitle(new ByteArrayInputStream(largePage)));
+
+    // Page without </title> or </head>, so reading stops only at the cap.
+    assertTitleWithinCap(createPage("", FIXTURE_BODY_BYTES), null);
+
+    // Page whose head is larger than the cap.
+    StringBuilder scripts = new StringBuilder("<head>");
+    while (scripts.length() < 2 * WEB_PAGE_TITLE_MAX_BYTES) {
+      scripts.append("<script>var x = 1;</script>\n");
+    }
+    scripts.append("<title>").append(TITLE).append("</title></head>");
+    assertTitleWithinCap(createPage(scripts.toString(), FIXTURE_BODY_BYTES), null);
+  }
+
+  private void assertTitleWithinCap(byte[] page, String expectedTitle) throws IOException {
+    CountingInputStream countingStream = new CountingInputStream(new ByteArrayInputStream(page));
+    assertEquals(expectedTitle,
+        LightHttpClient.extractTitle(countingStream, WEB_PAGE_TITLE_MAX_BYTES));
+    assertTrue("bytesRead = " + countingStream.getCount(),
+        countingStream.getCount() <= WEB_PAGE_TITLE_MAX_BYTES);
+  }
+
+  /**
+   * Test for {@link LightHttpClient#getWebPageInfo(URI, int)}.
+   */
+  @Test
+  public void test_getWebPageInfo() throws IOException {
+    WebPageInfo pageInfo = httpClient.getWebPageInfo(getUri("/"), WEB_PAGE_TITLE_MAX_BYTES);
+    assertTrue(pageInfo.isSuccess());
+    assertTrue(pageInfo.isEmbeddable());
+    assertNull(pageInfo.getXFrameOptions());
+    assertEquals(TITLE, pageInfo.getTitle());
+    assertEquals("bytes=0-" + (WEB_PAGE_TITLE_MAX_BYTES - 1), lastRangeHeader);
+
+    // Title is not required for pages which cannot be embedded.
+    pageInfo = httpClient.getWebPageInfo(getUri("/noframe"), WEB_PAGE_TITLE_MAX_BYTES);
+    assertTrue(pageInfo.isSuccess());
+    assertFalse(pageInfo.isEmbeddable());
+    assertEquals("DENY", pageInfo.getXFrameOptions());
+    assertNull(pageInfo.getTitle());
+
+    // Range cannot be satisfied for an empty page, which is a page without title.
+    pageInfo = httpClient.getWebPageInfo(getUri("/empty"), WEB_PAGE_TITLE_MAX_BYTES);
+    assertTrue(pageInfo.isSuccess());
+    assertTrue(pageInfo.isEmbeddable());
+    assertNull(pageInfo.getTitle());
+
+    // Other failures are returned instead of being thrown.
+    pageInfo = httpClient.getWebPageInfo(getUri("/missing"), WEB_PAGE_TITLE_MAX_BYTES);
+    assertFalse(pageInfo.isSuccess());
+    assertEquals(HttpURLConnection.HTTP_NOT_FOUND, pageInfo.getStatusCode());
+    assertNull(pageInfo.getTitle());
+  }
+
+  /**
+   * Test for {@link LightHttpClient#getWebPageInfo(URI, int)} from a server which ignores Range
+   * header. Title should be same as the one found by downloading whole page.
+   */
+  @Test
+  public void test_getWebPageInfo_largePage() throws IOException {
+    URI uri = getUri("/");
+    assertEquals(readWholePageTitle(httpClient.get(uri).getContent()),
+        httpClient.getWebPageInfo(uri, WEB_PAGE_TITLE_MAX_BYTES).getTitle());
+    assertEquals("bytes=0-" + (WEB_PAGE_TITLE_MAX_BYTES - 1), lastRangeHeader);
+  }
+
+  private URI getUri(String path) {
+    return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+  }
+
+  private static String extractTitle(String html, int maxBytes) throws IOException {
+    return LightHttpClient.extractTitle(
+        new ByteArrayInputStream(html.getBytes(Charsets.UTF_8)), maxBytes);
+  }
+
+  /**
+   * Earlier way of finding title, which reads whole page in memory.
+   */
+  private static String readWholePageTitle(InputStream inputStream) throws IOException {
+    try {
+      String html = LightUtils.getInputStreamAsString(inputStream);
+      html = html.replaceAll("\\s+", " ");
+      Matcher matcher = Pattern.compile("(?i)<title[^>]*>(.*?)</title>").matcher(html);
+      return matcher.find() ? matcher.group(1).trim() : null;
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Creates an html page with given head, whose body is padded with paragraphs till the page has
+   * at least bodyBytes.
+   */
+  private static byte[] createPage(String head, int bodyBytes) {
+    StringBuilder builder = new StringBuilder(bodyBytes + head.length() + 64);
+    builder.append("<html>").append(head).append("<body>\n");
+    String paragraph = "<p>Plants convert light energy into chemical energy.</p>\n";
+    while (builder.length() < bodyBytes) {
+      builder.append(paragraph);
+    }
+    builder.append("</body></html>");
+    return builder.toString().getBytes(Charsets.UTF_8);
+  }
+
+  /**
+   * Serves same page with same status for all requests and ignores Range header.
+   */
+  private class PageHandler implements HttpHandler {
+    private final int statusCode;
+    private final byte[] page;
+    private final String xFrameOptions;
+
+    public PageHandler(int statusCode, byte[] page, String xFrameOptions) {
+      this.statusCode = statusCode;
+      this.page = page;
+      this.xFrameOptions = xFrameOptions;
+    }
+
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      lastRangeHeader = exchange.getRequestHeaders().getFirst(HttpHeaderEnum.RANGE.get());
+      try {
+        if (xFrameOptions != null) {
+          exchange.getResponseHeaders().set(
+              HttpHeaderEnum.X_FRAME_OPTIONS.get(), xFrameOptions);
+        }
+        exchange.getResponseHeaders().set(HttpHeaderEnum.CONTENT_TYPE.get(), "text/html");
+        // -1 sends no body at all.
+        exchange.sendResponseHeaders(statusCode, page.length == 0 ? -1 : page.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(page);
+        out.close();
+      } catch (IOException e) {
+        // Client closed the connection without reading whole page.
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+
+  /**
+   * Returns at most chunkSize bytes for each read.
+   */
+  private static class TrickleInputStream extends InputStream {
+    private final InputStream delegate;
+    private final int chunkSize;
+
+    public TrickleInputStream(InputStream delegate, int chunkSize) {
+      this.delegate = delegate;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return delegate.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      return delegate.read(buffer, offset, Math.min(length, chunkSize));
+    }
+  }
+}
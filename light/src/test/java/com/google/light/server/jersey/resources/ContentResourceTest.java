@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jersey.resources;
+
+import static com.google.light.server.constants.LightConstants.IMMUTABLE_CONTENT_MAX_AGE_IN_SEC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.blobstore.BlobKey;
+import com.google.appengine.api.blobstore.BlobstoreService;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.constants.HttpHeaderEnum;
+import com.google.light.server.constants.ResourceTypes;
+import com.google.light.server.constants.http.ContentTypeEnum;
+import com.google.light.server.dto.module.GSBlobInfo;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+import com.google.light.server.manager.interfaces.CollectionManager;
+import com.google.light.server.manager.interfaces.ModuleManager;
+import com.google.light.server.persistence.entity.module.ModuleEntity;
+import com.google.light.server.persistence.entity.module.ModuleVersionEntity;
+import com.google.light.server.persistence.entity.module.ModuleVersionResourceEntity;
+import com.googlecode.objectify.Objectify;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test for conditional GETs and caching of module resources and pages served by
+ * {@link ContentResource}. Resource is called the way Jersey calls it, with mocks for request,
+ * response, Blobstore and JSPs.
+ *
+ * @author Arjun Satyapal
+ */
+public class ContentResourceTest extends AbstractLightServerTest {
+  private static final String MODULE_ID = "1234";
+  private static final String RESOURCE = "image0.png";
+  private static final String PAGE_HTML = "<html><body>rendered page</body></html>";
+
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private BlobstoreService blobService;
+  private ModuleManager moduleManager;
+  private RequestDispatcher dispatcher;
+  private ModuleEntity moduleEntity;
+  private ModuleVersionEntity moduleVersionEntity;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setUp() {
+    super.setUp();
+    request = mock(HttpServletRequest.class);
+    when(request.getSession()).thenReturn(testSession);
+    response = mock(HttpServletResponse.class);
+
+    blobService = mock(BlobstoreService.class);
+    when(blobService.createGsBlobKey(anyString())).thenReturn(new BlobKey("blobKey"));
+
+    moduleManager = mock(ModuleManager.class);
+    when(moduleManager.getModuleResource(any(Objectify.class), any(ModuleId.class),
+        any(Version.class), anyString())).thenReturn(createResourceEntity());
+
+    // Module with version 1 published.
+    moduleEntity = mock(ModuleEntity.class);
+    when(moduleEntity.getModuleId()).thenReturn(new ModuleId(MODULE_ID));
+    when(moduleEntity.getLatestPublishVersion()).thenReturn(new Version(1L));
+    when(moduleManager.get(any(Objectify.class), any(ModuleId.class))).thenReturn(moduleEntity);
+
+    moduleVersionEntity = mock(ModuleVersionEntity.class);
+    when(moduleVersionEntity.getModuleId()).thenReturn(new ModuleId(MODULE_ID));
+    when(moduleVersionEntity.getVersion()).thenReturn(new Version(1L));
+    when(moduleVersionEntity.getTitle()).thenReturn("title");
+    when(moduleVersionEntity.getContent()).thenReturn("<html><body>content</body></html>");
+    when(moduleManager.getModuleVersion(any(Objectify.class), any(ModuleId.class),
+        any(Version.class))).thenReturn(moduleVersionEntity);
+
+    setLocale(Locale.US);
+    dispatcher = mock(RequestDispatcher.class);
+    when(request.getRequestDispatcher(anyString())).thenReturn(dispatcher);
+    setRenderedPage(PAGE_HTML);
+
+    RenderedPageCache.clear();
+  }
+
+  /**
+   * Test for {@link ContentResource#getModuleVersionContent} for a published version.
+   */
+  @Test
+  public void test_getModuleVersionContent() throws Exception {
+    Response firstResponse = getModuleVersionContent("1");
+    assertEquals(200, firstResponse.getStatus());
+    assertEquals(PAGE_HTML, firstResponse.getEntity());
+    assertEquals("no-cache", getHeader(firstResponse, HttpHeaderEnum.CACHE_CONTROL));
+    assertEquals(HttpHeaderEnum.ACCEPT_LANGUAGE.get(),
+        getHeader(firstResponse, HttpHeaderEnum.VARY));
+    String eTag = getHeader(firstResponse, HttpHeaderEnum.ETAG);
+    assertNotNull(eTag);
+
+    // Page is now served from RenderedPageCache, including for latest version.
+    assertEquals(PAGE_HTML, getModuleVersionContent("1").getEntity());
+    Response latestResponse = getModuleVersionContent("latest");
+    assertEquals(PAGE_HTML, latestResponse.getEntity());
+    assertEquals(eTag, getHeader(latestResponse, HttpHeaderEnum.ETAG));
+    verify(moduleManager, times(1)).getModuleVersion(any(Objectify.class), any(ModuleId.class),
+        any(Version.class));
+    verify(dispatcher, times(1)).include(any(HttpServletRequest.class),
+        any(ServletResponse.class));
+
+    // Client revalidating with same ETag gets a 304.
+    when(request.getHeader(HttpHeaderEnum.IF_NONE_MATCH.get())).thenReturn(eTag);
+    Response notModifiedResponse = getModuleVersionContent("1");
+    assertEquals(304, notModifiedResponse.getStatus());
+    assertNull(notModifiedResponse.getEntity());
+    assertEquals(eTag, getHeader(notModifiedResponse, HttpHeaderEnum.ETAG));
+
+    // Even if page is not cached, 304 is returned without rendering it.
+    RenderedPageCache.clear();
+    assertEquals(304, getModuleVersionContent("1").getStatus());
+    verify(dispatcher, times(1)).include(any(HttpServletRequest.class),
+        any(ServletResponse.class));
+
+    // Page depends on language of client.
+    setLocale(new Locale("pt", "BR"));
+    Response otherLanguageResponse = getModuleVersionContent("1");
+    assertEquals(200, otherLanguageResponse.getStatus());
+    assertTrue(!eTag.equals(getHeader(otherLanguageResponse, HttpHeaderEnum.ETAG)));
+  }
+
+  /**
+   * Test for {@link ContentResource#getModuleVersionContent} for a version which can still be
+   * modified, and so is rendered on every request.
+   */
+  @Test
+  public void test_getModuleVersionContent_mutable() throws Exception {
+    when(moduleVersionEntity.isMutable()).thenReturn(true);
+
+    for (int i = 0; i < 3; i++) {
+      Response currResponse = getModuleVersionContent("1");
+      assertEquals(200, currResponse.getStatus());
+      assertEquals(PAGE_HTML, currResponse.getEntity());
+      assertNull(getHeader(currResponse, HttpHeaderEnum.ETAG));
+    }
+    verify(dispatcher, times(3)).include(any(HttpServletRequest.class),
+        any(ServletResponse.class));
+  }
+
+  /**
+   * Test for {@link ContentResource#getModuleVersionResource} for a concrete version.
+   */
+  @Test
+  public void test_getModuleVersionResource() throws Exception {
+    Response firstResponse = getModuleVersionResource("1");
+    assertEquals(200, firstResponse.getStatus());
+    assertEquals("public, max-age=" + IMMUTABLE_CONTENT_MAX_AGE_IN_SEC + ", immutable",
+        getHeader(firstResponse, HttpHeaderEnum.CACHE_CONTROL));
+    String eTag = getHeader(firstResponse, HttpHeaderEnum.ETAG);
+    assertNotNull(eTag);
+    verify(blobService, times(1)).serve(any(BlobKey.class), any(HttpServletResponse.class));
+
+    // Client revalidating with same ETag gets a 304, and Blobstore is not asked to serve.
+    when(request.getHeader(HttpHeaderEnum.IF_NONE_MATCH.get())).thenReturn(eTag);
+    Response notModifiedResponse = getModuleVersionResource("1");
+    assertEquals(304, notModifiedResponse.getStatus());
+    assertEquals(eTag, getHeader(notModifiedResponse, HttpHeaderEnum.ETAG));
+    assertEquals(getHeader(firstResponse, HttpHeaderEnum.CACHE_CONTROL),
+        getHeader(notModifiedResponse, HttpHeaderEnum.CACHE_CONTROL));
+
+    // Weak ETags and lists of ETags are matched too.
+    when(request.getHeader(HttpHeaderEnum.IF_NONE_MATCH.get()))
+        .thenReturn("\"other\", W/" + eTag);
+    assertEquals(304, getModuleVersionResource("1").getStatus());
+    verify(blobService, times(1)).serve(any(BlobKey.class), any(HttpServletResponse.class));
+
+    // Client having some other version of the resource gets it again.
+    when(request.getHeader(HttpHeaderEnum.IF_NONE_MATCH.get())).thenReturn("\"other\"");
+    assertEquals(200, getModuleVersionResource("1").getStatus());
+    verify(blobService, times(2)).serve(any(BlobKey.class), any(HttpServletResponse.class));
+  }
+
+  /**
+   * Test for {@link ContentResource#getModuleVersionResource} for latest version, which can
+   * change and so has to be revalidated.
+   */
+  @Test
+  public void test_getModuleVersionResource_latest() throws Exception {
+    Response firstResponse = getModuleVersionResource("latest");
+    assertEquals(200, firstResponse.getStatus());
+    assertEquals("no-cache", getHeader(firstResponse, HttpHeaderEnum.CACHE_CONTROL));
+    String eTag = getHeader(firstResponse, HttpHeaderEnum.ETAG);
+
+    // ETag is derived from resolved version, so it is same as for the concrete version.
+    assertEquals(getHeader(getModuleVersionResource("1"), HttpHeaderEnum.ETAG), eTag);
+
+    when(request.getHeader(HttpHeaderEnum.IF_NONE_MATCH.get())).thenReturn(eTag);
+    Response notModifiedResponse = getModuleVersionResource("latest");
+    assertEquals(304, notModifiedResponse.getStatus());
+    assertEquals("no-cache", getHeader(notModifiedResponse, HttpHeaderEnum.CACHE_CONTROL));
+    verify(blobService, times(2)).serve(any(BlobKey.class), any(HttpServletResponse.class));
+  }
+
+  /**
+   * Test for {@link ContentResource#getModuleVersionResource} for a concrete version which is
+   * newer than latest published version. It is still being imported, and so has to be
+   * revalidated.
+   */
+  @Test
+  public void test_getModuleVersionResource_mutable() throws Exception {
+    Response firstResponse = getModuleVersionResource("2");
+    assertEquals(200, firstResponse.getStatus());
+    assertEquals("no-cache", getHeader(firstResponse, HttpHeaderEnum.CACHE_CONTROL));
+
+    // Module content is not required for serving its resources.
+    verify(moduleManager, never()).getModuleVersion(any(Objectify.class), any(ModuleId.class),
+        any(Version.class));
+  }
+
+  private Response getModuleVersionResource(String versionStr) {
+    ContentResource resource = new ContentResource(injector, request, response,
+        mock(CollectionManager.class), moduleManager) {
+      @Override
+      protected BlobstoreService getBlobstoreService() {
+        return blobService;
+      }
+    };
+
+    return resource.getModuleVersionResource(MODULE_ID, versionStr,
+        ResourceTypes.images.name(), RESOURCE);
+  }
+
+  private Response getModuleVersionContent(String versionStr) {
+    return new ContentResource(injector, request, response, mock(CollectionManager.class),
+        moduleManager).getModuleVersionContent(MODULE_ID, versionStr);
+  }
+
+  /**
+   * Makes request prefer locale. Enumeration of locales is consumed by caller, so a new one is
+   * returned for every call.
+   */
+  private void setLocale(final Locale locale) {
+    when(request.getLocales()).thenAnswer(new Answer<Enumeration<Locale>>() {
+      @Override
+      public Enumeration<Locale> answer(InvocationOnMock invocation) {
+        return Collections.enumeration(Collections.singletonList(locale));
+      }
+    });
+  }
+
+  /**
+   * Makes JSPs write html when they are included.
+   */
+  private void setRenderedPage(final String html) throws Exception {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        ServletResponse includedResponse = (ServletResponse) invocation.getArguments()[1];
+        includedResponse.getWriter().write(html);
+        return null;
+      }
+    }).when(dispatcher).include(any(HttpServletRequest.class), any(ServletResponse.class));
+  }
+
+  private static String getHeader(Response response, HttpHeaderEnum header) {
+    Object value = response.getMetadata().getFirst(header.get());
+    return value == null ? null : value.toString();
+  }
+
+  private static ModuleVersionResourceEntity createResourceEntity() {
+    GSBlobInfo blobInfo = new GSBlobInfo.Builder()
+        .contentType(ContentTypeEnum.IMAGE_PNG)
+        .fileName(RESOURCE)
+        .gsKey("/gs/light-test/" + MODULE_ID + "/1/" + RESOURCE)
+        .sizeInBytes(10L)
+        .build();
+    return new ModuleVersionResourceEntity.Builder()
+        .id(ResourceTypes.images.name() + "/" + RESOURCE)
+        .moduleVersionKey(
+            ModuleVersionEntity.generateKey(new ModuleId(MODULE_ID), new Version(1L)))
+        .resourceInfo(blobInfo)
+        .build();
+  }
+}
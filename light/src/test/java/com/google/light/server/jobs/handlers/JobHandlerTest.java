@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.handlers;
+
+import static com.google.light.server.constants.LightConstants.CHILD_POLLING_MAX_POLLS;
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.LightUtils.getNow;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.api.datastore.Text;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.manager.interfaces.JobManager;
+import com.google.light.server.persistence.entity.jobs.JobEntity;
+import com.google.light.server.persistence.entity.jobs.JobEntity.JobHandlerType;
+import com.google.light.server.persistence.entity.jobs.JobEntity.JobType;
+import com.google.light.server.persistence.entity.jobs.JobEntity.TaskType;
+import com.google.light.server.persistence.entity.jobs.JobState;
+import org.junit.Test;
+
+/**
+ * Test for {@link JobHandler}.
+ *
+ * @author Arjun Satyapal
+ */
+public class JobHandlerTest extends AbstractLightServerTest {
+  private static final JobId MISSING_CHILD_JOB_ID = new JobId(Long.MAX_VALUE);
+
+  private JobManager jobManager;
+  private JobHandler jobHandler;
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    this.jobManager = getInstance(JobManager.class);
+    this.jobHandler = getInstance(JobHandler.class);
+  }
+
+  /**
+   * Test for {@link JobHandler#pollForChilds(JobId)} when all childs are complete.
+   */
+  @Test
+  public void test_pollForChilds_allChildsComplete() {
+    JobId parentJobId = createParentWithChilds(JobState.COMPLETE, JobState.COMPLETE);
+    jobHandler.pollForChilds(parentJobId);
+    assertEquals(JobState.ALL_CHILDS_COMPLETED, jobManager.get(null, parentJobId).getJobState());
+  }
+
+  /**
+   * Parent should be stopped if one of its childs has stopped, as then it can never complete.
+   */
+  @Test
+  public void test_pollForChilds_stoppedChild() {
+    JobId parentJobId = createParentWithChilds(JobState.COMPLETE, JobState.STOPPED_BY_ERROR);
+    jobHandler.pollForChilds(parentJobId);
+    assertStopped(parentJobId);
+  }
+
+  /**
+   * Parent should be stopped if one of its childs does not exist, instead of polling forever.
+   */
+  @Test
+  public void test_pollForChilds_missingChild() {
+    JobId parentJobId = createParentWithChilds(JobState.COMPLETE);
+    JobEntity parentJob = jobManager.get(null, parentJobId);
+    parentJob.addChildJob(MISSING_CHILD_JOB_ID);
+    jobManager.put(null, parentJob, new ChangeLogEntryPojo("Adding missing child"));
+
+    jobHandler.pollForChilds(parentJobId);
+    JobEntity stoppedJob = assertStopped(parentJobId);
+    assertTrue(stoppedJob.getStopReason(),
+        stoppedJob.getStopReason().contains(MISSING_CHILD_JOB_ID.toString()));
+  }
+
+  /**
+   * Parent should keep polling for running childs, but only till
+   * {@link com.google.light.server.constants.LightConstants#CHILD_POLLING_MAX_POLLS}.
+   */
+  @Test
+  public void test_pollForChilds_maxPolls() {
+    JobId parentJobId = createParentWithChilds(JobState.COMPLETE, JobState.ENQUEUED);
+    for (int i = 1; i < CHILD_POLLING_MAX_POLLS; i++) {
+      jobHandler.pollForChilds(parentJobId);
+      JobEntity parentJob = jobManager.get(null, parentJobId);
+      assertEquals(JobState.POLLING_FOR_CHILDS, parentJob.getJobState());
+      assertEquals(i, parentJob.getChildPollCount());
+    }
+
+    jobHandler.pollForChilds(parentJobId);
+    assertStopped(parentJobId);
+  }
+
+  private JobEntity assertStopped(JobId jobId) {
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    assertEquals(JobState.STOPPED_BY_ERROR, jobEntity.getJobState());
+    assertTrue(jobEntity.getStopReason() != null);
+    return jobEntity;
+  }
+
+  /**
+   * Creates a parent Job which is polling for its childs, with one child in each of childStates.
+   */
+  private JobId createParentWithChilds(JobState... childStates) {
+    JobEntity parentJob = createJobEntity(JobType.ROOT_JOB, TaskType.IMPORT_BATCH,
+        JobState.CREATING_CHILDS, null /* parentJobId */);
+    jobManager.put(null, parentJob, new ChangeLogEntryPojo("Creating parent"));
+
+    for (JobState currChildState : childStates) {
+      JobEntity childJob = createJobEntity(JobType.CHILD_JOB, TaskType.IMPORT_SYNTHETIC_MODULE,
+          currChildState, parentJob.getJobId());
+      jobManager.put(null, childJob, new ChangeLogEntryPojo("Creating child"));
+      parentJob.addChildJob(childJob.getJobId());
+    }
+    parentJob.setJobState(JobState.POLLING_FOR_CHILDS);
+    jobManager.put(null, parentJob, new ChangeLogEntryPojo("Polling for childs"));
+    return parentJob.getJobId();
+  }
+
+  private JobEntity createJobEntity(JobType jobType, TaskType taskType, JobState jobState,
+      JobId parentJobId) {
+    return new JobEntity.Builder()
+        .jobType(jobType)
+        .parentJobId(parentJobId)
+        .rootJobId(parentJobId)
+        .jobHandlerType(JobHandlerType.TASK_QUEUE)
+        .taskType(taskType)
+        .jobState(jobState)
+        .request(new Text("{}"))
+        .context(new Text("{}"))
+        .creationTime(getNow())
+        .ownerId(testPersonId)
+        .build();
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.handlers.batchjobs;
+
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.ObjectifyUtils.nonTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.runInTransaction;
+import static com.google.light.testingutils.ApiCallCountingDelegate.TASKQUEUE_PACKAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Sets;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.constants.LightConstants;
+import com.google.light.server.dto.importresource.ImportBatchWrapper;
+import com.google.light.server.dto.importresource.ImportExternalIdDto;
+import com.google.light.server.dto.module.ModuleState;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
+import com.google.light.server.manager.interfaces.JobManager;
+import com.google.light.server.persistence.entity.jobs.JobEntity;
+import com.google.light.server.persistence.entity.jobs.JobState;
+import com.google.light.server.persistence.entity.module.ModuleEntity;
+import com.google.light.server.persistence.entity.module.ModuleVersionEntity;
+import com.google.light.server.utils.LightUtils;
+import com.google.light.server.utils.Transactable;
+import com.google.light.testingutils.ApiCallCountingDelegate;
+import com.googlecode.objectify.Objectify;
+import java.util.Set;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for {@link ImportBatchJobHandler}.
+ *
+ * @author Arjun Satyapal
+ */
+public class ImportBatchJobHandlerTest extends AbstractLightServerTest {
+  private static final int CHILD_COUNT = LightConstants.IMPORT_BATCH_SIZE_MAX;
+  private static final int BATCH_SIZE = LightConstants.CHILD_JOB_CREATION_BATCH_SIZE;
+  // Task queue adds, whether single or batched, are made using BulkAdd RPC.
+  private static final String ADD_METHOD = "BulkAdd";
+
+  private static ApiCallCountingDelegate countingDelegate;
+  private JobManager jobManager;
+  private ImportBatchJobHandler handler;
+
+  // Runs after GAE env is setup by AbstractGAETest.
+  @BeforeClass
+  public static void installCountingDelegate() {
+    countingDelegate = ApiCallCountingDelegate.install();
+  }
+
+  @AfterClass
+  public static void uninstallCountingDelegate() {
+    countingDelegate.uninstall();
+  }
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    this.jobManager = getInstance(JobManager.class);
+    this.handler = getInstance(ImportBatchJobHandler.class);
+  }
+
+  /**
+   * Fails {@link ImportBatchJobHandler#handle(JobEntity)} while enqueuing second batch of childs,
+   * and then retries it. Retry should create only the childs which were not added to parent, and
+   * each child should be added and enqueued exactly once. Childs created by failed attempt should
+   * be reused, so no Job or reserved module version is left orphaned.
+   */
+  @Test
+  public void test_handle_createChildsRetriedHalfway() {
+    JobId jobId = createImportBatchJob();
+
+    countingDelegate.reset();
+    countingDelegate.failOnCall(TASKQUEUE_PACKAGE, ADD_METHOD, 2);
+    try {
+      handler.handle(jobManager.get(null, jobId));
+      fail("should have failed.");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    assertEquals(JobState.ENQUEUED, jobEntity.getJobState());
+    assertEquals(BATCH_SIZE, jobEntity.getChildJobCount());
+
+    countingDelegate.reset();
+    handler.handle(jobManager.get(null, jobId));
+    int retryAdds = countingDelegate.getCount(TASKQUEUE_PACKAGE, ADD_METHOD);
+
+    jobEntity = jobManager.get(null, jobId);
+    assertEquals(JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION, jobEntity.getJobState());
+    assertEquals(CHILD_COUNT, jobEntity.getChildJobCount());
+    Set<JobId> childJobIds = Sets.newHashSet(jobEntity.getChildJobs());
+    assertEquals(CHILD_COUNT, childJobIds.size());
+
+    for (ImportExternalIdDto curr : jobEntity.getContext(ImportBatchWrapper.class).getList()) {
+      assertNotNull(curr.getJobId());
+      assertNotNull(curr.getModuleId());
+      assertTrue(childJobIds.contains(curr.getJobId()));
+    }
+
+    // One add for each remaining batch, and one for polling the parent.
+    int remainingChilds = CHILD_COUNT - BATCH_SIZE;
+    int remainingBatches = (remainingChilds + BATCH_SIZE - 1) / BATCH_SIZE;
+    assertEquals(remainingBatches + 1, retryAdds);
+
+    Objectify ofy = nonTransaction();
+    assertEquals(CHILD_COUNT, ofy.query(JobEntity.class)
+        .filter("parentJobId", jobId.getValue()).count());
+    assertEquals(CHILD_COUNT, ofy.query(ModuleEntity.class).count());
+    assertEquals(CHILD_COUNT, ofy.query(ModuleVersionEntity.class).count());
+  }
+
+  private JobId createImportBatchJob() {
+    final ImportBatchWrapper wrapper = new ImportBatchWrapper();
+    for (int i = 0; i < CHILD_COUNT; i++) {
+      wrapper.getList().add(LightUtils.createImportExternalIdDto(
+          ContentLicense.DEFAULT_LIGHT_CONTENT_LICENSES,
+          new ExternalId("http://example.com/importBatch/" + testPersonId + "/page" + i),
+          null /* jobId */, null /* jobState */, null /* moduleId */,
+          ModuleType.LIGHT_SYNTHETIC_MODULE, ModuleState.IMPORTING, "Page " + i,
+          LightUtils.LATEST_VERSION));
+    }
+    wrapper.validate();
+
+    return runInTransaction("creating import batch job", new Transactable<JobId>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public JobId run(Objectify ofy) {
+        return jobManager.createImportBatchJob(ofy, wrapper, JobState.ENQUEUED);
+      }
+    });
+  }
+}
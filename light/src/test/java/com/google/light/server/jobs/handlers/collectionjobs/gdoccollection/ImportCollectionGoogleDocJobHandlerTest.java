@@ -0,0 +1,298 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.handlers.collectionjobs.gdoccollection;
+
+import static com.google.light.server.constants.OAuth2ProviderService.GOOGLE_DOC;
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.LightUtils.getCurrentTimeInMillis;
+import static com.google.light.server.utils.LightUtils.getNow;
+import static com.google.light.server.utils.ObjectifyUtils.nonTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.runInTransaction;
+import static com.google.light.testingutils.ApiCallCountingDelegate.TASKQUEUE_PACKAGE;
+import static com.google.light.testingutils.TestingUtils.getRandomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Text;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.inject.util.Providers;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.dto.importresource.ImportExternalIdDto;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocResourceId;
+import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
+import com.google.light.server.jobs.handlers.modulejobs.gdocument.ImportModuleGoogleDocJobHandler;
+import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenManagerFactory;
+import com.google.light.server.manager.interfaces.JobManager;
+import com.google.light.server.persistence.entity.jobs.GoogleDocFolderSnapshotEntity;
+import com.google.light.server.persistence.entity.jobs.JobEntity;
+import com.google.light.server.persistence.entity.jobs.JobEntity.JobHandlerType;
+import com.google.light.server.persistence.entity.jobs.JobEntity.JobType;
+import com.google.light.server.persistence.entity.jobs.JobEntity.TaskType;
+import com.google.light.server.persistence.entity.jobs.JobState;
+import com.google.light.server.persistence.entity.module.ModuleVersionEntity;
+import com.google.light.server.persistence.entity.oauth2.owner.OAuth2OwnerTokenEntity;
+import com.google.light.server.persistence.entity.person.PersonEntity;
+import com.google.light.server.servlets.thirdparty.google.gdoc.DocsServiceWrapper;
+import com.google.light.server.utils.Transactable;
+import com.google.light.testingutils.ApiCallCountingDelegate;
+import com.googlecode.objectify.Objectify;
+import java.util.List;
+import java.util.Set;
+import org.joda.time.Instant;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for {@link ImportCollectionGoogleDocJobHandler}.
+ *
+ * @author Arjun Satyapal
+ */
+public class ImportCollectionGoogleDocJobHandlerTest extends AbstractLightServerTest {
+  private static final int FOLDER_SIZE = 500;
+  private static final String GDOC_URL_PREFIX = "https://docs.google.com/a/myopenedu.com/";
+
+  private static ApiCallCountingDelegate countingDelegate;
+  private JobManager jobManager;
+  private StubDocsServiceWrapper docsService;
+  private ImportCollectionGoogleDocJobHandler handler;
+
+  // Runs after GAE env is setup by AbstractGAETest.
+  @BeforeClass
+  public static void installCountingDelegate() {
+    countingDelegate = ApiCallCountingDelegate.install();
+  }
+
+  @AfterClass
+  public static void uninstallCountingDelegate() {
+    countingDelegate.uninstall();
+  }
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    this.jobManager = getInstance(JobManager.class);
+
+    OAuth2OwnerTokenManagerFactory tokenManagerFactory =
+        getInstance(OAuth2OwnerTokenManagerFactory.class);
+    tokenManagerFactory.create(GOOGLE_DOC).put(new OAuth2OwnerTokenEntity.Builder()
+        .personKey(PersonEntity.generateKey(testPersonId))
+        .providerService(GOOGLE_DOC)
+        .providerUserId(getRandomString())
+        .accessToken(getRandomString())
+        .refreshToken(getRandomString())
+        .expiresInMillis(getCurrentTimeInMillis())
+        .tokenType(getRandomString())
+        .tokenInfo(getRandomString())
+        .build());
+
+    this.docsService = new StubDocsServiceWrapper(tokenManagerFactory, FOLDER_SIZE);
+    this.handler = new ImportCollectionGoogleDocJobHandler(jobManager,
+        getInstance(ImportModuleGoogleDocJobHandler.class), Providers.of(docsService));
+  }
+
+  /**
+   * Imports a folder with {@link #FOLDER_SIZE} documents. Folder should be listed only once, and
+   * never while a datastore transaction is open.
+   */
+  @Test
+  public void test_handle_createChilds() {
+    JobId jobId = createCollectionJob();
+
+    countingDelegate.reset();
+    handler.handle(jobManager.get(null, jobId));
+
+    assertEquals(1, docsService.listingCalls);
+    assertEquals(0, docsService.listingCallsInTransaction);
+
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    assertEquals(JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION, jobEntity.getJobState());
+    Set<JobId> childJobIds = Sets.newHashSet(jobEntity.getChildJobs());
+    assertEquals(FOLDER_SIZE, childJobIds.size());
+
+    ImportCollectionGoogleDocContext context =
+        jobEntity.getContext(ImportCollectionGoogleDocContext.class);
+    assertEquals(FOLDER_SIZE, context.getFolderSnapshotSize());
+    assertEquals(FOLDER_SIZE, context.getFolderSnapshotCursor());
+    assertEquals(FOLDER_SIZE, context.getList().size());
+    for (ImportExternalIdDto curr : context.getList()) {
+      assertNotNull(curr.getJobId());
+      assertTrue(childJobIds.contains(curr.getJobId()));
+    }
+
+    // Snapshot can be walked in any range.
+    List<GoogleDocInfoDto> snapshot = jobManager.getFolderSnapshot(jobId, 95, 205);
+    assertEquals(110, snapshot.size());
+    for (int i = 0; i < snapshot.size(); i++) {
+      assertEquals(createDocExternalId(95 + i), snapshot.get(i).getExternalId());
+    }
+  }
+
+  /**
+   * Fails {@link ImportCollectionGoogleDocJobHandler#handle(JobEntity)} while enqueuing second
+   * batch of childs, and then retries it. Childs created by failed attempt should be reused, so no
+   * Job or reserved module version is left orphaned.
+   */
+  @Test
+  public void test_handle_createChildsRetriedHalfway() {
+    JobId jobId = createCollectionJob();
+
+    countingDelegate.reset();
+    countingDelegate.failOnCall(TASKQUEUE_PACKAGE, "BulkAdd", 2);
+    try {
+      handler.handle(jobManager.get(null, jobId));
+      fail("should have failed.");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+
+    countingDelegate.reset();
+    handler.handle(jobManager.get(null, jobId));
+
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    assertEquals(JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION, jobEntity.getJobState());
+    assertEquals(FOLDER_SIZE, Sets.newHashSet(jobEntity.getChildJobs()).size());
+
+    Objectify ofy = nonTransaction();
+    assertEquals(FOLDER_SIZE, ofy.query(JobEntity.class)
+        .filter("parentJobId", jobId.getValue()).count());
+    assertEquals(FOLDER_SIZE, ofy.query(ModuleVersionEntity.class).count());
+  }
+
+  /**
+   * Folder snapshot should be deleted once the Job completes.
+   */
+  @Test
+  public void test_put_deletesFolderSnapshotOnComplete() {
+    JobId jobId = createCollectionJob();
+    handler.handle(jobManager.get(null, jobId));
+    assertTrue(countFolderSnapshotChunks(jobId) > 0);
+
+    ImportCollectionGoogleDocContext context =
+        jobManager.get(null, jobId).getContext(ImportCollectionGoogleDocContext.class);
+    jobManager.enqueueCompleteJob(jobId, context, "Completing");
+    assertEquals(0, countFolderSnapshotChunks(jobId));
+  }
+
+  /**
+   * Folder snapshot should be deleted once the Job is stopped.
+   */
+  @Test
+  public void test_put_deletesFolderSnapshotOnStop() {
+    JobId jobId = createCollectionJob();
+    handler.handle(jobManager.get(null, jobId));
+    assertTrue(countFolderSnapshotChunks(jobId) > 0);
+
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    jobEntity.setJobState(JobState.STOPPED_BY_ERROR);
+    jobEntity.setStopReason("Stopping");
+    jobManager.put(null, jobEntity, new ChangeLogEntryPojo("Stopping"));
+    assertEquals(0, countFolderSnapshotChunks(jobId));
+  }
+
+  private static int countFolderSnapshotChunks(JobId jobId) {
+    return nonTransaction().query(GoogleDocFolderSnapshotEntity.class)
+        .ancestor(JobEntity.generateKey(jobId)).count();
+  }
+
+  private JobId createCollectionJob() {
+    ExternalId folderExternalId = new ExternalId(GDOC_URL_PREFIX + "#folders/folder.0."
+        + getRandomString());
+    ImportCollectionGoogleDocContext context = new ImportCollectionGoogleDocContext.Builder()
+        .title("Folder")
+        .contentLicenses(ContentLicense.DEFAULT_LIGHT_CONTENT_LICENSES)
+        .externalId(folderExternalId)
+        .gdocInfo(createGoogleDocInfo(folderExternalId, ModuleType.GOOGLE_COLLECTION, "Folder"))
+        .build();
+    Text text = new Text(context.toCompactJson());
+
+    final JobEntity jobEntity = new JobEntity.Builder()
+        .jobType(JobType.ROOT_JOB)
+        .jobHandlerType(JobHandlerType.TASK_QUEUE)
+        .taskType(TaskType.IMPORT_COLLECTION_GOOGLE_COLLECTION)
+        .jobState(JobState.ENQUEUED)
+        .request(text)
+        .context(text)
+        .creationTime(getNow())
+        .ownerId(testPersonId)
+        .build();
+
+    return runInTransaction("creating collection job", new Transactable<JobId>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public JobId run(Objectify ofy) {
+        return jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo("created")).getJobId();
+      }
+    });
+  }
+
+  private static ExternalId createDocExternalId(int index) {
+    return new ExternalId(GDOC_URL_PREFIX + "document/d/doc" + index + "/edit");
+  }
+
+  private static GoogleDocInfoDto createGoogleDocInfo(ExternalId externalId,
+      ModuleType moduleType, String title) {
+    return new GoogleDocInfoDto.Builder(GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING)
+        .id(getRandomString())
+        .etag(getRandomString())
+        .lastEditTime(new Instant(getCurrentTimeInMillis()))
+        .moduleType(moduleType)
+        .title(title)
+        .externalId(externalId)
+        .aclFeedLink(externalId.getValue() + "/acl")
+        .htmlExportUrl(externalId.getValue() + "/export")
+        .build();
+  }
+
+  /**
+   * {@link DocsServiceWrapper} which lists a folder of given size without talking to Google.
+   */
+  private static class StubDocsServiceWrapper extends DocsServiceWrapper {
+    private final List<GoogleDocInfoDto> folderContents;
+    private int listingCalls = 0;
+    private int listingCallsInTransaction = 0;
+
+    public StubDocsServiceWrapper(OAuth2OwnerTokenManagerFactory ownerTokenManagerFactory,
+        int folderSize) {
+      super(ownerTokenManagerFactory);
+      folderContents = Lists.newArrayListWithCapacity(folderSize);
+      for (int i = 0; i < folderSize; i++) {
+        folderContents.add(createGoogleDocInfo(createDocExternalId(i),
+            ModuleType.GOOGLE_DOCUMENT, "Document " + i));
+      }
+    }
+
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public List<GoogleDocInfoDto> getFolderContentWhichAreSupportedInAlphabeticalOrder(
+        GoogleDocResourceId resourceId, int maxResult, GoogleDocInfoDto.Configuration config) {
+      listingCalls++;
+      if (DatastoreServiceFactory.getDatastoreService().getCurrentTransaction(null) != null) {
+        listingCallsInTransaction++;
+      }
+      return Lists.newArrayList(folderContents);
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.handlers.modulejobs.gdocument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.Files;
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.constants.LightConstants;
+import com.google.light.server.constants.google.cloudstorage.GoogleCloudStorageBuckets;
+import com.google.light.server.constants.http.ContentTypeEnum;
+import com.google.light.server.dto.module.GSBlobInfo;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link GoogleDocArchiveExtractor}.
+ *
+ * Entries are written to local files instead of GCS. Archive is read through a counting stream,
+ * so the test can verify that each entry is written as soon as it is read, instead of the whole
+ * archive being buffered first.
+ *
+ * @author Arjun Satyapal
+ */
+public class GoogleDocArchiveExtractorTest extends AbstractGAETest {
+  private static final String HTML = "<html><head><title>Doc</title></head><body>"
+      + "<img src=\"images/image0.png\"></body></html>";
+  private static final int IMAGE_COUNT = 4;
+  private static final int IMAGE_SIZE_IN_BYTES = 1024 * 1024;
+  /** Bytes of archive which can be read ahead of current entry, e.g. headers and buffers. */
+  private static final int READ_AHEAD_IN_BYTES = 64 * 1024;
+
+  private final ModuleId moduleId = new ModuleId(1234L);
+  private File tempDir;
+
+  @Before
+  public void setUp() {
+    tempDir = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(tempDir);
+  }
+
+  /**
+   * Test for {@link GoogleDocArchiveExtractor#extract(InputStream)} with an archive containing
+   * multiple images.
+   */
+  @Test
+  public void test_extract() throws Exception {
+    File archive = createArchive(IMAGE_COUNT, IMAGE_SIZE_IN_BYTES);
+    CountingInputStream archiveStream = new CountingInputStream(new FileInputStream(archive));
+    FileBackedEntryWriter entryWriter = new FileBackedEntryWriter(archiveStream);
+    GoogleDocArchiveExtractor extractor = new GoogleDocArchiveExtractor(moduleId, entryWriter);
+
+    try {
+      extractor.extract(archiveStream);
+    } finally {
+      archiveStream.close();
+    }
+
+    assertEquals(HTML, extractor.getHtmlContent());
+    // HTML + images.
+    assertEquals(IMAGE_COUNT + 1, extractor.getResourceMap().size());
+    assertEquals(HTML.length() + (long) IMAGE_COUNT * IMAGE_SIZE_IN_BYTES,
+        entryWriter.bytesWritten);
+
+    GSBlobInfo htmlInfo = extractor.getResourceMap().get("1234.html");
+    assertNotNull(htmlInfo);
+    assertEquals(ContentTypeEnum.TEXT_HTML, htmlInfo.getContentType());
+    assertEquals(HTML.getBytes(Charsets.UTF_8).length, htmlInfo.getSizeInBytes().longValue());
+    assertEquals(HTML, Files.toString(new File(tempDir, "out/1234/1234.html"), Charsets.UTF_8));
+
+    for (int i = 0; i < IMAGE_COUNT; i++) {
+      GSBlobInfo imageInfo = extractor.getResourceMap().get("images/image" + i + ".png");
+      assertNotNull(imageInfo);
+      assertEquals(ContentTypeEnum.IMAGE_PNG, imageInfo.getContentType());
+      assertEquals("image" + i + ".png", imageInfo.getFileName());
+      assertEquals(IMAGE_SIZE_IN_BYTES, imageInfo.getSizeInBytes().longValue());
+      assertTrue(imageInfo.getGsKey(), imageInfo.getGsKey().endsWith(
+          "/1234/images/image" + i + ".png"));
+      assertEquals(IMAGE_SIZE_IN_BYTES,
+          new File(tempDir, "out/1234/images/image" + i + ".png").length());
+
+      // Images are not compressible, so an image is written before next one is read.
+      long archiveBytesRead = entryWriter.archiveBytesReadBefore.get("1234/images/image" + i
+          + ".png");
+      assertTrue("image" + i + " : " + archiveBytesRead,
+          archiveBytesRead < (long) i * IMAGE_SIZE_IN_BYTES + READ_AHEAD_IN_BYTES);
+    }
+  }
+
+  /**
+   * Test for {@link GoogleDocArchiveExtractor#extract(InputStream)} when HTML is too big to be
+   * stored in Datastore.
+   */
+  @Test
+  public void test_extract_htmlTooBig() throws Exception {
+    File archive = new File(tempDir, "archive.zip");
+    ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(archive));
+    zipOut.putNextEntry(new ZipEntry("Doc/Doc.html"));
+    zipOut.write(new byte[LightConstants.MAX_MODULE_HTML_SIZE_IN_BYTES + 1]);
+    zipOut.closeEntry();
+    zipOut.close();
+
+    GoogleDocArchiveExtractor extractor =
+        new GoogleDocArchiveExtractor(moduleId, new FileBackedEntryWriter(null));
+    InputStream archiveStream = new FileInputStream(archive);
+    try {
+      extractor.extract(archiveStream);
+      fail("should have failed.");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    } finally {
+      archiveStream.close();
+    }
+  }
+
+  private File createArchive(int imageCount, int imageSizeInBytes) throws IOException {
+    File archive = new File(tempDir, "archive.zip");
+    ZipOutputStream zipOut = new ZipOutputStream(
+        new BufferedOutputStream(new FileOutputStream(archive)));
+
+    zipOut.putNextEntry(new ZipEntry("Doc/Doc.html"));
+    zipOut.write(HTML.getBytes(Charsets.UTF_8));
+    zipOut.closeEntry();
+
+    Random random = new Random(0);
+    byte[] image = new byte[imageSizeInBytes];
+    for (int i = 0; i < imageCount; i++) {
+      zipOut.putNextEntry(new ZipEntry("Doc/images/image" + i + ".png"));
+      random.nextBytes(image);
+      zipOut.write(image);
+      zipOut.closeEntry();
+    }
+    zipOut.close();
+
+    return archive;
+  }
+
+  /**
+   * Stand-in for GCS which writes entries under local temp directory.
+   */
+  private class FileBackedEntryWriter implements GoogleDocArchiveExtractor.EntryWriter {
+    private final CountingInputStream archiveStream;
+    private final Map<String, Long> archiveBytesReadBefore = Maps.newHashMap();
+    private long bytesWritten = 0;
+
+    private FileBackedEntryWriter(CountingInputStream archiveStream) {
+      this.archiveStream = archiveStream;
+    }
+
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public void write(InputStream inputStream, GoogleCloudStorageBuckets bucket,
+        ContentTypeEnum contentType, String relativeFilePath) throws IOException {
+      assertEquals(GoogleCloudStorageBuckets.CONTENT, bucket);
+      if (archiveStream != null) {
+        archiveBytesReadBefore.put(relativeFilePath, archiveStream.getCount());
+      }
+      File file = new File(tempDir, "out/" + relativeFilePath);
+      Files.createParentDirs(file);
+
+      OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file),
+          LightConstants.GCS_BUFFER_SIZE_IN_BYTES);
+      try {
+        bytesWritten += ByteStreams.copy(inputStream, outputStream);
+      } finally {
+        outputStream.close();
+      }
+    }
+  }
+}
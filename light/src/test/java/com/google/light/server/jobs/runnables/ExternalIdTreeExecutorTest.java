@@ -0,0 +1,490 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.runnables;
+
+import static com.google.light.server.constants.LightConstants.GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS;
+import static com.google.light.server.constants.OAuth2ProviderService.GOOGLE_DOC;
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.LightUtils.getCurrentTimeInMillis;
+import static com.google.light.testingutils.TestingUtils.getRandomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CharStreams;
+import com.google.inject.util.Providers;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.tree.externaltree.ExternalIdTreeNodeDto;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocResourceId;
+import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
+import com.google.light.server.dto.thirdparty.google.youtube.YouTubePlaylistInfo;
+import com.google.light.server.dto.thirdparty.google.youtube.YouTubeVideoInfo;
+import com.google.light.server.exception.unchecked.InvalidExternalIdException;
+import com.google.light.server.exception.unchecked.httpexception.NotFoundException;
+import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenManagerFactory;
+import com.google.light.server.persistence.entity.oauth2.owner.OAuth2OwnerTokenEntity;
+import com.google.light.server.persistence.entity.person.PersonEntity;
+import com.google.light.server.servlets.thirdparty.google.gdoc.DocsServiceWrapper;
+import com.google.light.server.servlets.thirdparty.google.youtube.YouTubeServiceWrapper;
+import com.google.light.server.servlets.thirdparty.google.youtube.YouTubeServiceWrapper.PlaylistPage;
+import com.google.light.server.urls.YouTubeUrl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.joda.time.Instant;
+import org.junit.Test;
+
+/**
+ * Test for {@link ExternalIdTreeExecutor}.
+ *
+ * Google Docs are served by a local HTTP server which adds a fixed latency to each request.
+ * Folder "root" contains {@link #SUB_FOLDERS} folders, and each of them contains
+ * {@link #DOCS_PER_SUB_FOLDER} documents. So the tree has 3 levels and 300 nodes, and building
+ * it serially needs 2 + {@link #SUB_FOLDERS} requests, which take longer than the deadline.
+ * Folder "brokenroot" contains "sub0" and {@link #INVALID_FOLDER}, listing which throws
+ * {@link InvalidExternalIdException}.
+ *
+ * YouTube Playlists are served by {@link StubYouTubeServiceWrapper}.
+ *
+ * @author Arjun Satyapal
+ */
+public class ExternalIdTreeExecutorTest extends AbstractLightServerTest {
+  private static final int SUB_FOLDERS = 13;
+  private static final int DOCS_PER_SUB_FOLDER = 22;
+  private static final int NODE_COUNT = 1 + SUB_FOLDERS + SUB_FOLDERS * DOCS_PER_SUB_FOLDER;
+  private static final long LATENCY_IN_MILLIS = 200;
+  // Serial fetch needs (2 + 13) * 200 = 3000ms.
+  private static final long DEADLINE_IN_MILLIS = 2000;
+  private static final String GDOC_URL_PREFIX = "https://docs.google.com/a/myopenedu.com/";
+  private static final String MISSING_DOC = "missing";
+  private static final String INVALID_FOLDER = "invalid0";
+  private static final String PAGED_PLAYLIST = "PLpaged";
+  private static final String BROKEN_PLAYLIST = "PLbroken";
+  // Two and a half pages.
+  private static final int PLAYLIST_VIDEOS = 5 * GDATA_YOU_TUBE_PLAYLIST_MAX_RESULTS / 2;
+  private static final int PLAYLIST_PAGES = 3;
+
+  private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger currentRequests = new AtomicInteger();
+  private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+  private LocalDocsServiceWrapper docsService;
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    try {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    server.createContext("/", new SlowFolderHandler());
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.start();
+
+    OAuth2OwnerTokenManagerFactory tokenManagerFactory =
+        getInstance(OAuth2OwnerTokenManagerFactory.class);
+    tokenManagerFactory.create(GOOGLE_DOC).put(new OAuth2OwnerTokenEntity.Builder()
+        .personKey(PersonEntity.generateKey(testPersonId))
+        .providerService(GOOGLE_DOC)
+        .providerUserId(getRandomString())
+        .accessToken(getRandomString())
+        .refreshToken(getRandomString())
+        .expiresInMillis(getCurrentTimeInMillis())
+        .tokenType(getRandomString())
+        .tokenInfo(getRandomString())
+        .build());
+    docsService = new LocalDocsServiceWrapper(tokenManagerFactory,
+        "http://localhost:" + server.getAddress().getPort() + "/");
+  }
+
+  @Override
+  public void tearDown() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  /**
+   * Test for {@link ExternalIdTreeExecutor#createExternalIdTrees(List)}.
+   */
+  @Test
+  public void test_createExternalIdTrees() {
+    ExternalIdTreeExecutor executor = createExecutor(ExternalIdTreeExecutor.DEFAULT_MAX_CONCURRENT);
+
+    List<ExternalIdTreeNodeDto> trees = executor.createExternalIdTrees(
+        Lists.newArrayList(createFolderExternalId("root")));
+
+    assertEquals(2 + SUB_FOLDERS, requests.get());
+    // Sub folders are fetched concurrently, but not more than the limit at a time.
+    assertTrue("maxConcurrentRequests = " + maxConcurrentRequests.get(),
+        maxConcurrentRequests.get() > 1);
+    assertTrue("maxConcurrentRequests = " + maxConcurrentRequests.get(),
+        maxConcurrentRequests.get() <= ExternalIdTreeExecutor.DEFAULT_MAX_CONCURRENT);
+
+    assertEquals(1, trees.size());
+    ExternalIdTreeNodeDto root = trees.get(0);
+    assertEquals("Title root", root.getTitle());
+    assertEquals(NODE_COUNT, countNodes(root));
+    assertEquals(SUB_FOLDERS * DOCS_PER_SUB_FOLDER, root.getLeafNodes().size());
+
+    // Childs should be in same order as they were listed.
+    List<ExternalIdTreeNodeDto> subFolders = root.getChildren();
+    assertEquals(SUB_FOLDERS, subFolders.size());
+    for (int i = 0; i < SUB_FOLDERS; i++) {
+      assertEquals(createFolderExternalId("sub" + i), subFolders.get(i).getExternalId());
+      List<ExternalIdTreeNodeDto> docs = subFolders.get(i).getChildren();
+      assertEquals(DOCS_PER_SUB_FOLDER, docs.size());
+      for (int j = 0; j < DOCS_PER_SUB_FOLDER; j++) {
+        assertEquals(createDocExternalId("sub" + i + "doc" + j), docs.get(j).getExternalId());
+      }
+    }
+  }
+
+  /**
+   * Test for {@link ExternalIdTreeExecutor#createExternalIdTrees(List)} when tree cannot be built
+   * before the deadline. Caller should get control back without waiting for remaining requests.
+   */
+  @Test
+  public void test_createExternalIdTrees_deadline() {
+    ExternalIdTreeExecutor executor = createExecutor(1 /* maxConcurrent */);
+
+    try {
+      executor.createExternalIdTrees(Lists.newArrayList(createFolderExternalId("root")));
+      fail("should have failed.");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+    assertTrue("requests = " + requests.get(), requests.get() < 2 + SUB_FOLDERS);
+  }
+
+  /**
+   * Test for {@link ExternalIdTreeExecutor#createExternalIdTrees(List)} when one of the
+   * ExternalIds is invalid. Host of the Synthetic Module cannot be resolved, so it is invalid.
+   */
+  @Test
+  public void test_createExternalIdTrees_invalidExternalId() {
+    ExternalIdTreeExecutor executor = createExecutor(ExternalIdTreeExecutor.DEFAULT_MAX_CONCURRENT);
+
+    List<ExternalIdTreeNodeDto> trees = executor.createExternalIdTrees(Lists.newArrayList(
+        createDocExternalId("doc0"), new ExternalId("http://example.invalid/page"),
+        createDocExternalId("doc2")));
+    assertEquals(3, trees.size());
+    assertEquals("Title doc0", trees.get(0).getTitle());
+    assertNull(trees.get(1));
+    assertEquals("Title doc2", trees.get(2).getTitle());
+
+    // Failures other than an invalid ExternalId fail the whole request.
+    try {
+      executor.createExternalIdTrees(Lists.newArrayList(createDocExternalId(MISSING_DOC)));
+      fail("should have failed.");
+    } catch (NotFoundException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Test for {@link ExternalIdTreeExecutor#createExternalIdTrees(List)} when a sub collection of
+   * one of the ExternalIds is invalid. Only that ExternalId should be ignored.
+   */
+  @Test
+  public void test_createExternalIdTrees_invalidSubCollection() {
+    ExternalIdTreeExecutor executor = createExecutor(ExternalIdTreeExecutor.DEFAULT_MAX_CONCURRENT);
+
+    List<ExternalIdTreeNodeDto> trees = executor.createExternalIdTrees(Lists.newArrayList(
+        createFolderExternalId("brokenroot"), createDocExternalId("doc1")));
+    assertEquals(2, trees.size());
+    assertNull(trees.get(0));
+    assertEquals("Title doc1", trees.get(1).getTitle());
+  }
+
+  /**
+   * Test for {@link ExternalIdTreeExecutor#createExternalIdTrees(List)} for YouTube Playlists
+   * which have more than one page. Each page should be fetched once, and videos should be in the
+   * playlist order. A playlist whose later page is invalid should be ignored.
+   */
+  @Test
+  public void test_createExternalIdTrees_playlistPages() {
+    StubYouTubeServiceWrapper ytService = new StubYouTubeServiceWrapper();
+    ExternalIdTreeExecutor executor = createExecutor(ExternalIdTreeExecutor.DEFAULT_MAX_CONCURRENT,
+        ytService);
+
+    List<ExternalIdTreeNodeDto> trees = executor.createExternalIdTrees(Lists.newArrayList(
+        createPlaylistExternalId(PAGED_PLAYLIST), createPlaylistExternalId(BROKEN_PLAYLIST),
+        createDocExternalId("doc2")));
+    assertEquals(3, trees.size());
+
+    ExternalIdTreeNodeDto playlist = trees.get(0);
+    assertEquals("Title " + PAGED_PLAYLIST, playlist.getTitle());
+    List<ExternalIdTreeNodeDto> videos = playlist.getChildren();
+    assertEquals(PLAYLIST_VIDEOS, videos.size());
+    for (int i = 0; i < PLAYLIST_VIDEOS; i++) {
+      assertEquals(createVideoExternalId(i), videos.get(i).getExternalId());
+    }
+    for (int pageIndex = 0; pageIndex < PLAYLIST_PAGES; pageIndex++) {
+      assertEquals(1, ytService.pageRequests.get(pageIndex));
+    }
+
+    assertNull(trees.get(1));
+    assertEquals("Title doc2", trees.get(2).getTitle());
+  }
+
+  private ExternalIdTreeExecutor createExecutor(int maxConcurrent) {
+    return createExecutor(maxConcurrent, new YouTubeServiceWrapper());
+  }
+
+  private ExternalIdTreeExecutor createExecutor(int maxConcurrent,
+      YouTubeServiceWrapper ytService) {
+    return new ExternalIdTreeExecutor(Providers.<DocsServiceWrapper> of(docsService),
+        Providers.of(ytService), threadFactory, maxConcurrent, DEADLINE_IN_MILLIS);
+  }
+
+  private static int countNodes(ExternalIdTreeNodeDto node) {
+    int count = 1;
+    if (node.hasChildren()) {
+      for (ExternalIdTreeNodeDto currChild : node.getChildren()) {
+        count += countNodes(currChild);
+      }
+    }
+    return count;
+  }
+
+  private static ExternalId createFolderExternalId(String folderId) {
+    return new ExternalId(GDOC_URL_PREFIX + "#folders/folder.0." + folderId);
+  }
+
+  private static ExternalId createDocExternalId(String docId) {
+    return new ExternalId(GDOC_URL_PREFIX + "document/d/" + docId + "/edit");
+  }
+
+  private static ExternalId createPlaylistExternalId(String playlistId) {
+    return new ExternalId("http://www.youtube.com/playlist?list=" + playlistId);
+  }
+
+  private static ExternalId createVideoExternalId(int index) {
+    return new ExternalId("http://www.youtube.com/watch?v=video" + index);
+  }
+
+  private static GoogleDocInfoDto createGoogleDocInfo(String resourceId, String title) {
+    boolean isFolder = !resourceId.contains("doc");
+    ExternalId externalId = isFolder ? createFolderExternalId(resourceId)
+        : createDocExternalId(resourceId);
+    return new GoogleDocInfoDto.Builder(GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING)
+        .id(resourceId)
+        .etag(resourceId)
+        .lastEditTime(new Instant(0))
+        .moduleType(isFolder ? ModuleType.GOOGLE_COLLECTION : ModuleType.GOOGLE_DOCUMENT)
+        .title(title)
+        .externalId(externalId)
+        .aclFeedLink(externalId.getValue() + "/acl")
+        .htmlExportUrl(externalId.getValue() + "/export")
+        .build();
+  }
+
+  /**
+   * Serves "/info/{id}" with title of the resource, and "/folder/{id}" with ids of the folder
+   * contents, one per line, after {@link #LATENCY_IN_MILLIS}.
+   */
+  private class SlowFolderHandler implements HttpHandler {
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      requests.incrementAndGet();
+      int current = currentRequests.incrementAndGet();
+      for (int max = maxConcurrentRequests.get(); current > max
+          && !maxConcurrentRequests.compareAndSet(max, current);) {
+        max = maxConcurrentRequests.get();
+      }
+      try {
+        Thread.sleep(LATENCY_IN_MILLIS);
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        String resourceId = parts[2];
+        if (resourceId.equals(MISSING_DOC)) {
+          exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+          return;
+        }
+
+        StringBuilder body = new StringBuilder();
+        if (parts[1].equals("info")) {
+          body.append("Title ").append(resourceId);
+        } else if (resourceId.equals("brokenroot")) {
+          body.append("sub0\n").append(INVALID_FOLDER).append("\n");
+        } else if (resourceId.equals("root")) {
+          for (int i = 0; i < SUB_FOLDERS; i++) {
+            body.append("sub").append(i).append("\n");
+          }
+        } else {
+          for (int j = 0; j < DOCS_PER_SUB_FOLDER; j++) {
+            body.append(resourceId).append("doc").append(j).append("\n");
+          }
+        }
+
+        byte[] bytes = body.toString().getBytes(Charsets.UTF_8);
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        currentRequests.decrementAndGet();
+        exchange.close();
+      }
+    }
+  }
+
+  /**
+   * {@link DocsServiceWrapper} which fetches Google Doc information and folder contents from
+   * local server instead of Google.
+   */
+  private static class LocalDocsServiceWrapper extends DocsServiceWrapper {
+    private final String baseUrl;
+
+    public LocalDocsServiceWrapper(OAuth2OwnerTokenManagerFactory ownerTokenManagerFactory,
+        String baseUrl) {
+      super(ownerTokenManagerFactory);
+      this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public GoogleDocInfoDto getGoogleDocInfo(GoogleDocResourceId resourceId,
+        GoogleDocInfoDto.Configuration config) {
+      String id = getId(resourceId);
+      return createGoogleDocInfo(id, fetch(resourceId, "info/" + id).trim());
+    }
+
+    @Override
+    public List<GoogleDocInfoDto> getFolderContentWhichAreSupportedInAlphabeticalOrder(
+        GoogleDocResourceId resourceId, int maxResult, GoogleDocInfoDto.Configuration config) {
+      if (getId(resourceId).equals(INVALID_FOLDER)) {
+        throw new InvalidExternalIdException(createFolderExternalId(INVALID_FOLDER));
+      }
+
+      List<GoogleDocInfoDto> list = Lists.newArrayList();
+      for (String currId : fetch(resourceId, "folder/" + getId(resourceId)).split("\n")) {
+        if (!currId.isEmpty()) {
+          list.add(createGoogleDocInfo(currId, "Title " + currId));
+        }
+      }
+      return list;
+    }
+
+    private static String getId(GoogleDocResourceId resourceId) {
+      return resourceId.getTypedResourceId().split("%3A|:")[1];
+    }
+
+    private String fetch(GoogleDocResourceId resourceId, String path) {
+      try {
+        HttpURLConnection connection =
+            (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+          throw new NotFoundException("GoogleDoc resource[" + resourceId + "] was not found.");
+        }
+        InputStreamReader reader =
+            new InputStreamReader(connection.getInputStream(), Charsets.UTF_8);
+        try {
+          return CharStreams.toString(reader);
+        } finally {
+          reader.close();
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * {@link YouTubeServiceWrapper} which serves playlists with {@link #PLAYLIST_VIDEOS} videos
+   * from memory, and counts requests for each page of {@link #PAGED_PLAYLIST}. Pages other than
+   * the first one of {@link #BROKEN_PLAYLIST} are invalid.
+   */
+  private static class StubYouTubeServiceWrapper extends YouTubeServiceWrapper {
+    private final AtomicIntegerArray pageRequests = new AtomicIntegerArray(PLAYLIST_PAGES);
+    private final List<YouTubeVideoInfo> videos = Lists.newArrayList();
+    private final Map<String, YouTubePlaylistInfo> playlists = Maps.newHashMap();
+
+    @SuppressWarnings("synthetic-access")
+    private StubYouTubeServiceWrapper() {
+      // Mocks are created upfront, as stubbing them from executor threads is not safe.
+      for (int i = 0; i < PLAYLIST_VIDEOS; i++) {
+        YouTubeVideoInfo video = mock(YouTubeVideoInfo.class);
+        when(video.getExternalId()).thenReturn(createVideoExternalId(i));
+        when(video.getTitle()).thenReturn("Title video" + i);
+        when(video.getContentLicenses()).thenReturn(Lists.newArrayList(ContentLicense.YOUTUBE));
+        videos.add(video);
+      }
+
+      for (String currPlaylistId : Lists.newArrayList(PAGED_PLAYLIST, BROKEN_PLAYLIST)) {
+        YouTubePlaylistInfo playlistInfo = mock(YouTubePlaylistInfo.class);
+        when(playlistInfo.getTitle()).thenReturn("Title " + currPlaylistId);
+        when(playlistInfo.getContentLicenses())
+            .thenReturn(Lists.newArrayList(ContentLicense.YOUTUBE));
+        playlists.put(currPlaylistId, playlistInfo);
+      }
+    }
+
+    @Override
+    public YouTubePlaylistInfo getYouTubePlayListInfo(YouTubeUrl ytUrl) {
+      return playlists.get(getPlaylistId(ytUrl));
+    }
+
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public PlaylistPage getYouTubePlaylistPage(YouTubeUrl ytUrl, int startIndex,
+        int maxResults) {
+      int pageIndex = (startIndex - 1) / maxResults;
+      String playlistId = getPlaylistId(ytUrl);
+      if (playlistId.equals(BROKEN_PLAYLIST) && pageIndex > 0) {
+        throw new InvalidExternalIdException(ytUrl.getExternalId());
+      } else if (playlistId.equals(PAGED_PLAYLIST)) {
+        pageRequests.incrementAndGet(pageIndex);
+      }
+
+      int endIndex = Math.min(PLAYLIST_VIDEOS, startIndex - 1 + maxResults);
+      return new PlaylistPage(Lists.newArrayList(videos.subList(startIndex - 1, endIndex)),
+          PLAYLIST_VIDEOS);
+    }
+
+    private static String getPlaylistId(YouTubeUrl ytUrl) {
+      return "PL" + ytUrl.getPlaylistId();
+    }
+  }
+}
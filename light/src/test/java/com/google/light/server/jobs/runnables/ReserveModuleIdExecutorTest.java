@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.jobs.runnables;
+
+import static com.google.light.server.utils.LightUtils.createExternalIdTreeNode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.dto.pojo.tree.AbstractTreeNode.TreeNodeType;
+import com.google.light.server.dto.pojo.tree.externaltree.ExternalIdTreeNodeDto;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Test for {@link ReserveModuleIdExecutor}.
+ *
+ * Uses a stub {@link ReserveModuleIdRunnable} which sleeps or waits for other runnables instead
+ * of talking to Datastore, so only scheduling of the runnables is tested.
+ *
+ * @author Arjun Satyapal
+ */
+public class ReserveModuleIdExecutorTest extends AbstractGAETest {
+  private static final long BARRIER_TIMEOUT_IN_SEC = 10;
+  private static final List<PersonId> OWNERS = Lists.newArrayList(new PersonId(1L));
+
+  private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+  /**
+   * Test for {@link ReserveModuleIdExecutor#reserveLeafNodes(ExternalIdTreeNodeDto, List)}.
+   */
+  @Test
+  public void test_reserveLeafNodes() {
+    ExternalIdTreeNodeDto root = createTree(3 /* intermediateNodes */, 7 /* leafsPerNode */);
+    StubExecutor executor = new StubExecutor(4 /* maxConcurrent */, 0 /* sleep */);
+    List<ReserveModuleIdRunnable> list = executor.reserveLeafNodes(root, OWNERS);
+
+    assertEquals(21, list.size());
+    for (ExternalIdTreeNodeDto currLeaf : root.getLeafNodes()) {
+      assertNotNull(currLeaf.getExternalId().toString(), currLeaf.getModuleId());
+    }
+    assertTrue("Concurrency limit exceeded : " + executor.maxObservedConcurrent.get(),
+        executor.maxObservedConcurrent.get() <= 4);
+  }
+
+  /**
+   * Test to ensure that reservations run concurrently up to the concurrency limit. Each
+   * reservation waits till limit number of reservations are running, so reservations which are
+   * run one after other would fail.
+   */
+  @Test
+  public void test_reserveLeafNodes_concurrent() {
+    ExternalIdTreeNodeDto root = createTree(4 /* intermediateNodes */, 9 /* leafsPerNode */);
+    StubExecutor executor = new StubExecutor(9 /* maxConcurrent */, 0 /* sleep */);
+    executor.barrier = new CyclicBarrier(9);
+
+    assertEquals(36, executor.reserveLeafNodes(root, OWNERS).size());
+    for (ExternalIdTreeNodeDto currLeaf : root.getLeafNodes()) {
+      assertNotNull(currLeaf.getExternalId().toString(), currLeaf.getModuleId());
+    }
+    assertEquals(9, executor.maxObservedConcurrent.get());
+  }
+
+  /**
+   * Test for {@link ReserveModuleIdExecutor#runAll(List)} when a reservation fails.
+   */
+  @Test
+  public void test_runAll_failure() {
+    ExternalIdTreeNodeDto root = createTree(1, 5);
+    List<ReserveModuleIdRunnable> list = Lists.newArrayList();
+    for (ExternalIdTreeNodeDto currLeaf : root.getLeafNodes()) {
+      list.add(new ReserveModuleIdRunnable(currLeaf, OWNERS) {
+        @Override
+        public void run() {
+          throw new IllegalStateException("failing on purpose.");
+        }
+      });
+    }
+
+    try {
+      new ReserveModuleIdExecutor(threadFactory, 2, 1000).runAll(list);
+      fail("should have failed.");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Test for {@link ReserveModuleIdExecutor#runAll(List)} when reservations don't finish in time.
+   */
+  @Test
+  public void test_runAll_timeout() {
+    ExternalIdTreeNodeDto root = createTree(1, 10);
+    StubExecutor executor = new StubExecutor(1, 200 /* sleep */, 300 /* timeout */);
+    try {
+      executor.reserveLeafNodes(root, OWNERS);
+      fail("should have failed.");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+  }
+
+  private ExternalIdTreeNodeDto createTree(int intermediateNodes, int leafsPerNode) {
+    ExternalIdTreeNodeDto root = createExternalIdTreeNode(null, null, TreeNodeType.ROOT_NODE,
+        null /* contentLicenses */);
+
+    int counter = 0;
+    for (int i = 0; i < intermediateNodes; i++) {
+      ExternalIdTreeNodeDto intermediate = createExternalIdTreeNode(null, "intermediate-" + i,
+          TreeNodeType.INTERMEDIATE_NODE, null /* contentLicenses */);
+      root.addChildren(intermediate);
+
+      for (int j = 0; j < leafsPerNode; j++) {
+        ExternalId externalId = new ExternalId("http://example.com/page" + counter++);
+        intermediate.addChildren(createExternalIdTreeNode(externalId, "leaf-" + counter,
+            TreeNodeType.LEAF_NODE, ContentLicense.DEFAULT_LIGHT_CONTENT_LICENSES));
+      }
+    }
+
+    return root;
+  }
+
+  private class StubExecutor extends ReserveModuleIdExecutor {
+    private final long sleepInMillis;
+    private final AtomicLong nextModuleId = new AtomicLong(1);
+    private final AtomicInteger currentConcurrent = new AtomicInteger();
+    private final AtomicInteger maxObservedConcurrent = new AtomicInteger();
+    /** If set, each reservation waits for others on it instead of sleeping. */
+    private CyclicBarrier barrier;
+
+    StubExecutor(int maxConcurrent, long sleepInMillis) {
+      this(maxConcurrent, sleepInMillis, DEFAULT_TIMEOUT_IN_MILLIS);
+    }
+
+    @SuppressWarnings("synthetic-access")
+    StubExecutor(int maxConcurrent, long sleepInMillis, long timeoutInMillis) {
+      super(threadFactory, maxConcurrent, timeoutInMillis);
+      this.sleepInMillis = sleepInMillis;
+    }
+
+    @Override
+    protected ReserveModuleIdRunnable createRunnable(final ExternalIdTreeNodeDto externalIdNode,
+        List<PersonId> owners) {
+      return new ReserveModuleIdRunnable(externalIdNode, owners) {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public void run() {
+          int running = currentConcurrent.incrementAndGet();
+          updateMax(running);
+          try {
+            if (barrier != null) {
+              barrier.await(BARRIER_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
+            } else {
+              Thread.sleep(sleepInMillis);
+            }
+          } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+              Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException(e);
+          } finally {
+            currentConcurrent.decrementAndGet();
+          }
+          externalIdNode.setModuleId(new ModuleId(nextModuleId.getAndIncrement()));
+        }
+      };
+    }
+
+    private void updateMax(int running) {
+      int max = maxObservedConcurrent.get();
+      while (running > max && !maxObservedConcurrent.compareAndSet(max, running)) {
+        max = maxObservedConcurrent.get();
+      }
+    }
+  }
+}
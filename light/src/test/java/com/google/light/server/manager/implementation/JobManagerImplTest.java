@@ -0,0 +1,454 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.manager.implementation;
+
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.LightUtils.getNow;
+import static com.google.light.server.utils.ObjectifyUtils.initiateTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.runInTransaction;
+import static com.google.light.testingutils.ApiCallCountingDelegate.DATASTORE_PACKAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.appengine.api.datastore.Text;
+import com.google.common.collect.Lists;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.constants.LightConstants;
+import com.google.light.server.constants.QueueEnum;
+import com.google.light.server.dto.importresource.ImportBatchWrapper;
+import com.google.light.server.dto.importresource.ImportExternalIdDto;
+import com.google.light.server.dto.module.ModuleState;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.ChangeLogEntryPojo;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.exception.unchecked.taskqueue.ParentNotReadyForChildCompleteNotification;
+import com.google.light.server.jobs.handlers.collectionjobs.youtubeplaylist.ImportCollectionYouTubePlaylistContext;
+import com.google.light.server.manager.interfaces.JobManager;
+import com.google.light.server.persistence.entity.jobs.JobEntity;
+import com.google.light.server.persistence.entity.jobs.JobEntity.JobHandlerType;
+import com.google.light.server.persistence.entity.jobs.JobEntity.JobType;
+import com.google.light.server.persistence.entity.jobs.JobEntity.TaskType;
+import com.google.light.server.persistence.entity.jobs.JobState;
+import com.google.light.server.utils.JsonUtils;
+import com.google.light.server.utils.LightUtils;
+import com.google.light.server.utils.ObjectifyUtils;
+import com.google.light.server.utils.Transactable;
+import com.google.light.testingutils.ApiCallCountingDelegate;
+import com.googlecode.objectify.Objectify;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for {@link JobManagerImpl}.
+ *
+ * @author Arjun Satyapal
+ */
+public class JobManagerImplTest extends AbstractLightServerTest {
+  private static final int CHILD_COUNT = 500;
+  private static final int TRANSITIONS_PER_WINDOW = 1000;
+  private static final int TRANSITION_WINDOWS = 10;
+  private static final int COLLECTION_CHILD_COUNT = 2000;
+  private static final int CONTEXT_CHILD_COUNT = 200;
+  private static final int CONTEXT_READS = 1000;
+  private static final int LARGE_CHILD_COUNT = 10000;
+  private static final int LARGE_FINISHED_COUNT = 200;
+
+  private static ApiCallCountingDelegate countingDelegate;
+  private JobManager jobManager;
+
+  // Runs after GAE env is setup by AbstractGAETest.
+  @BeforeClass
+  public static void installCountingDelegate() {
+    countingDelegate = ApiCallCountingDelegate.install();
+  }
+
+  @AfterClass
+  public static void uninstallCountingDelegate() {
+    countingDelegate.uninstall();
+  }
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    this.jobManager = getInstance(JobManager.class);
+  }
+
+  /**
+   * Test for {@link JobManagerImpl#handleChildJobCompletion(JobId, JobId)}.
+   */
+  @Test
+  public void test_handleChildJobCompletion() {
+    JobId parentJobId = createParentWithChilds(3, JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION);
+    List<JobId> childJobIds = jobManager.get(null, parentJobId).getChildJobs();
+    int changeLogCount = jobManager.get(null, parentJobId).getChangeLogs().size();
+
+    jobManager.handleChildJobCompletion(parentJobId, childJobIds.get(0));
+    jobManager.handleChildJobCompletion(parentJobId, childJobIds.get(1));
+    // Retried notification.
+    jobManager.handleChildJobCompletion(parentJobId, childJobIds.get(1));
+
+    // Parent should not be touched till last child completes.
+    JobEntity parentJob = jobManager.get(null, parentJobId);
+    assertEquals(JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION, parentJob.getJobState());
+    assertEquals(changeLogCount, parentJob.getChangeLogs().size());
+
+    jobManager.handleChildJobCompletion(parentJobId, childJobIds.get(2));
+    parentJob = jobManager.get(null, parentJobId);
+    assertEquals(JobState.ALL_CHILDS_COMPLETED, parentJob.getJobState());
+    assertTrue(parentJob.getPendingChildJobs().isEmpty());
+    assertEquals(changeLogCount + 1, parentJob.getChangeLogs().size());
+
+    // Late notification should be ignored.
+    jobManager.handleChildJobCompletion(parentJobId, childJobIds.get(2));
+    assertEquals(changeLogCount + 1, jobManager.get(null, parentJobId).getChangeLogs().size());
+  }
+
+  /**
+   * Notifications which arrive while parent is creating childs should be retried.
+   */
+  @Test
+  public void test_handleChildJobCompletion_parentNotReady() {
+    JobId parentJobId = createParentWithChilds(1, JobState.CREATING_CHILDS);
+    JobId childJobId = jobManager.get(null, parentJobId).getChildJobs().get(0);
+
+    try {
+      jobManager.handleChildJobCompletion(parentJobId, childJobId);
+      fail("should have failed.");
+    } catch (ParentNotReadyForChildCompleteNotification e) {
+      // Expected.
+    }
+    assertEquals(1, jobManager.countCompletedChildJobs(parentJobId));
+  }
+
+  /**
+   * Parent should be resumed as soon as its last child completes, without reading its childs.
+   * So datastore calls made by the last notification should not depend on number of childs.
+   */
+  @Test
+  public void test_handleChildJobCompletion_largeParent() {
+    int smallParentCalls = countCallsForLastChildCompletion(5);
+    int largeParentCalls = countCallsForLastChildCompletion(CHILD_COUNT);
+    assertEquals(smallParentCalls, largeParentCalls);
+  }
+
+  private int countCallsForLastChildCompletion(int childCount) {
+    JobId parentJobId =
+        createParentWithChilds(childCount, JobState.WAITING_FOR_CHILD_COMPLETE_NOTIFICATION);
+    List<JobId> childJobIds = jobManager.get(null, parentJobId).getChildJobs();
+    JobId lastChildJobId = childJobIds.remove(childJobIds.size() - 1);
+    for (JobId currChildJobId : childJobIds) {
+      jobManager.recordChildJobCompletion(parentJobId, currChildJobId);
+    }
+
+    countingDelegate.reset();
+    jobManager.handleChildJobCompletion(parentJobId, lastChildJobId);
+    int calls = countingDelegate.getCount(DATASTORE_PACKAGE, "Get")
+        + countingDelegate.getCount(DATASTORE_PACKAGE, "RunQuery");
+
+    assertEquals(JobState.ALL_CHILDS_COMPLETED, jobManager.get(null, parentJobId).getJobState());
+    return calls;
+  }
+
+  /**
+   * Drives a Job through 10,000 transitions. Size of JobEntity, and so the bytes written by each
+   * put, should not grow with the number of transitions.
+   */
+  @Test
+  public void test_put_changeLogIsBounded() {
+    JobId jobId = createParentWithChilds(0, JobState.ENQUEUED);
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    int initialEntries = jobManager.getFullChangeLog(jobId).size();
+
+    long[] windowBytes = new long[TRANSITION_WINDOWS];
+    int transition = 0;
+    for (int window = 0; window < TRANSITION_WINDOWS; window++) {
+      countingDelegate.reset();
+      for (int i = 0; i < TRANSITIONS_PER_WINDOW; i++) {
+        jobManager.put(null, jobEntity, new ChangeLogEntryPojo("Transition " + transition++));
+      }
+      windowBytes[window] = countingDelegate.getRequestBytes(DATASTORE_PACKAGE, "Put");
+    }
+
+    JobEntity fetchedEntity = jobManager.get(null, jobId);
+    assertTrue(fetchedEntity.getChangeLogs().size() < 2 * LightConstants.JOB_CHANGE_LOG_CHUNK_SIZE);
+    List<ChangeLogEntryPojo> fullChangeLog = jobManager.getFullChangeLog(jobId);
+    assertEquals(initialEntries + transition, fullChangeLog.size());
+    for (int i = 0; i < transition; i++) {
+      assertEquals("Transition " + i, fullChangeLog.get(initialEntries + i).getDetail());
+    }
+
+    int last = TRANSITION_WINDOWS - 1;
+    assertTrue("first=" + windowBytes[0] + ", last=" + windowBytes[last],
+        windowBytes[last] < windowBytes[0] * 1.2);
+  }
+
+  /**
+   * If a transaction which archived a chunk of change log fails, and same JobEntity is persisted
+   * again, then the chunk should not be lost.
+   */
+  @Test
+  public void test_put_changeLogArchiveRetried() {
+    JobId jobId = createParentWithChilds(0, JobState.ENQUEUED);
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    int initialEntries = jobManager.getFullChangeLog(jobId).size();
+
+    int transition = 0;
+    while (jobEntity.getChangeLogs().size() < 2 * LightConstants.JOB_CHANGE_LOG_CHUNK_SIZE - 1) {
+      jobManager.put(null, jobEntity, new ChangeLogEntryPojo("Transition " + transition++));
+    }
+
+    // This put archives a chunk, but its transaction is rolled back.
+    Objectify ofy = initiateTransaction();
+    try {
+      jobManager.put(ofy, jobEntity, new ChangeLogEntryPojo("Transition " + transition++));
+      assertEquals(1, jobEntity.getArchivedChangeLogChunks());
+    } finally {
+      ofy.getTxn().rollback();
+    }
+    jobManager.put(null, jobEntity, new ChangeLogEntryPojo("Transition " + transition++));
+
+    List<ChangeLogEntryPojo> fullChangeLog = jobManager.getFullChangeLog(jobId);
+    assertEquals(initialEntries + transition, fullChangeLog.size());
+    for (int i = 0; i < transition; i++) {
+      assertEquals("Transition " + i, fullChangeLog.get(initialEntries + i).getDetail());
+    }
+  }
+
+  /**
+   * Imports a collection of 2,000 childs. Childs are appended to parent context, instead of
+   * parsing and re-serializing the context for each child.
+   */
+  @Test
+  public void test_enqueueImportChildJob_collectionImport() {
+    JobId parentJobId = createCollectionParent();
+    for (int i = 0; i < COLLECTION_CHILD_COUNT; i++) {
+      enqueueImportChildJob(parentJobId, createImportExternalIdDto(i, null));
+    }
+
+    JobEntity parentJob = jobManager.get(null, parentJobId);
+    assertEquals(COLLECTION_CHILD_COUNT, parentJob.getContextAppendCount());
+    List<ImportExternalIdDto> list =
+        parentJob.getContext(ImportCollectionYouTubePlaylistContext.class).getList();
+    assertEquals(COLLECTION_CHILD_COUNT, list.size());
+    for (int i = 0; i < COLLECTION_CHILD_COUNT; i++) {
+      ImportExternalIdDto expected = createImportExternalIdDto(i, null);
+      assertEquals(expected.getExternalId(), list.get(i).getExternalId());
+      assertEquals(expected.getJobId(), list.get(i).getJobId());
+    }
+
+    // Re-adding a child should replace its earlier entry.
+    enqueueImportChildJob(parentJobId, createImportExternalIdDto(0, ModuleState.PUBLISHED));
+    parentJob = jobManager.get(null, parentJobId);
+    ImportCollectionYouTubePlaylistContext context =
+        parentJob.getContext(ImportCollectionYouTubePlaylistContext.class);
+    assertEquals(COLLECTION_CHILD_COUNT, context.getList().size());
+    assertEquals(ModuleState.PUBLISHED, context.getList().get(0).getModuleState());
+
+    // Setting context folds appends into it.
+    parentJob.setContext(context);
+    assertEquals(0, parentJob.getContextAppendCount());
+    assertEquals(COLLECTION_CHILD_COUNT,
+        parentJob.getContext(ImportCollectionYouTubePlaylistContext.class).getList().size());
+  }
+
+  /**
+   * Serialized context should include childs which were appended to it.
+   */
+  @SuppressWarnings("deprecation")
+  @Test
+  public void test_getContext_rawIncludesAppends() {
+    JobId parentJobId = createCollectionParent();
+    for (int i = 0; i < 3; i++) {
+      enqueueImportChildJob(parentJobId, createImportExternalIdDto(i, null));
+    }
+
+    JobEntity parentJob = jobManager.get(null, parentJobId);
+    assertEquals(3, parentJob.getContextAppendCount());
+    ImportCollectionYouTubePlaylistContext context = JsonUtils.getDto(
+        parentJob.getContext().getValue(), ImportCollectionYouTubePlaylistContext.class);
+    assertEquals(3, context.getList().size());
+    assertEquals(3, parentJob.getContext(ImportCollectionYouTubePlaylistContext.class)
+        .getList().size());
+  }
+
+  /**
+   * Import batch starts without a context, so context should be created when first child is
+   * added.
+   */
+  @Test
+  public void test_enqueueImportChildJob_importBatchWithoutContext() {
+    JobEntity parentJob = new JobEntity.Builder()
+        .jobType(JobType.ROOT_JOB)
+        .jobHandlerType(JobHandlerType.TASK_QUEUE)
+        .taskType(TaskType.IMPORT_BATCH)
+        .jobState(JobState.CREATING_CHILDS)
+        .request(new Text("{}"))
+        .creationTime(getNow())
+        .ownerId(testPersonId)
+        .build();
+    JobId parentJobId =
+        jobManager.put(null, parentJob, new ChangeLogEntryPojo("Creating parent")).getJobId();
+
+    enqueueImportChildJob(parentJobId, createImportExternalIdDto(0, null));
+    List<ImportExternalIdDto> list =
+        jobManager.get(null, parentJobId).getContext(ImportBatchWrapper.class).getList();
+    assertEquals(1, list.size());
+    assertEquals(createImportExternalIdDto(0, null).getExternalId(), list.get(0).getExternalId());
+  }
+
+  /**
+   * Handlers read context many times while handling a Job. Context should be parsed only once
+   * per instance, and serialized back only if it was set.
+   */
+  @SuppressWarnings("deprecation")
+  @Test
+  public void test_getContext_memoized() {
+    JobId jobId = createCollectionParent();
+    JobEntity jobEntity = jobManager.get(null, jobId);
+    ImportCollectionYouTubePlaylistContext context =
+        jobEntity.getContext(ImportCollectionYouTubePlaylistContext.class);
+    for (int i = 0; i < CONTEXT_CHILD_COUNT; i++) {
+      context.addImportModuleDto(createImportExternalIdDto(i, null));
+    }
+    jobEntity.setContext(context);
+    jobManager.put(null, jobEntity, new ChangeLogEntryPojo("Adding childs"));
+
+    // Reads without a set should not serialize context again.
+    jobEntity = jobManager.get(null, jobId);
+    Text contextText = jobEntity.getContext();
+    context = jobEntity.getContext(ImportCollectionYouTubePlaylistContext.class);
+    for (int i = 0; i < CONTEXT_READS; i++) {
+      assertSame(context, jobEntity.getContext(ImportCollectionYouTubePlaylistContext.class));
+    }
+    jobManager.put(null, jobEntity, new ChangeLogEntryPojo("Only reads"));
+    assertSame(contextText, jobEntity.getContext());
+
+    // Changes are persisted once context is set.
+    context.getList().get(0).setModuleState(ModuleState.PUBLISHED);
+    jobEntity.setContext(context);
+    jobManager.put(null, jobEntity, new ChangeLogEntryPojo("Publishing first child"));
+    context = jobManager.get(null, jobId).getContext(ImportCollectionYouTubePlaylistContext.class);
+    assertEquals(CONTEXT_CHILD_COUNT, context.getList().size());
+    assertEquals(ModuleState.PUBLISHED, context.getList().get(0).getModuleState());
+  }
+
+  /**
+   * Tracks 10,000 childs of a Job. Pending childs should be same as removing finished childs
+   * from list of all childs, which is how they used to be computed.
+   */
+  @Test
+  public void test_pendingChildJobs_largeParent() {
+    JobEntity parentJob = createJobEntity(JobType.ROOT_JOB, TaskType.IMPORT_BATCH,
+        JobState.CREATING_CHILDS, null /* parentJobId */);
+    for (long i = 1; i <= LARGE_CHILD_COUNT; i++) {
+      parentJob.addChildJob(new JobId(i));
+      // Duplicates are ignored.
+      parentJob.addChildJob(new JobId(i));
+    }
+    for (long i = 1; i <= LARGE_FINISHED_COUNT; i++) {
+      parentJob.addFinishedChildJob(new JobId(i));
+    }
+    assertEquals(LARGE_CHILD_COUNT, parentJob.getChildJobCount());
+    assertEquals(LARGE_CHILD_COUNT - LARGE_FINISHED_COUNT, parentJob.getPendingChildJobCount());
+
+    List<JobId> legacyPendingChildJobs = parentJob.getChildJobs();
+    legacyPendingChildJobs.removeAll(parentJob.getFinishedChildJobs());
+    assertEquals(legacyPendingChildJobs, parentJob.getPendingChildJobs());
+
+    // Count is persisted, so it is available without going through child ids.
+    jobManager.put(null, parentJob, new ChangeLogEntryPojo("Adding childs"));
+    parentJob = jobManager.get(null, parentJob.getJobId());
+    assertEquals(LARGE_CHILD_COUNT - LARGE_FINISHED_COUNT, parentJob.getPendingChildJobCount());
+
+    for (JobId currChildJobId : parentJob.getPendingChildJobs()) {
+      parentJob.addFinishedChildJob(currChildJobId);
+    }
+    assertFalse(parentJob.hasPendingChildJobs());
+    assertEquals(0, parentJob.getPendingChildJobs().size());
+  }
+
+  private void enqueueImportChildJob(final JobId parentJobId,
+      final ImportExternalIdDto importExternalIdDto) {
+    runInTransaction("adding child", new Transactable<Void>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Void run(Objectify ofy) {
+        jobManager.enqueueImportChildJob(ofy, parentJobId, importExternalIdDto.getJobId(),
+            importExternalIdDto, QueueEnum.LIGHT);
+        return null;
+      }
+    });
+  }
+
+  private JobId createCollectionParent() {
+    JobEntity parentJob = createJobEntity(JobType.ROOT_JOB, TaskType.IMPORT_YOUTUBE_PLAYLIST,
+        JobState.CREATING_CHILDS, null /* parentJobId */);
+    return jobManager.put(null, parentJob, new ChangeLogEntryPojo("Creating parent")).getJobId();
+  }
+
+  private ImportExternalIdDto createImportExternalIdDto(int index, ModuleState moduleState) {
+    return LightUtils.createImportExternalIdDto(null /* contentLicenses */,
+        new ExternalId("http://example.com/page" + index), new JobId(1000L + index),
+        null /* jobState */, null /* moduleId */, ModuleType.LIGHT_SYNTHETIC_MODULE,
+        moduleState == null ? ModuleState.IMPORTING : moduleState, "Page " + index,
+        LightUtils.LATEST_VERSION);
+  }
+
+  /**
+   * Creates a parent Job in parentState, with childCount childs which are complete.
+   */
+  private JobId createParentWithChilds(int childCount, JobState parentState) {
+    JobEntity parentJob = createJobEntity(JobType.ROOT_JOB, TaskType.IMPORT_BATCH,
+        JobState.CREATING_CHILDS, null /* parentJobId */);
+    jobManager.put(null, parentJob, new ChangeLogEntryPojo("Creating parent"));
+
+    List<JobEntity> childJobs = Lists.newArrayListWithCapacity(childCount);
+    for (int i = 0; i < childCount; i++) {
+      childJobs.add(createJobEntity(JobType.CHILD_JOB, TaskType.IMPORT_SYNTHETIC_MODULE,
+          JobState.COMPLETE, parentJob.getJobId()));
+    }
+    ObjectifyUtils.nonTransaction().put(childJobs);
+
+    for (JobEntity currChildJob : childJobs) {
+      parentJob.addChildJob(currChildJob.getJobId());
+    }
+    parentJob.setJobState(parentState);
+    jobManager.put(null, parentJob, new ChangeLogEntryPojo("getting ready for " + parentState));
+    return parentJob.getJobId();
+  }
+
+  private JobEntity createJobEntity(JobType jobType, TaskType taskType, JobState jobState,
+      JobId parentJobId) {
+    return new JobEntity.Builder()
+        .jobType(jobType)
+        .parentJobId(parentJobId)
+        .rootJobId(parentJobId)
+        .jobHandlerType(JobHandlerType.TASK_QUEUE)
+        .taskType(taskType)
+        .jobState(jobState)
+        .request(new Text("{}"))
+        .context(new Text("{}"))
+        .creationTime(getNow())
+        .ownerId(testPersonId)
+        .build();
+  }
+}
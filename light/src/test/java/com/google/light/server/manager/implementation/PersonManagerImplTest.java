@@ -17,6 +17,7 @@ package com.google.light.server.manager.implementation;
 
 import static com.google.light.server.utils.GuiceUtils.getInstance;
 import static com.google.light.server.utils.LightPreconditions.checkPersonId;
+import static com.google.light.testingutils.ApiCallCountingDelegate.DATASTORE_PACKAGE;
 import static com.google.light.testingutils.TestingUtils.getInjectorByEnv;
 import static com.google.light.testingutils.TestingUtils.getMockSessionForTesting;
 import static com.google.light.testingutils.TestingUtils.getRandomEmail;
@@ -24,6 +25,7 @@ import static com.google.light.testingutils.TestingUtils.getRandomPersonId;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -33,13 +35,18 @@ import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
 import com.google.inject.Injector;
 import com.google.light.server.AbstractLightServerTest;
 import com.google.light.server.constants.LightEnvEnum;
+import com.google.light.server.dto.pojo.RequestScopedValues;
 import com.google.light.server.exception.unchecked.IdShouldNotBeSet;
 import com.google.light.server.exception.unchecked.InvalidPersonIdException;
 import com.google.light.server.exception.unchecked.httpexception.PersonLoginRequiredException;
 import com.google.light.server.guice.provider.TestRequestScopedValuesProvider;
 import com.google.light.server.manager.interfaces.PersonManager;
+import com.google.light.server.persistence.dao.PersonDao;
 import com.google.light.server.persistence.entity.person.PersonEntity;
+import com.google.light.testingutils.ApiCallCountingDelegate;
 import javax.servlet.http.HttpSession;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -49,8 +56,20 @@ import org.mockito.Mockito;
  * @author Arjun Satyapal
  */
 public class PersonManagerImplTest extends AbstractLightServerTest {
+  private static ApiCallCountingDelegate countingDelegate;
   private PersonManager personManager;
 
+  // Runs after GAE env is setup by AbstractGAETest.
+  @BeforeClass
+  public static void installCountingDelegate() {
+    countingDelegate = ApiCallCountingDelegate.install();
+  }
+
+  @AfterClass
+  public static void uninstallCountingDelegate() {
+    countingDelegate.uninstall();
+  }
+
   @Override
   public void setUp() {
     super.setUp();
@@ -209,6 +228,36 @@ public class PersonManagerImplTest extends AbstractLightServerTest {
 
   }
 
+  /**
+   * Test for {@link PersonManagerImpl#get(PersonId)} when owner of a request is resolved many
+   * times. Datastore reads are counted for each request.
+   */
+  @Test
+  public void test_get_ownerOfRequest() throws Exception {
+    // Person created by someone else, so it is not cached yet.
+    PersonEntity owner = getInstance(PersonDao.class).put(null,
+        getEntityBuilder().email(getRandomEmail()).build());
+    PersonId ownerId = owner.getPersonId();
+
+    // First request reads owner once, though it is resolved by many callers.
+    countingDelegate.reset();
+    RequestScopedValues snapshot = new RequestScopedValues(ownerId, ownerId);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(owner, snapshot.getOwner());
+      assertEquals(owner, snapshot.getActor());
+    }
+    assertEquals(1, countingDelegate.getCount(DATASTORE_PACKAGE, "Get"));
+
+    // Next request gets owner from cache.
+    countingDelegate.reset();
+    snapshot = new RequestScopedValues(ownerId, ownerId);
+    assertEquals(owner, snapshot.getOwner());
+    assertEquals(0, countingDelegate.getCount(DATASTORE_PACKAGE, "Get"));
+
+    assertTrue(snapshot.isFor(ownerId, ownerId));
+    assertTrue(!snapshot.isFor(getRandomPersonId(), ownerId));
+  }
+
   /**
    * Test for {@link PersonManager#findByEmail(String)}
    */
@@ -257,6 +306,39 @@ public class PersonManagerImplTest extends AbstractLightServerTest {
     assertNull(personManager.findByEmail(getRandomEmail()));
   }
 
+  /**
+   * Test for {@link PersonManager#findByEmail(String)} when Person is served from
+   * {@link PersonCache}.
+   */
+  @Test
+  public void test_findByEmail_cached() throws Exception {
+    // Person created through PersonManager is cached when it is created.
+    String email1 = getRandomEmail();
+    PersonEntity person1 = personManager.create(getEntityBuilder().email(email1).build());
+    countingDelegate.reset();
+    for (int i = 0; i < 10; i++) {
+      assertSame(person1, personManager.findByEmail(email1));
+    }
+    assertEquals(0, countingDelegate.getCount(DATASTORE_PACKAGE, "RunQuery"));
+
+    // Person created by someone else is queried once.
+    String email2 = getRandomEmail();
+    PersonEntity person2 = getInstance(PersonDao.class).put(null,
+        getEntityBuilder().email(email2).build());
+    countingDelegate.reset();
+    for (int i = 0; i < 10; i++) {
+      assertEquals(person2, personManager.findByEmail(email2));
+    }
+    assertEquals(1, countingDelegate.getCount(DATASTORE_PACKAGE, "RunQuery"));
+
+    // Missing Persons are not cached.
+    String email3 = getRandomEmail();
+    countingDelegate.reset();
+    assertNull(personManager.findByEmail(email3));
+    assertNull(personManager.findByEmail(email3));
+    assertEquals(2, countingDelegate.getCount(DATASTORE_PACKAGE, "RunQuery"));
+  }
+
   /**
    * Test for {@link PersonManagerImpl#getCurrent()}
    */
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.manager.implementation;
+
+import static com.google.light.server.constants.LightConstants.LIGHT_BOT_EMAIL;
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.ObjectifyUtils.commitTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.initiateTransaction;
+import static com.google.light.testingutils.ApiCallCountingDelegate.DATASTORE_PACKAGE;
+import static com.google.light.testingutils.ApiCallCountingDelegate.TASKQUEUE_PACKAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.constants.LightConstants;
+import com.google.light.server.constants.QueueEnum;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import com.google.light.server.manager.interfaces.QueueManager;
+import com.google.light.server.persistence.dao.PersonDao;
+import com.google.light.server.persistence.entity.person.PersonEntity;
+import com.google.light.server.utils.ObjectifyUtils;
+import com.google.light.testingutils.ApiCallCountingDelegate;
+import com.googlecode.objectify.Objectify;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for {@link QueueManagerImpl}. Uses local task queue service, and counts task queue RPCs
+ * made by the test thread.
+ *
+ * @author Arjun Satyapal
+ */
+public class QueueManagerImplTest extends AbstractLightServerTest {
+  // Task queue adds, whether single or batched, are made using BulkAdd RPC.
+  private static final String ADD_METHOD = "BulkAdd";
+
+  private static ApiCallCountingDelegate countingDelegate;
+  private QueueManager queueManager;
+
+  // Runs after GAE env is setup by AbstractGAETest.
+  @BeforeClass
+  public static void installCountingDelegate() {
+    countingDelegate = ApiCallCountingDelegate.install();
+  }
+
+  @AfterClass
+  public static void uninstallCountingDelegate() {
+    countingDelegate.uninstall();
+  }
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    this.queueManager = getInstance(QueueManager.class);
+  }
+
+  /**
+   * Test for {@link QueueManagerImpl#enqueueJobs(Objectify, ListMultimap)}. All jobs should be
+   * added with a single RPC, as part of the transaction.
+   */
+  @Test
+  public void test_enqueueJobs() {
+    ListMultimap<QueueEnum, JobId> jobIdsByQueue =
+        createChildJobs(LightConstants.MAX_TRANSACTIONAL_TASKS);
+
+    countingDelegate.reset();
+    Objectify ofy = initiateTransaction();
+    try {
+      queueManager.enqueueJobs(ofy, jobIdsByQueue);
+      commitTransaction("test_enqueueJobs", ofy);
+    } finally {
+      if (ofy.getTxn().isActive()) {
+        ofy.getTxn().rollback();
+      }
+    }
+    assertEquals(1, countingDelegate.getCount(TASKQUEUE_PACKAGE, ADD_METHOD));
+  }
+
+  /**
+   * {@link QueueManagerImpl#enqueueJobs(Objectify, ListMultimap)} should fail for more jobs than
+   * can be added in a transaction.
+   */
+  @Test
+  public void test_enqueueJobs_tooManyJobs() {
+    countingDelegate.reset();
+    Objectify ofy = initiateTransaction();
+    try {
+      queueManager.enqueueJobs(ofy, createChildJobs(LightConstants.MAX_TRANSACTIONAL_TASKS + 1));
+      fail("should have failed.");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    } finally {
+      ofy.getTxn().rollback();
+    }
+    assertEquals(0, countingDelegate.getCount(TASKQUEUE_PACKAGE, ADD_METHOD));
+  }
+
+  /**
+   * {@link QueueManagerImpl#enqueueJobs(Objectify, ListMultimap)} should fail outside a
+   * transaction.
+   */
+  @Test
+  public void test_enqueueJobs_withoutTxn() {
+    countingDelegate.reset();
+    try {
+      queueManager.enqueueJobs(ObjectifyUtils.nonTransaction(), createChildJobs(1));
+      fail("should have failed.");
+    } catch (Exception e) {
+      // Expected.
+    }
+    assertEquals(0, countingDelegate.getCount(TASKQUEUE_PACKAGE, ADD_METHOD));
+  }
+
+  /**
+   * Test for {@link QueueManagerImpl#enqueueSearchIndexTask(Objectify)}. Light Bot should be
+   * looked up from datastore only once.
+   */
+  @Test
+  public void test_enqueueSearchIndexTask() {
+    getInstance(PersonDao.class).put(null, new PersonEntity.Builder()
+        .email(LIGHT_BOT_EMAIL)
+        .firstName("Light")
+        .lastName("Bot")
+        .build());
+
+    countingDelegate.reset();
+    for (int i = 0; i < 5; i++) {
+      Objectify ofy = initiateTransaction();
+      try {
+        queueManager.enqueueSearchIndexTask(ofy);
+        commitTransaction("test_enqueueSearchIndexTask", ofy);
+      } finally {
+        if (ofy.getTxn().isActive()) {
+          ofy.getTxn().rollback();
+        }
+      }
+    }
+
+    assertEquals(5, countingDelegate.getCount(TASKQUEUE_PACKAGE, ADD_METHOD));
+    assertEquals(1, countingDelegate.getCount(DATASTORE_PACKAGE, "RunQuery"));
+  }
+
+  private ListMultimap<QueueEnum, JobId> createChildJobs(int count) {
+    ListMultimap<QueueEnum, JobId> jobIdsByQueue = ArrayListMultimap.create();
+    for (long id = 1; id <= count; id++) {
+      jobIdsByQueue.put(QueueEnum.LIGHT, new JobId(id));
+    }
+    return jobIdsByQueue;
+  }
+}
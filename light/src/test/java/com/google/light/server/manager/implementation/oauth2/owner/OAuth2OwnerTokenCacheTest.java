@@ -0,0 +1,297 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.manager.implementation.oauth2.owner;
+
+import static com.google.light.server.constants.OAuth2ProviderService.GOOGLE_DOC;
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.LightUtils.getCurrentTimeInMillis;
+import static com.google.light.testingutils.ApiCallCountingDelegate.DATASTORE_PACKAGE;
+import static com.google.light.testingutils.TestingUtils.getRandomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.auth.oauth2.ClientParametersAuthentication;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.apphosting.api.ApiProxy;
+import com.google.apphosting.api.ApiProxy.Environment;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.constants.OAuth2ProviderService;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.exception.unchecked.MissingOwnerCredentialException;
+import com.google.light.server.manager.interfaces.OAuth2OwnerTokenManager;
+import com.google.light.server.persistence.dao.OAuth2OwnerTokenDao;
+import com.google.light.server.persistence.entity.oauth2.owner.OAuth2OwnerTokenEntity;
+import com.google.light.server.persistence.entity.person.PersonEntity;
+import com.google.light.testingutils.ApiCallCountingDelegate;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for {@link OAuth2OwnerTokenCache}.
+ *
+ * Tokens are refreshed against a fake token endpoint, which adds a fixed latency so that
+ * concurrent callers pile up while a refresh is in progress.
+ *
+ * @author Arjun Satyapal
+ */
+public class OAuth2OwnerTokenCacheTest extends AbstractLightServerTest {
+  private static final int IMPORT_COUNT = 100;
+  private static final long REFRESH_LATENCY_IN_MILLIS = 200;
+
+  private static ApiCallCountingDelegate countingDelegate;
+  private OAuth2OwnerTokenDao dao;
+  private OAuth2OwnerTokenCache tokenCache;
+  private FakeTokenEndpoint tokenEndpoint;
+
+  // Runs after GAE env is setup by AbstractGAETest.
+  @BeforeClass
+  public static void installCountingDelegate() {
+    countingDelegate = ApiCallCountingDelegate.install();
+  }
+
+  @AfterClass
+  public static void uninstallCountingDelegate() {
+    countingDelegate.uninstall();
+  }
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    dao = getInstance(OAuth2OwnerTokenDao.class);
+    tokenCache = getInstance(OAuth2OwnerTokenCache.class);
+    tokenEndpoint = new FakeTokenEndpoint();
+  }
+
+  /**
+   * Runs {@link #IMPORT_COUNT} imports at same time with a token which is about to expire. Token
+   * should be read from datastore and refreshed only once, and later imports should be served
+   * from cache.
+   */
+  @Test
+  public void test_get_concurrentImports() throws Exception {
+    // Token expires in a minute, which is within the refresh window.
+    String staleAccessToken = getRandomString();
+    dao.put(null, createToken(staleAccessToken, getCurrentTimeInMillis() + 60 * 1000));
+
+    List<String> accessTokens = Lists.newArrayList();
+    int datastoreGets = runConcurrentImports(accessTokens);
+
+    assertEquals(1, tokenEndpoint.refreshCalls.get());
+    assertEquals(1, tokenEndpoint.tokenInfoCalls.get());
+    // Owner and token are read once.
+    assertTrue("datastoreGets = " + datastoreGets, datastoreGets <= 2);
+
+    Set<String> distinctTokens = Sets.newHashSet(accessTokens);
+    assertEquals(Sets.newHashSet("refreshed-1"), distinctTokens);
+    assertEquals("refreshed-1", dao.getByProviderService(GOOGLE_DOC).getAccessToken());
+
+    // Now token is fresh, so next round should not touch datastore or token endpoint.
+    accessTokens.clear();
+    datastoreGets = runConcurrentImports(accessTokens);
+    assertEquals(0, datastoreGets);
+    assertEquals(1, tokenEndpoint.refreshCalls.get());
+    assertEquals(Sets.newHashSet("refreshed-1"), Sets.newHashSet(accessTokens));
+  }
+
+  /**
+   * Test for {@link OAuth2OwnerTokenCache#put(OAuth2OwnerTokenEntity)} and
+   * {@link OAuth2OwnerTokenCache#invalidate(PersonId, OAuth2ProviderService)}.
+   */
+  @Test
+  public void test_put_invalidate() {
+    OAuth2OwnerTokenManager tokenManager = createTokenManager();
+    try {
+      tokenManager.get();
+      fail("should have failed.");
+    } catch (MissingOwnerCredentialException e) {
+      // Expected.
+    }
+
+    OAuth2OwnerTokenEntity token = tokenManager.put(
+        createToken(getRandomString(), getCurrentTimeInMillis() + 60 * 60 * 1000));
+    countingDelegate.reset();
+    assertSame(token, createTokenManager().get());
+    assertEquals(0, countingDelegate.getCount(DATASTORE_PACKAGE, "Get"));
+
+    // Token put directly in datastore is seen only after invalidation.
+    OAuth2OwnerTokenEntity newToken =
+        createToken(getRandomString(), getCurrentTimeInMillis() + 60 * 60 * 1000);
+    dao.put(null, newToken);
+    assertSame(token, createTokenManager().get());
+    tokenCache.invalidate(testPersonId, GOOGLE_DOC);
+    OAuth2OwnerTokenEntity fetchedToken = createTokenManager().get();
+    assertNotSame(token, fetchedToken);
+    assertEquals(newToken.getAccessToken(), fetchedToken.getAccessToken());
+
+    createTokenManager().delete();
+    try {
+      createTokenManager().get();
+      fail("should have failed.");
+    } catch (MissingOwnerCredentialException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Calls {@link OAuth2OwnerTokenManager#get()} from {@link #IMPORT_COUNT} threads, each with its
+   * own manager as each import gets. Adds access tokens returned to accessTokens, and returns the
+   * total number of datastore gets.
+   */
+  private int runConcurrentImports(List<String> accessTokens) throws Exception {
+    final Environment environment = ApiProxy.getCurrentEnvironment();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final AtomicInteger datastoreGets = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(IMPORT_COUNT);
+    try {
+      List<Future<String>> futures = Lists.newArrayList();
+      for (int i = 0; i < IMPORT_COUNT; i++) {
+        futures.add(executor.submit(new Callable<String>() {
+          @SuppressWarnings("synthetic-access")
+          @Override
+          public String call() throws Exception {
+            ApiProxy.setEnvironmentForCurrentThread(environment);
+            countingDelegate.reset();
+            startLatch.await();
+
+            OAuth2OwnerTokenEntity token = createTokenManager().get();
+            datastoreGets.addAndGet(countingDelegate.getCount(DATASTORE_PACKAGE, "Get"));
+            return token.getAccessToken();
+          }
+        }));
+      }
+
+      startLatch.countDown();
+      for (Future<String> currFuture : futures) {
+        accessTokens.add(currFuture.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return datastoreGets.get();
+  }
+
+  private OAuth2OwnerTokenManager createTokenManager() {
+    return new RefreshingTokenManager(dao, tokenEndpoint, getInstance(JsonFactory.class),
+        tokenCache);
+  }
+
+  private OAuth2OwnerTokenEntity createToken(String accessToken, long expiresInMillis) {
+    return new OAuth2OwnerTokenEntity.Builder()
+        .personKey(PersonEntity.generateKey(testPersonId))
+        .providerService(GOOGLE_DOC)
+        .providerUserId(getRandomString())
+        .accessToken(accessToken)
+        .refreshToken(getRandomString())
+        .expiresInMillis(expiresInMillis)
+        .tokenType("Bearer")
+        .tokenInfo(getRandomString())
+        .build();
+  }
+
+  /**
+   * {@link OAuth2OwnerTokenManagerImpl} which refreshes tokens in UNIT_TEST environment, with
+   * fixed client credentials.
+   */
+  private static class RefreshingTokenManager extends OAuth2OwnerTokenManagerImpl {
+    public RefreshingTokenManager(OAuth2OwnerTokenDao ownerTokenDao,
+        MockHttpTransport httpTransport, JsonFactory jsonFactory,
+        OAuth2OwnerTokenCache tokenCache) {
+      super(ownerTokenDao, httpTransport, jsonFactory, tokenCache, GOOGLE_DOC);
+    }
+
+    @Override
+    protected boolean isRefreshEnabled() {
+      return true;
+    }
+
+    @Override
+    protected ClientParametersAuthentication getClientAuthentication() {
+      return new ClientParametersAuthentication("clientId", "clientSecret");
+    }
+  }
+
+  /**
+   * Fake OAuth2 token server. POST requests refresh the token after
+   * {@link #REFRESH_LATENCY_IN_MILLIS}, and GET requests return token info.
+   */
+  private static class FakeTokenEndpoint extends MockHttpTransport {
+    private final AtomicInteger refreshCalls = new AtomicInteger();
+    private final AtomicInteger tokenInfoCalls = new AtomicInteger();
+
+    @Override
+    public LowLevelHttpRequest buildPostRequest(String url) throws IOException {
+      return new MockLowLevelHttpRequest() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          int refreshNumber = refreshCalls.incrementAndGet();
+          try {
+            Thread.sleep(REFRESH_LATENCY_IN_MILLIS);
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          return createJsonResponse("{\"access_token\" : \"refreshed-" + refreshNumber
+              + "\", \"token_type\" : \"Bearer\", \"expires_in\" : 3600}");
+        }
+      };
+    }
+
+    @Override
+    public LowLevelHttpRequest buildGetRequest(String url) throws IOException {
+      return new MockLowLevelHttpRequest() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          tokenInfoCalls.incrementAndGet();
+          return createJsonResponse("{\"issued_to\" : \"clientId\", \"audience\" : \"clientId\", "
+              + "\"scope\" : \"https://docs.google.com/feeds/\", \"expires_in\" : 3600, "
+              + "\"access_type\" : \"offline\"}");
+        }
+      };
+    }
+
+    private static MockLowLevelHttpResponse createJsonResponse(String json) {
+      MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+      response.setContentType("application/json; charset=UTF-8");
+      response.setContent(new ByteArrayInputStream(json.getBytes(Charsets.UTF_8)));
+      return response;
+    }
+  }
+}
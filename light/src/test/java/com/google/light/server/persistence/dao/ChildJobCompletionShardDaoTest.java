@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.collect.Lists;
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.JobId;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Test for {@link ChildJobCompletionShardDao}.
+ *
+ * @author Arjun Satyapal
+ */
+public class ChildJobCompletionShardDaoTest extends AbstractGAETest {
+  private static final int CHILD_COUNT = 1000;
+  private static final int THREAD_COUNT = 20;
+
+  // Each test uses its own parent, as tests run in parallel.
+  private static final AtomicLong nextParentJobId = new AtomicLong(1);
+
+  private ChildJobCompletionShardDao dao = new ChildJobCompletionShardDao();
+
+  /**
+   * Test for {@link ChildJobCompletionShardDao#recordCompletion(JobId, JobId)}.
+   */
+  @Test
+  public void test_recordCompletion() {
+    JobId parentJobId = new JobId(nextParentJobId.getAndIncrement());
+    assertEquals(0, dao.countCompletions(parentJobId));
+
+    assertTrue(dao.recordCompletion(parentJobId, new JobId(1001L)));
+    assertTrue(dao.recordCompletion(parentJobId, new JobId(1002L)));
+    assertEquals(2, dao.countCompletions(parentJobId));
+
+    // Notifications can be retried, so recording again should be a no-op.
+    assertFalse(dao.recordCompletion(parentJobId, new JobId(1001L)));
+    assertEquals(2, dao.countCompletions(parentJobId));
+  }
+
+  /**
+   * Records completion of 1,000 children of a parent concurrently. None of the transactions
+   * should exhaust its retries.
+   */
+  @Test
+  public void test_recordCompletion_concurrent() throws Exception {
+    final JobId parentJobId = new JobId(nextParentJobId.getAndIncrement());
+    final ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+
+    List<Callable<Boolean>> completions = Lists.newArrayListWithCapacity(CHILD_COUNT);
+    for (long childId = 1; childId <= CHILD_COUNT; childId++) {
+      final JobId childJobId = new JobId(childId);
+      completions.add(new Callable<Boolean>() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public Boolean call() {
+          ApiProxy.setEnvironmentForCurrentThread(environment);
+          return dao.recordCompletion(parentJobId, childJobId);
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      // Future.get throws if any transaction ran out of retries.
+      for (Future<Boolean> currFuture : executor.invokeAll(completions)) {
+        assertTrue(currFuture.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(CHILD_COUNT, dao.countCompletions(parentJobId));
+  }
+}
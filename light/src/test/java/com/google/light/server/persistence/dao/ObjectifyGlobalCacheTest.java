@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.persistence.dao;
+
+import static com.google.light.server.utils.ObjectifyUtils.commitTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.initiateTransaction;
+import static com.google.light.server.utils.ObjectifyUtils.nonTransaction;
+import static com.google.light.testingutils.ApiCallCountingDelegate.DATASTORE_PACKAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.collect.Lists;
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.constants.http.ContentTypeEnum;
+import com.google.light.server.dto.module.GSBlobInfo;
+import com.google.light.server.dto.module.ModuleState;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.PersonId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.dto.thirdparty.google.youtube.ContentLicense;
+import com.google.light.server.persistence.entity.module.ModuleEntity;
+import com.google.light.server.persistence.entity.module.ModuleVersionEntity;
+import com.google.light.server.persistence.entity.module.ModuleVersionResourceEntity;
+import com.google.light.server.persistence.entity.module.SearchIndexStatus;
+import com.google.light.server.utils.LightUtils;
+import com.google.light.testingutils.ApiCallCountingDelegate;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Objectify;
+import java.util.List;
+import org.joda.time.Instant;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for Objectify global cache tier. Uses local memcache service as a stand-in for memcache,
+ * and counts datastore Get RPCs made by the test thread.
+ *
+ * @author Arjun Satyapal
+ */
+public class ObjectifyGlobalCacheTest extends AbstractGAETest {
+  private static final int READ_COUNT = 10;
+
+  static {
+    // Ensures that entities are registered with Objectify.
+    new ModuleDao();
+    new ModuleVersionResourceDao();
+  }
+
+  private static ApiCallCountingDelegate countingDelegate;
+
+  // Runs after GAE env is setup by AbstractGAETest.
+  @BeforeClass
+  public static void installCountingDelegate() {
+    countingDelegate = ApiCallCountingDelegate.install();
+  }
+
+  @AfterClass
+  public static void uninstallCountingDelegate() {
+    countingDelegate.uninstall();
+  }
+
+  /**
+   * Immutable entities should be read from datastore only once.
+   */
+  @Test
+  public void test_cachedEntity() {
+    ModuleEntity moduleEntity = putModuleEntity();
+    Key<ModuleVersionResourceEntity> key = putResourceEntity(moduleEntity, "gs/key1");
+    long hitsBefore = getMemcacheHitCount();
+    countingDelegate.reset();
+
+    for (int i = 0; i < READ_COUNT; i++) {
+      ModuleVersionResourceEntity entity = nonTransaction().get(key);
+      assertEquals("gs/key1", entity.getGSBlobInfo().getGsKey());
+    }
+
+    long hits = getMemcacheHitCount() - hitsBefore;
+    int datastoreReads = countingDelegate.getCount(DATASTORE_PACKAGE, "Get");
+    assertEquals(1, datastoreReads);
+    assertTrue("hits=" + hits, hits >= READ_COUNT - 1);
+  }
+
+  /**
+   * Writes to cached entities should not leave stale entries in memcache.
+   */
+  @Test
+  public void test_cachedEntity_update() {
+    ModuleEntity moduleEntity = putModuleEntity();
+    Key<ModuleVersionResourceEntity> key = putResourceEntity(moduleEntity, "gs/key1");
+    assertEquals("gs/key1", nonTransaction().get(key).getGSBlobInfo().getGsKey());
+
+    putResourceEntity(moduleEntity, "gs/key2");
+    assertEquals("gs/key2", nonTransaction().get(key).getGSBlobInfo().getGsKey());
+  }
+
+  /**
+   * Mutable entities should always be read from datastore.
+   */
+  @Test
+  public void test_uncachedEntity() {
+    ModuleEntity moduleEntity = putModuleEntity();
+    countingDelegate.reset();
+
+    for (int i = 0; i < READ_COUNT; i++) {
+      assertNotNull(nonTransaction().get(moduleEntity.getKey()));
+    }
+
+    int datastoreReads = countingDelegate.getCount(DATASTORE_PACKAGE, "Get");
+    assertEquals(READ_COUNT, datastoreReads);
+  }
+
+  /**
+   * Module versions can change while they are reserved, and their content may not fit in
+   * memcache. So they should always be read from datastore.
+   */
+  @Test
+  public void test_uncachedEntity_moduleVersion() {
+    ModuleEntity moduleEntity = putModuleEntity();
+    ModuleVersionEntity moduleVersionEntity = LightUtils.createModuleVersionEntity(
+        "<html></html>", ContentLicense.DEFAULT_LIGHT_CONTENT_LICENSES, new Instant(),
+        null /* etag */, new ExternalId("http://example.com/page"), null /* lastEditTime */,
+        moduleEntity.getKey(), ModuleState.RESERVED, "title", new Version(1L));
+    nonTransaction().put(moduleVersionEntity);
+    countingDelegate.reset();
+
+    for (int i = 0; i < READ_COUNT; i++) {
+      assertNotNull(nonTransaction().get(moduleVersionEntity.getKey()));
+    }
+
+    int datastoreReads = countingDelegate.getCount(DATASTORE_PACKAGE, "Get");
+    assertEquals(READ_COUNT, datastoreReads);
+  }
+
+  private ModuleEntity putModuleEntity() {
+    List<PersonId> owners = Lists.newArrayList(new PersonId(1L));
+    ModuleEntity moduleEntity = LightUtils.createModuleEntity(
+        ContentLicense.DEFAULT_LIGHT_CONTENT_LICENSES, new Instant(),
+        new ExternalId("http://example.com/page"), ModuleState.PUBLISHED,
+        ModuleType.LIGHT_SYNTHETIC_MODULE, owners, SearchIndexStatus.forReserveVersion, "title");
+    nonTransaction().put(moduleEntity);
+    return moduleEntity;
+  }
+
+  private Key<ModuleVersionResourceEntity> putResourceEntity(ModuleEntity moduleEntity,
+      String gsKey) {
+    GSBlobInfo blobInfo = new GSBlobInfo.Builder()
+        .contentType(ContentTypeEnum.IMAGE_PNG)
+        .fileName("image0.png")
+        .gsKey(gsKey)
+        .sizeInBytes(10L)
+        .build();
+    ModuleVersionResourceEntity entity = new ModuleVersionResourceEntity.Builder()
+        .id("images/image0.png")
+        .moduleVersionKey(ModuleVersionEntity.generateKey(moduleEntity.getKey(), new Version(1L)))
+        .resourceInfo(blobInfo)
+        .build();
+
+    Objectify txn = initiateTransaction();
+    txn.put(entity);
+    commitTransaction("putResourceEntity", txn);
+    return entity.getKey();
+  }
+
+  private long getMemcacheHitCount() {
+    return MemcacheServiceFactory.getMemcacheService().getStatistics().getHitCount();
+  }
+}
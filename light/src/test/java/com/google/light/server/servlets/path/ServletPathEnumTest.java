@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.servlets.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+import com.google.light.server.constants.EnumTestInterface;
+import com.google.light.server.exception.unchecked.httpexception.NotFoundException;
+import org.junit.Test;
+
+/**
+ * Test for {@link ServletPathEnum}.
+ *
+ * @author Arjun Satyapal
+ */
+public class ServletPathEnumTest implements EnumTestInterface {
+  /**
+   * {@inheritDoc}
+   */
+  @Test
+  @Override
+  public void test_count() {
+    assertEquals(22, ServletPathEnum.values().length);
+  }
+
+  /**
+   * Test for {@link ServletPathEnum#getServletPathEnum(String)}.
+   */
+  @Test
+  public void test_getServletPathEnum() {
+    for (ServletPathEnum curr : ServletPathEnum.values()) {
+      assertSame(curr, ServletPathEnum.getServletPathEnum(curr.get()));
+      assertSame(curr, ServletPathEnum.getServletPathEnum(curr.getRoot()));
+      assertSame(curr, legacyGetServletPathEnum(curr.getRoot()));
+    }
+
+    // Negative Testing : Unknown paths, and paths which only share a prefix with a Servlet.
+    for (String currUri : Lists.newArrayList("", "/unknown", "/api", "/api/person/me/foo",
+        "/api/person//", "/rest/content/module/1")) {
+      try {
+        ServletPathEnum.getServletPathEnum(currUri);
+        fail("should have failed for " + currUri);
+      } catch (NotFoundException e) {
+        // expected.
+      }
+    }
+  }
+
+  /**
+   * Copy of how {@link ServletPathEnum#getServletPathEnum(String)} used to scan all the values.
+   */
+  private ServletPathEnum legacyGetServletPathEnum(String requestUri) {
+    String uri =
+        requestUri.endsWith("/") && !"/".equals(requestUri) ? requestUri.substring(0,
+            requestUri.length() - 1)
+            : requestUri;
+
+    for (ServletPathEnum currServletPath : ServletPathEnum.values()) {
+      if (currServletPath.get().equals(uri)) {
+        return currServletPath;
+      }
+    }
+
+    throw new NotFoundException("ServletPath not found for servletPath[" + requestUri
+        + "].");
+  }
+}
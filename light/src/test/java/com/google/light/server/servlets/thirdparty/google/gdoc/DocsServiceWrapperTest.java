@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.servlets.thirdparty.google.gdoc;
+
+import static com.google.light.server.constants.OAuth2ProviderService.GOOGLE_DOC;
+import static com.google.light.server.utils.GuiceUtils.getInstance;
+import static com.google.light.server.utils.LightUtils.getCurrentTimeInMillis;
+import static com.google.light.testingutils.TestingUtils.getRandomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import com.google.light.server.AbstractLightServerTest;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocInfoDto;
+import com.google.light.server.dto.thirdparty.google.gdoc.GoogleDocResourceId;
+import com.google.light.server.exception.unchecked.httpexception.NotFoundException;
+import com.google.light.server.manager.implementation.oauth2.owner.OAuth2OwnerTokenManagerFactory;
+import com.google.light.server.persistence.entity.oauth2.owner.OAuth2OwnerTokenEntity;
+import com.google.light.server.persistence.entity.person.PersonEntity;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.joda.time.Instant;
+import org.junit.Test;
+
+/**
+ * Test for {@link DocsServiceWrapper}.
+ *
+ * Google Docs are served by a local HTTP server which adds a fixed latency to each request, so
+ * that serial and pipelined fetches can be compared.
+ *
+ * @author Arjun Satyapal
+ */
+public class DocsServiceWrapperTest extends AbstractLightServerTest {
+  private static final int DOC_COUNT = 20;
+  private static final long LATENCY_IN_MILLIS = 100;
+  private static final int MAX_CONCURRENT = 5;
+  private static final long TIMEOUT_IN_MILLIS = 30 * 1000;
+  private static final String MISSING_DOC = "missing";
+
+  private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicInteger requests = new AtomicInteger();
+  private LocalDocsServiceWrapper docsService;
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    try {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    server.createContext("/", new SlowDocHandler());
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.start();
+
+    OAuth2OwnerTokenManagerFactory tokenManagerFactory =
+        getInstance(OAuth2OwnerTokenManagerFactory.class);
+    tokenManagerFactory.create(GOOGLE_DOC).put(new OAuth2OwnerTokenEntity.Builder()
+        .personKey(PersonEntity.generateKey(testPersonId))
+        .providerService(GOOGLE_DOC)
+        .providerUserId(getRandomString())
+        .accessToken(getRandomString())
+        .refreshToken(getRandomString())
+        .expiresInMillis(getCurrentTimeInMillis())
+        .tokenType(getRandomString())
+        .tokenInfo(getRandomString())
+        .build());
+    docsService = new LocalDocsServiceWrapper(tokenManagerFactory,
+        "http://localhost:" + server.getAddress().getPort() + "/");
+  }
+
+  @Override
+  public void tearDown() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  /**
+   * Test for
+   * {@link DocsServiceWrapper#getGoogleDocInfoInBatch(List, GoogleDocInfoDto.Configuration,
+   * ThreadFactory, int, long)}.
+   */
+  @Test
+  public void test_getGoogleDocInfoInBatch() {
+    List<GoogleDocResourceId> resourceIds = Lists.newArrayList();
+    for (int i = 0; i < DOC_COUNT; i++) {
+      resourceIds.add(new GoogleDocResourceId(createDocExternalId("doc" + i)));
+    }
+
+    Map<ExternalId, GoogleDocInfoDto> serialInfos = docsService.getGoogleDocInfoInBatch(
+        resourceIds, GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING, threadFactory,
+        1 /* maxConcurrent */, TIMEOUT_IN_MILLIS);
+    assertEquals(1, maxInFlight.get());
+
+    maxInFlight.set(0);
+    requests.set(0);
+    Map<ExternalId, GoogleDocInfoDto> pipelinedInfos = docsService.getGoogleDocInfoInBatch(
+        resourceIds, GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING, threadFactory,
+        MAX_CONCURRENT, TIMEOUT_IN_MILLIS);
+
+    assertEquals(DOC_COUNT, requests.get());
+    assertTrue("maxInFlight = " + maxInFlight.get(), maxInFlight.get() > 1);
+    assertTrue("maxInFlight = " + maxInFlight.get(), maxInFlight.get() <= MAX_CONCURRENT);
+
+    assertEquals(serialInfos, pipelinedInfos);
+    List<ExternalId> expectedKeys = Lists.newArrayList();
+    for (GoogleDocResourceId curr : resourceIds) {
+      expectedKeys.add(curr.getExternalId());
+    }
+    assertEquals(expectedKeys, Lists.newArrayList(pipelinedInfos.keySet()));
+    for (int i = 0; i < DOC_COUNT; i++) {
+      assertEquals("Title doc" + i, pipelinedInfos.get(expectedKeys.get(i)).getTitle());
+    }
+  }
+
+  /**
+   * Test for
+   * {@link DocsServiceWrapper#getGoogleDocInfoInBatch(List, GoogleDocInfoDto.Configuration,
+   * ThreadFactory, int, long)} when one of the documents does not exist.
+   */
+  @Test
+  public void test_getGoogleDocInfoInBatch_missingDoc() {
+    List<GoogleDocResourceId> resourceIds = Lists.newArrayList(
+        new GoogleDocResourceId(createDocExternalId("doc0")),
+        new GoogleDocResourceId(createDocExternalId(MISSING_DOC)),
+        new GoogleDocResourceId(createDocExternalId("doc2")));
+
+    try {
+      docsService.getGoogleDocInfoInBatch(resourceIds,
+          GoogleDocInfoDto.Configuration.DTO_FOR_DEBUGGING, threadFactory, MAX_CONCURRENT,
+          TIMEOUT_IN_MILLIS);
+      fail("should have failed.");
+    } catch (NotFoundException e) {
+      // Expected.
+    }
+  }
+
+  private static ExternalId createDocExternalId(String docId) {
+    return new ExternalId("https://docs.google.com/a/myopenedu.com/document/d/" + docId
+        + "/edit");
+  }
+
+  /**
+   * Responds with title of the requested document after {@link #LATENCY_IN_MILLIS}.
+   */
+  private class SlowDocHandler implements HttpHandler {
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      int current = inFlight.incrementAndGet();
+      requests.incrementAndGet();
+      synchronized (maxInFlight) {
+        maxInFlight.set(Math.max(maxInFlight.get(), current));
+      }
+
+      try {
+        Thread.sleep(LATENCY_IN_MILLIS);
+        String docId = exchange.getRequestURI().getPath().substring(1);
+        if (docId.equals(MISSING_DOC)) {
+          exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+          return;
+        }
+
+        byte[] body = ("Title " + docId).getBytes(Charsets.UTF_8);
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inFlight.decrementAndGet();
+        exchange.close();
+      }
+    }
+  }
+
+  /**
+   * {@link DocsServiceWrapper} which fetches Google Doc information from local server instead of
+   * Google.
+   */
+  private static class LocalDocsServiceWrapper extends DocsServiceWrapper {
+    private final String baseUrl;
+
+    public LocalDocsServiceWrapper(OAuth2OwnerTokenManagerFactory ownerTokenManagerFactory,
+        String baseUrl) {
+      super(ownerTokenManagerFactory);
+      this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public GoogleDocInfoDto getGoogleDocInfo(GoogleDocResourceId resourceId,
+        GoogleDocInfoDto.Configuration config) {
+      String docId = resourceId.getTypedResourceId().split("%3A|:")[1];
+      String title = null;
+      try {
+        HttpURLConnection connection =
+            (HttpURLConnection) new URL(baseUrl + docId).openConnection();
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+          throw new NotFoundException("GoogleDoc resource[" + resourceId + "] was not found.");
+        }
+        InputStreamReader reader =
+            new InputStreamReader(connection.getInputStream(), Charsets.UTF_8);
+        try {
+          title = CharStreams.toString(reader);
+        } finally {
+          reader.close();
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+
+      ExternalId externalId = resourceId.getExternalId();
+      return new GoogleDocInfoDto.Builder(config)
+          .id(docId)
+          .etag(docId)
+          .lastEditTime(new Instant(0))
+          .moduleType(ModuleType.GOOGLE_DOCUMENT)
+          .title(title)
+          .externalId(externalId)
+          .aclFeedLink(externalId.getValue() + "/acl")
+          .htmlExportUrl(externalId.getValue() + "/export")
+          .build();
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.utils;
+
+import static com.google.light.server.utils.LightUtils.createCollectionNode;
+import static com.google.light.server.utils.LightUtils.createCollectionRootDummy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.dto.module.ModuleType;
+import com.google.light.server.dto.pojo.tree.AbstractTreeNode.TreeNodeType;
+import com.google.light.server.dto.pojo.tree.collection.CollectionTreeNodeDto;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.jobs.handlers.modulejobs.synthetic.ImportModuleSyntheticModuleJobContext;
+import org.junit.Test;
+
+/**
+ * Test for {@link JsonUtils}.
+ *
+ * @author Arjun Satyapal
+ */
+public class JsonUtilsTest extends AbstractGAETest {
+  /**
+   * Test for {@link JsonUtils#toCompactJson(Object)}.
+   */
+  @Test
+  public void test_toCompactJson() {
+    CollectionTreeNodeDto root = createCollectionTree(10);
+    String compact = JsonUtils.toCompactJson(root);
+    String pretty = JsonUtils.toJson(root);
+
+    assertFalse(compact, compact.contains("\n"));
+    assertTrue(pretty, pretty.contains("\n"));
+    assertTrue(compact.length() < pretty.length());
+
+    // Both forms should be readable.
+    assertEquals(root, JsonUtils.getDto(compact, CollectionTreeNodeDto.class));
+    assertEquals(root, JsonUtils.getDto(pretty, CollectionTreeNodeDto.class));
+  }
+
+  /**
+   * Test for {@link JsonUtils#getDto(String, Class)} from multiple threads.
+   */
+  @Test
+  public void test_getDto_multipleThreads() throws Exception {
+    final CollectionTreeNodeDto root = createCollectionTree(50);
+    final String json = JsonUtils.toCompactJson(root);
+    final Throwable[] failure = new Throwable[1];
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < 20; j++) {
+              assertEquals(root, JsonUtils.getDto(json, CollectionTreeNodeDto.class));
+            }
+          } catch (Throwable e) {
+            failure[0] = e;
+          }
+        }
+      });
+      threads[i].start();
+    }
+
+    for (Thread currThread : threads) {
+      currThread.join();
+    }
+    assertTrue("" + failure[0], failure[0] == null);
+  }
+
+  /**
+   * Test for {@link JsonUtils#toJson(Object, boolean)}. Shared writers should produce same output
+   * as the mapper used for REST responses.
+   */
+  @Test
+  public void test_toJson() throws Exception {
+    CollectionTreeNodeDto root = createCollectionTree(10);
+    String expected = JsonUtils.getJsonMapper().writer().writeValueAsString(root);
+    assertTrue(expected, expected.contains("\n"));
+    assertEquals(expected, JsonUtils.toJson(root, false));
+    assertEquals(JsonUtils.getJsonMapper().writerWithDefaultPrettyPrinter()
+        .writeValueAsString(root), JsonUtils.toJson(root));
+  }
+
+  /**
+   * Test for {@link JsonUtils#getPojo(String, Class)} for job contexts.
+   */
+  @Test
+  public void test_getPojo_jobContext() {
+    ImportModuleSyntheticModuleJobContext context = new ImportModuleSyntheticModuleJobContext
+        .Builder()
+        .externalId(new ExternalId("http://example.com/page"))
+        .moduleId(new ModuleId(1234L))
+        .version(new Version(1L))
+        .title("title")
+        .build();
+    assertEquals(context, JsonUtils.getPojo(JsonUtils.toCompactJson(context),
+        ImportModuleSyntheticModuleJobContext.class));
+    assertEquals(context, JsonUtils.getPojo(JsonUtils.toJson(context),
+        ImportModuleSyntheticModuleJobContext.class));
+  }
+
+  private CollectionTreeNodeDto createCollectionTree(int leafCount) {
+    CollectionTreeNodeDto root = createCollectionRootDummy("root", null /* description */);
+    for (int i = 0; i < leafCount; i++) {
+      root.addChildren(createCollectionNode(null /* description */,
+          new ExternalId("http://example.com/page" + i), new ModuleId(i + 1L),
+          ModuleType.LIGHT_SYNTHETIC_MODULE, null /* nodeId */, TreeNodeType.LEAF_NODE,
+          "leaf-" + i, new Version(1L)));
+    }
+
+    return root;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.server.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.light.server.AbstractGAETest;
+import com.google.light.server.constants.LightDtos;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.ModuleId;
+import com.google.light.server.dto.pojo.typewrapper.longwrapper.Version;
+import com.google.light.server.dto.pojo.typewrapper.stringwrapper.ExternalId;
+import com.google.light.server.guice.jersey.JAXBXmlContextResolver;
+import com.google.light.server.jobs.handlers.modulejobs.synthetic.ImportModuleSyntheticModuleJobContext;
+import java.io.StringWriter;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import org.junit.Test;
+
+/**
+ * Test for {@link XmlUtils}.
+ *
+ * @author Arjun Satyapal
+ */
+public class XmlUtilsTest extends AbstractGAETest {
+  /**
+   * Test for {@link XmlUtils#getDtoJAXBContext()}.
+   */
+  @Test
+  public void test_getDtoJAXBContext() {
+    assertSame(XmlUtils.getDtoJAXBContext(), XmlUtils.getDtoJAXBContext());
+  }
+
+  /**
+   * Test for {@link XmlUtils#createDtoMarshaller()}.
+   */
+  @Test
+  public void test_createDtoMarshaller() throws Exception {
+    JAXBXmlContextResolver resolver = new JAXBXmlContextResolver();
+    Marshaller marshaller = resolver.getContext(ImportModuleSyntheticModuleJobContext.class);
+    assertNotSame(marshaller, resolver.getContext(ImportModuleSyntheticModuleJobContext.class));
+
+    // Properties set by Jersey on one Marshaller should not leak into later requests.
+    marshaller.setProperty(Marshaller.JAXB_ENCODING, "ISO-8859-1");
+    marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
+    Marshaller otherMarshaller =
+        resolver.getContext(ImportModuleSyntheticModuleJobContext.class);
+    assertFalse("ISO-8859-1".equals(otherMarshaller.getProperty(Marshaller.JAXB_ENCODING)));
+    assertEquals(Boolean.TRUE, otherMarshaller.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+  }
+
+  /**
+   * Test for {@link XmlUtils#toXml(Object)} and {@link XmlUtils#getDto(String)}.
+   */
+  @Test
+  public void test_roundTrip() {
+    ImportModuleSyntheticModuleJobContext context = createContext();
+    String xml = XmlUtils.toXml(context);
+    assertEquals(xml, legacyToXml(context));
+    assertEquals(context, XmlUtils.getDto(xml));
+  }
+
+  private ImportModuleSyntheticModuleJobContext createContext() {
+    return new ImportModuleSyntheticModuleJobContext.Builder()
+        .externalId(new ExternalId("http://example.com/page"))
+        .moduleId(new ModuleId(1234L))
+        .version(new Version(1L))
+        .title("title")
+        .build();
+  }
+
+  private String legacyToXml(Object object) {
+    try {
+      JAXBContext jaxbContext = JAXBContext.newInstance(LightDtos.getArrayOfDtoClasses());
+      Marshaller marshaller = jaxbContext.createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+      StringWriter sw = new StringWriter();
+      marshaller.marshal(object, sw);
+      return sw.toString();
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.light.testingutils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.apphosting.api.ApiProxy.ApiConfig;
+import com.google.apphosting.api.ApiProxy.Delegate;
+import com.google.apphosting.api.ApiProxy.Environment;
+import com.google.apphosting.api.ApiProxy.LogRecord;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * {@link Delegate} which counts API calls made by each thread, and forwards all the calls to
+ * the delegate which was installed before it. Tests run in parallel, so counts are kept per
+ * thread.
+ *
+ * It can also fail a chosen call with {@link ApiProxy.ApiDeadlineExceededException}, so that
+ * tests can simulate a request which dies halfway.
+ *
+ * Usage : install in a @BeforeClass method (after GAE env is setup), and uninstall in
+ * a @AfterClass method.
+ *
+ * @author Arjun Satyapal
+ */
+@SuppressWarnings("rawtypes")
+public class ApiCallCountingDelegate implements Delegate<Environment> {
+  public static final String DATASTORE_PACKAGE = "datastore_v3";
+  public static final String TASKQUEUE_PACKAGE = "taskqueue";
+
+  private final Delegate delegate;
+  private final ThreadLocal<Multiset<String>> counts = newThreadLocalMultiset();
+  // Total size of requests, in bytes.
+  private final ThreadLocal<Multiset<String>> requestBytes = newThreadLocalMultiset();
+  // Call number (as per counts) at which a call should fail.
+  private final ThreadLocal<Map<String, Integer>> failures =
+      new ThreadLocal<Map<String, Integer>>() {
+        @Override
+        protected Map<String, Integer> initialValue() {
+          return Maps.newHashMap();
+        }
+      };
+
+  private ApiCallCountingDelegate(Delegate delegate) {
+    this.delegate = checkNotNull(delegate, "delegate");
+  }
+
+  /**
+   * Installs a new {@link ApiCallCountingDelegate} in front of current delegate.
+   */
+  @SuppressWarnings("unchecked")
+  public static ApiCallCountingDelegate install() {
+    ApiCallCountingDelegate countingDelegate = new ApiCallCountingDelegate(ApiProxy.getDelegate());
+    ApiProxy.setDelegate(countingDelegate);
+    return countingDelegate;
+  }
+
+  /**
+   * Restores the delegate which was replaced by {@link #install()}.
+   */
+  @SuppressWarnings("unchecked")
+  public void uninstall() {
+    ApiProxy.setDelegate(delegate);
+  }
+
+  /**
+   * Number of calls made by current thread to packageName.methodName since last reset.
+   */
+  public int getCount(String packageName, String methodName) {
+    return counts.get().count(packageName + "." + methodName);
+  }
+
+  /**
+   * Total size in bytes of requests made by current thread to packageName.methodName since last
+   * reset.
+   */
+  public int getRequestBytes(String packageName, String methodName) {
+    return requestBytes.get().count(packageName + "." + methodName);
+  }
+
+  /**
+   * Makes callNumber'th call (counted since last reset) by current thread to
+   * packageName.methodName fail with {@link ApiProxy.ApiDeadlineExceededException}. The call is
+   * not forwarded to the delegate.
+   */
+  public void failOnCall(String packageName, String methodName, int callNumber) {
+    failures.get().put(packageName + "." + methodName, callNumber);
+  }
+
+  /**
+   * Resets counts and failures for current thread.
+   */
+  public void reset() {
+    counts.get().clear();
+    requestBytes.get().clear();
+    failures.get().clear();
+  }
+
+  private void record(String packageName, String methodName, byte[] request) {
+    String key = packageName + "." + methodName;
+    counts.get().add(key);
+    requestBytes.get().add(key, request.length);
+
+    Integer failingCall = failures.get().get(key);
+    if (failingCall != null && failingCall == counts.get().count(key)) {
+      throw new ApiProxy.ApiDeadlineExceededException(packageName, methodName);
+    }
+  }
+
+  private static ThreadLocal<Multiset<String>> newThreadLocalMultiset() {
+    return new ThreadLocal<Multiset<String>>() {
+      @Override
+      protected Multiset<String> initialValue() {
+        return HashMultiset.create();
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public byte[] makeSyncCall(Environment environment, String packageName, String methodName,
+      byte[] request) {
+    record(packageName, methodName, request);
+    return delegate.makeSyncCall(environment, packageName, methodName, request);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Future<byte[]> makeAsyncCall(Environment environment, String packageName,
+      String methodName, byte[] request, ApiConfig apiConfig) {
+    record(packageName, methodName, request);
+    return delegate.makeAsyncCall(environment, packageName, methodName, request, apiConfig);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void log(Environment environment, LogRecord record) {
+    delegate.log(environment, record);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void flushLogs(Environment environment) {
+    delegate.flushLogs(environment);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<Thread> getRequestThreads(Environment environment) {
+    return delegate.getRequestThreads(environment);
+  }
+}
@@ -28,6 +28,7 @@ import com.google.light.server.guice.provider.TestRequestScopedValuesProvider;
 
 import com.google.appengine.api.utils.SystemProperty;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
 import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
@@ -65,6 +66,8 @@ public class GaeTestingUtils {
   static final String IS_FEDERATED_USER_KEY =
       "com.google.appengine.api.users.UserService.is_federated_user";
 
+  private static final String QUEUE_XML_PATH = "src/main/webapp/WEB-INF/queue.xml";
+
   private LocalServiceTestHelper gaeTestHelper;
 
   public GaeTestingUtils(LightEnvEnum env, OAuth2ProviderService providerService,
@@ -80,7 +83,10 @@ public class GaeTestingUtils {
 
     gaeTestHelper = new LocalServiceTestHelper(
         new LocalDatastoreServiceTestConfig(),
-        new LocalTaskQueueTestConfig(),
+        new LocalMemcacheServiceTestConfig(),
+        new LocalTaskQueueTestConfig()
+            .setQueueXmlPath(QUEUE_XML_PATH)
+            .setDisableAutoTaskExecution(true),
         new LocalUserServiceTestConfig())
 
         // TODO(arjuns): Fix this.